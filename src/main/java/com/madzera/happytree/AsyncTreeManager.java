@@ -0,0 +1,265 @@
+package com.madzera.happytree;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.madzera.happytree.exception.TreeException;
+
+/**
+ * Asynchronous facade of the {@link TreeManager} interface.
+ *
+ * <p>Each operation of the <code>AsyncTreeManager</code> names the session
+ * which it works on and returns immediately a {@link CompletableFuture},
+ * completed when the operation is executed by the {@link Executor} of this
+ * manager. So, callers which must not block, as the event-loop threads of
+ * non-blocking servers, can handle big trees without waiting for operations
+ * as initializing a session, applying a function or exporting a tree.</p>
+ *
+ * <p>The operations over the same session are executed one after the other,
+ * in the order they were invoked, while the operations over different
+ * sessions run in parallel. This way, the API client does not need to chain
+ * the futures of a session to keep its operations in order.</p>
+ *
+ * <p>When an operation fails, its future is completed exceptionally with the
+ * same {@link TreeException} or <code>RuntimeException</code> which the
+ * synchronous operation would throw. A failed operation does not prevent the
+ * next operations of the session from running.</p>
+ *
+ * <p>The executor is configurable. The operations of a tree can take a long
+ * time, so an executor which creates threads on demand, as the virtual
+ * threads of the newer Java runtimes
+ * (<code>Executors.newVirtualThreadPerTaskExecutor()</code>), is a good
+ * choice.</p>
+ *
+ * <p>Any other operation of the {@link TreeManager} can be executed
+ * asynchronously by {@link #execute(String, Operation)}.</p>
+ *
+ * @author Diego Madson de Andrade Nóbrega
+ *
+ * @see TreeManager
+ */
+public interface AsyncTreeManager {
+
+	/**
+	 * Initializes a new session by the API Transformation Process, as
+	 * {@link TreeTransaction#initializeSession(String, Collection)}.
+	 *
+	 * @param <T> the class type of the source nodes
+	 *
+	 * @param identifier the identifier of the new session
+	 *
+	 * @param nodes the collection of objects to be transformed into a tree
+	 *
+	 * @return the future of the initialized session
+	 */
+	public <T> CompletableFuture<TreeSession> initializeSession(
+			String identifier, Collection<T> nodes);
+
+	/**
+	 * Clones the session defined by <code>from</code> into the session defined
+	 * by <code>to</code>, as {@link TreeTransaction#cloneSession(String,
+	 * String)}.
+	 *
+	 * <p>This operation is ordered with the other operations of the source
+	 * session.</p>
+	 *
+	 * @param from the identifier of the source session
+	 *
+	 * @param to the identifier of the target session
+	 *
+	 * @return the future of the cloned session
+	 */
+	public CompletableFuture<TreeSession> cloneSession(String from, String to);
+
+	/**
+	 * Saves the session into a snapshot file, as
+	 * {@link TreeTransaction#saveSession(String, Path)}.
+	 *
+	 * @param session the identifier of the session
+	 *
+	 * @param file the snapshot file
+	 *
+	 * @return the future completed when the file is saved
+	 */
+	public CompletableFuture<Void> saveSession(String session, Path file);
+
+	/**
+	 * Obtains a copy of the element by its <code>@Id</code>, as
+	 * {@link TreeManager#getElementById(Object)}.
+	 *
+	 * @param <T> the class type of the wrapped node
+	 *
+	 * @param session the identifier of the session
+	 *
+	 * @param id the identifier of the element
+	 *
+	 * @return the future of the element, or of <code>null</code> if it is not
+	 * found
+	 */
+	public <T> CompletableFuture<Element<T>> getElementById(String session,
+			Object id);
+
+	/**
+	 * Persists a new element into the session, as
+	 * {@link TreeManager#persistElement(Element)}.
+	 *
+	 * <p>The element must be created for the same session by the
+	 * synchronous {@link TreeManager} of {@link #getManager()}, or by an
+	 * operation executed by {@link #execute(String, Operation)}.</p>
+	 *
+	 * @param <T> the class type of the wrapped node
+	 *
+	 * @param session the identifier of the session
+	 *
+	 * @param newElement the element to be persisted
+	 *
+	 * @return the future of a copy of the persisted element
+	 */
+	public <T> CompletableFuture<Element<T>> persistElement(String session,
+			Element<T> newElement);
+
+	/**
+	 * Updates the element in the session, as
+	 * {@link TreeManager#updateElement(Element)}.
+	 *
+	 * @param <T> the class type of the wrapped node
+	 *
+	 * @param session the identifier of the session
+	 *
+	 * @param element the element to be updated
+	 *
+	 * @return the future of a copy of the updated element
+	 */
+	public <T> CompletableFuture<Element<T>> updateElement(String session,
+			Element<T> element);
+
+	/**
+	 * Cuts the element into another one of the same session, as
+	 * {@link TreeManager#cut(Object, Object)}.
+	 *
+	 * @param <T> the class type of the wrapped node
+	 *
+	 * @param session the identifier of the session
+	 *
+	 * @param from the <code>@Id</code> of the source element
+	 *
+	 * @param to the <code>@Id</code> of the target element
+	 *
+	 * @return the future of a copy of the cut element
+	 */
+	public <T> CompletableFuture<Element<T>> cut(String session, Object from,
+			Object to);
+
+	/**
+	 * Removes the element by its <code>@Id</code>, as
+	 * {@link TreeManager#removeElement(Object)}.
+	 *
+	 * @param <T> the class type of the wrapped node
+	 *
+	 * @param session the identifier of the session
+	 *
+	 * @param id the identifier of the element to be removed
+	 *
+	 * @return the future of the removed element
+	 */
+	public <T> CompletableFuture<Element<T>> removeElement(String session,
+			Object id);
+
+	/**
+	 * Searches the elements of the session which satisfy the condition, as
+	 * {@link TreeManager#search(Predicate)}.
+	 *
+	 * @param <T> the class type of the wrapped node
+	 *
+	 * @param session the identifier of the session
+	 *
+	 * @param condition the condition of the elements
+	 *
+	 * @return the future of the found elements
+	 */
+	public <T> CompletableFuture<List<Element<T>>> search(String session,
+			Predicate<Element<T>> condition);
+
+	/**
+	 * Applies the function to all elements of the session, as
+	 * {@link TreeManager#apply(Consumer)}.
+	 *
+	 * @param <T> the class type of the wrapped node
+	 *
+	 * @param session the identifier of the session
+	 *
+	 * @param action the function to be applied
+	 *
+	 * @return the future completed when the function is applied
+	 */
+	public <T> CompletableFuture<Void> apply(String session,
+			Consumer<Element<T>> action);
+
+	/**
+	 * Exports the whole tree of the session into JSON, as
+	 * {@link Element#toJSON()} of {@link TreeManager#root()}.
+	 *
+	 * @param session the identifier of the session
+	 *
+	 * @return the future of the JSON of the tree
+	 */
+	public CompletableFuture<String> toJSON(String session);
+
+	/**
+	 * Executes any operation of the {@link TreeManager} over the session,
+	 * ordered with the other operations of this session.
+	 *
+	 * <p>The session is the current session of the manager passed to the
+	 * operation, only while the operation is executed.</p>
+	 *
+	 * @param <R> the type of the result of the operation
+	 *
+	 * @param session the identifier of the session
+	 *
+	 * @param operation the operation to be executed
+	 *
+	 * @return the future of the result of the operation
+	 */
+	public <R> CompletableFuture<R> execute(String session,
+			Operation<R> operation);
+
+	/**
+	 * Returns the synchronous {@link TreeManager} which executes the
+	 * operations of this manager.
+	 *
+	 * <p>Its transaction is thread-confined, so each thread using it must
+	 * check out its own session. See
+	 * {@link TreeTransaction#setThreadConfined(boolean)}.</p>
+	 *
+	 * @return the synchronous manager
+	 */
+	public TreeManager getManager();
+
+	/**
+	 * Operation executed by {@link AsyncTreeManager#execute(String,
+	 * Operation)}.
+	 *
+	 * @param <R> the type of the result of the operation
+	 */
+	@FunctionalInterface
+	public interface Operation<R> {
+
+		/**
+		 * Executes the operation over the current session of the
+		 * <code>manager</code>.
+		 *
+		 * @param manager the manager whose current session is the session of
+		 * the operation
+		 *
+		 * @return the result of the operation
+		 *
+		 * @throws TreeException in case of an error of the operation
+		 */
+		public R execute(TreeManager manager) throws TreeException;
+	}
+}
@@ -0,0 +1,46 @@
+package com.madzera.happytree;
+
+import java.util.Collection;
+
+/**
+ * Loads on demand the children of the elements of a lazy session, initialized
+ * by {@link TreeTransaction#initializeSession(String, Class, ChildLoader)}.
+ *
+ * <p>The API client implements this interface to read the object nodes from
+ * the source of the hierarchy, as a database or a file system. The core API
+ * invokes the loader only the first time the children of an element are
+ * needed, so only the parts of the tree which are actually browsed are loaded
+ * into the session.</p>
+ *
+ * <p>The object nodes returned must be of the type of the session and must
+ * have the attributes annotated by {@code @Id} and {@code @Parent}, as in the
+ * <b>API Transformation Process</b>. The object node whose {@code @Id}
+ * already exists in the session is ignored, so the changes made in the
+ * session prevail over the source.</p>
+ *
+ * @author Diego Madson de Andrade Nóbrega
+ *
+ * @param <T> the class type of the object nodes
+ *
+ * @see TreeManager#evictChildren(Object)
+ */
+@FunctionalInterface
+public interface ChildLoader<T> {
+
+	/**
+	 * Loads the object nodes of the direct children of an element.
+	 *
+	 * <p>The first level of the tree is loaded with a <code>null</code>
+	 * <code>parentId</code>, since the root element has no {@code @Id}. The
+	 * loaded object nodes of the first level keep their own {@code @Parent},
+	 * while the other ones reference the element which they were loaded
+	 * into.</p>
+	 *
+	 * @param parentId the {@code @Id} of the element whose children are
+	 * loaded, or <code>null</code> for the root element
+	 *
+	 * @return the object nodes of the children, or an empty collection (or
+	 * <code>null</code>) if the element has no children
+	 */
+	public Collection<T> loadChildren(Object parentId);
+}
@@ -1,5 +1,8 @@
 package com.madzera.happytree;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.List;
 import java.util.function.Consumer;
@@ -239,6 +242,69 @@ public interface Element<T> {
 	 */
 	public void removeChild(Object id);
 	
+	/**
+	 * Obtains the depth of this element, that is, the number of levels between
+	 * this element and the top of the tree it belongs to.
+	 * 
+	 * <p>The root element has depth <code>0</code>, so the elements in the root
+	 * level of the tree have depth <code>1</code>. An element that does not
+	 * belong to any parent element, like a recently created one, also has depth
+	 * <code>0</code>.</p>
+	 * 
+	 * <p>The depth is maintained each time the element or one of its ancestors
+	 * is added or removed, so this method does not traverse the tree.</p>
+	 * 
+	 * @return the depth of this element
+	 */
+	public int getDepth();
+	
+	/**
+	 * Obtains the number of descendants of this element, that is, all of its
+	 * children recursively, not including the element itself.
+	 * 
+	 * <p>The number is maintained each time a descendant is added or removed,
+	 * so this method does not traverse the tree.</p>
+	 * 
+	 * @return the number of descendants of this element
+	 */
+	public int getDescendantCount();
+	
+	/**
+	 * Obtains the height of this element, that is, the number of levels
+	 * between this element and its deepest descendant.
+	 * 
+	 * <p>An element without children has height <code>0</code>.</p>
+	 * 
+	 * <p>The height is maintained each time a descendant is added or removed,
+	 * so this method does not traverse the tree.</p>
+	 * 
+	 * @return the height of this element
+	 */
+	public int getHeight();
+	
+	/**
+	 * Obtains the version of this element, which is incremented each time a
+	 * change of this element is committed in the tree.
+	 * 
+	 * <p>A new element has the version <code>0</code>. Updating the element
+	 * or applying a function to it increments the version of the element and
+	 * of all of its descendants, while cutting or removing it increments only
+	 * the version of the element itself.</p>
+	 * 
+	 * <p>Since the elements returned by {@link TreeManager} are copies, the
+	 * version of a copy is the version of the element when it was read. Pass
+	 * it to the conditional operations, as
+	 * {@link TreeManager#updateElement(Element, long)}, to fail when the
+	 * element has been changed since then.</p>
+	 * 
+	 * <p>The versions are not saved in snapshot files, so the elements of a
+	 * restored or mapped session start again at the version <code>0</code>.
+	 * </p>
+	 * 
+	 * @return the version of this element
+	 */
+	public long getVersion();
+	
 	/**
 	 * Encapsulates any object node within the element, as long as this object
 	 * has the same class type as other objects that were encapsulated within
@@ -554,6 +620,106 @@ public interface Element<T> {
 	 */
 	public String toPrettyXML();
 
+	/**
+	 * Writes the JSON representation of this element and all of its
+	 * descendants into the specified output stream, encoded in UTF-8.
+	 * 
+	 * <p>The output is the same as {@link #toJSON()}, but it is written while
+	 * the tree is being traversed, instead of being materialized as a
+	 * <code>String</code>. So, exporting a large tree requires constant extra
+	 * memory.</p>
+	 * 
+	 * <p>The same requirements of {@link #toJSON()} are applied here. If the
+	 * element or any of its children has a <code>null</code> wrapped object
+	 * node (except for the root element), then an empty JSON object
+	 * <code>"{}"</code> is written.</p>
+	 * 
+	 * <p>The stream is flushed, but not closed.</p>
+	 * 
+	 * @param output the stream which the JSON is written to
+	 * 
+	 * @throws IOException when it is not possible to write into the stream or
+	 * to convert the wrapped object nodes
+	 * 
+	 * @see Element#toJSON()
+	 */
+	public void writeJSON(OutputStream output) throws IOException;
+
+	/**
+	 * Writes the JSON representation of this element and all of its
+	 * descendants into the specified writer.
+	 * 
+	 * <p>The output is the same as {@link #toJSON()}, but it is written while
+	 * the tree is being traversed, instead of being materialized as a
+	 * <code>String</code>. So, exporting a large tree requires constant extra
+	 * memory.</p>
+	 * 
+	 * <p>The same requirements of {@link #toJSON()} are applied here. If the
+	 * element or any of its children has a <code>null</code> wrapped object
+	 * node (except for the root element), then an empty JSON object
+	 * <code>"{}"</code> is written.</p>
+	 * 
+	 * <p>The writer is flushed, but not closed.</p>
+	 * 
+	 * @param writer the writer which the JSON is written to
+	 * 
+	 * @throws IOException when it is not possible to write into the writer or
+	 * to convert the wrapped object nodes
+	 * 
+	 * @see Element#toJSON()
+	 */
+	public void writeJSON(Writer writer) throws IOException;
+
+	/**
+	 * Writes the XML representation of this element and all of its
+	 * descendants into the specified output stream, encoded in UTF-8.
+	 * 
+	 * <p>The output is the same as {@link #toXML()}, but it is written while
+	 * the tree is being traversed, instead of being materialized as a
+	 * <code>String</code>. So, exporting a large tree requires constant extra
+	 * memory.</p>
+	 * 
+	 * <p>The same requirements of {@link #toXML()} are applied here. If the
+	 * element or any of its children has a <code>null</code> wrapped object
+	 * node (except for the root element), then an empty XML element
+	 * <code>"&lt;element/&gt;"</code> is written.</p>
+	 * 
+	 * <p>The stream is flushed, but not closed.</p>
+	 * 
+	 * @param output the stream which the XML is written to
+	 * 
+	 * @throws IOException when it is not possible to write into the stream or
+	 * to convert the wrapped object nodes
+	 * 
+	 * @see Element#toXML()
+	 */
+	public void writeXML(OutputStream output) throws IOException;
+
+	/**
+	 * Writes the XML representation of this element and all of its
+	 * descendants into the specified writer.
+	 * 
+	 * <p>The output is the same as {@link #toXML()}, but it is written while
+	 * the tree is being traversed, instead of being materialized as a
+	 * <code>String</code>. So, exporting a large tree requires constant extra
+	 * memory.</p>
+	 * 
+	 * <p>The same requirements of {@link #toXML()} are applied here. If the
+	 * element or any of its children has a <code>null</code> wrapped object
+	 * node (except for the root element), then an empty XML element
+	 * <code>"&lt;element/&gt;"</code> is written.</p>
+	 * 
+	 * <p>The writer is flushed, but not closed.</p>
+	 * 
+	 * @param writer the writer which the XML is written to
+	 * 
+	 * @throws IOException when it is not possible to write into the writer or
+	 * to convert the wrapped object nodes
+	 * 
+	 * @see Element#toXML()
+	 */
+	public void writeXML(Writer writer) throws IOException;
+
 	/**
 	 * Searches for elements that satisfy a specific condition within this
 	 * element and its children recursively. The method returns a list of 
@@ -685,4 +851,42 @@ public interface Element<T> {
 	 */
 	public void apply(
 		Consumer<Element<T>> action, Predicate<Element<T>> condition);
+
+	/**
+	 * Traverses this element and its children recursively in pre-order,
+	 * letting the visitor decide, after each element, whether its descendants
+	 * are visited or the traversal stops.
+	 * 
+	 * <p>Unlike {@link #search(Predicate)} and {@link #apply(Consumer)}, which
+	 * go through the entire subtree, the subtree of an element for which the
+	 * visitor returns {@link TreeVisitor.Result#SKIP_SUBTREE} is not visited,
+	 * and no element is visited after the visitor returns
+	 * {@link TreeVisitor.Result#TERMINATE}. The elements are visited as they
+	 * are in this subtree, without being copied, so the cost of the traversal
+	 * is only the number of visited elements.</p>
+	 * 
+	 * <p>When this method is invoked by the root element, all elements in the
+	 * tree are visited, <b>except for the root element itself</b>. The
+	 * visitor must not add nor remove children of the visited elements.</p>
+	 * 
+	 * <p><b>Example usage:</b></p>
+	 * <pre>
+	 * //Find the first executable file, not looking inside hidden directories
+	 * element.traverse(e -&gt; {
+	 *     if (e.unwrap().isHidden()) {
+	 *         return TreeVisitor.Result.SKIP_SUBTREE;
+	 *     }
+	 *     if (e.unwrap().getName().endsWith(".exe")) {
+	 *         found.add(e);
+	 *         return TreeVisitor.Result.TERMINATE;
+	 *     }
+	 *     return TreeVisitor.Result.CONTINUE;
+	 * });
+	 * </pre>
+	 * 
+	 * @param visitor the visitor of the elements of this subtree
+	 * 
+	 * @see TreeVisitor
+	 */
+	public void traverse(TreeVisitor<T> visitor);
 }
\ No newline at end of file
@@ -1,10 +1,16 @@
 package com.madzera.happytree;
 
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Collector;
 
 import com.madzera.happytree.exception.TreeException;
+import com.madzera.happytree.exception.TreeVersionException;
 
 /**
  * Provides ways to handle elements within a tree session. This makes it
@@ -96,6 +102,20 @@ import com.madzera.happytree.exception.TreeException;
  * 	</tr>
  * </table>
  * 
+ * <p>The same <code>TreeManager</code> instance can be used by many threads.
+ * Each session has its own read/write lock, so the operations which only read
+ * a session run in parallel, while an operation which changes a session waits
+ * for the others on that session. Operations over different sessions never
+ * block each other.</p>
+ * 
+ * <p>Each operation reads the current session once, when it starts, and
+ * works only on that session until it ends. By default, however, the current
+ * session is shared by all threads, so a thread which checks out another
+ * session changes the session of the next operations of the other threads.
+ * Many threads can work on different sessions at the same time only if the
+ * transaction is thread-confined, by
+ * {@link TreeTransaction#setThreadConfined(boolean)}.</p>
+ * 
  * @author Diego Madson de Andrade Nóbrega
  * 
  * @see TreeSession
@@ -208,6 +228,87 @@ public interface TreeManager {
 	 */
 	public <T> Element<T> cut(Object from, Object to) throws TreeException;
 	
+	/**
+	 * Cuts the <code>from</code> element into the <code>to</code> element, as
+	 * {@link #cut(Element, Element)}, only if the <code>from</code> element
+	 * still has the specified <code>version</code> in the tree.
+	 * 
+	 * <p>The version is verified and the element is cut without any other
+	 * change in between, even by other threads. So, instead of locking the
+	 * session, the API client can read the element, keep its
+	 * {@link Element#getVersion()} and retry the operation when it fails with
+	 * a {@link TreeVersionException}.</p>
+	 * 
+	 * @param from the source element
+	 * 
+	 * @param to the target element
+	 * 
+	 * @param version the expected version of the <code>from</code> element
+	 * 
+	 * @return a copy of the element represented by the <code>from</code>
+	 * parameter, after cut
+	 * 
+	 * @throws TreeException when:
+	 * <ul>
+	 * 	<li>
+	 * 		Any validation of {@link #cut(Element, Element)} fails;
+	 * 	</li>
+	 * 	<li>
+	 * 		The element has been changed or removed since the
+	 * 		<code>version</code>, in which case the exception is a
+	 * 		{@link TreeVersionException}.
+	 * 	</li>
+	 * </ul>
+	 * 
+	 * @throws IllegalArgumentException when the <code>from</code> parameter is
+	 * <code>null</code>
+	 */
+	public <T> Element<T> cut(Element<T> from, Element<T> to, long version)
+			throws TreeException;
+	
+	/**
+	 * Cuts many elements at once, inside of the same session. Each key of the
+	 * <code>elements</code> map is the <code>@Id</code> of an element to be
+	 * cut, and its value is the <code>@Id</code> of the target element.
+	 * 
+	 * <p>The result is the same as invoking {@link #cut(Object, Object)} for
+	 * each entry, in the iteration order of the map. However, all entries are
+	 * validated before any element is cut, and the session is committed only
+	 * once, so cutting many elements costs much less than cutting them one by
+	 * one. If any entry is not valid, no element is cut.</p>
+	 * 
+	 * <p>If the target of an entry is <code>null</code> or it is not found,
+	 * then the element is moved to the root level of the tree.</p>
+	 * 
+	 * <p>The cut elements are not returned, so that no copy of them is made.
+	 * To obtain a copy of any of them, invoke {@link #getElementById(Object)}.
+	 * </p>
+	 * 
+	 * @param elements the map of the <code>@Id</code> of each element to be
+	 * cut to the <code>@Id</code> of its target element
+	 * 
+	 * @throws TreeException when:
+	 * <ul>
+	 * 	<li>
+	 * 		The transaction has no selected session to work;
+	 * 	</li>
+	 * 	<li>
+	 * 		The current session is not active or it is read-only;
+	 * 	</li>
+	 * 	<li>
+	 * 		Any element to be cut is not found or it is the root of the tree;
+	 * 	</li>
+	 * 	<li>
+	 * 		The <code>@Id</code> of any element to be cut and the one of its
+	 * 		target have different types.
+	 * 	</li>
+	 * </ul>
+	 * 
+	 * @throws IllegalArgumentException when the <code>elements</code> map or
+	 * any of its keys is <code>null</code>
+	 */
+	public void cutElements(Map<?, ?> elements) throws TreeException;
+	
 	/**
 	 * Copies the respective <code>from</code> element into the <code>to</code>
 	 * element <b>in another tree session</b>. The entire structure of the
@@ -375,6 +476,126 @@ public interface TreeManager {
 	 */
 	public <T> Element<T> removeElement(Object id) throws TreeException;
 	
+	/**
+	 * Removes the element, as {@link #removeElement(Element)}, only if it
+	 * still has the specified <code>version</code> in the tree.
+	 * 
+	 * <p>The version is verified and the element is removed without any other
+	 * change in between, even by other threads.</p>
+	 * 
+	 * @param element the element to be removed
+	 * 
+	 * @param version the expected version of the element
+	 * 
+	 * @return the removed element itself, but with the <i>NOT_EXISTED</i>
+	 * state in the lifecycle
+	 * 
+	 * @throws TreeException when:
+	 * <ul>
+	 * 	<li>
+	 * 		Any validation of {@link #removeElement(Element)} fails;
+	 * 	</li>
+	 * 	<li>
+	 * 		The element has been changed or removed since the
+	 * 		<code>version</code>, in which case the exception is a
+	 * 		{@link TreeVersionException}.
+	 * 	</li>
+	 * </ul>
+	 * 
+	 * @throws IllegalArgumentException when the <code>element</code> is
+	 * <code>null</code>
+	 */
+	public <T> Element<T> removeElement(Element<T> element, long version)
+			throws TreeException;
+	
+	/**
+	 * Removes many elements at once by their <code>@Id</code>. All the
+	 * descendants of the found elements are removed as well.
+	 * 
+	 * <p>The result is the same as invoking {@link #removeElement(Object)} for
+	 * each <code>@Id</code>, in the iteration order of the <code>ids</code>
+	 * collection, but the session is committed only once, so removing many
+	 * elements costs much less than removing them one by one. The
+	 * <code>@Id</code> which is not found, which represents the root of the
+	 * tree or which belongs to a descendant of an element already removed is
+	 * ignored.</p>
+	 * 
+	 * @param <T> the class type of the wrapped nodes
+	 * 
+	 * @param ids the identifiers of the elements to be removed
+	 * 
+	 * @return the removed elements themselves, in the order they were removed,
+	 * with the <i>NOT_EXISTED</i> state in the lifecycle
+	 * 
+	 * @throws TreeException when:
+	 * <ul>
+	 * 	<li>
+	 * 		The transaction has no selected session to work;
+	 * 	</li>
+	 * 	<li>
+	 * 		The current session is not active or it is read-only.
+	 * 	</li>
+	 * </ul>
+	 * 
+	 * @throws IllegalArgumentException when the <code>ids</code> collection is
+	 * <code>null</code>
+	 */
+	public <T> List<Element<T>> removeElements(Collection<?> ids)
+			throws TreeException;
+	
+	/**
+	 * Removes all elements which satisfy a specific condition, together with
+	 * their descendants.
+	 * 
+	 * <p>The tree is traversed only once, from the root element, and each
+	 * element which satisfies the condition is pruned with its whole subtree,
+	 * so its descendants are not evaluated. Only the removed elements are
+	 * taken out of the session, which is committed once, so removing
+	 * thousands of elements costs a single traversal of the tree instead of
+	 * one {@link #search(Predicate)} followed by one
+	 * {@link #removeElement(Object)} for each found element.</p>
+	 * 
+	 * <p>The condition receives the elements of the tree themselves instead of
+	 * copies, so it must not change them.</p>
+	 * 
+	 * <p>In a session initialized with a <code>ChildLoader</code>, only the
+	 * elements already loaded are evaluated. The children which were not
+	 * loaded yet are not loaded by this method, so they are not removed even
+	 * if they satisfy the condition.</p>
+	 * 
+	 * <p><b>Example usage:</b></p>
+	 * <pre>
+	 * //Remove all elements which the object node has expired
+	 * List&lt;Element&lt;MyNodeType&gt;&gt; removed = manager.removeIf(
+	 *     e -&gt; e.unwrap().isExpired()
+	 * );
+	 * </pre>
+	 * 
+	 * <p>If the <code>condition</code> is <code>null</code>, then nothing is
+	 * removed.</p>
+	 * 
+	 * @param <T> the class type of the wrapped nodes
+	 * 
+	 * @param condition the predicate function defining the elements to be
+	 * removed
+	 * 
+	 * @return the removed elements themselves, without the descendants which
+	 * were removed along with them, with the <i>NOT_EXISTED</i> state in the
+	 * lifecycle
+	 * 
+	 * @throws TreeException when:
+	 * <ul>
+	 * 	<li>
+	 * 		The transaction has no selected session to work;
+	 * 	</li>
+	 * 	<li>
+	 * 		The current session is not active or it is read-only.
+	 * 	</li>
+	 * </ul>
+	 */
+	public <T> List<Element<T>> removeIf(Predicate<Element<T>> condition)
+			throws TreeException;
+	
 	/**
 	 * Obtains an element by <code>@Id</code> in the current tree session.
 	 * 
@@ -414,6 +635,85 @@ public interface TreeManager {
 	 */
 	public <T> Element<T> getElementById(Object id) throws TreeException;
 	
+	/**
+	 * Obtains an element by <code>@Id</code> in the current tree session,
+	 * copying its descendants only down to the <code>depth</code> relative to
+	 * the element.
+	 * 
+	 * <p>This method works as {@link #getElementById(Object)}, but the cost
+	 * of the copy depends only on the elements down to the requested depth,
+	 * not on the size of the whole subtree. A <code>depth</code> of
+	 * <code>1</code> copies the element with its direct children, while a
+	 * <code>depth</code> of <code>0</code> or lower copies only the element
+	 * itself.</p>
+	 * 
+	 * <p>The descendants deeper than <code>depth</code> are left out of the
+	 * copy, until they are accessed. Then, the children of each copied
+	 * element are copied from the tree as they are at that moment, just as
+	 * the children of a lazy session are loaded. So, updating the copy by
+	 * {@link #updateElement(Element)} keeps the descendants which were left
+	 * out.</p>
+	 * 
+	 * @param <T> the class type of the wrapped node
+	 * 
+	 * @param id the element identifier
+	 * 
+	 * @param depth the number of levels of descendants to be copied
+	 * 
+	 * @return a copy of the found element down to the <code>depth</code>
+	 * 
+	 * @throws TreeException when the transaction has no selected session to
+	 * work or the current session is not active
+	 */
+	public <T> Element<T> getElementById(Object id, int depth)
+			throws TreeException;
+	
+	/**
+	 * Obtains many elements at once by their <code>@Id</code> in the current
+	 * tree session.
+	 * 
+	 * <p>The session is validated only once for all the identifiers, instead
+	 * of once for each invocation of {@link #getElementById(Object)}, which
+	 * makes this method the best choice to obtain hundreds of elements at the
+	 * same time.</p>
+	 * 
+	 * <p>When <code>isShallow</code> is <code>false</code>, each element is
+	 * copied with all its descendants, as {@link #getElementById(Object)}
+	 * does. However, the subtrees of the requested elements are copied only
+	 * once: if an element is a descendant of another requested element, its
+	 * copy is the same instance found inside the copy of the ancestor.
+	 * Therefore, a change to one of them is seen by the other one.</p>
+	 * 
+	 * <p>When <code>isShallow</code> is <code>true</code>, each element is
+	 * copied without its children, which avoids copying subtrees that are not
+	 * going to be read. The children of a shallow copy are copied from the
+	 * tree only when they are accessed, as in
+	 * {@link #getElementById(Object, int)}, so updating it by
+	 * {@link #updateElement(Element)} keeps the descendants of the element in
+	 * the tree.</p>
+	 * 
+	 * <p>The <code>@Id</code> which is <code>null</code> or which cannot be
+	 * found in the tree is not present in the resulting map.</p>
+	 * 
+	 * @param <T> the class type of the wrapped nodes
+	 * 
+	 * @param ids the identifiers of the elements
+	 * 
+	 * @param isShallow <code>true</code> to copy the elements without their
+	 * descendants
+	 * 
+	 * @return the copies of the found elements by their <code>@Id</code>, in
+	 * the iteration order of <code>ids</code>
+	 * 
+	 * @throws TreeException when the transaction has no selected session to
+	 * work or the current session is not active
+	 * 
+	 * @throws IllegalArgumentException when the <code>ids</code> collection is
+	 * <code>null</code>
+	 */
+	public <T> Map<Object, Element<T>> getElementsById(Collection<?> ids,
+			boolean isShallow) throws TreeException;
+	
 	/**
 	 * Verifies whether the <code>parent</code> element contains inside of it
 	 * the <code>descendant</code> element in this current session.
@@ -627,6 +927,57 @@ public interface TreeManager {
 	public <T> Element<T> persistElement(Element<T> newElement) 
 			throws TreeException;
 	
+	/**
+	 * Persists many new elements at once into the current session.
+	 * 
+	 * <p>The result is the same as invoking {@link #persistElement(Element)}
+	 * for each element, in the iteration order of the
+	 * <code>newElements</code> collection. So, an element can be persisted
+	 * inside of another one persisted before it in the same collection.
+	 * However, the elements are validated as a set before any of them is
+	 * persisted, and the session is committed only once, so a batch import
+	 * costs time proportional to the number of elements. If any element is
+	 * not valid, no element is persisted.</p>
+	 * 
+	 * <p>The persisted elements are not returned, so that no copy of them is
+	 * made. To obtain a copy of any of them, invoke
+	 * {@link #getElementById(Object)}.</p>
+	 * 
+	 * @param <T> the class type of the wrapped nodes
+	 * 
+	 * @param newElements the elements to be persisted
+	 * 
+	 * @throws TreeException when:
+	 * <ul>
+	 * 	<li>
+	 * 		The transaction has no selected session to work;
+	 * 	</li>
+	 * 	<li>
+	 * 		The current session is not active or it is read-only;
+	 * 	</li>
+	 * 	<li>
+	 * 		Any element does not belong in the correct current session;
+	 * 	</li>
+	 * 	<li>
+	 * 		Any element has a different type of wrapped node related to the
+	 * 		current session;
+	 * 	</li>
+	 * 	<li>
+	 * 		Any element or at least one of its descendants have a
+	 * 		<i>DETACHED</i> or <i>ATTACHED</i> state in the lifecycle;
+	 * 	</li>
+	 * 	<li>
+	 * 		Any element or descendant has an identifier which already exists
+	 * 		in this session or which is repeated in the collection.
+	 * 	</li>
+	 * </ul>
+	 * 
+	 * @throws IllegalArgumentException when the <code>newElements</code>
+	 * collection or any of its elements is <code>null</code>
+	 */
+	public <T> void persistElements(Collection<Element<T>> newElements)
+			throws TreeException;
+	
 	/**
 	 * Updates the state of the element to the tree. Synchronizes a previous
 	 * changed element.
@@ -720,6 +1071,44 @@ public interface TreeManager {
 	public <T> Element<T> updateElement(Element<T> element) 
 			throws TreeException;
 	
+	/**
+	 * Updates the element, as {@link #updateElement(Element)}, only if it
+	 * still has the specified <code>version</code> in the tree.
+	 * 
+	 * <p>Without a version, the last update always wins. With this method,
+	 * the update fails when another update has been committed since the
+	 * element was read, so concurrent editors never overwrite each other:</p>
+	 * 
+	 * <pre>
+	 * Element&lt;Directory&gt; element = manager.getElementById(id);
+	 * element.wrap(changedDirectory);
+	 * manager.updateElement(element, element.getVersion());
+	 * </pre>
+	 * 
+	 * @param element the element to be updated
+	 * 
+	 * @param version the expected version of the element
+	 * 
+	 * @return a copy of the updated element
+	 * 
+	 * @throws TreeException when:
+	 * <ul>
+	 * 	<li>
+	 * 		Any validation of {@link #updateElement(Element)} fails;
+	 * 	</li>
+	 * 	<li>
+	 * 		The element has been changed or removed since the
+	 * 		<code>version</code>, in which case the exception is a
+	 * 		{@link TreeVersionException}.
+	 * 	</li>
+	 * </ul>
+	 * 
+	 * @throws IllegalArgumentException when the <code>element</code> or its
+	 * <code>@Id</code> is <code>null</code>
+	 */
+	public <T> Element<T> updateElement(Element<T> element, long version)
+			throws TreeException;
+	
 	/**
 	 * Returns the {@link TreeTransaction} instance associated with this manager.
 	 * 
@@ -794,6 +1183,92 @@ public interface TreeManager {
 	 * @see TreeSession#tree()
 	 */
 	public <T> Element<T> root() throws TreeException;
+	
+	/**
+	 * Obtains the root element of the current tree session, copying its
+	 * descendants only down to the <code>depth</code>.
+	 * 
+	 * <p>This method works as {@link #root()}, but a <code>depth</code> of
+	 * <code>1</code> copies only the root with the elements of the first
+	 * level, so the navigation from the top of a big tree does not depend on
+	 * its size. A <code>depth</code> of <code>0</code> or lower copies only
+	 * the root element. As in {@link #getElementById(Object, int)}, the
+	 * deeper descendants are copied only when they are accessed.</p>
+	 * 
+	 * @param <T> the class type of the wrapped nodes
+	 * 
+	 * @param depth the number of levels of descendants to be copied
+	 * 
+	 * @return the root element down to the <code>depth</code>
+	 * 
+	 * @throws TreeException when the transaction has no selected session to
+	 * work or if the current session is not active
+	 * 
+	 * @see #getElementById(Object, int)
+	 */
+	public <T> Element<T> root(int depth) throws TreeException;
+	
+	/**
+	 * Releases the loaded descendants of an element of a lazy session, which
+	 * are loaded again by the {@link ChildLoader} of the session the next
+	 * time the children of the element are needed.
+	 * 
+	 * <p>This is intended for the subtrees which are collapsed by the user, so
+	 * a lazy session keeps in memory only the part of the tree which is being
+	 * browsed. The evicted elements are taken out of the session as if they
+	 * were never loaded, so the changes made to them since they were loaded
+	 * are discarded.</p>
+	 * 
+	 * <p>If the session is not lazy, if the <code>id</code> is
+	 * <code>null</code> or not found, or if the children of the element are
+	 * not loaded, then nothing happens.</p>
+	 * 
+	 * @param id the identifier of the element whose descendants are released
+	 * 
+	 * @throws TreeException when:
+	 * <ul>
+	 * 	<li>
+	 * 		The transaction has no selected session to work;
+	 * 	</li>
+	 * 	<li>
+	 * 		The current session is not active or it is read-only.
+	 * 	</li>
+	 * </ul>
+	 * 
+	 * @see TreeTransaction#initializeSession(String, Class, ChildLoader)
+	 */
+	public void evictChildren(Object id) throws TreeException;
+	
+	/**
+	 * Returns an immutable version of the current session, with its tree as it
+	 * is at the moment of this invocation.
+	 * 
+	 * <p>The changes committed into the current session after that are not
+	 * seen by the returned version, which is never changed. So, the tree of
+	 * the version, returned by {@link TreeSession#tree()}, can be navigated or
+	 * exported as a consistent view of the session while the current session
+	 * keeps being changed.</p>
+	 * 
+	 * <p>Taking a version is immediate, as the version shares the tree with
+	 * the current session. The shared tree is never changed again, so the next
+	 * change of the current session first copies all of its elements and then
+	 * changes the copy. That change costs as much as copying the whole tree,
+	 * however small it is. The next changes do not copy the tree again, until
+	 * another version is taken. Any number of versions can be taken between
+	 * two changes, sharing the same tree and costing a single copy.</p>
+	 * 
+	 * <p>The version keeps the identifier of the current session, but it is
+	 * not managed by the {@link TreeTransaction}, so it cannot be checked out.
+	 * It is a read-only session, and its elements must not be changed.</p>
+	 * 
+	 * @return the immutable version of the current session
+	 * 
+	 * @throws TreeException when the transaction has no selected session to
+	 * work or if the current session is not active
+	 * 
+	 * @see TreeSession#isReadOnly()
+	 */
+	public TreeSession snapshot() throws TreeException;
 
 	/**
 	 * Searches for elements that satisfy a specific condition within the entire
@@ -827,6 +1302,254 @@ public interface TreeManager {
 	public <T> List<Element<T>> search(Predicate<Element<T>> condition) 
 			throws TreeException;
 
+	/**
+	 * Obtains all elements placed in the specified depth of the tree.
+	 * 
+	 * <p>The depth is counted from the root element, which has depth
+	 * <code>0</code>. So, the elements in the root level of the tree have depth
+	 * <code>1</code>, their children have depth <code>2</code> and so on. The
+	 * root element itself is never returned.</p>
+	 * 
+	 * <p>Each tree session keeps an index of its elements by depth, updated as
+	 * the elements are persisted, cut, copied, updated and removed. So, this
+	 * method does not traverse the tree and its cost is proportional to the
+	 * result, not to the size of the tree.</p>
+	 * 
+	 * <p>Like {@link #getElementById(Object)}, each returned element is a copy
+	 * of the element in the tree, <b>including its children</b>. If there is
+	 * no element in the specified depth, an empty list is returned.</p>
+	 * 
+	 * <p><b>Example usage:</b></p>
+	 * <pre>
+	 * //Render only the first two levels of the tree
+	 * List&lt;Element&lt;MyNodeType&gt;&gt; firstLevel = manager
+	 *     .elementsAtDepth(1);
+	 * List&lt;Element&lt;MyNodeType&gt;&gt; secondLevel = manager
+	 *     .elementsAtDepth(2);
+	 * </pre>
+	 * 
+	 * @param depth the depth of the elements to be obtained
+	 * 
+	 * @return a list of elements placed in the specified depth
+	 * 
+	 * @throws TreeException when the transaction has no selected session to
+	 * work or if the current session is not active
+	 * 
+	 * @see Element#getDepth()
+	 */
+	public <T> List<Element<T>> elementsAtDepth(int depth) throws TreeException;
+
+	/**
+	 * Obtains all leaves of the tree, that is, all elements which have no
+	 * children.
+	 * 
+	 * <p>Each tree session keeps the set of its leaves, updated as the elements
+	 * are persisted, cut, copied, updated and removed. So, this method does not
+	 * traverse the tree and its cost is proportional to the number of leaves,
+	 * not to the size of the tree.</p>
+	 * 
+	 * <p>The root element is never returned, even when the tree is empty. Each
+	 * returned element is a copy of the element in the tree. In a lazy
+	 * session, an element whose children were not loaded yet is not a
+	 * leaf.</p>
+	 * 
+	 * @return a list of all elements without children in the tree
+	 * 
+	 * @throws TreeException when the transaction has no selected session to
+	 * work or if the current session is not active
+	 */
+	public <T> List<Element<T>> leaves() throws TreeException;
+
+	/**
+	 * Creates a secondary index of the elements of the current session by an
+	 * attribute of their wrapped nodes, to find them by
+	 * {@link #findBy(String, Object)} and {@link #findRange(String, Object,
+	 * Object)} without traversing the tree.
+	 * 
+	 * <p>The attribute is read from the wrapped node by its public getter, so
+	 * the <code>sku</code> attribute is read by <code>getSku()</code>. A
+	 * hash index finds the elements by an exact value. A sorted index
+	 * finds them by an exact value or by a range of values as well, so its
+	 * attribute must have a natural order, that is, its type must be a
+	 * primitive type or implement the <code>Comparable</code> interface.</p>
+	 * 
+	 * <p>All elements already in the tree are indexed when the index is
+	 * created. After that, the index is updated as the elements are
+	 * persisted, updated, cut, copied, removed or changed by
+	 * {@link #apply(Consumer)}. Creating an index for an attribute which is
+	 * already indexed replaces the old index.</p>
+	 * 
+	 * <p>The indexes belong to the session and the sessions cloned from it,
+	 * but they are not saved into snapshots nor journals. In a lazy session,
+	 * only the loaded elements are indexed.</p>
+	 * 
+	 * <p><b>Example usage:</b></p>
+	 * <pre>
+	 * manager.createIndex("sku", false);
+	 * manager.createIndex("price", true);
+	 * 
+	 * List&lt;Element&lt;Product&gt;&gt; cheap = manager.findRange("price",
+	 *     0.0, 9.99);
+	 * </pre>
+	 * 
+	 * @param attribute the name of the attribute of the wrapped nodes
+	 * 
+	 * @param isSorted <code>true</code> to create a sorted index, or
+	 * <code>false</code> to create a hash index
+	 * 
+	 * @throws TreeException when the transaction has no selected session to
+	 * work, if the current session is not active or it is read-only, or if
+	 * the wrapped nodes have no getter for the attribute or, for a sorted
+	 * index, the attribute has no natural order
+	 * 
+	 * @throws IllegalArgumentException when the <code>attribute</code>
+	 * parameter is <code>null</code>
+	 */
+	public void createIndex(String attribute, boolean isSorted)
+			throws TreeException;
+
+	/**
+	 * Obtains the elements whose wrapped nodes have the attribute equal to the
+	 * value, through the index of the attribute created by
+	 * {@link #createIndex(String, boolean)}.
+	 * 
+	 * <p>The elements are found in the index, so this method does not
+	 * traverse the tree and its cost is proportional to the result, not to
+	 * the size of the tree. The value must have the same type of the
+	 * attribute, or its wrapper type for primitive attributes, otherwise no
+	 * element is found. A <code>null</code> value finds the elements whose
+	 * attribute is <code>null</code>.</p>
+	 * 
+	 * <p>Like {@link #search(Predicate)}, each returned element is a copy of
+	 * the element in the tree, including its children. If no element is
+	 * found, an empty list is returned.</p>
+	 * 
+	 * @param attribute the name of the indexed attribute
+	 * 
+	 * @param value the value of the attribute
+	 * 
+	 * @return a list of the elements whose attribute is equal to the value
+	 * 
+	 * @throws TreeException when the transaction has no selected session to
+	 * work, if the current session is not active or if the attribute is not
+	 * indexed in the current session
+	 * 
+	 * @throws IllegalArgumentException when the <code>attribute</code>
+	 * parameter is <code>null</code>
+	 */
+	public <T> List<Element<T>> findBy(String attribute, Object value)
+			throws TreeException;
+
+	/**
+	 * Obtains the elements whose wrapped nodes have the attribute between
+	 * <code>from</code> and <code>to</code>, both inclusive, through the
+	 * sorted index of the attribute created by
+	 * {@link #createIndex(String, boolean)}.
+	 * 
+	 * <p>The elements are returned in the natural order of their attribute.
+	 * As in {@link #findBy(String, Object)}, the elements are found in the
+	 * index, so the cost of this method is logarithmic in the number of
+	 * indexed values plus the size of the result.</p>
+	 * 
+	 * <p>A <code>null</code> bound is not a limit, so
+	 * <code>findRange("price", null, 10.0)</code> finds all elements whose
+	 * price is up to <code>10.0</code>. The elements whose attribute is
+	 * <code>null</code> are never in a range. The bounds must have the same
+	 * type of the attribute, otherwise no element is found.</p>
+	 * 
+	 * <p>Each returned element is a copy of the element in the tree,
+	 * including its children.</p>
+	 * 
+	 * @param attribute the name of the attribute with a sorted index
+	 * 
+	 * @param from the lowest value of the range
+	 * 
+	 * @param to the highest value of the range
+	 * 
+	 * @return a list of the elements whose attribute is in the range
+	 * 
+	 * @throws TreeException when the transaction has no selected session to
+	 * work, if the current session is not active or if the attribute has no
+	 * sorted index in the current session
+	 * 
+	 * @throws IllegalArgumentException when the <code>attribute</code>
+	 * parameter is <code>null</code>
+	 */
+	public <T> List<Element<T>> findRange(String attribute, Object from,
+			Object to) throws TreeException;
+
+	/**
+	 * Creates a text index of the elements of the current session by the
+	 * words of a <code>String</code> attribute of their wrapped nodes, to find
+	 * them by {@link TreeQuery#matching(String, String)} without reading the
+	 * attribute of each element.
+	 * 
+	 * <p>The words are the sequences of letters and digits of the attribute,
+	 * without regard to case. For each word, the index keeps the elements
+	 * which have it, so the elements having words which start with the words
+	 * of a text are found by joining the elements of those words, and the
+	 * cost of a lookup does not depend on the size of the tree. Along with
+	 * {@link TreeQuery#underAncestor(Object)}, the text is searched in a
+	 * subtree only.</p>
+	 * 
+	 * <p>As in {@link #createIndex(String, boolean)}, the attribute is read
+	 * from the wrapped node by its public getter, all elements already in the
+	 * tree are indexed when the index is created and, after that, the index
+	 * is updated as the elements change. Creating a text index for an
+	 * attribute which already has one replaces the old index. The text
+	 * indexes belong to the session and the sessions cloned from it, but
+	 * they are not saved into snapshots nor journals.</p>
+	 * 
+	 * <p><b>Example usage:</b></p>
+	 * <pre>
+	 * manager.createTextIndex("name");
+	 * 
+	 * List&lt;Element&lt;Directory&gt;&gt; found = manager
+	 *     .&lt;Directory&gt;query()
+	 *     .underAncestor(develId)
+	 *     .matching("name", "happy")
+	 *     .list();
+	 * </pre>
+	 * 
+	 * @param attribute the name of the <code>String</code> attribute of the
+	 * wrapped nodes
+	 * 
+	 * @throws TreeException when the transaction has no selected session to
+	 * work, if the current session is not active or it is read-only, or if
+	 * the wrapped nodes have no getter for the attribute or the attribute is
+	 * not a <code>String</code>
+	 * 
+	 * @throws IllegalArgumentException when the <code>attribute</code>
+	 * parameter is <code>null</code>
+	 */
+	public void createTextIndex(String attribute) throws TreeException;
+
+	/**
+	 * Creates a new query over the elements of the current session.
+	 * 
+	 * <p>The conditions of the query are added by the methods of
+	 * {@link TreeQuery}, and the query is executed by
+	 * {@link TreeQuery#list()}. As the conditions are known by the core API,
+	 * the query reads the elements from the indexes of the session whenever
+	 * it can, instead of traversing the whole tree as
+	 * {@link #search(Predicate)} does.</p>
+	 * 
+	 * <p><b>Example usage:</b></p>
+	 * <pre>
+	 * List&lt;Element&lt;Directory&gt;&gt; files = manager
+	 *     .&lt;Directory&gt;query()
+	 *     .underAncestor(develId)
+	 *     .leafOnly()
+	 *     .limit(10)
+	 *     .list();
+	 * </pre>
+	 * 
+	 * @return a new query without conditions
+	 * 
+	 * @see TreeQuery
+	 */
+	public <T> TreeQuery<T> query();
+
 	/**
 	 * Applies a function to be performed on all elements within the entire tree
 	 * structure. The action applied to every element in the tree is
@@ -930,4 +1653,179 @@ public interface TreeManager {
 	 */
 	public <T> void apply(Consumer<Element<T>> action,
 			Predicate<Element<T>> condition) throws TreeException;
+
+	/**
+	 * Traverses the elements of the entire tree structure in pre-order,
+	 * letting the visitor decide, after each element, whether its descendants
+	 * are visited or the traversal stops.
+	 * 
+	 * <p>Unlike {@link #search(Predicate)}, which copies the tree before
+	 * evaluating all of its elements, this method visits the elements of the
+	 * current session themselves, without copying them, and does not visit
+	 * the subtrees skipped by the visitor nor any element after the visitor
+	 * terminates the traversal. So the cost of this method is only the number
+	 * of visited elements.</p>
+	 * 
+	 * <p>As the visited elements are not copies, the visitor must only read
+	 * them. To change an element, the visitor can keep its <code>@Id</code>
+	 * and change it after the traversal through
+	 * {@link #getElementById(Object)} and {@link #updateElement(Element)}.
+	 * The root element is not visited. In a lazy session, only the loaded
+	 * elements are visited.</p>
+	 * 
+	 * <p><b>Example usage:</b></p>
+	 * <pre>
+	 * //Collect the ids of the elements of the first two levels
+	 * List&lt;Object&gt; ids = new ArrayList&lt;&gt;();
+	 * manager.&lt;Directory&gt;traverse(e -&gt; {
+	 *     ids.add(e.getId());
+	 *     return e.getDepth() &lt; 2 ? TreeVisitor.Result.CONTINUE :
+	 *         TreeVisitor.Result.SKIP_SUBTREE;
+	 * });
+	 * </pre>
+	 * 
+	 * @param visitor the visitor of the elements of the tree
+	 * 
+	 * @throws TreeException when the transaction has no selected session to
+	 * work or if the current session is not active
+	 * 
+	 * @see TreeVisitor
+	 */
+	public <T> void traverse(TreeVisitor<T> visitor) throws TreeException;
+
+	/**
+	 * Obtains the first <code>k</code> descendants of an element in the order
+	 * of the comparator, as the <code>k</code> most expensive products of a
+	 * category.
+	 * 
+	 * <p>The descendants are visited once, as in
+	 * {@link #traverse(TreeVisitor)}, without being copied, and only the
+	 * <code>k</code> best elements found so far are kept, in a heap. So this
+	 * method needs memory proportional to <code>k</code>, not to the size of
+	 * the subtree, and only the returned elements are copied, including
+	 * their children. The returned elements are in the order of the
+	 * comparator.</p>
+	 * 
+	 * <p>A <code>null</code> <code>id</code> ranks all elements of the tree,
+	 * except for the root element. If there is no element with the
+	 * <code>id</code>, an empty list is returned. In a lazy session, only the
+	 * loaded elements are ranked.</p>
+	 * 
+	 * <p>As {@link Element#unwrap()} copies the wrapped object node, a
+	 * comparator which reads the nodes copies two of them on each comparison.
+	 * To rank the elements by an attribute of their wrapped object nodes,
+	 * prefer {@link #topK(Object, Function, Comparator, int)}.</p>
+	 * 
+	 * <p><b>Example usage:</b></p>
+	 * <pre>
+	 * //The 20 elements with the most descendants under a category
+	 * List&lt;Element&lt;Product&gt;&gt; top = manager.topK(categoryId,
+	 *     Comparator.comparing(
+	 *         Element&lt;Product&gt;::getDescendantCount).reversed(), 20);
+	 * </pre>
+	 * 
+	 * @param id the <code>@Id</code> of the element whose descendants are
+	 * ranked, or <code>null</code> for the whole tree
+	 * 
+	 * @param comparator the order of the elements
+	 * 
+	 * @param k the maximum number of returned elements
+	 * 
+	 * @return a list of at most <code>k</code> descendants of the element, in
+	 * the order of the comparator
+	 * 
+	 * @throws TreeException when the transaction has no selected session to
+	 * work or if the current session is not active
+	 * 
+	 * @throws IllegalArgumentException when the <code>comparator</code>
+	 * parameter is <code>null</code> or the <code>k</code> parameter is
+	 * negative
+	 */
+	public <T> List<Element<T>> topK(Object id,
+			Comparator<Element<T>> comparator, int k) throws TreeException;
+
+	/**
+	 * Obtains the first <code>k</code> descendants of an element in the order
+	 * of a key of their wrapped object nodes, as the <code>k</code> most
+	 * expensive products of a category.
+	 * 
+	 * <p>This is {@link #topK(Object, Comparator, int)}, but the key function
+	 * receives the wrapped object node itself instead of a copy of it, and it
+	 * is invoked only once for each descendant. So, the wrapped object nodes
+	 * are not copied to be compared, and the key function must only read
+	 * them. An element without wrapped object node has its key extracted from
+	 * <code>null</code>.</p>
+	 * 
+	 * <p><b>Example usage:</b></p>
+	 * <pre>
+	 * //The 20 most expensive products under a category
+	 * List&lt;Element&lt;Product&gt;&gt; top = manager.topK(categoryId,
+	 *     Product::getPrice, Comparator.reverseOrder(), 20);
+	 * </pre>
+	 * 
+	 * @param id the <code>@Id</code> of the element whose descendants are
+	 * ranked, or <code>null</code> for the whole tree
+	 * 
+	 * @param key the key of a wrapped object node to be compared
+	 * 
+	 * @param comparator the order of the keys
+	 * 
+	 * @param k the maximum number of returned elements
+	 * 
+	 * @return a list of at most <code>k</code> descendants of the element, in
+	 * the order of the keys
+	 * 
+	 * @throws TreeException when the transaction has no selected session to
+	 * work or if the current session is not active
+	 * 
+	 * @throws IllegalArgumentException when the <code>key</code> or the
+	 * <code>comparator</code> parameter is <code>null</code> or the
+	 * <code>k</code> parameter is negative
+	 */
+	public <T, K> List<Element<T>> topK(Object id,
+			Function<? super T, ? extends K> key,
+			Comparator<? super K> comparator, int k) throws TreeException;
+
+	/**
+	 * Aggregates the wrapped object nodes of the descendants of an element by
+	 * a collector, as the sum of the headcount of an organizational unit.
+	 * 
+	 * <p>The descendants are visited once, as in
+	 * {@link #traverse(TreeVisitor)}, and the wrapped object node of each one
+	 * is accumulated by the collector as soon as it is visited, so neither the
+	 * elements nor their wrapped object nodes are copied and no list of them
+	 * is built. The memory needed is only the one of the accumulation of the
+	 * collector. As the wrapped object nodes are not copied, the collector
+	 * must only read them. An element without wrapped object node is
+	 * accumulated as <code>null</code>.</p>
+	 * 
+	 * <p>A <code>null</code> <code>id</code> aggregates all elements of the
+	 * tree, except for the root element. If there is no element with the
+	 * <code>id</code>, the result of the collector without elements is
+	 * returned. In a lazy session, only the loaded elements are
+	 * aggregated.</p>
+	 * 
+	 * <p><b>Example usage:</b></p>
+	 * <pre>
+	 * //The headcount under an organizational unit
+	 * int headcount = manager.aggregate(unitId,
+	 *     Collectors.summingInt(Unit::getHeadcount));
+	 * </pre>
+	 * 
+	 * @param id the <code>@Id</code> of the element whose descendants are
+	 * aggregated, or <code>null</code> for the whole tree
+	 * 
+	 * @param collector the aggregation of the wrapped object nodes
+	 * 
+	 * @return the result of the collector over the descendants of the
+	 * element
+	 * 
+	 * @throws TreeException when the transaction has no selected session to
+	 * work or if the current session is not active
+	 * 
+	 * @throws IllegalArgumentException when the <code>collector</code>
+	 * parameter is <code>null</code>
+	 */
+	public <T, A, R> R aggregate(Object id,
+			Collector<? super T, A, R> collector) throws TreeException;
 }
\ No newline at end of file
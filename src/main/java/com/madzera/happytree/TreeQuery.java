@@ -0,0 +1,210 @@
+package com.madzera.happytree;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import com.madzera.happytree.exception.TreeException;
+
+/**
+ * Typed query over the elements of the current session, created by
+ * {@link TreeManager#query()}.
+ * 
+ * <p>Unlike the <code>Predicate</code> of
+ * {@link TreeManager#search(Predicate)}, whose condition is opaque to the
+ * core API, each condition of a <code>TreeQuery</code> is known by the core
+ * API. So, when the query is executed by {@link #list()}, its conditions are
+ * compiled into a plan which reads the elements from the cheapest structure
+ * kept by the session, as the indexes created by
+ * {@link TreeManager#createIndex(String, boolean)} and
+ * {@link TreeManager#createTextIndex(String)}, the elements by depth, the
+ * leaves or the subtree of an ancestor. The tree is traversed only when
+ * no structure is cheaper, and even so the traversal does not go deeper than
+ * the maximum depth of the query.</p>
+ * 
+ * <p>All conditions must be satisfied by the found elements. The root element
+ * is never found.</p>
+ * 
+ * <p><b>Example usage:</b></p>
+ * <pre>
+ * manager.createIndex("price", true);
+ * 
+ * List&lt;Element&lt;Product&gt;&gt; page = manager.&lt;Product&gt;query()
+ *     .underAncestor("electronics")
+ *     .between("price", 100.0, 500.0)
+ *     .leafOnly()
+ *     .offset(20)
+ *     .limit(10)
+ *     .list();
+ * </pre>
+ * 
+ * <p>The query can be executed many times, each time over the current session
+ * of the {@link TreeManager} which created it.</p>
+ * 
+ * @author Diego Madson de Andrade Nóbrega
+ * 
+ * @param <T> the class type of the wrapped nodes
+ * 
+ * @see TreeManager#query()
+ */
+public interface TreeQuery<T> {
+
+	/**
+	 * Restricts the query to the elements whose wrapped nodes have the
+	 * attribute equal to the value.
+	 * 
+	 * <p>The attribute is read from the wrapped node by its public getter, as
+	 * in {@link TreeManager#createIndex(String, boolean)}. The value must have
+	 * the same type of the attribute, otherwise no element is found.</p>
+	 * 
+	 * @param attribute the name of the attribute of the wrapped nodes
+	 * 
+	 * @param value the value of the attribute
+	 * 
+	 * @return this query
+	 * 
+	 * @throws IllegalArgumentException when the <code>attribute</code>
+	 * parameter is <code>null</code>
+	 */
+	public TreeQuery<T> where(String attribute, Object value);
+
+	/**
+	 * Restricts the query to the elements whose wrapped nodes have the
+	 * attribute between <code>from</code> and <code>to</code>, both inclusive.
+	 * 
+	 * <p>A <code>null</code> bound is not a limit. The elements whose
+	 * attribute is <code>null</code> are never in a range.</p>
+	 * 
+	 * @param attribute the name of the attribute of the wrapped nodes, which
+	 * must have a natural order
+	 * 
+	 * @param from the lowest value of the range
+	 * 
+	 * @param to the highest value of the range
+	 * 
+	 * @return this query
+	 * 
+	 * @throws IllegalArgumentException when the <code>attribute</code>
+	 * parameter is <code>null</code>
+	 */
+	public TreeQuery<T> between(String attribute, Object from, Object to);
+
+	/**
+	 * Restricts the query to the elements whose wrapped nodes have, for each
+	 * word of the text, a word of the <code>String</code> attribute starting
+	 * with it.
+	 * 
+	 * <p>The words are the sequences of letters and digits, compared without
+	 * regard to case, so the texts <code>"lib happy"</code> and
+	 * <code>"HAPPYTREE"</code> match the value <code>"HappyTree
+	 * Library"</code>, but the text <code>"tree"</code> does not, as no word
+	 * starts with it. A text without words matches no element.</p>
+	 * 
+	 * <p>When the attribute has a text index created by
+	 * {@link TreeManager#createTextIndex(String)}, the matching elements are
+	 * found in the index. Otherwise, the words of the attribute of each
+	 * candidate element are read to check it. Along with
+	 * {@link #underAncestor(Object)}, the text is searched in a subtree
+	 * only.</p>
+	 * 
+	 * @param attribute the name of the <code>String</code> attribute of the
+	 * wrapped nodes
+	 * 
+	 * @param text the words to be matched
+	 * 
+	 * @return this query
+	 * 
+	 * @throws IllegalArgumentException when the <code>attribute</code> or the
+	 * <code>text</code> parameter is <code>null</code>
+	 */
+	public TreeQuery<T> matching(String attribute, String text);
+
+	/**
+	 * Restricts the query to the descendants of the element with the
+	 * <code>@Id</code>, not including the element itself.
+	 * 
+	 * <p>If there is no element with this <code>@Id</code>, no element is
+	 * found.</p>
+	 * 
+	 * @param id the <code>@Id</code> of the ancestor
+	 * 
+	 * @return this query
+	 * 
+	 * @throws IllegalArgumentException when the <code>id</code> parameter is
+	 * <code>null</code>
+	 */
+	public TreeQuery<T> underAncestor(Object id);
+
+	/**
+	 * Restricts the query to the elements placed between the depths, both
+	 * inclusive. The elements of the first level have depth <code>1</code>.
+	 * 
+	 * @param min the lowest depth of the elements
+	 * 
+	 * @param max the highest depth of the elements
+	 * 
+	 * @return this query
+	 * 
+	 * @see Element#getDepth()
+	 */
+	public TreeQuery<T> depth(int min, int max);
+
+	/**
+	 * Restricts the query to the elements without children. In a lazy
+	 * session, an element whose children were not loaded yet is not
+	 * considered a leaf.
+	 * 
+	 * @return this query
+	 * 
+	 * @see TreeManager#leaves()
+	 */
+	public TreeQuery<T> leafOnly();
+
+	/**
+	 * Skips the first found elements.
+	 * 
+	 * @param offset the number of found elements to be skipped
+	 * 
+	 * @return this query
+	 * 
+	 * @throws IllegalArgumentException when the <code>offset</code> parameter
+	 * is negative
+	 */
+	public TreeQuery<T> offset(int offset);
+
+	/**
+	 * Limits the number of returned elements. The plan stops reading elements
+	 * as soon as the limit is reached.
+	 * 
+	 * @param limit the maximum number of returned elements
+	 * 
+	 * @return this query
+	 * 
+	 * @throws IllegalArgumentException when the <code>limit</code> parameter
+	 * is negative
+	 */
+	public TreeQuery<T> limit(int limit);
+
+	/**
+	 * Executes this query over the current session.
+	 * 
+	 * <p>The elements are returned in the order of the structure read by the
+	 * plan, which is the same while the tree and its indexes are not changed,
+	 * so the offset and the limit can be used to read the elements by pages.
+	 * When the elements are read from a sorted index, they are in the natural
+	 * order of the indexed attribute.</p>
+	 * 
+	 * <p>Like {@link TreeManager#search(Predicate)}, each returned element is
+	 * a copy of the element in the tree, including its children. In a lazy
+	 * session, only the loaded elements are found.</p>
+	 * 
+	 * @return a list of the elements which satisfy all conditions of this
+	 * query
+	 * 
+	 * @throws TreeException when the transaction has no selected session to
+	 * work, if the current session is not active or if the wrapped nodes have
+	 * no getter for an attribute of the query or, for a range, the attribute
+	 * has no natural order or, for a text, the attribute is not a
+	 * <code>String</code>
+	 */
+	public List<Element<T>> list() throws TreeException;
+}
@@ -193,4 +193,18 @@ public interface TreeSession {
 	 * @see TreeManager#root()
 	 */
 	public <T> Element<T> tree();
+	
+	/**
+	 * Verifies whether the session is read-only.
+	 * 
+	 * <p>A read-only session is the one mapped from a snapshot file by
+	 * invoking {@link TreeTransaction#mapSession(java.nio.file.Path)} or a
+	 * version of a session returned by {@link TreeManager#snapshot()}. Its
+	 * elements can be read and navigated, but neither the session through
+	 * {@link TreeManager} nor its elements can be changed.</p>
+	 * 
+	 * @return <code>true</code> if the session is read-only,
+	 * <code>false</code> otherwise
+	 */
+	public boolean isReadOnly();
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.madzera.happytree;
 
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.List;
 
@@ -245,6 +247,343 @@ public interface TreeTransaction {
 	public <T> void initializeSession(String identifier, Collection<T> nodes) 
 			throws TreeException;
 	
+	/**
+	 * Initializes a new session with the specified <code>identifier</code>,
+	 * rebuilding its tree from a document previously produced by
+	 * {@link Element#toJSON()}, {@link Element#toXML()} or their variants.
+	 * 
+	 * <p>The document is read incrementally, and each element is attached into
+	 * its parent as soon as its wrapped object node is read. So, neither the
+	 * whole document nor an intermediate collection of the objects is kept in
+	 * memory, which allows restoring large trees from their exports.</p>
+	 * 
+	 * <p>The document can be:</p>
+	 * 	<ul>
+	 * 		<li>The export of the root element, which has only the
+	 * 			<code>children</code> attribute. The children of the exported
+	 * 			root are placed in the root level of the new tree;
+	 * 		</li>
+	 * 		<li>The export of any other element, which is placed in the root
+	 * 			level of the new tree together with its descendants;
+	 * 		</li>
+	 * 		<li>In the {@link Format#JSON} format, an array of exported
+	 * 			elements.
+	 * 		</li>
+	 * 	</ul>
+	 * 
+	 * <p>Each wrapped object node is read through the Jackson library into the
+	 * specified <code>type</code>, so this type must be readable by Jackson
+	 * (for example, having a default constructor and setters) and must have the
+	 * attributes annotated by {@code @Id} and {@code @Parent}. The elements
+	 * placed in the root level keep the {@code @Parent} of their objects,
+	 * while the nested elements reference the element which they are nested
+	 * in, since the hierarchy is given by the document itself.</p>
+	 * 
+	 * <p>After the tree is built, the new session is active and it becomes the
+	 * current session of this transaction. The <code>input</code> is not
+	 * closed by this method.</p>
+	 * 
+	 * @param <T> the class type of the source object nodes
+	 * 
+	 * @param identifier the session identifier
+	 * 
+	 * @param type the class type of the wrapped object nodes
+	 * 
+	 * @param input the stream of the document to be read
+	 * 
+	 * @param format the format of the document
+	 * 
+	 * @throws TreeException when:
+	 * <ul>
+	 * 	<li>There is another session with the same identifier;</li>
+	 * 	<li>The <code>type</code> does not implement
+	 * 		<code>Serializable</code>;
+	 * 	</li>
+	 * 	<li>The <code>type</code> does not have the attributes annotated by
+	 * 		{@code @Id} and {@code @Parent};
+	 * 	</li>
+	 * 	<li>The document cannot be read, is not in the specified format or has
+	 * 		an object without {@code @Id};
+	 * 	</li>
+	 * 	<li>There are duplicate IDs.</li>
+	 * </ul>
+	 * 
+	 * @throws IllegalArgumentException when any parameter is <code>null</code>
+	 */
+	public <T> void initializeSession(String identifier, Class<T> type,
+			InputStream input, Format format) throws TreeException;
+	
+	/**
+	 * Initializes a new lazy session, whose elements are loaded on demand by
+	 * the <code>loader</code> instead of being all transformed up front.
+	 * 
+	 * <p>The session starts with only the root element. The first time the
+	 * children of an element are needed, as when the element is obtained with
+	 * its descendants or when a child is searched inside of it, the
+	 * {@link ChildLoader#loadChildren(Object)} is invoked and the loaded
+	 * elements are attached into the element and cached in the session. This
+	 * way, the cost of the session is proportional to the part of the tree
+	 * which is actually browsed.</p>
+	 * 
+	 * <p>An element can only be found by its <code>@Id</code> after it is
+	 * loaded, and the operations over the levels and the leaves of the tree
+	 * consider only the loaded elements. The elements returned by
+	 * {@link TreeManager#root()} or {@link TreeManager#getElementById(Object)}
+	 * carry only their loaded descendants, and the other ones are loaded the
+	 * first time their children are accessed. On the other hand, the
+	 * operations over the whole tree, as
+	 * {@link TreeManager#search(java.util.function.Predicate)} or
+	 * {@link TreeManager#apply(java.util.function.Consumer)}, load all the
+	 * elements. To navigate a lazy session level by level, use
+	 * {@link TreeManager#getElementById(Object, int)} and
+	 * {@link TreeManager#root(int)}, and release the collapsed subtrees by
+	 * {@link TreeManager#evictChildren(Object)}.</p>
+	 * 
+	 * <p>A lazy session cannot be saved by {@link #saveSession(String, Path)}
+	 * nor journaled by {@link #openJournal(Path, Path)}, since the elements
+	 * not loaded yet would be missing from its snapshot. Since a load changes
+	 * the cache of the session, the operations which only read a lazy session
+	 * also lock it exclusively. The cloned
+	 * sessions and the versions taken by {@link TreeManager#snapshot()} copy
+	 * the loaded elements up front and keep loading the other ones by the
+	 * same <code>loader</code>.</p>
+	 * 
+	 * <p>After the initialization, the new session is active and it becomes
+	 * the current session of this transaction.</p>
+	 * 
+	 * @param <T> the class type of the object nodes
+	 * 
+	 * @param identifier the session identifier
+	 * 
+	 * @param type the class type of the wrapped object nodes
+	 * 
+	 * @param loader the loader of the children of the elements
+	 * 
+	 * @throws TreeException when:
+	 * <ul>
+	 * 	<li>There is another session with the same identifier;</li>
+	 * 	<li>The <code>type</code> does not implement
+	 * 		<code>Serializable</code>;
+	 * 	</li>
+	 * 	<li>The <code>type</code> does not have the attributes annotated by
+	 * 		{@code @Id} and {@code @Parent}.
+	 * 	</li>
+	 * </ul>
+	 * 
+	 * @throws IllegalArgumentException when any parameter is <code>null</code>
+	 */
+	public <T> void initializeSession(String identifier, Class<T> type,
+			ChildLoader<T> loader) throws TreeException;
+	
+	/**
+	 * Saves the current session into a binary snapshot <code>file</code>, so
+	 * it can be restored later by {@link #restoreSession(Path)}.
+	 * 
+	 * <p>Same as {@link #saveSession(String, Path)}, for the session previously
+	 * checked out.</p>
+	 * 
+	 * @param file the path of the snapshot file
+	 * 
+	 * @throws TreeException when there is no current session, the session is
+	 * lazy or it cannot be written into the <code>file</code>
+	 * 
+	 * @throws IllegalArgumentException when the <code>file</code> is
+	 * <code>null</code>
+	 */
+	public void saveSession(Path file) throws TreeException;
+	
+	/**
+	 * Saves the session with the specified <code>identifier</code> into a
+	 * binary snapshot <code>file</code>, so it can be restored later by
+	 * {@link #restoreSession(Path)}.
+	 * 
+	 * <p>The snapshot holds the structure of the tree (the {@code @Id} and
+	 * {@code @Parent} of each element, the order of the children and the
+	 * lifecycle states) and the wrapped object nodes, serialized. If the
+	 * <code>file</code> already exists, it is overwritten.</p>
+	 * 
+	 * <p>Only the committed state of the session is saved. Elements which have
+	 * been changed but not yet updated through {@link TreeManager} are saved
+	 * as they were in the session.</p>
+	 * 
+	 * @param identifier the session identifier
+	 * 
+	 * @param file the path of the snapshot file
+	 * 
+	 * @throws TreeException when there is no session with the specified
+	 * <code>identifier</code>, the session is lazy or it cannot be written
+	 * into the <code>file</code>
+	 * 
+	 * @throws IllegalArgumentException when any parameter is <code>null</code>
+	 */
+	public void saveSession(String identifier, Path file) throws TreeException;
+	
+	/**
+	 * Restores a session from a binary snapshot <code>file</code> previously
+	 * written by {@link #saveSession(String, Path)}.
+	 * 
+	 * <p>The tree is rebuilt directly from the structure saved in the file,
+	 * without the <b>API Transformation Process</b>, so restoring a session is
+	 * much faster than initializing it again from the source objects. The
+	 * restored session keeps its identifier and its active state, and it
+	 * becomes the current session of this transaction.</p>
+	 * 
+	 * <p>The class type of the session and the classes of the wrapped object
+	 * nodes must be available to be loaded.</p>
+	 * 
+	 * @param file the path of the snapshot file
+	 * 
+	 * @return the restored session
+	 * 
+	 * @throws TreeException when:
+	 * <ul>
+	 * 	<li>There is another session with the same identifier of the saved
+	 * 		session;
+	 * 	</li>
+	 * 	<li>The <code>file</code> cannot be read or it is not a valid snapshot.
+	 * 	</li>
+	 * </ul>
+	 * 
+	 * @throws IllegalArgumentException when the <code>file</code> is
+	 * <code>null</code>
+	 */
+	public TreeSession restoreSession(Path file) throws TreeException;
+	
+	/**
+	 * Restores a session from a binary <code>snapshot</code> file and replays
+	 * over it the changes recorded in its <code>journal</code>, previously
+	 * opened by {@link #openJournal(Path, Path)}.
+	 * 
+	 * <p>A change which was not completely written into the
+	 * <code>journal</code>, as in a crash while writing it, is discarded with
+	 * all the changes after it. So, the restored session holds every change
+	 * completely journaled before the crash.</p>
+	 * 
+	 * <p>The restored session keeps being journaled into the same files, and it
+	 * becomes the current session of this transaction.</p>
+	 * 
+	 * @param snapshot the path of the snapshot file
+	 * 
+	 * @param journal the path of the journal file
+	 * 
+	 * @return the restored session
+	 * 
+	 * @throws TreeException when:
+	 * <ul>
+	 * 	<li>There is another session with the same identifier of the saved
+	 * 		session;
+	 * 	</li>
+	 * 	<li>The <code>snapshot</code> cannot be read or it is not a valid
+	 * 		snapshot;
+	 * 	</li>
+	 * 	<li>The <code>journal</code> cannot be read or replayed.
+	 * 	</li>
+	 * </ul>
+	 * 
+	 * @throws IllegalArgumentException when any parameter is <code>null</code>
+	 */
+	public TreeSession restoreSession(Path snapshot, Path journal)
+			throws TreeException;
+	
+	/**
+	 * Makes the current session durable, saving it into a binary
+	 * <code>snapshot</code> file and then recording into the
+	 * <code>journal</code> file each change committed through
+	 * {@link TreeManager}.
+	 * 
+	 * <p>Each change is appended into the <code>journal</code> right after it
+	 * is committed in the session, and the <code>journal</code> is
+	 * synchronized with the disk periodically and when it is closed. The
+	 * session can be recovered at any time by
+	 * {@link #restoreSession(Path, Path)}.</p>
+	 * 
+	 * <p>A change which cannot be appended into the <code>journal</code> is
+	 * undone in the session as well, and the operation throws a
+	 * {@link TreeException}, so the session never has a change missing in the
+	 * <code>journal</code>.</p>
+	 * 
+	 * <p>When the <code>journal</code> grows too much, it is compacted
+	 * automatically, as in {@link #compactJournal()}. If the session already
+	 * has an open journal, it is closed first.</p>
+	 * 
+	 * @param snapshot the path of the snapshot file
+	 * 
+	 * @param journal the path of the journal file
+	 * 
+	 * @throws TreeException when there is no current session, the session is
+	 * deactivated, read-only or lazy, or the files cannot be written
+	 * 
+	 * @throws IllegalArgumentException when any parameter is <code>null</code>
+	 */
+	public void openJournal(Path snapshot, Path journal) throws TreeException;
+	
+	/**
+	 * Compacts the journal of the current session, writing the whole session
+	 * into a new snapshot file and emptying the journal.
+	 * 
+	 * <p>The new snapshot replaces the previous one only after it is completely
+	 * written, so the session can be recovered even if the compaction is
+	 * interrupted. Nothing happens if the current session has no open
+	 * journal.</p>
+	 * 
+	 * @throws TreeException when there is no current session, the session is
+	 * deactivated or the files cannot be written
+	 */
+	public void compactJournal() throws TreeException;
+	
+	/**
+	 * Closes the journal of the current session, synchronizing it with the
+	 * disk. The changes committed after that are not journaled anymore.
+	 * 
+	 * <p>The journal is also closed when its session is destroyed. Nothing
+	 * happens if there is no current session or it has no open journal.</p>
+	 * 
+	 * @throws TreeException when the journal cannot be synchronized with the
+	 * disk
+	 */
+	public void closeJournal() throws TreeException;
+	
+	/**
+	 * Opens a read-only session over a binary snapshot <code>file</code>
+	 * previously written by {@link #saveSession(String, Path)}, mapping the
+	 * file into memory instead of loading the tree.
+	 * 
+	 * <p>The elements of a mapped session are read directly from the file
+	 * when they are navigated, and their wrapped object nodes are deserialized
+	 * only when {@link Element#unwrap()} is invoked. So, the session is opened
+	 * instantly, almost nothing of the tree is kept in the heap and the pages
+	 * of the file are shared by all processes which map the same file.</p>
+	 * 
+	 * <p>The read operations of {@link TreeManager} work as usual over a mapped
+	 * session, but any operation which changes the tree throws a
+	 * <code>TreeException</code>, and the changing methods of its elements
+	 * throw an <code>UnsupportedOperationException</code>. The
+	 * <code>file</code> must not be changed while the session exists.</p>
+	 * 
+	 * <p>The mapped session keeps the identifier and the active state of the
+	 * saved session, and it becomes the current session of this
+	 * transaction.</p>
+	 * 
+	 * @param file the path of the snapshot file
+	 * 
+	 * @return the mapped session
+	 * 
+	 * @throws TreeException when:
+	 * <ul>
+	 * 	<li>There is another session with the same identifier of the saved
+	 * 		session;
+	 * 	</li>
+	 * 	<li>The <code>file</code> cannot be read or it is not a valid snapshot.
+	 * 	</li>
+	 * </ul>
+	 * 
+	 * @throws IllegalArgumentException when the <code>file</code> is
+	 * <code>null</code>
+	 * 
+	 * @see TreeSession#isReadOnly()
+	 */
+	public TreeSession mapSession(Path file) throws TreeException;
+	
 	/**
 	 * Removes the session with the specified <code>identifier</code>.
 	 * 
@@ -290,6 +629,10 @@ public interface TreeTransaction {
 	 * available to work on, and therefore, it is not possible to execute any
 	 * operation from {@link TreeManager}.</p>
 	 * 
+	 * <p>If the transaction is thread-confined, the session is checked out
+	 * only for the calling thread. See {@link #setThreadConfined(boolean)}.
+	 * </p>
+	 * 
 	 * @param identifier the session identifier to be checked out
 	 * 
 	 * @return an instance of <code>TreeSession</code> representing the current
@@ -378,6 +721,17 @@ public interface TreeTransaction {
 	 * does not exist, then a new session is created with the tree and its
 	 * elements replicated from the source tree session.</p>
 	 * 
+	 * <p>Cloning a session is immediate. The cloned session shares the tree of
+	 * the source session until one of them is changed, and only then the
+	 * changed session copies the elements. Reading the cloned session by the
+	 * ids of its elements, by its root or by its indexes does not copy them,
+	 * while the operations which pass its elements to a function or to a
+	 * visitor copy them as a change does. The wrapped object nodes are never
+	 * copied, both sessions share them.</p>
+	 * 
+	 * <p>Cloning a session in a transaction of another thread waits for its
+	 * end, as the operations of {@link TreeManager} do.</p>
+	 * 
 	 * <p><b>This method only clones a session and does not make it ready to be
 	 * worked on. For this, invoke {@link #sessionCheckout(String)} before or
 	 * after cloning a session.</b></p>
@@ -386,7 +740,8 @@ public interface TreeTransaction {
 	 * 
 	 * @param to the identifier of the target tree session
 	 * 
-	 * @return the cloned session
+	 * @return the cloned session, or <code>null</code> if the transaction of
+	 * another thread in the source session does not end in time
 	 */
 	public TreeSession cloneSession(String from, String to);
 	
@@ -411,6 +766,17 @@ public interface TreeTransaction {
 	 * does not exist, then a new session is created with the tree and its
 	 * elements replicated from the source tree session.</p>
 	 * 
+	 * <p>Cloning a session is immediate. The cloned session shares the tree of
+	 * the source session until one of them is changed, and only then the
+	 * changed session copies the elements. Reading the cloned session by the
+	 * ids of its elements, by its root or by its indexes does not copy them,
+	 * while the operations which pass its elements to a function or to a
+	 * visitor copy them as a change does. The wrapped object nodes are never
+	 * copied, both sessions share them.</p>
+	 * 
+	 * <p>Cloning a session in a transaction of another thread waits for its
+	 * end, as the operations of {@link TreeManager} do.</p>
+	 * 
 	 * <p><b>This method only clones a session and does not make it ready to be
 	 * worked on. For this, invoke {@link #sessionCheckout(String)} before or
 	 * after cloning a session.</b></p>
@@ -419,7 +785,8 @@ public interface TreeTransaction {
 	 * 
 	 * @param to the identifier of the target tree session
 	 * 
-	 * @return the cloned session
+	 * @return the cloned session, or <code>null</code> if the transaction of
+	 * another thread in the source session does not end in time
 	 */
 	public TreeSession cloneSession(TreeSession from, String to);
 	
@@ -438,7 +805,128 @@ public interface TreeTransaction {
 	 * is not <code>null</code>, as it causes errors when trying to execute
 	 * operations of {@link TreeManager}.</b></p>
 	 * 
+	 * <p>If the transaction is thread-confined, the current session is the one
+	 * checked out by the calling thread.</p>
+	 * 
 	 * @return the current session of this transaction
 	 */
 	public TreeSession currentSession();
+	
+	/**
+	 * Defines whether the current session is kept per thread.
+	 * 
+	 * <p>By default, the current session is shared by all threads using the
+	 * transaction, so a {@link #sessionCheckout(String)} in one thread changes
+	 * the session which the other threads are working on. In a thread-confined
+	 * transaction, each thread checks out its own current session, while the
+	 * sessions themselves are still shared. This way, a single
+	 * {@link TreeManager} can serve many threads, each one working on a
+	 * different session.</p>
+	 * 
+	 * <p>A session checked out by a thread remains its current session until
+	 * the thread checks out another session or the session is destroyed, even
+	 * by another thread.</p>
+	 * 
+	 * <p>When the mode changes, only the calling thread keeps its current
+	 * session. The other threads must check out their sessions again.</p>
+	 * 
+	 * @param isThreadConfined <code>true</code> to keep the current session per
+	 * thread
+	 */
+	public void setThreadConfined(boolean isThreadConfined);
+	
+	/**
+	 * Returns whether the current session is kept per thread.
+	 * 
+	 * @return <code>true</code> if the transaction is thread-confined
+	 * 
+	 * @see #setThreadConfined(boolean)
+	 */
+	public boolean isThreadConfined();
+	
+	/**
+	 * Opens a transaction in the current session, grouping the next
+	 * operations of {@link TreeManager} over this session until
+	 * {@link #commit()} or {@link #rollback()}.
+	 * 
+	 * <p>Out of a transaction, each operation is committed as soon as it is
+	 * executed, and the journal of the session records each change. Inside of
+	 * a transaction, the journal is refreshed only once, at the commit. So, a
+	 * reorganization with many operations pays the cost of committing only
+	 * once. In both cases, only the changed elements are indexed again.</p>
+	 * 
+	 * <p>The transaction records each element of the tree as it was before
+	 * its first change, so all the changes can be discarded at once by
+	 * {@link #rollback()}, as when an operation fails halfway through a
+	 * reorganization. The tree itself is not copied, so a transaction costs
+	 * as much as the elements which it changes.</p>
+	 * 
+	 * <p>The transaction belongs to the calling thread, which must also commit
+	 * or roll it back. Until then, the operations of the other threads over
+	 * the session wait for its end, for at most 30 seconds, and then fail with
+	 * a {@link TreeException}. The session is not locked between the
+	 * operations of the transaction, so a transaction which is never ended
+	 * blocks only the other threads, not the calling one. The changes of other
+	 * sessions, as the target session of a
+	 * {@link TreeManager#cut(Element, Element)} or a
+	 * {@link TreeManager#copy(Element, Element)}, are not part of the
+	 * transaction.</p>
+	 * 
+	 * @throws TreeException when there is no current session, the session is
+	 * deactivated or read-only, the calling thread has already opened a
+	 * transaction in this session, or the transaction of another thread in
+	 * this session does not end in time
+	 */
+	public void begin() throws TreeException;
+	
+	/**
+	 * Commits the transaction of the current session, keeping all of its
+	 * changes and ending it.
+	 * 
+	 * <p>If the session is journaled, the journal is compacted once with all
+	 * the changes of the transaction.</p>
+	 * 
+	 * @throws TreeException when there is no current session, the calling
+	 * thread has not opened a transaction in this session, as when it was
+	 * opened by another thread, or the journal cannot be written. In the last
+	 * case, the transaction is ended anyway
+	 * 
+	 * @see #begin()
+	 */
+	public void commit() throws TreeException;
+	
+	/**
+	 * Rolls back the transaction of the current session, discarding all of its
+	 * changes and ending it.
+	 * 
+	 * <p>The tree of the session becomes exactly the same as when the
+	 * transaction was opened, as the elements changed by the transaction are
+	 * put back. The elements previously obtained by the API client are
+	 * copies, so they are not affected.</p>
+	 * 
+	 * @throws TreeException when there is no current session or the calling
+	 * thread has not opened a transaction in this session, as when it was
+	 * opened by another thread
+	 * 
+	 * @see #begin()
+	 */
+	public void rollback() throws TreeException;
+	
+	/**
+	 * Formats of the documents which a tree can be read from.
+	 * 
+	 * @see TreeTransaction#initializeSession(String, Class, InputStream,
+	 * Format)
+	 */
+	public enum Format {
+		/**
+		 * The format produced by {@link Element#toJSON()}.
+		 */
+		JSON,
+		
+		/**
+		 * The format produced by {@link Element#toXML()}.
+		 */
+		XML;
+	}
 }
\ No newline at end of file
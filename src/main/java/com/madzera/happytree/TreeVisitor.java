@@ -0,0 +1,71 @@
+package com.madzera.happytree;
+
+/**
+ * Visits the elements of a tree in pre-order, deciding after each element
+ * whether its descendants are visited as well, by
+ * {@link Element#traverse(TreeVisitor)} and
+ * {@link TreeManager#traverse(TreeVisitor)}.
+ * 
+ * <p>Unlike {@link Element#search(java.util.function.Predicate)} and
+ * {@link Element#apply(java.util.function.Consumer)}, which always go
+ * through the whole subtree, the traversal of a <code>TreeVisitor</code>
+ * skips the subtrees which the visitor knows to be irrelevant and stops as
+ * soon as the visitor has what it needs. So the cost of the traversal is
+ * only the part of the tree actually explored.</p>
+ * 
+ * <p><b>Example usage:</b></p>
+ * <pre>
+ * //Counts the employees of the active departments only
+ * int[] employees = new int[1];
+ * manager.&lt;Unit&gt;traverse(e -&gt; {
+ *     if (!e.unwrap().isActive()) {
+ *         return TreeVisitor.Result.SKIP_SUBTREE;
+ *     }
+ *     employees[0] += e.unwrap().getHeadcount();
+ *     return TreeVisitor.Result.CONTINUE;
+ * });
+ * </pre>
+ * 
+ * @author Diego Madson de Andrade Nóbrega
+ * 
+ * @param <T> the class type of the wrapped nodes
+ * 
+ * @see Element#traverse(TreeVisitor)
+ * @see TreeManager#traverse(TreeVisitor)
+ */
+@FunctionalInterface
+public interface TreeVisitor<T> {
+
+	/**
+	 * Visits an element, before any of its descendants.
+	 * 
+	 * @param element the visited element
+	 * 
+	 * @return how the traversal goes on after this element. A
+	 * <code>null</code> result is the same as {@link Result#CONTINUE}
+	 */
+	public Result visit(Element<T> element);
+
+	/**
+	 * How a traversal goes on after an element is visited.
+	 * 
+	 * @see TreeVisitor#visit(Element)
+	 */
+	public enum Result {
+		/**
+		 * Goes on visiting the descendants of the element.
+		 */
+		CONTINUE,
+
+		/**
+		 * Goes on without visiting the descendants of the element, with its
+		 * next sibling.
+		 */
+		SKIP_SUBTREE,
+
+		/**
+		 * Stops the traversal, without visiting any other element.
+		 */
+		TERMINATE;
+	}
+}
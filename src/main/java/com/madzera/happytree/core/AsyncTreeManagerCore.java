@@ -0,0 +1,187 @@
+package com.madzera.happytree.core;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.madzera.happytree.AsyncTreeManager;
+import com.madzera.happytree.Element;
+import com.madzera.happytree.TreeManager;
+import com.madzera.happytree.TreeSession;
+import com.madzera.happytree.TreeTransaction;
+import com.madzera.happytree.exception.TreeException;
+
+/*
+ * Each session has a queue of operations, represented by the future of its
+ * last scheduled operation. A new operation runs on the executor only after
+ * the previous one of the same session, so the operations of a session never
+ * run at the same time, while the ones of different sessions do.
+ *
+ * The transaction of the manager is thread-confined, so each operation checks
+ * out its session only for the thread of the executor running it.
+ */
+class AsyncTreeManagerCore implements AsyncTreeManager {
+
+	private final TreeManager manager;
+	private final Executor executor;
+
+	private final Map<String, CompletableFuture<Void>> queues = TreeFactory
+			.mapFactory().createConcurrentHashMap();
+
+	private TreeValidatorFacade validatorFacade;
+
+
+	AsyncTreeManagerCore(Executor executor) {
+		this.manager = TreeManagerCore.getTreeManagerInstance();
+		this.manager.getTransaction().setThreadConfined(Boolean.TRUE);
+		this.executor = executor;
+		this.validatorFacade = TreeFactory.facadeFactory()
+				.createValidatorFacade(this.manager);
+	}
+
+
+	@Override
+	public <T> CompletableFuture<TreeSession> initializeSession(
+			String identifier, Collection<T> nodes) {
+		return this.execute(identifier, manager -> {
+			TreeTransaction transaction = manager.getTransaction();
+			transaction.initializeSession(identifier, nodes);
+
+			return transaction.currentSession();
+		});
+	}
+
+	@Override
+	public CompletableFuture<TreeSession> cloneSession(String from,
+			String to) {
+		return this.execute(from, manager -> manager.getTransaction()
+				.cloneSession(from, to));
+	}
+
+	@Override
+	public CompletableFuture<Void> saveSession(String session, Path file) {
+		return this.execute(session, manager -> {
+			manager.getTransaction().saveSession(session, file);
+			return null;
+		});
+	}
+
+	@Override
+	public <T> CompletableFuture<Element<T>> getElementById(String session,
+			Object id) {
+		return this.execute(session, manager -> manager.getElementById(id));
+	}
+
+	@Override
+	public <T> CompletableFuture<Element<T>> persistElement(String session,
+			Element<T> newElement) {
+		return this.execute(session, manager -> manager.persistElement(
+				newElement));
+	}
+
+	@Override
+	public <T> CompletableFuture<Element<T>> updateElement(String session,
+			Element<T> element) {
+		return this.execute(session, manager -> manager.updateElement(
+				element));
+	}
+
+	@Override
+	public <T> CompletableFuture<Element<T>> cut(String session, Object from,
+			Object to) {
+		return this.execute(session, manager -> manager.cut(from, to));
+	}
+
+	@Override
+	public <T> CompletableFuture<Element<T>> removeElement(String session,
+			Object id) {
+		return this.execute(session, manager -> manager.removeElement(id));
+	}
+
+	@Override
+	public <T> CompletableFuture<List<Element<T>>> search(String session,
+			Predicate<Element<T>> condition) {
+		return this.execute(session, manager -> manager.search(condition));
+	}
+
+	@Override
+	public <T> CompletableFuture<Void> apply(String session,
+			Consumer<Element<T>> action) {
+		return this.execute(session, manager -> {
+			manager.apply(action);
+			return null;
+		});
+	}
+
+	@Override
+	public CompletableFuture<String> toJSON(String session) {
+		return this.execute(session, manager -> manager.root().toJSON());
+	}
+
+	@Override
+	public <R> CompletableFuture<R> execute(String session,
+			Operation<R> operation) {
+		validatorFacade.validateMandatory(session, operation);
+
+		CompletableFuture<R> result = TreeFactory.utilFactory()
+				.createCompletableFuture();
+
+		/*
+		 * The queue is replaced atomically by a placeholder, so two operations
+		 * scheduled at the same time are still executed one after the other.
+		 * The operation is only chained outside of the map, since an executor
+		 * running it in the calling thread would otherwise run it inside of
+		 * the update of the map.
+		 */
+		CompletableFuture<Void> queue = TreeFactory.utilFactory()
+				.createCompletableFuture();
+		CompletableFuture<Void> previous = this.queues.put(session, queue);
+		CompletableFuture<Void> last = previous != null ? previous :
+				CompletableFuture.completedFuture(null);
+
+		/*
+		 * The queue of a session without pending operations is discarded. The
+		 * operation only fails when the executor rejects it.
+		 */
+		last.handleAsync((nothing, error) -> {
+			this.run(session, operation, result);
+			return null;
+		}, this.executor).whenComplete((nothing, error) -> {
+			this.queues.remove(session, queue);
+
+			if (error != null) {
+				result.completeExceptionally(error);
+			}
+			queue.complete(null);
+		});
+
+		return result;
+	}
+
+	@Override
+	public TreeManager getManager() {
+		return this.manager;
+	}
+
+	/*
+	 * The errors of the operation complete only its own future.
+	 */
+	private <R> void run(String session, Operation<R> operation,
+			CompletableFuture<R> result) {
+		TreeTransaction transaction = this.manager.getTransaction();
+		transaction.sessionCheckout(session);
+
+		try {
+			result.complete(operation.execute(this.manager));
+		} catch (TreeException | RuntimeException exception) {
+			result.completeExceptionally(exception);
+		} finally {
+			transaction.sessionCheckout(null);
+		}
+	}
+}
@@ -1,23 +1,87 @@
 package com.madzera.happytree.core;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /*
  * All searches about elements in the tree are actually done inside this cache.
  * 
  * Each session has its respective cache.
+ * 
+ * Besides the elements by id, the cache also keeps a level index (depth to
+ * elements) and the set of leaves of the tree, both updated as the elements
+ * are written and deleted. The root element is not indexed by them, nor by
+ * the attribute indexes, which are kept as well.
  */
 class Cache {
 
 	private Map<Object, TreeElementCore<?>> cacheElements = 
 			TreeFactory.mapFactory().createHashMap();
 	
+	/*
+	 * The id which each element is cached, to discard the old entry when the
+	 * element has its id changed.
+	 */
+	private Map<TreeElementCore<?>, Object> identifiers =
+			TreeFactory.mapFactory().createIdentityHashMap();
+	
+	private Map<Object, Integer> depths =
+			TreeFactory.mapFactory().createHashMap();
+	private List<Map<Object, TreeElementCore<?>>> levels =
+			TreeFactory.collectionFactory().createArrayList();
+	private Map<Object, TreeElementCore<?>> leaves =
+			TreeFactory.mapFactory().createLinkedHashMap();
+	private Map<String, TreeIndex> indexes =
+			TreeFactory.mapFactory().createLinkedHashMap();
+	private Map<String, TreeTextIndex> textIndexes =
+			TreeFactory.mapFactory().createLinkedHashMap();
+	
 	
 	Cache() {}
 	
 	
 	void write(Object id, TreeElementCore<?> element) {
-		this.cacheElements.put(id, element);
+		Object oldId = this.identifiers.get(element);
+		if (oldId != null && !oldId.equals(id)
+				&& this.cacheElements.get(oldId) == element) {
+			this.delete(oldId);
+		}
+		this.identifiers.put(element, id);
+		
+		TreeElementCore<?> previous = this.cacheElements.put(id, element);
+		if (previous != null && previous != element) {
+			this.identifiers.remove(previous);
+		}
+		
+		if (element.isRoot()) {
+			return;
+		}
+		
+		int depth = element.getDepth();
+		Integer oldDepth = this.depths.put(id, depth);
+		if (oldDepth != null && oldDepth != depth) {
+			this.levels.get(oldDepth).remove(id);
+		}
+		
+		while (this.levels.size() <= depth) {
+			this.levels.add(TreeFactory.mapFactory().createLinkedHashMap());
+		}
+		this.levels.get(depth).put(id, element);
+		
+		if (element.isLeaf()) {
+			this.leaves.put(id, element);
+		} else {
+			this.leaves.remove(id);
+		}
+		
+		for (TreeIndex index : this.indexes.values()) {
+			index.write(id, element);
+		}
+		for (TreeTextIndex textIndex : this.textIndexes.values()) {
+			textIndex.write(id, element);
+		}
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -25,7 +89,89 @@ class Cache {
 		return (TreeElementCore<T>) this.cacheElements.get(id);
 	}
 	
+	@SuppressWarnings("unchecked")
+	<T> Collection<TreeElementCore<T>> readLevel(int depth) {
+		if (depth < 0 || depth >= this.levels.size()) {
+			return Collections.emptyList();
+		}
+		Collection<?> level = this.levels.get(depth).values();
+		return (Collection<TreeElementCore<T>>) level;
+	}
+	
+	@SuppressWarnings("unchecked")
+	<T> Collection<TreeElementCore<T>> readLeaves() {
+		Collection<?> leafElements = this.leaves.values();
+		return (Collection<TreeElementCore<T>>) leafElements;
+	}
+	
+	TreeIndex readIndex(String attribute) {
+		return this.indexes.get(attribute);
+	}
+	
+	/*
+	 * Adds the index, indexing the elements already cached. An index of the
+	 * same attribute is replaced.
+	 */
+	void writeIndex(TreeIndex index) {
+		for (Map<Object, TreeElementCore<?>> level : this.levels) {
+			for (Map.Entry<Object, TreeElementCore<?>> entry :
+					level.entrySet()) {
+				index.write(entry.getKey(), entry.getValue());
+			}
+		}
+		this.indexes.put(index.getAttribute(), index);
+	}
+	
+	TreeTextIndex readTextIndex(String attribute) {
+		return this.textIndexes.get(attribute);
+	}
+	
+	/*
+	 * Adds the text index, as writeIndex() does.
+	 */
+	void writeTextIndex(TreeTextIndex textIndex) {
+		for (Map<Object, TreeElementCore<?>> level : this.levels) {
+			for (Map.Entry<Object, TreeElementCore<?>> entry :
+					level.entrySet()) {
+				textIndex.write(entry.getKey(), entry.getValue());
+			}
+		}
+		this.textIndexes.put(textIndex.getAttribute(), textIndex);
+	}
+	
+	/*
+	 * A new cache with the same indexes, without elements.
+	 */
+	Cache emptyCopy() {
+		Cache copy = TreeFactory.utilFactory().createCacheSession();
+		
+		for (TreeIndex index : this.indexes.values()) {
+			copy.indexes.put(index.getAttribute(), index.emptyCopy());
+		}
+		for (TreeTextIndex textIndex : this.textIndexes.values()) {
+			copy.textIndexes.put(textIndex.getAttribute(),
+					textIndex.emptyCopy());
+		}
+		return copy;
+	}
+	
 	void delete(Object id) {
-		this.cacheElements.remove(id);
+		TreeElementCore<?> element = this.cacheElements.remove(id);
+		if (element != null) {
+			this.identifiers.remove(element);
+		}
+		
+		Integer depth = this.depths.remove(id);
+		if (depth != null) {
+			this.levels.get(depth).remove(id);
+		}
+		this.leaves.remove(id);
+		
+		for (TreeIndex index : this.indexes.values()) {
+			index.delete(id);
+		}
+		for (TreeTextIndex textIndex : this.textIndexes.values()) {
+			textIndex.delete(id);
+		}
 	}
 }
@@ -0,0 +1,525 @@
+package com.madzera.happytree.core;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import com.madzera.happytree.Element;
+
+/*
+ * Children container of an element.
+ *
+ * Every child added or removed is notified to the owner element, so the depth,
+ * the descendant count and the height of the owner and its ancestors are kept
+ * up to date without traversing the tree.
+ *
+ * While the fan-out is small, the children are kept in a plain list, exactly
+ * as before. When the number of children reaches the HASH_THRESHOLD value, the
+ * container switches to a hash structure indexed by the @Id of each child,
+ * whose entries are also chained in a doubly linked list keeping the insertion
+ * order. The lookup, the removal and the change of the id of a single child
+ * are then constant in time, no matter the fan-out.
+ *
+ * The hash mode is only kept while the ids of the children are unique and not
+ * null. Otherwise, the container goes back to the list mode, so the duplicate
+ * id validations of the core API keep seeing every child.
+ */
+class ElementChildren<T> extends AbstractCollection<Element<T>> {
+
+	static final int HASH_THRESHOLD = 32;
+
+	private final TreeElementCore<T> owner;
+	private List<Element<T>> list = TreeFactory.collectionFactory()
+			.createArrayList();
+	private Map<Object, Link<T>> map;
+	private Link<T> head;
+	private Link<T> tail;
+
+	/*
+	 * Size which the last attempt to switch to the hash mode failed, to avoid
+	 * trying it again on every single add.
+	 */
+	private int failedPromotionSize;
+
+
+	ElementChildren(TreeElementCore<T> owner) {
+		this.owner = owner;
+	}
+
+
+	@Override
+	public boolean add(Element<T> child) {
+		this.owner.recordChange();
+		
+		if (this.map != null) {
+			Object id = child.getId();
+
+			if (id != null && !this.map.containsKey(id)) {
+				this.map.put(id, this.link(id, child));
+				this.attach(child);
+				return true;
+			}
+			this.demote();
+		}
+		this.list.add(child);
+		this.attach(child);
+
+		if (this.list.size() >= HASH_THRESHOLD
+				&& this.list.size() >= failedPromotionSize * 2) {
+			this.promote();
+		}
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object object) {
+		this.owner.recordChange();
+		
+		if (this.map == null) {
+			int index = this.list.indexOf(object);
+
+			if (index < 0) {
+				return false;
+			}
+			this.detach(this.list.remove(index));
+			return true;
+		}
+
+		if (!(object instanceof Element<?>)) {
+			return false;
+		}
+
+		Object id = ((Element<?>) object).getId();
+		Link<T> link = this.map.get(id);
+
+		if (link != null && link.child.equals(object)) {
+			this.map.remove(id);
+			this.unlink(link);
+			this.detach(link.child);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		if (this.map == null) {
+			return this.list.contains(object);
+		}
+
+		if (!(object instanceof Element<?>)) {
+			return false;
+		}
+
+		Link<T> link = this.map.get(((Element<?>) object).getId());
+		return link != null && link.child.equals(object);
+	}
+
+	@Override
+	public Iterator<Element<T>> iterator() {
+		if (this.map != null) {
+			return new LinkIterator();
+		}
+
+		final Iterator<Element<T>> iterator = this.list.iterator();
+
+		/*
+		 * The removal through the iterator must also be notified.
+		 */
+		return new Iterator<Element<T>>() {
+			private Element<T> current;
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Element<T> next() {
+				this.current = iterator.next();
+				return this.current;
+			}
+
+			@Override
+			public void remove() {
+				owner.recordChange();
+				iterator.remove();
+				detach(this.current);
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return this.map != null ? this.map.size() : this.list.size();
+	}
+
+	@Override
+	public void clear() {
+		this.owner.recordChange();
+		
+		List<Element<T>> removed = TreeFactory.collectionFactory()
+				.createArrayList();
+		removed.addAll(this.map != null ? this.linkedChildren() : this.list);
+
+		this.map = null;
+		this.head = null;
+		this.tail = null;
+		this.list.clear();
+		this.failedPromotionSize = 0;
+
+		for (Element<T> child : removed) {
+			this.detach(child);
+		}
+	}
+
+	/*
+	 * Compares the children one by one in the iteration order, as
+	 * List.equals() does. Only other children containers are equal to this
+	 * one, since a list is never equal to a collection which is not a list,
+	 * and the comparison must hold both ways.
+	 */
+	@Override
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (!(object instanceof ElementChildren<?>)) {
+			return false;
+		}
+
+		Collection<?> other = (Collection<?>) object;
+
+		if (other.size() != this.size()) {
+			return false;
+		}
+
+		Iterator<Element<T>> iterator = this.iterator();
+		Iterator<?> otherIterator = other.iterator();
+
+		while (iterator.hasNext()) {
+			Element<T> child = iterator.next();
+			Object otherChild = otherIterator.next();
+
+			if (!(child == null ? otherChild == null
+					: child.equals(otherChild))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+
+		for (Element<T> child : this) {
+			result = prime * result + (child == null ? 0 : child.hashCode());
+		}
+		return result;
+	}
+
+	/*
+	 * Obtains the direct child by its id, without searching the descendants.
+	 */
+	Element<T> get(Object id) {
+		if (this.map != null) {
+			Link<T> link = this.map.get(id);
+			return link != null ? link.child : null;
+		}
+
+		for (Element<T> child : this.list) {
+			if (child.getId().equals(id)) {
+				return child;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Removes the direct child by its id, returning the removed child.
+	 */
+	Element<T> removeById(Object id) {
+		this.owner.recordChange();
+		
+		Element<T> child = null;
+
+		if (this.map != null) {
+			Link<T> link = this.map.remove(id);
+
+			if (link != null) {
+				this.unlink(link);
+				child = link.child;
+			}
+		} else {
+			Iterator<Element<T>> iterator = this.list.iterator();
+			while (iterator.hasNext() && child == null) {
+				Element<T> next = iterator.next();
+
+				if (next.getId().equals(id)) {
+					iterator.remove();
+					child = next;
+				}
+			}
+		}
+
+		if (child != null) {
+			this.detach(child);
+		}
+		return child;
+	}
+
+	/*
+	 * Removes the direct children which satisfy the condition in a single
+	 * pass, returning the removed children in their iteration order.
+	 */
+	List<Element<T>> removeMatching(Predicate<Element<T>> condition) {
+		this.owner.recordChange();
+		
+		List<Element<T>> removed = TreeFactory.collectionFactory()
+				.createArrayList();
+		if (this.map != null) {
+			Link<T> link = this.head;
+
+			while (link != null) {
+				Link<T> next = link.next;
+
+				if (condition.test(link.child)) {
+					this.map.remove(link.id);
+					this.unlink(link);
+					removed.add(link.child);
+				}
+				link = next;
+			}
+		} else {
+			this.list.removeIf(child -> condition.test(child)
+					&& removed.add(child));
+		}
+
+		for (Element<T> child : removed) {
+			this.detach(child);
+		}
+		return removed;
+	}
+
+	/*
+	 * The id of a child was changed by the core API. In the hash mode, the
+	 * child needs to be indexed again by its new id, in the same position.
+	 */
+	void reindex(Object oldId, Element<T> child) {
+		this.owner.recordChange();
+		
+		if (this.map == null) {
+			return;
+		}
+
+		Link<T> link = this.map.get(oldId);
+		Object newId = child.getId();
+
+		if (link == null || link.child != child) {
+			return;
+		}
+		if (newId == null || this.map.containsKey(newId)) {
+			this.demote();
+			return;
+		}
+		this.map.remove(oldId);
+		link.id = newId;
+		this.map.put(newId, link);
+	}
+
+	/*
+	 * Replaces the child by another one in the same position.
+	 */
+	boolean replace(Element<T> child, Element<T> replacement) {
+		this.owner.recordChange();
+		
+		if (this.map == null) {
+			int index = 0;
+			for (Element<T> next : this.list) {
+				if (next == child) {
+					this.list.set(index, replacement);
+					this.detach(child);
+					this.attach(replacement);
+					return true;
+				}
+				index++;
+			}
+			return false;
+		}
+
+		Object id = child.getId();
+		Object newId = replacement.getId();
+		Link<T> link = this.map.get(id);
+
+		if (link == null || link.child != child) {
+			return false;
+		}
+		if (newId == null || (!newId.equals(id)
+				&& this.map.containsKey(newId))) {
+			this.demote();
+			return this.replace(child, replacement);
+		}
+
+		this.map.remove(id);
+		link.id = newId;
+		link.child = replacement;
+		this.map.put(newId, link);
+
+		this.detach(child);
+		this.attach(replacement);
+		return true;
+	}
+
+	private void attach(Element<T> child) {
+		if (child instanceof TreeElementCore<?>) {
+			this.owner.attachChild((TreeElementCore<T>) child);
+		}
+	}
+
+	private void detach(Element<T> child) {
+		if (child instanceof TreeElementCore<?>) {
+			this.owner.detachChild((TreeElementCore<T>) child);
+		}
+	}
+
+	/*
+	 * Switches from the list mode to the hash mode, if all the ids are unique.
+	 */
+	private void promote() {
+		Set<Object> ids = TreeFactory.collectionFactory().createHashSet();
+
+		for (Element<T> child : this.list) {
+			Object id = child.getId();
+
+			if (id == null || !ids.add(id)) {
+				this.failedPromotionSize = this.list.size();
+				return;
+			}
+		}
+
+		this.map = TreeFactory.mapFactory().createHashMap();
+		for (Element<T> child : this.list) {
+			Object id = child.getId();
+			this.map.put(id, this.link(id, child));
+		}
+		this.list.clear();
+	}
+
+	/*
+	 * Switches from the hash mode back to the list mode.
+	 */
+	private void demote() {
+		this.list.addAll(this.linkedChildren());
+		this.failedPromotionSize = this.list.size();
+		this.map = null;
+		this.head = null;
+		this.tail = null;
+	}
+
+	/*
+	 * Appends a new entry at the end of the chain.
+	 */
+	private Link<T> link(Object id, Element<T> child) {
+		Link<T> link = new Link<>(id, child);
+
+		if (this.tail == null) {
+			this.head = link;
+		} else {
+			this.tail.next = link;
+			link.previous = this.tail;
+		}
+		this.tail = link;
+		return link;
+	}
+
+	/*
+	 * Takes the entry off the chain, joining its neighbors.
+	 */
+	private void unlink(Link<T> link) {
+		if (link.previous == null) {
+			this.head = link.next;
+		} else {
+			link.previous.next = link.next;
+		}
+
+		if (link.next == null) {
+			this.tail = link.previous;
+		} else {
+			link.next.previous = link.previous;
+		}
+		link.previous = null;
+		link.next = null;
+	}
+
+	/*
+	 * The children of the hash mode, in the insertion order.
+	 */
+	private List<Element<T>> linkedChildren() {
+		List<Element<T>> children = TreeFactory.collectionFactory()
+				.createArrayList();
+
+		for (Link<T> link = this.head; link != null; link = link.next) {
+			children.add(link.child);
+		}
+		return children;
+	}
+
+	/*
+	 * Entry of the hash mode. It keeps the id by which it is indexed, so the
+	 * entry can be indexed again by a new id without touching the others.
+	 */
+	private static final class Link<T> {
+		private Object id;
+		private Element<T> child;
+		private Link<T> previous;
+		private Link<T> next;
+
+		private Link(Object id, Element<T> child) {
+			this.id = id;
+			this.child = child;
+		}
+	}
+
+	/*
+	 * Iterates over the chain of the hash mode. The removal through the
+	 * iterator must also be notified.
+	 */
+	private final class LinkIterator implements Iterator<Element<T>> {
+		private Link<T> next = head;
+		private Link<T> current;
+
+		@Override
+		public boolean hasNext() {
+			return this.next != null;
+		}
+
+		@Override
+		public Element<T> next() {
+			if (this.next == null) {
+				throw new NoSuchElementException();
+			}
+			this.current = this.next;
+			this.next = this.next.next;
+			return this.current.child;
+		}
+
+		@Override
+		public void remove() {
+			if (this.current == null) {
+				throw new IllegalStateException();
+			}
+			owner.recordChange();
+			map.remove(this.current.id);
+			unlink(this.current);
+			detach(this.current.child);
+			this.current = null;
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package com.madzera.happytree.core;
 
+import java.util.concurrent.Executor;
+
+import com.madzera.happytree.AsyncTreeManager;
 import com.madzera.happytree.Element;
 import com.madzera.happytree.TreeManager;
 import com.madzera.happytree.TreeSession;
@@ -37,4 +40,39 @@ public final class HappyTree {
 	public static TreeManager createTreeManager() {
 		return TreeManagerCore.getTreeManagerInstance();
 	}
+	
+	/**
+	 * Returns an instance of {@link AsyncTreeManager}, the asynchronous facade
+	 * of the HappyTree API, executing its operations on threads created on
+	 * demand.
+	 * 
+	 * <p>This is not a <i>Singleton</i> instance.</p>
+	 * 
+	 * @return an instance of <code>AsyncTreeManager</code>
+	 */
+	public static AsyncTreeManager createAsyncTreeManager() {
+		return createAsyncTreeManager(TreeFactory.utilFactory()
+				.createCachedExecutor());
+	}
+	
+	/**
+	 * Returns an instance of {@link AsyncTreeManager}, the asynchronous facade
+	 * of the HappyTree API, executing its operations on the specified
+	 * <code>executor</code>.
+	 * 
+	 * <p>This is not a <i>Singleton</i> instance.</p>
+	 * 
+	 * @param executor the executor of the operations
+	 * 
+	 * @return an instance of <code>AsyncTreeManager</code>
+	 * 
+	 * @throws IllegalArgumentException when the <code>executor</code> is
+	 * <code>null</code>
+	 */
+	public static AsyncTreeManager createAsyncTreeManager(Executor executor) {
+		TreeFactory.facadeFactory().createValidatorFacade(null)
+				.validateMandatory(executor);
+		
+		return TreeFactory.serviceFactory().createAsyncTreeManager(executor);
+	}
 }
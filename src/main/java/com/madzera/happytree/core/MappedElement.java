@@ -0,0 +1,399 @@
+package com.madzera.happytree.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.madzera.happytree.Element;
+import com.madzera.happytree.TreeSession;
+import com.madzera.happytree.TreeVisitor;
+
+/*
+ * Element of a read-only session mapped from a snapshot file.
+ *
+ * This is just a flyweight over a record of the TreeSnapshotMapping, holding
+ * nothing but the record index. The children, the descendants and the wrapped
+ * node are read from the mapped file only when they are requested, and the
+ * elements are never changed, since the session cannot be changed.
+ *
+ * The root element is represented by the record -1.
+ */
+class MappedElement<T> implements Element<T> {
+
+	private static final int ROOT = -1;
+
+	private final TreeSnapshotMapping mapping;
+	private final int record;
+	private final TreeSession session;
+
+	/*
+	 * Decoded on demand.
+	 */
+	private Object id;
+
+
+	MappedElement(TreeSnapshotMapping mapping, int record,
+			TreeSession session) {
+		this.mapping = mapping;
+		this.record = record;
+		this.session = session;
+	}
+
+
+	@Override
+	public Object getId() {
+		if (this.id == null) {
+			this.id = this.isRoot() ? this.mapping.getRootId() :
+				this.mapping.id(this.record);
+		}
+		return this.id;
+	}
+
+	@Override
+	public void setId(Object id) {
+		throw this.readOnly();
+	}
+
+	@Override
+	public Object getParent() {
+		return this.isRoot() ? null : this.mapping.parentId(this.record);
+	}
+
+	@Override
+	public void setParent(Object parent) {
+		throw this.readOnly();
+	}
+
+	@Override
+	public Collection<Element<T>> getChildren() {
+		return new AbstractCollection<Element<T>>() {
+			@Override
+			public Iterator<Element<T>> iterator() {
+				return children();
+			}
+
+			@Override
+			public int size() {
+				int size = 0;
+				for (Iterator<Element<T>> iterator = children();
+						iterator.hasNext(); iterator.next()) {
+					size++;
+				}
+				return size;
+			}
+		};
+	}
+
+	@Override
+	public void addChild(Element<T> child) {
+		throw this.readOnly();
+	}
+
+	@Override
+	public void addChildren(Collection<Element<T>> children) {
+		throw this.readOnly();
+	}
+
+	@Override
+	public Element<T> getElementById(Object id) {
+		if (id == null) {
+			return null;
+		}
+		if (!this.isRoot() && id.equals(this.getId())) {
+			return this;
+		}
+
+		int found = this.mapping.find(id);
+		return this.mapping.isDescendant(this.record, found) ?
+				this.element(found) : null;
+	}
+
+	@Override
+	public void removeChildren(Collection<Element<T>> children) {
+		throw this.readOnly();
+	}
+
+	@Override
+	public void removeChild(Element<T> child) {
+		throw this.readOnly();
+	}
+
+	@Override
+	public void removeChild(Object id) {
+		throw this.readOnly();
+	}
+
+	@Override
+	public int getDepth() {
+		return this.isRoot() ? 0 : this.mapping.depth(this.record);
+	}
+
+	@Override
+	public int getDescendantCount() {
+		return this.isRoot() ? this.mapping.count() :
+			this.mapping.descendants(this.record);
+	}
+
+	/*
+	 * The descendants are contiguous in the file, so the height is the
+	 * deepest of them.
+	 */
+	@Override
+	public int getHeight() {
+		int depth = this.getDepth();
+		int height = 0;
+		int end = this.record + this.getDescendantCount();
+
+		for (int i = this.record + 1; i <= end; i++) {
+			height = Math.max(height, this.mapping.depth(i) - depth);
+		}
+		return height;
+	}
+
+	/*
+	 * The versions are not kept in the snapshot file.
+	 */
+	@Override
+	public long getVersion() {
+		return 0;
+	}
+
+	@Override
+	public void wrap(T object) {
+		throw this.readOnly();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T unwrap() {
+		return this.isRoot() ? null : (T) this.mapping.node(this.record);
+	}
+
+	@Override
+	public TreeSession attachedTo() {
+		return this.session;
+	}
+
+	@Override
+	public String lifecycle() {
+		return this.isRoot() ? ElementState.ATTACHED.name() :
+			this.mapping.state(this.record).name();
+	}
+
+	@Override
+	public String toJSON() {
+		return this.materialize().toJSON();
+	}
+
+	@Override
+	public String toPrettyJSON() {
+		return this.materialize().toPrettyJSON();
+	}
+
+	@Override
+	public String toXML() {
+		return this.materialize().toXML();
+	}
+
+	@Override
+	public String toPrettyXML() {
+		return this.materialize().toPrettyXML();
+	}
+
+	@Override
+	public void writeJSON(OutputStream output) throws IOException {
+		this.materialize().writeJSON(output);
+	}
+
+	@Override
+	public void writeJSON(Writer writer) throws IOException {
+		this.materialize().writeJSON(writer);
+	}
+
+	@Override
+	public void writeXML(OutputStream output) throws IOException {
+		this.materialize().writeXML(output);
+	}
+
+	@Override
+	public void writeXML(Writer writer) throws IOException {
+		this.materialize().writeXML(writer);
+	}
+
+	/*
+	 * The descendants are visited in pre-order, straight over the records.
+	 */
+	@Override
+	public List<Element<T>> search(Predicate<Element<T>> condition) {
+		List<Element<T>> result = TreeFactory.collectionFactory()
+				.createArrayList();
+
+		if (condition == null) {
+			return result;
+		}
+
+		if (!this.isRoot() && condition.test(this)) {
+			result.add(this);
+		}
+
+		int end = this.record + this.getDescendantCount();
+		for (int i = this.record + 1; i <= end; i++) {
+			Element<T> element = this.element(i);
+
+			if (condition.test(element)) {
+				result.add(element);
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * The records are in pre-order, so a skipped subtree is the interval of
+	 * records right after its top record.
+	 */
+	@Override
+	public void traverse(TreeVisitor<T> visitor) {
+		if (visitor == null) {
+			return;
+		}
+
+		if (!this.isRoot()) {
+			TreeVisitor.Result result = visitor.visit(this);
+
+			if (result == TreeVisitor.Result.TERMINATE
+					|| result == TreeVisitor.Result.SKIP_SUBTREE) {
+				return;
+			}
+		}
+
+		int end = this.record + this.getDescendantCount();
+		int record = this.record + 1;
+		while (record <= end) {
+			TreeVisitor.Result result = visitor.visit(this.element(record));
+
+			if (result == TreeVisitor.Result.TERMINATE) {
+				return;
+			}
+			record += result == TreeVisitor.Result.SKIP_SUBTREE ?
+					1 + this.mapping.descendants(record) : 1;
+		}
+	}
+
+	@Override
+	public void apply(Consumer<Element<T>> action) {
+		throw this.readOnly();
+	}
+
+	@Override
+	public void apply(Consumer<Element<T>> action,
+			Predicate<Element<T>> condition) {
+		throw this.readOnly();
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+
+		result = prime * result + this.record;
+		result = prime * result + this.session.hashCode();
+
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object another) {
+		if (this == another) {
+			return Boolean.TRUE;
+		}
+		if (another == null || this.getClass() != another.getClass()) {
+			return Boolean.FALSE;
+		}
+
+		MappedElement<?> other = (MappedElement<?>) another;
+
+		return this.record == other.record
+				&& this.mapping == other.mapping
+				&& this.session.equals(other.session);
+	}
+
+	@Override
+	public String toString() {
+		T obj = unwrap();
+		if (obj != null) {
+			return obj.toString();
+		}
+		return "[null]";
+	}
+
+	boolean isRoot() {
+		return this.record == ROOT;
+	}
+
+	int getRecord() {
+		return this.record;
+	}
+
+	/*
+	 * Copies this element and its descendants from the mapped file into the
+	 * heap, for the operations which need the whole subtree, as the JSON and
+	 * XML conversions.
+	 */
+	@SuppressWarnings("unchecked")
+	TreeElementCore<T> materialize() {
+		TreeElementCore<T> element = TreeFactory.serviceFactory()
+				.createElement(this.getId(), this.getParent(), this.unwrap(),
+						this.session);
+
+		if (this.isRoot()) {
+			element.setRoot(Boolean.TRUE);
+		}
+		element.transitionState(ElementState.valueOf(this.lifecycle()));
+
+		for (Element<T> child : this.getChildren()) {
+			element.getChildren().add(((MappedElement<T>) child)
+					.materialize());
+		}
+		return element;
+	}
+
+	private Iterator<Element<T>> children() {
+		return new Iterator<Element<T>>() {
+			private int next = mapping.firstChild(record);
+
+			@Override
+			public boolean hasNext() {
+				return this.next >= 0;
+			}
+
+			@Override
+			public Element<T> next() {
+				if (this.next < 0) {
+					throw new NoSuchElementException();
+				}
+
+				int current = this.next;
+				this.next = mapping.nextSibling(record, current);
+
+				return element(current);
+			}
+		};
+	}
+
+	private MappedElement<T> element(int record) {
+		return TreeFactory.serviceFactory().createMappedElement(this.mapping,
+				record, this.session);
+	}
+
+	private UnsupportedOperationException readOnly() {
+		return new UnsupportedOperationException(TreeRepositoryMessage
+				.READ_ONLY_SESSION.getMessageError());
+	}
+}
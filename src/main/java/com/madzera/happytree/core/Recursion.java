@@ -47,7 +47,7 @@ class Recursion {
 		List<Element<T>> elements = TreeFactory.collectionFactory()
 				.createArrayList();
 		elements.add(element);
-		treePlain(element.getChildren(), elements);
+		treePlain(children(element), elements);
 		
 		return elements;
 	}
@@ -118,7 +118,11 @@ class Recursion {
 		}
 
 		for (Element<T> element : elements) {
-			if (element.unwrap() == null) {
+			/*
+			 * Checks the wrapped node itself, since unwrap() would make a
+			 * deep copy of it.
+			 */
+			if (((TreeElementCore<T>) element).getWrappedNode() == null) {
 				treeHasNullWrappedNode = Boolean.TRUE;
 				return treeHasNullWrappedNode;
 			}
@@ -140,9 +144,19 @@ class Recursion {
 		
 		for (Element<T> element : elements) {
 			elementsToAdd.add(element);
-			result = treePlain(element.getChildren(), elementsToAdd);
+			result = treePlain(children(element), elementsToAdd);
 		}
 		
 		return result;
 	}
+	
+	/*
+	 * The children of a lazy session which are not loaded yet are not part of
+	 * the plain list.
+	 */
+	private static <T> Collection<Element<T>> children(Element<T> element) {
+		return element instanceof TreeElementCore<?> ?
+				((TreeElementCore<T>) element).loadedChildren() :
+					element.getChildren();
+	}
 }
@@ -0,0 +1,99 @@
+package com.madzera.happytree.core;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.List;
+
+import com.madzera.happytree.ChildLoader;
+import com.madzera.happytree.Element;
+import com.madzera.happytree.annotation.Id;
+import com.madzera.happytree.annotation.Parent;
+
+/*
+ * Loads the children of the elements of a lazy session through the
+ * ChildLoader of the API client.
+ *
+ * Each loaded object node is wrapped into a new element, which is attached
+ * into the element that requested it, as the API Transformation Process does
+ * for the whole collection. The new elements have their own children not
+ * loaded yet.
+ */
+class TreeChildLoading<T> {
+
+	private final Class<T> type;
+	private final ChildLoader<T> loader;
+	private final Field idField;
+	private final Field parentField;
+
+
+	TreeChildLoading(Class<T> type, ChildLoader<T> loader) {
+		this.type = type;
+		this.loader = loader;
+		this.idField = TreeUtil.ReflectionUtil.getFieldAnnotation(type,
+				Id.class);
+		this.parentField = TreeUtil.ReflectionUtil.getFieldAnnotation(type,
+				Parent.class);
+	}
+
+
+	/*
+	 * Loads the children into the parent and returns the new elements. The
+	 * object nodes whose ids are already in the session are ignored.
+	 */
+	List<Element<T>> load(TreeElementCore<T> parent,
+			TreeSessionCore session) {
+		List<Element<T>> loaded = TreeFactory.collectionFactory()
+				.createArrayList();
+
+		Collection<T> nodes = this.loader.loadChildren(parent.isRoot() ?
+				null : parent.getId());
+
+		if (nodes == null) {
+			return loaded;
+		}
+
+		for (T node : nodes) {
+			if (node == null || !this.type.equals(node.getClass())) {
+				throw this.invalidNode();
+			}
+
+			Object id = this.invoke(this.idField, node);
+
+			if (id == null) {
+				throw this.invalidNode();
+			}
+			if (session.get(id) != null) {
+				continue;
+			}
+
+			/*
+			 * The elements of the first level keep their own @Parent, as in
+			 * the API Transformation Process.
+			 */
+			Object parentId = parent.isRoot() ? this.invoke(this.parentField,
+					node) : parent.getId();
+
+			TreeElementCore<T> element = TreeFactory.serviceFactory()
+					.createElement(id, parentId, node, session);
+			element.setUnloaded(Boolean.TRUE);
+
+			parent.getChildren().add(element);
+			session.saveLoaded(element);
+			loaded.add(element);
+		}
+		return loaded;
+	}
+
+	private Object invoke(Field field, T node) {
+		try {
+			return TreeUtil.ReflectionUtil.invokeGetter(field, node);
+		} catch (ReflectiveOperationException exception) {
+			throw this.invalidNode();
+		}
+	}
+
+	private IllegalArgumentException invalidNode() {
+		return TreeFactory.exceptionFactory().createRuntimeException(
+				TreeRepositoryMessage.INVALID_LOADED_NODE.getMessageError());
+	}
+}
@@ -13,6 +13,22 @@ class TreeConstants {
 		static final String DUPLICATE_SESSION_ID = "Duplicate session identifier.";
 		static final String NO_DEFINED_SESSION = "No defined session.";
 		static final String NO_ACTIVE_SESSION = "No active session.";
+		static final String INVALID_DOCUMENT = "It is not possible to read the tree. Invalid document.";
+		static final String NO_ID_PARENT_TYPE = "The type must have attributes annotated by @Id and @Parent.";
+		static final String SNAPSHOT_WRITE = "It is not possible to save the session into the file.";
+		static final String INVALID_SNAPSHOT = "It is not possible to restore the session. Invalid snapshot file.";
+		static final String READ_ONLY_SESSION = "It is not possible to change a read-only session.";
+		static final String JOURNAL_WRITE = "It is not possible to write the session journal.";
+		static final String INVALID_JOURNAL = "It is not possible to replay the session journal. Invalid journal file.";
+		static final String DUPLICATE_TRANSACTION = "There is already an open transaction in the current session.";
+		static final String NO_OPEN_TRANSACTION = "There is no open transaction in the current session.";
+		static final String TRANSACTION_OWNER = "The transaction of the current session was opened by another thread.";
+		static final String TRANSACTION_TIMEOUT = "The current session is still in a transaction of another thread.";
+		static final String INVALID_LOADED_NODE = "It is not possible to load the children. Invalid object node.";
+		static final String INVALID_INDEX_ATTRIBUTE = "It is not possible to index the elements. Invalid attribute.";
+		static final String NO_DEFINED_INDEX = "No defined index of the attribute.";
+		static final String INVALID_QUERY_ATTRIBUTE = "It is not possible to query the elements. Invalid attribute.";
+		static final String LAZY_SESSION_SAVE = "It is not possible to save a lazy session, whose elements are not all loaded.";
 		//---------------------TREE---------------------
 		static final String CUT_COPY_DETACHED_ELEMENT = "It is not possible to copy/cut/remove elements. Invalid lifecycle state.";
 		static final String CUT_COPY_NOTFOUND_ELEMENT = "It is not possible to cut the element. Source element not found.";
@@ -23,6 +39,7 @@ class TreeConstants {
 		static final String INCORRECT_SESSION = "Element not defined in this session.";
 		static final String HANDLE_ROOT = "The root of the tree cannot be handled for this operation.";
 		static final String NOT_SERIALIZED_NODE = "The wrapped node must implement Serializable interface.";
+		static final String VERSION_CONFLICT = "The element has been changed since the expected version.";
 
 	}
 	static class Error {
@@ -39,10 +56,27 @@ class TreeConstants {
 		static final String UPDATE_NOT_EXISTED_ELEMENT = "com.madzera.happytree.error.checked.tree.update.not.existed";
 		static final String HANDLE_ROOT = "com.madzera.happytree.error.checked.tree.root";
         static final String NOT_SERIALIZED_NODE = "com.madzera.happytree.error.checked.element.not.serialized.node";
+		static final String VERSION_CONFLICT = "com.madzera.happytree.error.checked.element.version.conflict";
 		//---------------------SESSION------------------
 		static final String DUPLICATE_SESSION_ID_ERROR = "com.madzera.happytree.error.checked.session.duplicate.id";
 		static final String NO_DEFINED_SESSION = "com.madzera.happytree.error.checked.session.no.defined.session";
 		static final String NO_ACTIVE_SESSION = "com.madzera.happytree.error.checked.session.no.active.session";
+		static final String INVALID_DOCUMENT = "com.madzera.happytree.error.checked.session.invalid.document";
+		static final String NO_ID_PARENT_TYPE = "com.madzera.happytree.error.checked.session.no.id.parent";
+		static final String SNAPSHOT_WRITE = "com.madzera.happytree.error.checked.session.snapshot.write";
+		static final String INVALID_SNAPSHOT = "com.madzera.happytree.error.checked.session.invalid.snapshot";
+		static final String READ_ONLY_SESSION = "com.madzera.happytree.error.checked.session.read.only";
+		static final String JOURNAL_WRITE = "com.madzera.happytree.error.checked.session.journal.write";
+		static final String INVALID_JOURNAL = "com.madzera.happytree.error.checked.session.invalid.journal";
+		static final String DUPLICATE_TRANSACTION = "com.madzera.happytree.error.checked.session.duplicate.transaction";
+		static final String NO_OPEN_TRANSACTION = "com.madzera.happytree.error.checked.session.no.open.transaction";
+		static final String TRANSACTION_OWNER = "com.madzera.happytree.error.checked.session.transaction.owner";
+		static final String TRANSACTION_TIMEOUT = "com.madzera.happytree.error.checked.session.transaction.timeout";
+		static final String INVALID_LOADED_NODE = "com.madzera.happytree.error.runtime.session.invalid.loaded.node";
+		static final String INVALID_INDEX_ATTRIBUTE = "com.madzera.happytree.error.checked.session.invalid.index.attribute";
+		static final String NO_DEFINED_INDEX = "com.madzera.happytree.error.checked.session.no.defined.index";
+		static final String INVALID_QUERY_ATTRIBUTE = "com.madzera.happytree.error.checked.session.invalid.query.attribute";
+		static final String LAZY_SESSION_SAVE = "com.madzera.happytree.error.checked.session.lazy.save";
 		
 		static class Internal {
 			private Internal() {}
@@ -0,0 +1,207 @@
+package com.madzera.happytree.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.madzera.happytree.TreeTransaction.Format;
+import com.madzera.happytree.annotation.Id;
+import com.madzera.happytree.annotation.Parent;
+import com.madzera.happytree.exception.TreeException;
+
+/*
+ * Rebuilds a tree from the output of Element.toJSON() or Element.toXML().
+ *
+ * The document is read with the Jackson streaming parser and each element is
+ * attached into its parent as soon as its wrapped node is read. Only the
+ * attributes of the current wrapped node are buffered, so neither the whole
+ * document nor a flat collection of the nodes is kept in memory.
+ *
+ * The document can be the export of the root element, of any other element
+ * (which is placed in the root level) or, in JSON, an array of them.
+ */
+class TreeDocumentReader<T> {
+
+	private static final String CHILDREN = "children";
+	private static final String XML_ELEMENT = "element";
+
+	private final Class<T> type;
+	private final Field idField;
+	private final Field parentField;
+	private ObjectMapper mapper;
+
+	/*
+	 * Only the ids are kept, to validate duplicates as the API Transformation
+	 * Process does.
+	 */
+	private Set<Object> ids = TreeFactory.collectionFactory().createHashSet();
+
+
+	TreeDocumentReader(Class<T> type) {
+		this.type = type;
+		this.idField = TreeUtil.ReflectionUtil.getFieldAnnotation(type,
+				Id.class);
+		this.parentField = TreeUtil.ReflectionUtil.getFieldAnnotation(type,
+				Parent.class);
+	}
+
+
+	/*
+	 * Reads the document, attaching all elements into the root. The input is
+	 * not closed.
+	 */
+	void read(InputStream input, Format format, TreeElementCore<T> root)
+			throws TreeException {
+		this.mapper = Format.XML.equals(format) ?
+				TreeFactory.xmlFactory().xmlMapper() :
+				TreeFactory.jsonFactory().objectMapper();
+
+		try (JsonParser parser = this.mapper.createParser(input)) {
+			parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+			JsonToken token = parser.nextToken();
+
+			if (JsonToken.START_ARRAY.equals(token)) {
+				this.readArray(parser, root);
+			} else if (JsonToken.START_OBJECT.equals(token)) {
+				this.readElement(parser, root);
+			} else {
+				throw this.invalidDocument();
+			}
+		} catch (IOException | ReflectiveOperationException exception) {
+			throw this.invalidDocument();
+		}
+	}
+
+	/*
+	 * Reads the attributes of the element until its end. When the "children"
+	 * attribute is reached, the element is created with the attributes read so
+	 * far and its children are read right after, in the same pass.
+	 */
+	private void readElement(JsonParser parser, TreeElementCore<T> parent)
+			throws IOException, ReflectiveOperationException,
+			TreeException {
+		TokenBuffer wrappedNode = new TokenBuffer(parser);
+		wrappedNode.writeStartObject();
+
+		boolean hasAttributes = Boolean.FALSE;
+		TreeElementCore<T> element = null;
+
+		while (JsonToken.FIELD_NAME.equals(parser.nextToken())) {
+			String attribute = parser.currentName();
+			parser.nextToken();
+
+			if (CHILDREN.equals(attribute)) {
+				if (element == null) {
+					element = this.createElement(wrappedNode, hasAttributes,
+							parent);
+				}
+				this.readChildren(parser, element);
+			} else {
+				wrappedNode.writeFieldName(attribute);
+				wrappedNode.copyCurrentStructure(parser);
+				hasAttributes = Boolean.TRUE;
+			}
+		}
+
+		if (element == null) {
+			this.createElement(wrappedNode, hasAttributes, parent);
+		}
+	}
+
+	/*
+	 * In JSON the children are an array of elements. In XML they are wrapped
+	 * by the <children> tag, each one represented by an <element> tag.
+	 */
+	private void readChildren(JsonParser parser, TreeElementCore<T> parent)
+			throws IOException, ReflectiveOperationException,
+			TreeException {
+		JsonToken token = parser.currentToken();
+
+		if (JsonToken.START_ARRAY.equals(token)) {
+			this.readArray(parser, parent);
+		} else if (JsonToken.START_OBJECT.equals(token)) {
+			while (JsonToken.FIELD_NAME.equals(parser.nextToken())) {
+				JsonToken next = parser.nextToken();
+
+				if (!XML_ELEMENT.equals(parser.currentName())) {
+					parser.skipChildren();
+				} else if (JsonToken.START_ARRAY.equals(next)) {
+					this.readArray(parser, parent);
+				} else if (JsonToken.START_OBJECT.equals(next)) {
+					this.readElement(parser, parent);
+				}
+			}
+		} else if (token.isStructStart()) {
+			parser.skipChildren();
+		}
+	}
+
+	private void readArray(JsonParser parser, TreeElementCore<T> parent)
+			throws IOException, ReflectiveOperationException,
+			TreeException {
+		JsonToken token = parser.nextToken();
+
+		while (!JsonToken.END_ARRAY.equals(token)) {
+			if (!JsonToken.START_OBJECT.equals(token)) {
+				throw this.invalidDocument();
+			}
+			this.readElement(parser, parent);
+			token = parser.nextToken();
+		}
+	}
+
+	/*
+	 * An element without attributes is the exported root, so its children are
+	 * attached directly into the root of the session.
+	 */
+	private TreeElementCore<T> createElement(TokenBuffer wrappedNode,
+			boolean hasAttributes, TreeElementCore<T> parent)
+			throws IOException, ReflectiveOperationException,
+			TreeException {
+		if (!hasAttributes && parent.isRoot()) {
+			return parent;
+		}
+
+		wrappedNode.writeEndObject();
+
+		T node = null;
+		try (JsonParser nodeParser = wrappedNode.asParser(this.mapper)) {
+			node = this.mapper.readValue(nodeParser, this.type);
+		}
+
+		Object id = TreeUtil.ReflectionUtil.invokeGetter(this.idField, node);
+
+		if (id == null) {
+			throw this.invalidDocument();
+		}
+		if (!this.ids.add(id)) {
+			throw TreeFactory.exceptionFactory().createTreeException(
+					TreeRepositoryMessage.DUPLICATE_ELEMENT.getMessageError());
+		}
+
+		/*
+		 * The elements in the root level keep their own @Parent, as in the
+		 * API Transformation Process. The others reference the element which
+		 * they are nested in.
+		 */
+		Object parentId = parent.isRoot() ? TreeUtil.ReflectionUtil
+				.invokeGetter(this.parentField, node) : parent.getId();
+
+		TreeElementCore<T> element = TreeFactory.serviceFactory()
+				.createElement(id, parentId, node, parent.attachedTo());
+		parent.getChildren().add(element);
+
+		return element;
+	}
+
+	private TreeException invalidDocument() {
+		return TreeFactory.exceptionFactory().createTreeException(
+				TreeRepositoryMessage.INVALID_DOCUMENT.getMessageError());
+	}
+}
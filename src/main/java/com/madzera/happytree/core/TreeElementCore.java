@@ -1,8 +1,15 @@
 package com.madzera.happytree.core;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -10,14 +17,12 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.annotation.JsonUnwrapped;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
 import com.madzera.happytree.Element;
 import com.madzera.happytree.TreeSession;
+import com.madzera.happytree.TreeVisitor;
 
 @JsonPropertyOrder({"wrappedNode", "element"})
 @JacksonXmlRootElement(localName = "element")
@@ -35,7 +40,7 @@ class TreeElementCore<T> implements Element<T> {
 	@JsonProperty("children")
 	@JacksonXmlElementWrapper(localName = "children")
 	@JacksonXmlProperty(localName = "element") 
-	private Collection<Element<T>> children;
+	private ElementChildren<T> children;
 	private TreeSession session;
 	
 	/*
@@ -48,13 +53,46 @@ class TreeElementCore<T> implements Element<T> {
 	private Object oldParentId;
 	private T newWrappedNode;
 	
+	/*
+	 * Structural metrics, maintained incrementally by the children container
+	 * of the parent element each time a child is added or removed.
+	 */
+	private TreeElementCore<T> parentElement;
+	private int depth;
+	private int descendantCount;
+	private int height;
+	
+	/*
+	 * Number of children by their height, so the height of this element can
+	 * drop without visiting the remaining children.
+	 */
+	private int[] childHeights;
+	
+	/*
+	 * Incremented each time a change of this element is committed.
+	 */
+	private long version;
+	
+	/*
+	 * Only for the elements of a lazy session whose children were not loaded
+	 * yet.
+	 */
+	private boolean isUnloaded;
+	
+	/*
+	 * Only for the copies given to the API client whose children were not
+	 * loaded yet. They take their children from the element of the session.
+	 */
+	private boolean isCopy;
+	
 	
 	TreeElementCore(Object id, Object parentId, T wrappedNode,
 			TreeSession session) {
 		this.id = id;
 		this.parentId = parentId;
 		this.oldParentId = parentId;
-		this.children = TreeFactory.collectionFactory().createArrayList();
+		this.children = TreeFactory.collectionFactory()
+				.createElementChildren(this);
 		
 		this.wrappedNode = wrappedNode;
 		this.newWrappedNode = wrappedNode;
@@ -87,6 +125,7 @@ class TreeElementCore<T> implements Element<T> {
 		 * the element is going to be updated.
 		 */
 		if (id != null) {
+			this.recordChange();
 			this.setNewId(id);
 			transitionState(ElementState.DETACHED);
 		}
@@ -104,12 +143,14 @@ class TreeElementCore<T> implements Element<T> {
 			return;
 		}
 
+		this.recordChange();
 		this.parentId = parent;
 		transitionState(ElementState.DETACHED);
 	}
 
 	@Override
 	public Collection<Element<T>> getChildren() {
+		this.load();
 		return this.children;
 	}
 
@@ -163,25 +204,45 @@ class TreeElementCore<T> implements Element<T> {
 
 	@Override
 	public void removeChild(Object id) {
-		Iterator<Element<T>> iterator = this.children.iterator();
-		
-		while (iterator.hasNext()) {
-			Element<T> element = iterator.next();
-			if (element.getId().equals(id)) {
-				iterator.remove();
-				transitionState(ElementState.DETACHED);
-				element.setParent(null);
-				break;
-			}
+		Element<T> element = this.children.removeById(id);
+
+		if (element != null) {
+			transitionState(ElementState.DETACHED);
+			element.setParent(null);
 		}
 	}
 
+	@Override
+	@JsonIgnore
+	public int getDepth() {
+		return this.depth;
+	}
+
+	@Override
+	@JsonIgnore
+	public int getDescendantCount() {
+		return this.descendantCount;
+	}
+
+	@Override
+	@JsonIgnore
+	public int getHeight() {
+		return this.height;
+	}
+
+	@Override
+	@JsonIgnore
+	public long getVersion() {
+		return this.version;
+	}
+
 	@Override
 	public void wrap(T object) {
 		if (this.isRoot()) {
 			return;
 		}
 		
+		this.recordChange();
 		setNewWrappedNode(object);
 		
 		/*
@@ -236,6 +297,50 @@ class TreeElementCore<T> implements Element<T> {
 		return this.toXML(Boolean.TRUE);
 	}
 
+	@Override
+	public void writeJSON(OutputStream output) throws IOException {
+		if (!this.isConvertible()) {
+			output.write("{}".getBytes(StandardCharsets.UTF_8));
+			output.flush();
+			return;
+		}
+		TreeFactory.jsonFactory().objectWriter(Boolean.FALSE)
+				.writeValue(output, this);
+	}
+
+	@Override
+	public void writeJSON(Writer writer) throws IOException {
+		if (!this.isConvertible()) {
+			writer.write("{}");
+			writer.flush();
+			return;
+		}
+		TreeFactory.jsonFactory().objectWriter(Boolean.FALSE)
+				.writeValue(writer, this);
+	}
+
+	@Override
+	public void writeXML(OutputStream output) throws IOException {
+		if (!this.isConvertible()) {
+			output.write("<element/>".getBytes(StandardCharsets.UTF_8));
+			output.flush();
+			return;
+		}
+		TreeFactory.xmlFactory().objectWriter(Boolean.FALSE)
+				.writeValue(output, this);
+	}
+
+	@Override
+	public void writeXML(Writer writer) throws IOException {
+		if (!this.isConvertible()) {
+			writer.write("<element/>");
+			writer.flush();
+			return;
+		}
+		TreeFactory.xmlFactory().objectWriter(Boolean.FALSE)
+				.writeValue(writer, this);
+	}
+
 	@Override
 	public List<Element<T>> search(Predicate<Element<T>> condition) {
 		List<Element<T>> result = TreeFactory.collectionFactory()
@@ -304,6 +409,62 @@ class TreeElementCore<T> implements Element<T> {
 		}
 	}
 
+	@Override
+	public void traverse(TreeVisitor<T> visitor) {
+		this.traverse(visitor, Boolean.TRUE);
+	}
+
+	/*
+	 * Pre-order traversal of this element and its descendants, without
+	 * recursion, so deep trees do not overflow the stack. The manager
+	 * traverses the tree under a read lock, where the children of a lazy
+	 * session must not be loaded, so only the children in memory are visited
+	 * when isLoading is false.
+	 */
+	@SuppressWarnings("unchecked")
+	void traverse(TreeVisitor<T> visitor, boolean isLoading) {
+		if (visitor == null) {
+			return;
+		}
+
+		/*
+		 * The root element is not visited, only its descendants.
+		 */
+		if (!this.isRoot()) {
+			TreeVisitor.Result result = visitor.visit(this);
+
+			if (result == TreeVisitor.Result.TERMINATE
+					|| result == TreeVisitor.Result.SKIP_SUBTREE) {
+				return;
+			}
+		}
+
+		Deque<Iterator<Element<T>>> stack = TreeFactory.collectionFactory()
+				.createArrayDeque();
+		stack.push(isLoading ? this.getChildren().iterator() :
+			this.loadedChildren().iterator());
+
+		while (!stack.isEmpty()) {
+			Iterator<Element<T>> iterator = stack.peek();
+
+			if (!iterator.hasNext()) {
+				stack.pop();
+				continue;
+			}
+
+			TreeElementCore<T> element = (TreeElementCore<T>) iterator.next();
+			TreeVisitor.Result result = visitor.visit(element);
+
+			if (result == TreeVisitor.Result.TERMINATE) {
+				return;
+			}
+			if (result != TreeVisitor.Result.SKIP_SUBTREE) {
+				stack.push(isLoading ? element.getChildren().iterator() :
+					element.loadedChildren().iterator());
+			}
+		}
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -356,11 +517,19 @@ class TreeElementCore<T> implements Element<T> {
 		return "[null]";
 	}
 
+	/*
+	 * The wrapped node itself, without the deep copy made by unwrap().
+	 */
+	T getWrappedNode() {
+		return this.wrappedNode;
+	}
+
 	ElementState getState() {
 		return state;
 	}
 
 	void changeSession(TreeSession session) {
+		this.recordChange();
 		this.session = session;
 	}
 	
@@ -371,28 +540,170 @@ class TreeElementCore<T> implements Element<T> {
 	 * new id.
 	 */
 	void mergeUpdatedId(Object id) {
+		this.recordChange();
 		this.id = id;
 		this.setNewId(null);
 
-		for (Element<T> iterator : getChildren()) {
+		for (Element<T> iterator : this.children) {
 			TreeElementCore<T> child = (TreeElementCore<T>) iterator;
 			child.setParent(id);
 			child.syncParentId();
 		}
 	}
 
+	/*
+	 * Invoked by the children container when the child is added. The child
+	 * takes its depth from this element and this element and its ancestors
+	 * account for the child's subtree.
+	 */
+	void attachChild(TreeElementCore<T> child) {
+		/*
+		 * The child is already an ancestor of this element, so the metrics
+		 * would never converge.
+		 */
+		for (TreeElementCore<T> ancestor = this; ancestor != null;
+				ancestor = ancestor.parentElement) {
+			if (ancestor == child) {
+				return;
+			}
+		}
+
+		child.parentElement = this;
+		child.changeDepth(this.depth + 1);
+
+		for (TreeElementCore<T> ancestor = this; ancestor != null;
+				ancestor = ancestor.parentElement) {
+			ancestor.descendantCount += child.descendantCount + 1;
+		}
+		this.changeChildHeight(-1, child.height);
+	}
+
+	/*
+	 * Invoked by the children container when the child is removed. The child
+	 * becomes the top of its own subtree.
+	 */
+	void detachChild(TreeElementCore<T> child) {
+		if (child.parentElement == this) {
+			child.parentElement = null;
+			child.changeDepth(0);
+		}
+
+		for (TreeElementCore<T> ancestor = this; ancestor != null;
+				ancestor = ancestor.parentElement) {
+			ancestor.descendantCount -= child.descendantCount + 1;
+		}
+		this.changeChildHeight(child.height, -1);
+	}
+
+	/*
+	 * Keeps the children indexed by id after the child has its id changed by
+	 * mergeUpdatedId().
+	 */
+	void replaceChild(Element<T> child, Element<T> replacement) {
+		this.children.replace(child, replacement);
+	}
+
+	void reindexChild(Object oldId, Element<T> child) {
+		this.children.reindex(oldId, child);
+	}
+
+	/*
+	 * Removes the children which satisfy the condition, without testing their
+	 * descendants. Returns the removed children.
+	 */
+	List<Element<T>> removeChildren(Predicate<Element<T>> condition) {
+		this.load();
+		
+		List<Element<T>> removed = this.children.removeMatching(condition);
+		
+		if (!removed.isEmpty()) {
+			for (Element<T> child : removed) {
+				child.setParent(null);
+			}
+			transitionState(ElementState.DETACHED);
+		}
+		return removed;
+	}
+
 	/*
 	 * This method only can be invoked by core API, when this is updating the
 	 * object which a change in the wrapped node attribute is necessary. Update
 	 * the current wrapped node with the desirable wrapped node.
 	 */
 	void mergeUpdatedWrappedNode(T wrappedNode) {
+		this.recordChange();
 		this.wrappedNode = wrappedNode;
 		this.setNewWrappedNode(wrappedNode);
 	}
 
+	/*
+	 * The parent element in the tree, or null for the root and the elements
+	 * out of a tree.
+	 */
+	TreeElementCore<T> getParentElement() {
+		return this.parentElement;
+	}
+	
+	/*
+	 * The children already in memory, without loading the other ones.
+	 */
+	Collection<Element<T>> loadedChildren() {
+		return this.children;
+	}
+	
+	void setUnloaded(boolean isUnloaded) {
+		this.recordChange();
+		this.isUnloaded = isUnloaded;
+	}
+	
+	boolean isUnloaded() {
+		return this.isUnloaded;
+	}
+	
+	boolean isCopy() {
+		return this.isCopy;
+	}
+	
+	/*
+	 * An element of a lazy session whose children were not loaded yet is not
+	 * known to be a leaf, so it is not considered one.
+	 */
+	boolean isLeaf() {
+		return !this.isUnloaded && this.children.isEmpty();
+	}
+	
+	/*
+	 * Discards the loaded descendants, which are loaded again the next time
+	 * the children are needed. Returns the discarded children, or nothing if
+	 * this element is not of a lazy session or its children are not loaded.
+	 */
+	List<Element<T>> evictChildren() {
+		List<Element<T>> evicted = TreeFactory.collectionFactory()
+				.createArrayList();
+		
+		if (this.isUnloaded || !((TreeSessionCore) this.session).isLazy()) {
+			return evicted;
+		}
+		
+		this.recordChange();
+		evicted.addAll(this.children);
+		for (Element<T> child : evicted) {
+			child.setParent(null);
+		}
+		this.children.clear();
+		this.isUnloaded = Boolean.TRUE;
+		
+		return evicted;
+	}
+	
+	void incrementVersion() {
+		this.recordChange();
+		this.version++;
+	}
+
 	void syncParentId() {
-		this.oldParentId = this.parentId;  
+		this.recordChange();
+		this.oldParentId = this.parentId;
 	}
 	
 	/*
@@ -413,6 +724,7 @@ class TreeElementCore<T> implements Element<T> {
 	void transitionState(ElementState nextState) {
 		if (!this.state.equals(ElementState.NOT_EXISTED)
 				|| !nextState.equals(ElementState.DETACHED)) {
+			this.recordChange();
 			this.state = nextState;
 		}
 	}
@@ -450,6 +762,85 @@ class TreeElementCore<T> implements Element<T> {
 	 * few bugs.
 	 */
 	TreeElementCore<T> cloneElement() {
+		return this.cloneElement(null);
+	}
+	
+	/*
+	 * The clone of each element of this subtree which is a key of the clones
+	 * map is put into it, so the copies of overlapping subtrees can be shared.
+	 * 
+	 * In a lazy session, only the loaded descendants are cloned. The clone of
+	 * an element whose children are not loaded takes them from the session
+	 * when they are accessed, so obtaining an element does not load its whole
+	 * subtree.
+	 */
+	TreeElementCore<T> cloneElement(Map<Element<?>, Element<?>> clones) {
+		TreeElementCore<T> clone = this.cloneShallow();
+
+		/*
+		 * Clone the descendants.
+		 */
+		for (Element<T> child : this.loadedChildren()) {
+			TreeElementCore<T> clonedChild = (TreeElementCore<T>) child;
+			
+			clonedChild = clonedChild.cloneElement(clones);
+			clone.loadedChildren().add(clonedChild);
+		}
+		
+		if (this.isUnloaded) {
+			clone.setUnloaded(Boolean.TRUE);
+			clone.isCopy = Boolean.TRUE;
+		}
+		
+		if (clones != null && clones.containsKey(this)) {
+			clones.put(this, clone);
+		}
+		return clone;
+	}
+	
+	/*
+	 * Clones this element with all of its descendants, loading the ones of a
+	 * lazy session which are not loaded yet, since the clone is attached into
+	 * another session.
+	 */
+	TreeElementCore<T> cloneSubtree() {
+		TreeElementCore<T> clone = this.cloneShallow();
+		
+		for (Element<T> child : this.getChildren()) {
+			clone.getChildren().add(((TreeElementCore<T>) child)
+					.cloneSubtree());
+		}
+		return clone;
+	}
+	
+	/*
+	 * Clones this element with its descendants only down to the depth relative
+	 * to this element. The deeper descendants are left out, so the clone of an
+	 * element with children is not loaded, as the clone of an unloaded element
+	 * of a lazy session. It takes the children from the session when they are
+	 * accessed, so they are not lost when the clone is updated.
+	 */
+	TreeElementCore<T> cloneElement(int depth) {
+		TreeElementCore<T> clone = this.cloneShallow();
+		
+		if (depth > 0) {
+			for (Element<T> child : this.getChildren()) {
+				TreeElementCore<T> clonedChild = (TreeElementCore<T>) child;
+				
+				clonedChild = clonedChild.cloneElement(depth - 1);
+				clone.loadedChildren().add(clonedChild);
+			}
+		} else if (this.isUnloaded || !this.children.isEmpty()) {
+			clone.setUnloaded(Boolean.TRUE);
+			clone.isCopy = Boolean.TRUE;
+		}
+		return clone;
+	}
+	
+	/*
+	 * Clones this element without its descendants.
+	 */
+	TreeElementCore<T> cloneShallow() {
 		TreeElementCore<T> clone = TreeFactory.serviceFactory()
 				.createElement(
 						this.getId(),
@@ -458,24 +849,101 @@ class TreeElementCore<T> implements Element<T> {
 						this.attachedTo());
 		
 		/*
-		 * Clone the descendants.
+		 * Keeps the depth of the source, so the cloned descendants are
+		 * attached in their correct depth.
 		 */
-		for (Element<T> child : this.getChildren()) {
-			TreeElementCore<T> clonedChild = (TreeElementCore<T>) child;
-			
-			clonedChild = clonedChild.cloneElement();
-			clone.getChildren().add(clonedChild);
-		}
+		clone.changeDepth(this.getDepth());
 		
 		clone.transitionState(this.getState());
 		clone.setRoot(this.isRoot());
 		clone.setType(this.getType());
 		clone.setNewId(this.getUpdatedId());
 		clone.setNewWrappedNode(this.getUpdatedWrappedNode());
+		clone.setVersion(this.getVersion());
 		
 		return clone;
 	}
 
+	/*
+	 * Copies this element and its descendants into another session, like
+	 * cloneElement(), but sharing the wrapped nodes instead of copying them.
+	 * The wrapped nodes inside a session are never changed, only replaced by
+	 * the updated ones, so they can be shared by the sessions.
+	 */
+	TreeElementCore<T> shareElement(TreeSession session) {
+		TreeElementCore<T> copy = TreeFactory.serviceFactory()
+				.createElement(
+						this.getId(),
+						this.getParent(),
+						this.getWrappedNode(),
+						session);
+		
+		copy.changeDepth(this.getDepth());
+
+		for (Element<T> child : this.children) {
+			copy.children.add(((TreeElementCore<T>) child)
+					.shareElement(session));
+		}
+		
+		copy.transitionState(this.getState());
+		copy.setRoot(this.isRoot());
+		copy.setType(this.getType());
+		copy.setNewId(this.getUpdatedId());
+		copy.setNewWrappedNode(this.getUpdatedWrappedNode());
+		copy.setVersion(this.getVersion());
+		copy.setUnloaded(this.isUnloaded);
+		
+		return copy;
+	}
+
+	/*
+	 * Copies the fields which the operations change, without the children,
+	 * to be put back by restoreFields().
+	 */
+	TreeElementCore<T> copyFields() {
+		TreeElementCore<T> copy = TreeFactory.serviceFactory().createElement(
+				this.id, this.parentId, this.wrappedNode, this.session);
+		
+		copy.oldParentId = this.oldParentId;
+		copy.newId = this.newId;
+		copy.newWrappedNode = this.newWrappedNode;
+		copy.type = this.type;
+		copy.state = this.state;
+		copy.version = this.version;
+		copy.isUnloaded = this.isUnloaded;
+		
+		return copy;
+	}
+	
+	/*
+	 * The structural metrics are not put back, since they follow the children
+	 * which are put back into the children containers.
+	 */
+	void restoreFields(TreeElementCore<T> fields) {
+		this.id = fields.id;
+		this.parentId = fields.parentId;
+		this.wrappedNode = fields.wrappedNode;
+		this.session = fields.session;
+		this.oldParentId = fields.oldParentId;
+		this.newId = fields.newId;
+		this.newWrappedNode = fields.newWrappedNode;
+		this.type = fields.type;
+		this.state = fields.state;
+		this.version = fields.version;
+		this.isUnloaded = fields.isUnloaded;
+	}
+	
+	/*
+	 * Invoked before each change of this element, including the changes of
+	 * its children, so the session records the element as it was if the
+	 * change can be undone.
+	 */
+	void recordChange() {
+		if (this.session instanceof TreeSessionCore) {
+			((TreeSessionCore) this.session).recordChange(this);
+		}
+	}
+
 	void setRoot(boolean isRoot) {
 		this.isRoot = isRoot;
 	}
@@ -484,6 +952,25 @@ class TreeElementCore<T> implements Element<T> {
 		return oldParentId;
 	}
 
+	/*
+	 * The children of a lazy session are loaded by the first access. If the
+	 * loader fails, they are loaded again by the next one.
+	 */
+	private void load() {
+		if (!this.isUnloaded) {
+			return;
+		}
+		this.recordChange();
+		this.isUnloaded = Boolean.FALSE;
+		
+		try {
+			((TreeSessionCore) this.session).loadChildren(this);
+		} catch (RuntimeException exception) {
+			this.isUnloaded = Boolean.TRUE;
+			throw exception;
+		}
+	}
+	
 	private int calculateHashForId(Object id) {
 		final int perfectNumber = 32;
 		if (id instanceof Byte) {
@@ -507,6 +994,78 @@ class TreeElementCore<T> implements Element<T> {
 		}
 	}
 
+	/*
+	 * Sets the depth of this element and its descendants. A subtree which is
+	 * already in the expected depth does not need to be visited.
+	 */
+	private void changeDepth(int depth) {
+		if (this.depth == depth) {
+			return;
+		}
+		this.depth = depth;
+
+		for (Element<T> child : this.children) {
+			((TreeElementCore<T>) child).changeDepth(depth + 1);
+		}
+	}
+
+	/*
+	 * A child of this element had its height changed from oldHeight to
+	 * newHeight, where -1 means the child was added or removed. The change
+	 * goes up to the ancestors while their heights keep changing too.
+	 */
+	private void changeChildHeight(int oldHeight, int newHeight) {
+		TreeElementCore<T> element = this;
+
+		while (element != null) {
+			element.countChildHeight(oldHeight, -1);
+			element.countChildHeight(newHeight, 1);
+
+			int previousHeight = element.height;
+			element.height = element.calculateHeight(newHeight);
+
+			if (element.height == previousHeight) {
+				return;
+			}
+			oldHeight = previousHeight;
+			newHeight = element.height;
+			element = element.parentElement;
+		}
+	}
+
+	private void countChildHeight(int childHeight, int increment) {
+		if (childHeight < 0 || (increment < 0 && this.childHeights == null)) {
+			return;
+		}
+		if (this.childHeights == null) {
+			this.childHeights = new int[childHeight + 1];
+		} else if (childHeight >= this.childHeights.length) {
+			this.childHeights = Arrays.copyOf(this.childHeights,
+					Math.max(childHeight + 1, this.childHeights.length * 2));
+		}
+		this.childHeights[childHeight] = Math.max(0,
+				this.childHeights[childHeight] + increment);
+	}
+
+	/*
+	 * No child is taller than the tallest one before the change or the one
+	 * which has just changed, so only the heights below them are visited.
+	 */
+	private int calculateHeight(int changedHeight) {
+		if (this.childHeights == null) {
+			return 0;
+		}
+
+		int childHeight = Math.min(this.childHeights.length - 1,
+				Math.max(this.height - 1, changedHeight));
+		for (; childHeight >= 0; childHeight--) {
+			if (this.childHeights[childHeight] > 0) {
+				return childHeight + 1;
+			}
+		}
+		return 0;
+	}
+
 	private void setType(Class<?> type) {
 		this.type = type;
 	}
@@ -515,6 +1074,10 @@ class TreeElementCore<T> implements Element<T> {
 		this.newId = newId;
 	}
 
+	private void setVersion(long version) {
+		this.version = version;
+	}
+	
 	private void setNewWrappedNode(T newWrappedNode) {
 		this.newWrappedNode = newWrappedNode;
 	}
@@ -523,20 +1086,11 @@ class TreeElementCore<T> implements Element<T> {
 		final String defaultOutput = "{}";
 
 		try {
-			if (!this.isRoot() && (this.wrappedNode == null
-					|| Recursion.iterateForNullWrappedNode(this.getChildren()))) {
+			if (!this.isConvertible()) {
 				throw TreeFactory.exceptionFactory().createException();
 			}
-			ObjectMapper objectMapper = TreeFactory.jsonFactory()
-					.createObjectMapper();
-
-			if (isPrettyJson) {
-				ObjectWriter writer = objectMapper.
-						writerWithDefaultPrettyPrinter();
-				return writer.writeValueAsString(this);
-			} else {
-				return objectMapper.writeValueAsString(this);
-			}
+			return TreeFactory.jsonFactory().objectWriter(isPrettyJson)
+					.writeValueAsString(this);
 		} catch (Exception e) {
 			return defaultOutput;
 		}
@@ -546,21 +1100,23 @@ class TreeElementCore<T> implements Element<T> {
 		final String defaultOutput = "<element/>";
 
 		try {
-			if (!this.isRoot() && (this.wrappedNode == null
-					|| Recursion.iterateForNullWrappedNode(this.getChildren()))) {
+			if (!this.isConvertible()) {
 				throw TreeFactory.exceptionFactory().createException();
 			}
-			XmlMapper xmlMapper = TreeFactory.xmlFactory().createXmlMapper();
-
-			if (isPrettyXml) {
-				ObjectWriter writer = xmlMapper.writerWithDefaultPrettyPrinter();
-				return writer.writeValueAsString(this);
-			} else {
-				return xmlMapper.writeValueAsString(this);
-			}
+			return TreeFactory.xmlFactory().objectWriter(isPrettyXml)
+					.writeValueAsString(this);
 		} catch (Exception e) {
 			return defaultOutput;
 		}
 	}
+
+	/*
+	 * The element and its descendants can only be converted when all of them
+	 * have a wrapped node, except the root.
+	 */
+	private boolean isConvertible() {
+		return this.isRoot() || (this.wrappedNode != null
+				&& !Recursion.iterateForNullWrappedNode(this.getChildren()));
+	}
 	
 }
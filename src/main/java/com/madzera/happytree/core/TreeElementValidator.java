@@ -122,6 +122,25 @@ abstract class TreeElementValidator extends TreeValidator {
 		}
 	}
 
+	/*
+	 * The element in the tree must still have the expected version. An element
+	 * which is not in the tree anymore has been changed as well.
+	 */
+	void validateVersionElement(TreePipeline pipeline) throws TreeException {
+		TreeElementCore<?> source = (TreeElementCore<?>) pipeline.getAttribute(
+				TreePipelineAttributes.SOURCE_ELEMENT);
+		long version = (Long) pipeline.getAttribute(
+				TreePipelineAttributes.VERSION);
+		
+		TreeSessionCore session = (TreeSessionCore) source.attachedTo();
+		TreeElementCore<?> element = session.get(source.getId());
+		
+		if (element == null || element.getVersion() != version) {
+			throw this.throwTreeVersionException(TreeRepositoryMessage
+					.VERSION_CONFLICT);
+		}
+	}
+
 	abstract void validateDuplicateIdElement(TreePipeline pipeline)
 			throws TreeException;
 
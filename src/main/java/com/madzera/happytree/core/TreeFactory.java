@@ -6,17 +6,35 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.madzera.happytree.ChildLoader;
 import com.madzera.happytree.TreeManager;
 import com.madzera.happytree.TreeSession;
 import com.madzera.happytree.core.atp.ATPFactory;
 import com.madzera.happytree.exception.TreeException;
+import com.madzera.happytree.exception.TreeVersionException;
 
 /*
  * Abstract Factory used for HappyTree API.
@@ -157,6 +175,10 @@ class TreeFactory {
 			return new TreeManagerCore();
 		}
 		
+		AsyncTreeManagerCore createAsyncTreeManager(Executor executor) {
+			return new AsyncTreeManagerCore(executor);
+		}
+		
 		TreeTransactionCore createTreeTransaction(TreeManager manager) {
 			return new TreeTransactionCore(manager);
 		}
@@ -173,6 +195,20 @@ class TreeFactory {
 		<T> TreeElementCore<T> createElement(TreeSession session) {
 			return new TreeElementCore<>(null, null, null, session);
 		}
+
+		<T> MappedElement<T> createMappedElement(TreeSnapshotMapping mapping,
+				int record, TreeSession session) {
+			return new MappedElement<>(mapping, record, session);
+		}
+
+		<T> TreeQueryCore<T> createQuery(TreeManagerCore manager) {
+			return new TreeQueryCore<>(manager);
+		}
+
+		<T> TreeQueryPlan<T> createQueryPlan(TreeQueryCore<T> query,
+				TreeSessionCore session) {
+			return new TreeQueryPlan<>(query, session);
+		}
 	}
 
 	class CollectionFactory extends TreeFactory {
@@ -182,9 +218,23 @@ class TreeFactory {
 			return new HashSet<>();
 		}
 		
+		<T> ArrayDeque<T> createArrayDeque() {
+			return new ArrayDeque<>();
+		}
+
 		<T> List<T> createArrayList() {
 			return new ArrayList<>();
 		}
+		
+		<T> PriorityQueue<T> createPriorityQueue(
+				Comparator<? super T> comparator) {
+			return new PriorityQueue<>(comparator);
+		}
+		
+		<T> ElementChildren<T> createElementChildren(
+				TreeElementCore<T> owner) {
+			return new ElementChildren<>(owner);
+		}
 	}
 	
 	class MapFactory extends TreeFactory {
@@ -193,6 +243,22 @@ class TreeFactory {
 		<K, V> HashMap<K,V> createHashMap() {
 			return new HashMap<>();
 		}
+		
+		<K, V> LinkedHashMap<K,V> createLinkedHashMap() {
+			return new LinkedHashMap<>();
+		}
+		
+		<K, V> IdentityHashMap<K,V> createIdentityHashMap() {
+			return new IdentityHashMap<>();
+		}
+		
+		<K, V> ConcurrentHashMap<K,V> createConcurrentHashMap() {
+			return new ConcurrentHashMap<>();
+		}
+		
+		<K, V> TreeMap<K,V> createTreeMap() {
+			return new TreeMap<>();
+		}
 	}
 
 	class ValidatorFactory extends TreeFactory {
@@ -249,6 +315,10 @@ class TreeFactory {
 		TreeException createTreeException(String message) {
 			return new TreeException(message);
 		}
+		
+		TreeVersionException createTreeVersionException(String message) {
+			return new TreeVersionException(message);
+		}
 	}
 	
 	class PipelineFactory extends TreeFactory {
@@ -266,24 +336,131 @@ class TreeFactory {
 		Cache createCacheSession() {
 			return new Cache();
 		}
+
+		ReadWriteLock createReadWriteLock() {
+			return new ReentrantReadWriteLock();
+		}
+
+		<T> ThreadLocal<T> createThreadLocal() {
+			return new ThreadLocal<>();
+		}
+
+		<T> CompletableFuture<T> createCompletableFuture() {
+			return new CompletableFuture<>();
+		}
+
+		/*
+		 * The threads are created on demand and discarded when idle, and they
+		 * never keep the JVM running.
+		 */
+		ExecutorService createCachedExecutor() {
+			return Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "happytree-async");
+				thread.setDaemon(Boolean.TRUE);
+				return thread;
+			});
+		}
+
+		<T> TreeDocumentReader<T> createDocumentReader(Class<T> type) {
+			return new TreeDocumentReader<>(type);
+		}
+
+		<T> TreeChildLoading<T> createChildLoading(Class<T> type,
+				ChildLoader<T> loader) {
+			return new TreeChildLoading<>(type, loader);
+		}
+
+		TreeIndex createIndex(String attribute, Class<?> type,
+				boolean isSorted) {
+			return new TreeIndex(attribute, type, isSorted);
+		}
+
+		TreeTextIndex createTextIndex(String attribute, Class<?> type) {
+			return new TreeTextIndex(attribute, type);
+		}
+
+		TreeSnapshotWriter createSnapshotWriter() {
+			return new TreeSnapshotWriter();
+		}
+
+		TreeSnapshotReader createSnapshotReader(Path file) {
+			return new TreeSnapshotReader(file);
+		}
+
+		TreeSnapshotMapping createSnapshotMapping(Path file) {
+			return new TreeSnapshotMapping(file);
+		}
+
+		TreeJournal createJournal(TreeSessionCore session, Path snapshot,
+				Path file) {
+			return new TreeJournal(session, snapshot, file);
+		}
+
+		TreeUndoLog createUndoLog() {
+			return new TreeUndoLog();
+		}
 	}
 	
 	class JsonFactory extends TreeFactory {
+		/*
+		 * The writers are immutable and thread-safe, so they are shared by all
+		 * elements instead of creating a new mapper on each conversion. They
+		 * do not close the target, which belongs to the API client.
+		 */
+		private final ObjectMapper mapper;
+		private final ObjectWriter writer;
+		private final ObjectWriter prettyWriter;
+
 		JsonFactory() {
+			this.mapper = this.createObjectMapper();
+
+			this.writer = mapper.writer()
+					.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			this.prettyWriter = mapper.writerWithDefaultPrettyPrinter()
+					.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
 		}
 
 		ObjectMapper createObjectMapper() {
 			return new ObjectMapper();
 		}
+
+		ObjectMapper objectMapper() {
+			return this.mapper;
+		}
+
+		ObjectWriter objectWriter(boolean isPretty) {
+			return isPretty ? this.prettyWriter : this.writer;
+		}
 	}
 	
 	class XmlFactory extends TreeFactory {
+		/*
+		 * Same as the JSON writers.
+		 */
+		private final XmlMapper mapper;
+		private final ObjectWriter writer;
+		private final ObjectWriter prettyWriter;
+
 		XmlFactory() {
+			this.mapper = this.createXmlMapper();
+
+			this.writer = mapper.writer()
+					.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			this.prettyWriter = mapper.writerWithDefaultPrettyPrinter()
+					.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
 		}
 
 		XmlMapper createXmlMapper() {
 			return new XmlMapper();
 		}
+
+		XmlMapper xmlMapper() {
+			return this.mapper;
+		}
+
+		ObjectWriter objectWriter(boolean isPretty) {
+			return isPretty ? this.prettyWriter : this.writer;
+		}
 	}
 	
 	class IoFactory extends TreeFactory {
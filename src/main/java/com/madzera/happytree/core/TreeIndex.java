@@ -0,0 +1,232 @@
+package com.madzera.happytree.core;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+
+/*
+ * Secondary index of the elements of a session by an attribute of their
+ * wrapped nodes.
+ *
+ * The index is kept by the cache of the session, so it is updated as the
+ * elements are written into and deleted from the cache. Each value of the
+ * attribute has the elements which have it, in the order they were indexed.
+ * A sorted index keeps the values in their natural order, so the elements of
+ * a range of values are found without visiting the others.
+ *
+ * The null values are kept apart, as they are not comparable.
+ */
+class TreeIndex {
+
+	private final String attribute;
+	private final Class<?> type;
+	private final Method getter;
+	private final Class<?> valueType;
+	private final boolean isSorted;
+
+	private final Map<Object, Map<Object, TreeElementCore<?>>> entries;
+	private final Map<Object, TreeElementCore<?>> nulls =
+			TreeFactory.mapFactory().createLinkedHashMap();
+
+	/*
+	 * The value which each element is indexed by, to remove the old entry when
+	 * the element is indexed again.
+	 */
+	private final Map<Object, Object> values =
+			TreeFactory.mapFactory().createHashMap();
+
+	/*
+	 * The wrapped node which each value was read from. The wrapped nodes of a
+	 * session are never changed, only replaced, so an element indexed again
+	 * with the same one keeps its value without reading it.
+	 */
+	private final Map<Object, Object> nodes =
+			TreeFactory.mapFactory().createHashMap();
+
+
+	TreeIndex(String attribute, Class<?> type, boolean isSorted) {
+		this.attribute = attribute;
+		this.type = type;
+		this.getter = TreeUtil.ReflectionUtil.getGetter(type, attribute);
+		this.valueType = MethodType.methodType(this.getter.getReturnType())
+				.wrap().returnType();
+		this.isSorted = isSorted;
+		this.entries = isSorted ? TreeFactory.mapFactory().createTreeMap() :
+			TreeFactory.mapFactory().createHashMap();
+	}
+
+
+	void write(Object id, TreeElementCore<?> element) {
+		Object node = element.getWrappedNode();
+		boolean isIndexed = this.values.containsKey(id);
+
+		if (isIndexed && this.nodes.get(id) == node) {
+			this.bucket(this.values.get(id)).put(id, element);
+			return;
+		}
+
+		Object value = this.value(node);
+
+		if (isIndexed && Objects.equals(value, this.values.get(id))) {
+			this.nodes.put(id, node);
+			this.bucket(value).put(id, element);
+			return;
+		}
+
+		this.delete(id);
+		this.nodes.put(id, node);
+		this.values.put(id, value);
+
+		if (value == null) {
+			this.nulls.put(id, element);
+		} else {
+			this.entries.computeIfAbsent(value, key -> TreeFactory
+					.mapFactory().createLinkedHashMap()).put(id, element);
+		}
+	}
+
+	void delete(Object id) {
+		if (!this.values.containsKey(id)) {
+			return;
+		}
+		Object value = this.values.remove(id);
+		this.nodes.remove(id);
+
+		if (value == null) {
+			this.nulls.remove(id);
+			return;
+		}
+		Map<Object, TreeElementCore<?>> elements = this.entries.get(value);
+		elements.remove(id);
+
+		if (elements.isEmpty()) {
+			this.entries.remove(value);
+		}
+	}
+
+	/*
+	 * The elements whose attribute is equal to the value.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> List<TreeElementCore<T>> read(Object value) {
+		List<TreeElementCore<T>> result = TreeFactory.collectionFactory()
+				.createArrayList();
+		Map<Object, TreeElementCore<?>> elements = this.bucket(value);
+
+		if (elements != null) {
+			for (TreeElementCore<?> element : elements.values()) {
+				result.add((TreeElementCore<T>) element);
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * The elements whose attribute is between the values, both inclusive, in
+	 * the order of the values. A null bound is not a limit. Only for the
+	 * sorted indexes.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> List<TreeElementCore<T>> read(Object from, Object to) {
+		List<TreeElementCore<T>> result = TreeFactory.collectionFactory()
+				.createArrayList();
+
+		for (Map<Object, TreeElementCore<?>> elements : this.range(from, to)) {
+			for (TreeElementCore<?> element : elements.values()) {
+				result.add((TreeElementCore<T>) element);
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * The number of elements which read(value) finds, without reading them.
+	 */
+	int count(Object value) {
+		Map<Object, TreeElementCore<?>> elements = this.bucket(value);
+		return elements != null ? elements.size() : 0;
+	}
+
+	/*
+	 * The number of elements which read(from, to) finds. Only the entries of
+	 * the values in the range are visited.
+	 */
+	int count(Object from, Object to) {
+		int count = 0;
+
+		for (Map<Object, TreeElementCore<?>> elements : this.range(from, to)) {
+			count += elements.size();
+		}
+		return count;
+	}
+
+	String getAttribute() {
+		return this.attribute;
+	}
+
+	boolean isSorted() {
+		return this.isSorted;
+	}
+
+	/*
+	 * A new index of the same attribute, without elements.
+	 */
+	TreeIndex emptyCopy() {
+		return TreeFactory.utilFactory().createIndex(this.attribute,
+				this.type, this.isSorted);
+	}
+
+	private Map<Object, TreeElementCore<?>> bucket(Object value) {
+		if (value == null) {
+			return this.nulls;
+		}
+		return this.valueType.isInstance(value) ? this.entries.get(value) :
+			null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Collection<Map<Object, TreeElementCore<?>>> range(Object from,
+			Object to) {
+		if ((from != null && !this.valueType.isInstance(from))
+				|| (to != null && !this.valueType.isInstance(to))) {
+			return Collections.emptyList();
+		}
+
+		NavigableMap<Object, Map<Object, TreeElementCore<?>>> range =
+				(NavigableMap<Object, Map<Object,
+						TreeElementCore<?>>>) this.entries;
+
+		if (from != null && to != null) {
+			if (((Comparable<Object>) from).compareTo(to) > 0) {
+				return Collections.emptyList();
+			}
+			range = range.subMap(from, true, to, true);
+		} else if (from != null) {
+			range = range.tailMap(from, true);
+		} else if (to != null) {
+			range = range.headMap(to, true);
+		}
+		return range.values();
+	}
+
+	private Object value(Object node) {
+		if (node == null) {
+			return null;
+		}
+
+		try {
+			return this.getter.invoke(node);
+		} catch (ReflectiveOperationException exception) {
+			/*
+			 * Unreachable code. The getter is validated when the index is
+			 * created.
+			 */
+			return null;
+		}
+	}
+}
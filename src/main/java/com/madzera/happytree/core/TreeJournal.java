@@ -0,0 +1,615 @@
+package com.madzera.happytree.core;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.madzera.happytree.Element;
+import com.madzera.happytree.exception.TreeException;
+
+/*
+ * Append-only journal of the changes committed into a session, on top of a
+ * snapshot file of the same session.
+ *
+ * Each operation of the TreeManager which changes the tree appends a record
+ * with its result, so replaying the records over the snapshot rebuilds the
+ * session as it was. The records are written as soon as they are committed,
+ * but the file is synchronized with the disk only every SYNC_BATCH records,
+ * when the journal is compacted or when it is closed.
+ *
+ * Layout:
+ *
+ * [HEADER]  int magic, int version and int epoch.
+ * [RECORD]* int length, int CRC32 of the body and the body (byte type and its
+ *           payload).
+ *
+ * The epoch is the same one written in the snapshot. Compacting the journal
+ * writes a new snapshot with the next epoch and then empties the journal, so a
+ * journal whose epoch differs from its snapshot has already been compacted
+ * into it, and it is discarded. A record which was not completely written or
+ * whose CRC32 does not match is the end of the journal.
+ */
+class TreeJournal {
+
+	static final int MAGIC = 0x48544a4c;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 12;
+
+	/*
+	 * Number of records between each synchronization with the disk.
+	 */
+	static final int SYNC_BATCH = 64;
+
+	/*
+	 * Size which the journal is compacted automatically.
+	 */
+	static final long COMPACTION_SIZE = 64L << 20;
+
+	/*
+	 * Record types.
+	 */
+	private static final byte PUT = 1;
+	private static final byte MOVE = 2;
+	private static final byte DELETE = 3;
+	private static final byte REPLACE = 4;
+
+	private final TreeSessionCore session;
+	private final Path snapshot;
+	private final Path file;
+
+	private FileChannel channel;
+	private int epoch;
+	private int unsynchronized;
+
+
+	TreeJournal(TreeSessionCore session, Path snapshot, Path file) {
+		this.session = session;
+		this.snapshot = snapshot;
+		this.file = file;
+	}
+
+
+	/*
+	 * Starts a new journal, writing the session into the snapshot file.
+	 */
+	void create() throws TreeException {
+		try {
+			this.channel = FileChannel.open(this.file,
+					StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			this.channel.read(header, 0);
+			header.flip();
+
+			int previous = header.remaining() == HEADER_SIZE
+					&& header.getInt(0) == MAGIC ? header.getInt(8) : 0;
+
+			this.writeSnapshot(previous + 1);
+		} catch (IOException exception) {
+			this.closeQuietly();
+			throw this.journalWrite();
+		}
+	}
+
+	/*
+	 * Replays the journal over the session restored from the snapshot, which
+	 * was written in the informed epoch, and keeps journaling.
+	 */
+	void open(int snapshotEpoch) throws TreeException {
+		try {
+			this.channel = FileChannel.open(this.file,
+					StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			this.epoch = snapshotEpoch;
+
+			long end = this.replay();
+
+			this.channel.truncate(end);
+			this.channel.position(end);
+			this.channel.force(Boolean.TRUE);
+		} catch (IOException | ClassNotFoundException
+				| RuntimeException exception) {
+			this.closeQuietly();
+			throw TreeFactory.exceptionFactory().createTreeException(
+					TreeRepositoryMessage.INVALID_JOURNAL.getMessageError());
+		}
+	}
+
+	/*
+	 * The element with its descendants was added into the parent.
+	 */
+	<T> void put(Object parentId, Element<T> element) throws TreeException {
+		ByteArrayOutputStream bytes = TreeFactory.ioFactory()
+				.createByteArrayOutputStream();
+
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			output.writeByte(PUT);
+			this.writeValue(output, TreeSnapshot.encodeId(parentId));
+			this.writeSubtree(output, element);
+		} catch (IOException exception) {
+			throw this.journalWrite();
+		}
+		this.append(bytes.toByteArray());
+	}
+
+	/*
+	 * The element was moved into the target, or into the root if the target
+	 * is null.
+	 */
+	void move(Object id, Object targetId) throws TreeException {
+		ByteArrayOutputStream bytes = TreeFactory.ioFactory()
+				.createByteArrayOutputStream();
+
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			output.writeByte(MOVE);
+			this.writeValue(output, TreeSnapshot.encodeId(id));
+			this.writeValue(output, TreeSnapshot.encodeId(targetId));
+		} catch (IOException exception) {
+			throw this.journalWrite();
+		}
+		this.append(bytes.toByteArray());
+	}
+
+	/*
+	 * The element was removed with its descendants.
+	 */
+	void delete(Object id) throws TreeException {
+		ByteArrayOutputStream bytes = TreeFactory.ioFactory()
+				.createByteArrayOutputStream();
+
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			output.writeByte(DELETE);
+			this.writeValue(output, TreeSnapshot.encodeId(id));
+		} catch (IOException exception) {
+			throw this.journalWrite();
+		}
+		this.append(bytes.toByteArray());
+	}
+
+	/*
+	 * The element, identified by its old id, was replaced by the updated one
+	 * with its descendants.
+	 */
+	<T> void replace(Object oldId, Element<T> element) throws TreeException {
+		ByteArrayOutputStream bytes = TreeFactory.ioFactory()
+				.createByteArrayOutputStream();
+
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			output.writeByte(REPLACE);
+			this.writeValue(output, TreeSnapshot.encodeId(oldId));
+			this.writeSubtree(output, element);
+		} catch (IOException exception) {
+			throw this.journalWrite();
+		}
+		this.append(bytes.toByteArray());
+	}
+
+	/*
+	 * Writes the session into a new snapshot and empties the journal.
+	 */
+	void compact() throws TreeException {
+		try {
+			this.writeSnapshot(this.epoch + 1);
+		} catch (IOException exception) {
+			throw this.journalWrite();
+		}
+	}
+
+	void close() throws TreeException {
+		try {
+			this.channel.force(Boolean.TRUE);
+			this.channel.close();
+		} catch (IOException exception) {
+			throw this.journalWrite();
+		}
+	}
+
+	/*
+	 * The new snapshot replaces the old one only when it is complete, and the
+	 * journal is emptied only after that.
+	 */
+	private void writeSnapshot(int nextEpoch) throws IOException {
+		Path temporary = this.snapshot.resolveSibling(
+				this.snapshot.getFileName() + ".tmp");
+
+		TreeFactory.utilFactory().createSnapshotWriter().write(this.session,
+				temporary, nextEpoch);
+		Files.move(temporary, this.snapshot,
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+
+		this.epoch = nextEpoch;
+		this.channel.truncate(0);
+		this.writeHeader();
+		this.channel.force(Boolean.TRUE);
+		this.unsynchronized = 0;
+	}
+
+	private void writeHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).putInt(this.epoch);
+		header.flip();
+
+		this.channel.position(0);
+		while (header.hasRemaining()) {
+			this.channel.write(header);
+		}
+	}
+
+	/*
+	 * While the changes of an operation are recorded to be undone, the
+	 * journal is not compacted, so it can be truncated back by the undo.
+	 */
+	private void append(byte[] body) throws TreeException {
+		TreeUndoLog undoLog = this.session.getUndoLog();
+		if (undoLog != null) {
+			undoLog.record(this);
+		}
+		
+		CRC32 crc = new CRC32();
+		crc.update(body, 0, body.length);
+
+		ByteBuffer record = ByteBuffer.allocate(8 + body.length);
+		record.putInt(body.length).putInt((int) crc.getValue()).put(body);
+		record.flip();
+
+		try {
+			while (record.hasRemaining()) {
+				this.channel.write(record);
+			}
+
+			if (++this.unsynchronized >= SYNC_BATCH) {
+				this.channel.force(Boolean.FALSE);
+				this.unsynchronized = 0;
+			}
+		} catch (IOException exception) {
+			throw this.journalWrite();
+		}
+
+		if (undoLog == null && this.channel.isOpen()
+				&& this.size() >= COMPACTION_SIZE) {
+			this.compact();
+		}
+	}
+
+	/*
+	 * Discards the records appended after the size. A journal which cannot
+	 * be truncated no longer matches its session, so it is closed and the
+	 * session stops journaling.
+	 */
+	void truncate(long size) {
+		try {
+			this.channel.truncate(size);
+			this.channel.position(size);
+		} catch (IOException exception) {
+			this.closeQuietly();
+			
+			if (this.session.getJournal() == this) {
+				this.session.setJournal(null);
+			}
+		}
+	}
+
+	long size() throws TreeException {
+		try {
+			return this.channel.size();
+		} catch (IOException exception) {
+			throw this.journalWrite();
+		}
+	}
+
+	/*
+	 * Applies the valid records, returning the end of the last one.
+	 */
+	private long replay() throws IOException, ClassNotFoundException,
+			TreeException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		this.channel.read(header, 0);
+
+		if (header.position() < HEADER_SIZE || header.getInt(0) != MAGIC
+				|| header.getInt(8) != this.epoch) {
+			/*
+			 * A new or an already compacted journal.
+			 */
+			this.channel.truncate(0);
+			this.writeHeader();
+			return HEADER_SIZE;
+		}
+
+		Map<Object, TreeElementCore<?>> elements = this.index();
+
+		this.channel.position(HEADER_SIZE);
+		DataInputStream input = new DataInputStream(new BufferedInputStream(
+				Channels.newInputStream(this.channel)));
+
+		long end = HEADER_SIZE;
+		while (true) {
+			byte[] body;
+			try {
+				int length = input.readInt();
+				int checksum = input.readInt();
+
+				if (length <= 0 || length > this.channel.size() - end) {
+					break;
+				}
+
+				body = new byte[length];
+				input.readFully(body);
+
+				CRC32 crc = new CRC32();
+				crc.update(body, 0, length);
+				if ((int) crc.getValue() != checksum) {
+					break;
+				}
+			} catch (EOFException exception) {
+				break;
+			}
+
+			this.apply(body, elements);
+			end += 8 + body.length;
+		}
+
+		this.session.save(this.session.tree());
+		return end;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> void apply(byte[] body,
+			Map<Object, TreeElementCore<?>> elements) throws IOException,
+			ClassNotFoundException, TreeException {
+		DataInputStream input = new DataInputStream(TreeFactory.ioFactory()
+				.createByteArrayInputStream(body));
+		TreeElementCore<T> root = (TreeElementCore<T>) this.session.tree();
+
+		byte type = input.readByte();
+		Object id = TreeSnapshot.decodeId(this.readValue(input));
+
+		if (type == PUT) {
+			TreeElementCore<T> parent = this.find(elements, id, root);
+			TreeElementCore<T> element = this.readSubtree(input);
+
+			this.index(elements, element, root);
+			parent.getChildren().add(element);
+		} else if (type == MOVE) {
+			Object targetId = TreeSnapshot.decodeId(this.readValue(input));
+			TreeElementCore<T> element = this.find(elements, id, null);
+			TreeElementCore<T> parent = this.find(elements,
+					element.getParent(), root);
+			TreeElementCore<T> target = this.find(elements, targetId, root);
+
+			parent.removeChild(element);
+			target.addChild(element);
+		} else if (type == DELETE) {
+			TreeElementCore<T> element = this.find(elements, id, null);
+			TreeElementCore<T> parent = this.find(elements,
+					element.getParent(), root);
+
+			parent.removeChild(element);
+			this.unindex(elements, element);
+		} else if (type == REPLACE) {
+			TreeElementCore<T> element = this.find(elements, id, null);
+			TreeElementCore<T> parent = this.find(elements,
+					element.getParent(), root);
+			this.unindex(elements, element);
+
+			TreeElementCore<T> replacement = this.readSubtree(input);
+			this.index(elements, replacement, root);
+
+			/*
+			 * The updated element keeps its position, unless it was moved
+			 * into another parent.
+			 */
+			TreeElementCore<T> newParent = this.find(elements,
+					replacement.getParent(), root);
+			if (newParent == parent) {
+				parent.replaceChild(element, replacement);
+			} else {
+				parent.getChildren().remove(element);
+				newParent.getChildren().add(replacement);
+			}
+		} else {
+			throw new IOException();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> TreeElementCore<T> find(
+			Map<Object, TreeElementCore<?>> elements, Object id,
+			TreeElementCore<T> defaultElement) throws IOException {
+		TreeElementCore<T> element = id == null ? null :
+			(TreeElementCore<T>) elements.get(id);
+
+		if (element == null && defaultElement == null) {
+			throw new IOException();
+		}
+		return element != null ? element : defaultElement;
+	}
+
+
+	/*
+	 * The root is not an element of the records, so it is not indexed.
+	 */
+	private Map<Object, TreeElementCore<?>> index() {
+		Map<Object, TreeElementCore<?>> elements = TreeFactory.mapFactory()
+				.createHashMap();
+		Element<?> root = this.session.tree();
+
+		for (Element<?> element : Recursion.toPlainList(root)) {
+			if (element != root && element.getId() != null) {
+				elements.put(element.getId(), (TreeElementCore<?>) element);
+			}
+		}
+		return elements;
+	}
+
+	/*
+	 * Indexes the elements read from a record. An element of the record which
+	 * is already in the tree was moved into the record subtree, as the updated
+	 * children of an element, so it is removed from its old parent.
+	 */
+	private <T> void index(Map<Object, TreeElementCore<?>> elements,
+			TreeElementCore<T> subtree, TreeElementCore<T> root)
+			throws IOException {
+		for (Element<T> element : Recursion.toPlainList(subtree)) {
+			@SuppressWarnings("unchecked")
+			TreeElementCore<T> previous = (TreeElementCore<T>) elements.get(
+					element.getId());
+
+			if (previous != null) {
+				TreeElementCore<T> parent = this.find(elements,
+						previous.getParent(), root);
+				parent.getChildren().remove(previous);
+				this.unindex(elements, previous);
+			}
+			elements.put(element.getId(), (TreeElementCore<?>) element);
+		}
+	}
+
+	/*
+	 * Removes the element and its descendants from the index and from the
+	 * cache of the session. Only the indexed instances are removed, since an
+	 * id may already be indexed for another element of the record.
+	 */
+	private void unindex(Map<Object, TreeElementCore<?>> elements,
+			TreeElementCore<?> element) {
+		if (this.session.get(element.getId()) == element) {
+			this.session.delete(element.getId());
+		}
+
+		for (Element<?> descendant : Recursion.toPlainList(element)) {
+			if (elements.get(descendant.getId()) == descendant) {
+				elements.remove(descendant.getId());
+			}
+		}
+	}
+
+	/*
+	 * The element and its descendants in pre-order, each one with the index of
+	 * its parent in the sequence.
+	 */
+	private <T> void writeSubtree(DataOutputStream output, Element<T> element)
+			throws IOException {
+		Collection<Element<T>> plainList = Recursion.toPlainList(element);
+
+		output.writeInt(plainList.size());
+
+		Deque<Iterator<Element<T>>> iterators = TreeFactory
+				.collectionFactory().createArrayDeque();
+		Deque<Integer> parents = TreeFactory.collectionFactory()
+				.createArrayDeque();
+
+		this.writeElement(output, element, -1);
+		iterators.push(element.getChildren().iterator());
+		parents.push(0);
+
+		int current = 1;
+		while (!iterators.isEmpty()) {
+			Iterator<Element<T>> iterator = iterators.peek();
+
+			if (!iterator.hasNext()) {
+				iterators.pop();
+				parents.pop();
+				continue;
+			}
+
+			Element<T> child = iterator.next();
+			this.writeElement(output, child, parents.peek());
+
+			iterators.push(child.getChildren().iterator());
+			parents.push(current++);
+		}
+	}
+
+	private <T> void writeElement(DataOutputStream output, Element<T> element,
+			int parentIndex) throws IOException {
+		Object wrappedNode = ((TreeElementCore<T>) element).getWrappedNode();
+
+		output.writeInt(parentIndex);
+		this.writeValue(output, TreeSnapshot.encodeId(element.getId()));
+		this.writeValue(output, TreeSnapshot.encodeId(element.getParent()));
+		this.writeValue(output, wrappedNode == null ? null :
+			TreeSnapshot.serialize(wrappedNode));
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> TreeElementCore<T> readSubtree(DataInputStream input)
+			throws IOException, ClassNotFoundException {
+		int count = input.readInt();
+		List<TreeElementCore<T>> subtree = TreeFactory.collectionFactory()
+				.createArrayList();
+
+		for (int i = 0; i < count; i++) {
+			int parentIndex = input.readInt();
+			Object id = TreeSnapshot.decodeId(this.readValue(input));
+			Object parentId = TreeSnapshot.decodeId(this.readValue(input));
+			byte[] node = this.readValue(input);
+
+			TreeElementCore<T> element = TreeFactory.serviceFactory()
+					.createElement(id, parentId, node == null ? null :
+						(T) TreeSnapshot.deserialize(node, 0, node.length),
+						this.session);
+
+			if (parentIndex >= 0) {
+				subtree.get(parentIndex).getChildren().add(element);
+			}
+			subtree.add(element);
+		}
+		return subtree.get(0);
+	}
+
+	private void writeValue(DataOutputStream output, byte[] value)
+			throws IOException {
+		if (value == null) {
+			output.writeInt(TreeSnapshot.NULL_NODE);
+			return;
+		}
+		output.writeInt(value.length);
+		output.write(value);
+	}
+
+	private byte[] readValue(DataInputStream input) throws IOException {
+		int length = input.readInt();
+
+		if (length == TreeSnapshot.NULL_NODE) {
+			return null;
+		}
+
+		byte[] value = new byte[length];
+		input.readFully(value);
+		return value;
+	}
+
+	private void closeQuietly() {
+		try {
+			if (this.channel != null) {
+				this.channel.close();
+			}
+		} catch (IOException exception) {
+			/*
+			 * The original error is the relevant one.
+			 */
+		}
+	}
+
+	private TreeException journalWrite() {
+		return TreeFactory.exceptionFactory().createTreeException(
+				TreeRepositoryMessage.JOURNAL_WRITE.getMessageError());
+	}
+}
@@ -1,15 +1,27 @@
 package com.madzera.happytree.core;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Collector;
 
 import com.madzera.happytree.Element;
 import com.madzera.happytree.TreeManager;
+import com.madzera.happytree.TreeQuery;
 import com.madzera.happytree.TreeSession;
 import com.madzera.happytree.TreeTransaction;
+import com.madzera.happytree.TreeVisitor;
 import com.madzera.happytree.exception.TreeException;
 
 @SuppressWarnings("unchecked")
@@ -28,474 +40,1113 @@ class TreeManagerCore implements TreeManager {
 	@Override
 	public <T> Element<T> cut(Element<T> from, Element<T> to)
 			throws TreeException {
-		/*
-		 * Input validation.
-		 */
-		validatorFacade.validateCutOperation(from, to);
+		Deque<Lock> locks = this.lock(Boolean.TRUE, this.session(from),
+				this.session(to));
+		TreeUndoLog undoLog = transaction.openUndoLog(this.currentSession(),
+				this.session(from), this.session(to));
+		
+		try {
+			/*
+			 * Input validation.
+			 */
+			validatorFacade.validateCutOperation(from, to);
+			transaction.unshareTree();
 
-		/*
-		 * Get both of sessions: source and target sessions.
-		 */
-		TreeSessionCore sourceSession = (TreeSessionCore) from.attachedTo();
-		TreeSessionCore targetSession = to != null ?
-				(TreeSessionCore) to.attachedTo() : null;
+			/*
+			 * Get both of sessions: source and target sessions.
+			 */
+			TreeSessionCore sourceSession = (TreeSessionCore) from.attachedTo();
+			TreeSessionCore targetSession = to != null ?
+					(TreeSessionCore) to.attachedTo() : null;
 		
-		/*
-		 * Get the source element.
-		 */
-		TreeElementCore<T> source = this.searchElement(from.getId());
+			/*
+			 * Get the source element.
+			 */
+			TreeElementCore<T> source = this.searchElement(from.getId());
 		
-		/*
-		 * Remove the element from the source parent.
-		 */
-		TreeElementCore<T> sourceParent = this.searchElement(source.getParent());
+			/*
+			 * Remove the element from the source parent.
+			 */
+			TreeElementCore<T> sourceParent = this.searchElement(
+					source.getParent());
 
-		/*
-		 * If the sourceParent is null, it means that the source element is
-		 * placed in the root level. In this case, remove it from the root
-		 * element. Otherwise, remove it from its parent element.
-		 */
-		if (sourceParent == null) {
-			Element<T> root = this.tree();
-			root.removeChild(source);
-		} else {
+			/*
+			 * If the sourceParent is null, it means that the source element is
+			 * placed in the root level. In this case, remove it from the root
+			 * element. Otherwise, remove it from its parent element.
+			 */
+			if (sourceParent == null) {
+				sourceParent = (TreeElementCore<T>) this.tree();
+			}
 			sourceParent.removeChild(source);
-		}
+			source.incrementVersion();
 		
-		/*
-		 * If the source and target are from different tree session, then swap
-		 * the transaction to the target session and add the source element into
-		 * the target element inside of the target session. Otherwise, insert
-		 * the source element into the target element (root or not) in the same
-		 * source session.
-		 */
-		TreeElementCore<T> target = null;
-		if (targetSession != null && !sourceSession.equals(targetSession)) {
-			transaction.rollbackElement(source);
-			
-			transaction.sessionCheckout(targetSession.getSessionId());
-			target = this.searchElement(to.getId());
+			/*
+			 * If the source and target are from different tree session, then
+			 * swap the transaction to the target session and add the source
+			 * element into the target element inside of the target session.
+			 * Otherwise, insert the source element into the target element
+			 * (root or not) in the same source session.
+			 */
+			TreeElementCore<T> target = null;
+			if (targetSession != null && !sourceSession.equals(targetSession)) {
+				transaction.rollbackElement(source);
+				transaction.commitRemoval(Collections.singletonList(
+						sourceParent));
 			
-			target.addChild(source);
-			source.changeSession(targetSession);
+				/*
+				 * Only this thread works on the target session, the current
+				 * session is not changed.
+				 */
+				TreeSessionCore currentSession = transaction.workOn(
+						targetSession);
+				try {
+					transaction.unshareTree();
+					target = this.searchElement(to.getId());
+				
+					target.addChild(source);
+					source.changeSession(targetSession);
+				
+					transaction.commitTransaction(source, target);
+					this.journalPut(target, source);
+				} finally {
+					transaction.workOn(currentSession);
+				}
 			
-			transaction.commitTransaction();
+				TreeJournal journal = transaction.refreshJournal();
+				if (journal != null) {
+					journal.delete(source.getId());
+				}
+			} else {
+				target = to != null ? (TreeElementCore<T>)
+						this.searchElement(to.getId()) : null;
 			
-			transaction.sessionCheckout(sourceSession.getSessionId());
-		} else {
-			target = to != null ? (TreeElementCore<T>)
-					this.searchElement(to.getId()) : null;
+				target = target == null ? (TreeElementCore<T>) this.tree() :
+					target;
 			
-			target = target == null ? (TreeElementCore<T>) this.tree() : target;
+				target.addChild(source);
 			
-			target.addChild(source);
+				transaction.commitTransaction(source, sourceParent, target);
 			
-			transaction.commitTransaction();
-		}
+				TreeJournal journal = transaction.refreshJournal();
+				if (journal != null) {
+					journal.move(source.getId(), target.isRoot() ? null :
+						target.getId());
+				}
+			}
 		
-		return source.cloneElement();
+			return source.cloneElement();
+		} catch (TreeException | RuntimeException exception) {
+			transaction.undo(undoLog);
+			throw exception;
+		} finally {
+			transaction.closeUndoLog(undoLog);
+			this.unlock(locks);
+		}
 	}
 
 	@Override
 	public <T> Element<T> cut(Object from, Object to) throws TreeException {
-		/*
-		 * Input validation.
-		 */
-		validatorFacade.validateCutOperation(from, to);
+		Deque<Lock> locks = this.lock(Boolean.TRUE);
+		
+		try {
+			/*
+			 * Input validation.
+			 */
+			validatorFacade.validateCutOperation(from, to);
 
-		Element<T> source = this.searchElement(from);
-		Element<T> target = this.searchElement(to);
+			Element<T> source = this.searchElement(from);
+			Element<T> target = this.searchElement(to);
 
-		return this.cut(source, target);
+			return this.cut(source, target);
+		} finally {
+			this.unlock(locks);
+		}
 	}
 
 	@Override
-	public <T> Element<T> copy(Element<T> from, Element<T> to)
+	public <T> Element<T> cut(Element<T> from, Element<T> to, long version)
 			throws TreeException {
-		/*
-		 * Input validation.
-		 */
-		validatorFacade.validateCopyOperation(from, to);
-
-		/*
-		 * Obtains both of sessions: source and target sessions.
-		 */
-		TreeSessionCore sourceSession = (TreeSessionCore) from.attachedTo();
-		TreeSessionCore targetSession = (TreeSessionCore) to.attachedTo();
-		
-		/*
-		 * Obtains the source element.
-		 */
-		TreeElementCore<T> source = this.searchElement(from.getId());
+		Deque<Lock> locks = this.lock(Boolean.TRUE, this.session(from),
+				this.session(to));
 		
-		/*
-		 * Clones the source element.
-		 */
-		TreeElementCore<T> clonedSource = source.cloneElement();
-		
-		/*
-		 * Checkout the target session.
-		 */
-		transaction.sessionCheckout(targetSession.getSessionId());
-		
-		TreeElementCore<T> target = this.searchElement(to.getId());
-		
-		/*
-		 * Setup the copy process.
-		 */
-		clonedSource.changeSession(targetSession);
-		target.addChild(clonedSource);
-		
-		/*
-		 * Save changes.
-		 */
-		transaction.commitTransaction();
-		transaction.sessionCheckout(sourceSession.getSessionId());
-		
-		return clonedSource.cloneElement();
+		try {
+			/*
+			 * The version is verified holding the lock of the session, so the
+			 * element cannot be changed until it is cut.
+			 */
+			validatorFacade.validateCutOperation(from, to, version);
+			
+			return this.cut(from, to);
+		} finally {
+			this.unlock(locks);
+		}
 	}
 
 	@Override
-	public <T> Element<T> removeElement(Element<T> element)
-			throws TreeException {
-		/*
-		 * Validates whether the current session is valid.
-		 */
-		validatorFacade.validateSessionTransaction();
-		
-		/*
-		 * The removed element to be returned.
-		 */
-		TreeElementCore<T> removedElement = null;
+	public void cutElements(Map<?, ?> elements) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.TRUE);
+		TreeUndoLog undoLog = transaction.openUndoLog(this.currentSession());
 		
-		if (element != null) {
-			
+		try {
 			/*
-			 * If the input is not null, this is necessary to valid it.
+			 * All entries are validated before any element is cut.
 			 */
-			validatorFacade.validateRemoveOperation(element);
+			validatorFacade.validateCutOperation(elements);
+			transaction.unshareTree();
 			
-			/*
-			 * Obtains the element and its parent element in the tree.
-			 */
-			removedElement = this.searchElement(element.getId());
-			TreeElementCore<T> parentElement = this.searchElement(
-					removedElement.getParent());
+			List<TreeElementCore<Object>> sources = TreeFactory
+					.collectionFactory().createArrayList();
+			List<TreeElementCore<Object>> targets = TreeFactory
+					.collectionFactory().createArrayList();
+			List<TreeElementCore<Object>> parents = TreeFactory
+					.collectionFactory().createArrayList();
 			
-			/*
-			 * Removes the element from its parent and from the cache.
-			 */
-			parentElement.removeChild(removedElement);
-			transaction.rollbackElement(removedElement);
+			for (Map.Entry<?, ?> entry : elements.entrySet()) {
+				TreeElementCore<Object> source = this.searchElement(
+						entry.getKey());
+				TreeElementCore<Object> sourceParent = this.searchElement(
+						source.getParent());
+				
+				if (sourceParent == null) {
+					sourceParent = (TreeElementCore<Object>) this.tree();
+				}
+				sourceParent.removeChild(source);
+				source.incrementVersion();
+				
+				TreeElementCore<Object> target = entry.getValue() != null ?
+						this.searchElement(entry.getValue()) : null;
+				
+				if (target == null) {
+					target = (TreeElementCore<Object>) this.tree();
+				}
+				target.addChild(source);
+				
+				sources.add(source);
+				targets.add(target);
+				parents.add(sourceParent);
+				parents.add(target);
+			}
 			
 			/*
-			 * Save changes.
+			 * Save changes once.
 			 */
-			transaction.commitTransaction();
+			transaction.commitTransaction(sources, parents);
+			
+			TreeJournal journal = transaction.refreshJournal();
+			if (journal != null) {
+				for (int i = 0; i < sources.size(); i++) {
+					TreeElementCore<Object> target = targets.get(i);
+					journal.move(sources.get(i).getId(), target.isRoot() ?
+							null : target.getId());
+				}
+			}
+		} catch (TreeException | RuntimeException exception) {
+			transaction.undo(undoLog);
+			throw exception;
+		} finally {
+			transaction.closeUndoLog(undoLog);
+			this.unlock(locks);
 		}
-		
-		/*
-		 * This is not necessary to return the cloned element because the
-		 * element is not attached in the tree session anymore.
-		 */
-		return removedElement;
 	}
 
 	@Override
-	public <T> Element<T> removeElement(Object id) throws TreeException {
-		validatorFacade.validateSessionTransaction();
+	public <T> Element<T> copy(Element<T> from, Element<T> to)
+			throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE, this.session(to));
+		TreeUndoLog undoLog = transaction.openUndoLog(this.session(to));
 		
-		Element<T> element = this.searchElement(id);
-		element = element != null && !((TreeElementCore<T>) element).isRoot() ? 
-				element : null;
-		return this.removeElement(element);
-	}
+		try {
+			/*
+			 * Input validation.
+			 */
+			validatorFacade.validateCopyOperation(from, to);
 
-	@Override
-	public <T> Element<T> getElementById(Object id) throws TreeException {
-		TreeElementCore<T> element = null;
+			/*
+			 * Obtains the target session.
+			 */
+			TreeSessionCore targetSession = (TreeSessionCore) to.attachedTo();
+		
+			/*
+			 * Obtains the source element.
+			 */
+			TreeElementCore<T> source = this.searchElement(from.getId());
+		
+			/*
+			 * Clones the source element.
+			 */
+			TreeElementCore<T> clonedSource = source.cloneSubtree();
 		
-		validatorFacade.validateSessionTransaction();
+			/*
+			 * Work on the target session, without checking it out, so the
+			 * other threads never see it as the current session.
+			 */
+			TreeSessionCore currentSession = transaction.workOn(
+					targetSession);
+			try {
+				transaction.unshareTree();
+			
+				TreeElementCore<T> target = this.searchElement(to.getId());
+			
+				/*
+				 * Setup the copy process.
+				 */
+				clonedSource.changeSession(targetSession);
+				target.addChild(clonedSource);
+			
+				/*
+				 * Save changes.
+				 */
+				transaction.commitTransaction(clonedSource, target);
+				this.journalPut(target, clonedSource);
+			} finally {
+				transaction.workOn(currentSession);
+			}
 		
-		if (id == null) {
-			return element;
+			return clonedSource.cloneElement();
+		} catch (TreeException | RuntimeException exception) {
+			transaction.undo(undoLog);
+			throw exception;
+		} finally {
+			transaction.closeUndoLog(undoLog);
+			this.unlock(locks);
 		}
-
-		element = this.searchElement(id);
-		return element != null ? element.cloneElement() : element;
 	}
 
 	@Override
-	public <T> boolean containsElement(Element<T> parent, Element<T> descendant)
+	public <T> Element<T> removeElement(Element<T> element)
 			throws TreeException {
-		/*
-		 * Validates whether the current session is valid.
-		 */
-		validatorFacade.validateSessionTransaction();
+		Deque<Lock> locks = this.lock(Boolean.TRUE);
+		TreeUndoLog undoLog = transaction.openUndoLog(this.currentSession());
 		
-		boolean containsChild = Boolean.FALSE;
+		try {
+			/*
+			 * Validates whether the current session is valid.
+			 */
+			validatorFacade.validateSessionWrite();
 		
-		/*
-		 * Null arguments must return false.
-		 */
-		if (parent == null || descendant == null) {
-			return containsChild;
-		}
+			/*
+			 * The removed element to be returned.
+			 */
+			TreeElementCore<T> removedElement = null;
 		
-		TreeElementCore<T> parentCore = (TreeElementCore<T>) parent;
-		TreeElementCore<T> childCore = (TreeElementCore<T>) descendant;
+			if (element != null) {
+			
+				/*
+				 * If the input is not null, this is necessary to valid it.
+				 */
+				validatorFacade.validateRemoveOperation(element);
+				transaction.unshareTree();
+			
+				/*
+				 * Obtains the element and its parent element in the tree.
+				 */
+				removedElement = this.searchElement(element.getId());
+				TreeElementCore<T> parentElement = this.searchElement(
+						removedElement.getParent());
+			
+				/*
+				 * Removes the element from its parent and from the cache.
+				 */
+				parentElement.removeChild(removedElement);
+				transaction.rollbackElement(removedElement);
+				removedElement.incrementVersion();
+			
+				/*
+				 * Save changes. The removed elements are already out of the
+				 * cache.
+				 */
+				transaction.commitTransaction(null, parentElement);
+			
+				TreeJournal journal = transaction.refreshJournal();
+				if (journal != null) {
+					journal.delete(removedElement.getId());
+				}
+			}
 		
-		/*
-		 * Detached elements must return false.
-		 */
-		if (!parentCore.getState().equals(ElementState.ATTACHED)
-				|| !childCore.getState().equals(ElementState.ATTACHED)) {
-			return containsChild;
+			/*
+			 * This is not necessary to return the cloned element because the
+			 * element is not attached in the tree session anymore.
+			 */
+			return removedElement;
+		} catch (TreeException | RuntimeException exception) {
+			transaction.undo(undoLog);
+			throw exception;
+		} finally {
+			transaction.closeUndoLog(undoLog);
+			this.unlock(locks);
 		}
-		
-		Element<T> parentElement = this.searchElement(parentCore.getId());
-		Element<T> childElement = this.searchElement(childCore.getId());
-		
-		containsChild = parentElement != null && childElement != null
-				&& parentElement.getElementById(childElement.getId()) != null;
-		
-		return containsChild;
 	}
 
 	@Override
-	public boolean containsElement(Object parent, Object descendant)
-			throws TreeException {
-		/*
-		 * Validates whether the current session is valid.
-		 */
-		validatorFacade.validateSessionTransaction();
-		boolean containsChild = Boolean.FALSE;
-		
-		/*
-		 * Null arguments must return false.
-		 */
-		if (parent == null || descendant == null) {
-			return containsChild;
-		}
+	public <T> Element<T> removeElement(Object id) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.TRUE);
 		
-		TreeElementCore<?> parentElement = this.searchElement(parent);
-		TreeElementCore<?> child = this.searchElement(descendant);
+		try {
+			validatorFacade.validateSessionWrite();
 		
-		/*
-		 * Not found elements must return false.
-		 */
-		if (parentElement == null || child == null) {
-			return containsChild;
+			Element<T> element = this.searchElement(id);
+			element = element != null
+					&& !((TreeElementCore<T>) element).isRoot() ? element :
+						null;
+			return this.removeElement(element);
+		} finally {
+			this.unlock(locks);
 		}
-		
-		return parentElement.getElementById(child.getId()) != null;
 	}
 
 	@Override
-	public boolean containsElement(Element<?> element) throws TreeException {
-		final Operation operation = Operation.CONTAINS;
-		
-		/*
-		 * Validates whether the current session is valid.
-		 */
-		validatorFacade.validateSessionTransaction();
-
-		boolean containsElement = Boolean.FALSE;
-		
-		TreeElementCore<?> source = (TreeElementCore<?>) element;
-		
-		TreeSession currentSession = getTransaction().currentSession();
+	public <T> Element<T> removeElement(Element<T> element, long version)
+			throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.TRUE);
 		
-		/*
-		 * If the input element does not belong to the current session and it is
-		 * not attached to the current tree session, then false must be
-		 * returned.
-		 */
-		if (source != null && currentSession.equals(source.attachedTo())) {
-			boolean isAttached = source.getState().canExecuteOperation(operation);
+		try {
+			validatorFacade.validateRemoveOperation(element, version);
 			
-			if (isAttached) {
-				containsElement = Boolean.TRUE;
-			}
+			return this.removeElement(element);
+		} finally {
+			this.unlock(locks);
 		}
-		
-		return containsElement;
 	}
 
 	@Override
-	public boolean containsElement(Object id) throws TreeException {
-		/*
-		 * Validates whether the current session is valid.
-		 */
-		validatorFacade.validateSessionTransaction();
+	public <T> List<Element<T>> removeElements(Collection<?> ids)
+			throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.TRUE);
+		TreeUndoLog undoLog = transaction.openUndoLog(this.currentSession());
 		
-		if (id == null) {
-			return Boolean.FALSE;
+		try {
+			validatorFacade.validateRemoveOperation(ids);
+			transaction.unshareTree();
+			
+			List<Element<T>> removedElements = TreeFactory.collectionFactory()
+					.createArrayList();
+			List<TreeElementCore<T>> parents = TreeFactory.collectionFactory()
+					.createArrayList();
+			
+			for (Object id : ids) {
+				/*
+				 * The descendants of an element already removed are not in
+				 * the cache anymore.
+				 */
+				TreeElementCore<T> removedElement = id != null ?
+						this.searchElement(id) : null;
+				
+				if (removedElement == null || removedElement.isRoot()) {
+					continue;
+				}
+				
+				TreeElementCore<T> parentElement = this.searchElement(
+						removedElement.getParent());
+				if (parentElement == null) {
+					parentElement = (TreeElementCore<T>) this.tree();
+				}
+				
+				parentElement.removeChild(removedElement);
+				transaction.rollbackElement(removedElement);
+				removedElement.incrementVersion();
+				
+				removedElements.add(removedElement);
+				parents.add(parentElement);
+			}
+			
+			/*
+			 * Save changes once. The removed elements are already out of the
+			 * cache.
+			 */
+			transaction.commitTransaction(Collections.emptyList(), parents);
+			
+			TreeJournal journal = transaction.refreshJournal();
+			if (journal != null) {
+				for (Element<T> removedElement : removedElements) {
+					journal.delete(removedElement.getId());
+				}
+			}
+			
+			return removedElements;
+		} catch (TreeException | RuntimeException exception) {
+			transaction.undo(undoLog);
+			throw exception;
+		} finally {
+			transaction.closeUndoLog(undoLog);
+			this.unlock(locks);
 		}
-
-		return this.searchElement(id) != null;
 	}
 
 	@Override
-	public <T> Element<T> createElement(Object id, Object parent,
-			T wrappedNode) throws TreeException {
-		/*
-		 * Input validation.
-		 */
-		validatorFacade.validateSessionTransaction();
-		validatorFacade.validateMandatory(id);
+	public <T> List<Element<T>> removeIf(Predicate<Element<T>> condition)
+			throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.TRUE);
+		TreeUndoLog undoLog = transaction.openUndoLog(this.currentSession());
 		
-		TreeSession session = getTransaction().currentSession();
-		return TreeFactory.serviceFactory().createElement(id, parent,
-				wrappedNode, session);
+		try {
+			/*
+			 * Validates whether the current session is valid.
+			 */
+			validatorFacade.validateSessionWrite();
+			
+			if (condition == null) {
+				return Collections.emptyList();
+			}
+			
+			transaction.unshareTree();
+			
+			List<Element<T>> removedElements = TreeFactory.collectionFactory()
+					.createArrayList();
+			List<TreeElementCore<T>> parents = TreeFactory.collectionFactory()
+					.createArrayList();
+			Deque<TreeElementCore<T>> pending = TreeFactory.collectionFactory()
+					.createArrayDeque();
+			pending.add((TreeElementCore<T>) this.tree());
+			
+			/*
+			 * Single traversal over the tree itself. The matching children are
+			 * pruned before going down, so their descendants are never
+			 * evaluated. In a lazy session only the loaded elements are
+			 * evaluated, so the children not loaded yet are not loaded by the
+			 * traversal.
+			 */
+			while (!pending.isEmpty()) {
+				TreeElementCore<T> parentElement = pending.poll();
+				if (parentElement.isUnloaded()) {
+					continue;
+				}
+				List<Element<T>> removedChildren = parentElement
+						.removeChildren(condition);
+				
+				for (Element<T> removedChild : removedChildren) {
+					TreeElementCore<T> removedElement =
+							(TreeElementCore<T>) removedChild;
+					
+					transaction.rollbackElement(removedElement);
+					removedElement.incrementVersion();
+					removedElements.add(removedElement);
+				}
+				if (!removedChildren.isEmpty()) {
+					parents.add(parentElement);
+				}
+				for (Element<T> child : parentElement.loadedChildren()) {
+					pending.add((TreeElementCore<T>) child);
+				}
+			}
+			
+			/*
+			 * Only the parents of the removed elements are cached again.
+			 */
+			transaction.commitRemoval(parents);
+			
+			TreeJournal journal = transaction.refreshJournal();
+			if (journal != null) {
+				for (Element<T> removedElement : removedElements) {
+					journal.delete(removedElement.getId());
+				}
+			}
+			
+			return removedElements;
+		} catch (TreeException | RuntimeException exception) {
+			transaction.undo(undoLog);
+			throw exception;
+		} finally {
+			transaction.closeUndoLog(undoLog);
+			this.unlock(locks);
+		}
 	}
 
 	@Override
-	public <T> Element<T> persistElement(Element<T> newElement)
-			throws TreeException {
-		/*
-		 * Input validation.
-		 */
-		validatorFacade.validatePersistOperation(newElement);
+	public <T> Element<T> getElementById(Object id) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
 		
-		/*
-		 * Clone the input element so as not to save real instances in the tree.
-		 */
-		newElement = ((TreeElementCore<T>) newElement).cloneElement();
+		try {
+			TreeElementCore<T> element = null;
 		
-		/*
-		 * Group the child and parent elements.
-		 */
-		TreeElementCore<T> parent = this.searchElement(newElement.getParent());
-		TreeElementCore<T> child = (TreeElementCore<T>) newElement;
+			validatorFacade.validateSessionTransaction();
 		
-		/*
-		 * If the parent referenced by @Parent annotation is not found, then
-		 * this element will be moved to the root level.
-		 */
-		if (parent == null) {
-			parent = (TreeElementCore<T>) this.tree();
-		}
-		parent.addChild(child);
+			if (id == null) {
+				return element;
+			}
 		
-		/*
-		 * Save changes.
-		 */
-		transaction.commitTransaction();
+			TreeSnapshotMapping mapping = transaction.refreshMapping();
+			if (mapping != null) {
+				int record = mapping.find(id);
+				return record < 0 ? null : this.mappedElement(mapping, record);
+			}
 
-		return child.cloneElement();
+			element = transaction.readElement(id);
+			return element != null ? transaction.adopt(element.cloneElement()) :
+				element;
+		} finally {
+			this.unlock(locks);
+		}
 	}
 
 	@Override
-	public <T> Element<T> updateElement(Element<T> element)	throws TreeException {
-		/*
-		 * Input validation.
-		 */
-		validatorFacade.validateUpdateOperation(element);
-		
-		TreeElementCore<T> updatedElement = (TreeElementCore<T>) element;
-		
-		TreeElementCore<T> source = this.searchElement(element.getId());
-		
-		Object oldParentId = source.getParent();
+	public <T> Element<T> getElementById(Object id, int depth)
+			throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
 		
-		/*
-		 * References the id of old parent.
-		 */
-		Object updatedParentId = updatedElement.getParent();
+		try {
+			validatorFacade.validateSessionTransaction();
 		
-		/*
-		 * There is a possibility of the element to be moved to the root level
-		 */
-		TreeElementCore<T> root = (TreeElementCore<T>) this.tree();
+			if (id == null) {
+				return null;
+			}
 		
-		/*
-		 * If there is a change to the parent of this element, then remove this
-		 * element from inside of its old parent and insert it inside of the
-		 * new parent one.
-		 */
-		if (!((TreeElementCore<T>) element).isRoot()
-				&& !oldParentId.equals(updatedParentId)) {
-			TreeElementCore<T> oldParent = (TreeElementCore<T>) this
-					.searchElement(oldParentId);
-			TreeElementCore<T> newParent = (TreeElementCore<T>) this
-					.searchElement(updatedParentId);
-			
 			/*
-			 * In a case of a non-existent or parent not found, then this
-			 * element will be moved to the root level.
+			 * The mapped elements already decode their children on demand.
 			 */
-			if (newParent == null) {
-				newParent = root;
+			TreeSnapshotMapping mapping = transaction.refreshMapping();
+			if (mapping != null) {
+				int record = mapping.find(id);
+				return record < 0 ? null : this.mappedElement(mapping, record);
 			}
-			
-			oldParent.removeChild(source);
-			newParent.addChild(source);
-			newParent.getChildren();
+
+			TreeElementCore<T> element = transaction.readElement(id);
+			return element != null ? transaction.adopt(element.cloneElement(
+					depth)) : element;
+		} finally {
+			this.unlock(locks);
 		}
+	}
+
+	@Override
+	public <T> Map<Object, Element<T>> getElementsById(Collection<?> ids,
+			boolean isShallow) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
 		
-		/*
-		 * This loop guarantees that the old child's parent removes the
-		 * reference from the child.
-		 */
-		for (Element<T> iterator : updatedElement.getChildren()) {
-			TreeElementCore<T> child = (TreeElementCore<T>) iterator;
-			Object oldParentChild = child.getOldParentId();
+		try {
+			validatorFacade.validateSessionTransaction();
+			validatorFacade.validateMandatory(ids);
 			
-			Element<T> oldParent = this.searchElement(oldParentChild);
+			Map<Object, Element<T>> result = TreeFactory.mapFactory()
+					.createLinkedHashMap();
 			
-			if (oldParent != null) {
-				List<Element<T>> childrenParent = (List<Element<T>>)
-						oldParent.getChildren();
-				Element<T> childParent = this.searchElement(child.getId());
-				childrenParent.remove(childParent);
-					
-				child.syncParentId();
+			TreeSnapshotMapping mapping = transaction.refreshMapping();
+			if (mapping != null) {
+				for (Object id : ids) {
+					int record = id != null ? mapping.find(id) : -1;
+					if (record >= 0) {
+						result.put(id, this.mappedElement(mapping, record));
+					}
+				}
+				return result;
 			}
-		}
-		
-		Collection<Element<T>> updatedChildren = updatedElement.getChildren();
-		Collection<Element<T>> sourceChildren = source.getChildren();
-		
-		/*
-		 * Update children.
-		 */
-		if (!updatedChildren.equals(sourceChildren)) {
-			for (Element<T> child : sourceChildren) {
-				child.setParent(null);
-				transaction.rollbackElement(child);
+			
+			List<TreeElementCore<T>> elements = TreeFactory
+					.collectionFactory().createArrayList();
+			for (Object id : ids) {
+				TreeElementCore<T> element = id != null ?
+						this.searchElement(id) : null;
+				if (element != null && result.put(id, element) == null) {
+					elements.add(element);
+				}
+			}
+			
+			/*
+			 * The ancestors are copied first, recording the copies of the
+			 * requested elements found inside of their subtrees.
+			 */
+			Map<Element<?>, Element<?>> clones = TreeFactory.mapFactory()
+					.createIdentityHashMap();
+			if (!isShallow) {
+				elements.sort(Comparator.comparingInt(Element::getDepth));
+				for (TreeElementCore<T> element : elements) {
+					clones.put(element, null);
+				}
+			}
+			
+			for (TreeElementCore<T> element : elements) {
+				if (isShallow) {
+					clones.put(element, element.cloneElement(0));
+				} else if (clones.get(element) == null) {
+					element.cloneElement(clones);
+				}
 			}
-			sourceChildren.clear();
-			sourceChildren.addAll(updatedElement.getChildren());
+			
+			result.replaceAll((id, element) -> (Element<T>) clones.get(
+					element));
+			
+			return result;
+		} finally {
+			this.unlock(locks);
 		}
+	}
 
-		/* Update the wrapped node of the element and all of its descendants. */
-		this.updateWrappedNodeDescendants(updatedElement, source);
+	@Override
+	public <T> boolean containsElement(Element<T> parent, Element<T> descendant)
+			throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
 		
-		/*
-		 * Obtains the id to be updated. If it is not null then implies that
-		 * there is a change in the id attribute.
-		 */
-		Object updatedId = updatedElement.getUpdatedId();
+		try {
+			/*
+			 * Validates whether the current session is valid.
+			 */
+			validatorFacade.validateSessionTransaction();
 		
-		/*
-		 * If there is a change to the element id, refresh the id and reference
-		 * the parent of each child element for this one.
-		 */
-		if (updatedId != null) {
-			source.mergeUpdatedId(updatedId);
+			boolean containsChild = Boolean.FALSE;
+		
+			/*
+			 * Null arguments must return false.
+			 */
+			if (parent == null || descendant == null) {
+				return containsChild;
+			}
+		
+			if (transaction.refreshMapping() != null) {
+				return this.containsElement(parent.getId(), descendant.getId());
+			}
+		
+			TreeElementCore<T> parentCore = (TreeElementCore<T>) parent;
+			TreeElementCore<T> childCore = (TreeElementCore<T>) descendant;
+		
+			/*
+			 * Detached elements must return false.
+			 */
+			if (!parentCore.getState().equals(ElementState.ATTACHED)
+					|| !childCore.getState().equals(ElementState.ATTACHED)) {
+				return containsChild;
+			}
+		
+			Element<T> parentElement = this.searchElement(parentCore.getId());
+			Element<T> childElement = this.searchElement(childCore.getId());
+		
+			containsChild = parentElement != null && childElement != null
+					&& parentElement.getElementById(childElement.getId())
+					!= null;
+		
+			return containsChild;
+		} finally {
+			this.unlock(locks);
 		}
+	}
+
+	@Override
+	public boolean containsElement(Object parent, Object descendant)
+			throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
 		
-		source.syncParentId();
+		try {
+			/*
+			 * Validates whether the current session is valid.
+			 */
+			validatorFacade.validateSessionTransaction();
+			boolean containsChild = Boolean.FALSE;
 		
-		/*
-		 * Save changes in the root element. There is a possibility of the 
-		 * element to be moved to the root level. So, this is necessary to
-		 * invoke this method instead commitTransaction().
-		 */
-		transaction.commitElement(root);
+			/*
+			 * Null arguments must return false.
+			 */
+			if (parent == null || descendant == null) {
+				return containsChild;
+			}
+		
+			TreeSnapshotMapping mapping = transaction.refreshMapping();
+			if (mapping != null) {
+				int parentRecord = mapping.find(parent);
+				return parentRecord >= 0 && mapping.isDescendant(parentRecord,
+						mapping.find(descendant));
+			}
+		
+			TreeElementCore<?> parentElement = this.searchElement(parent);
+			TreeElementCore<?> child = this.searchElement(descendant);
+		
+			/*
+			 * Not found elements must return false.
+			 */
+			if (parentElement == null || child == null) {
+				return containsChild;
+			}
 		
-		return source.cloneElement();
+			return parentElement.getElementById(child.getId()) != null;
+		} finally {
+			this.unlock(locks);
+		}
+	}
+
+	@Override
+	public boolean containsElement(Element<?> element) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
+		
+		try {
+			final Operation operation = Operation.CONTAINS;
+		
+			/*
+			 * Validates whether the current session is valid.
+			 */
+			validatorFacade.validateSessionTransaction();
+
+			boolean containsElement = Boolean.FALSE;
+		
+			TreeSession currentSession = getTransaction().currentSession();
+		
+			/*
+			 * The elements of a mapped session are always attached.
+			 */
+			if (element instanceof MappedElement<?>) {
+				return currentSession.equals(element.attachedTo());
+			}
+		
+			TreeElementCore<?> source = (TreeElementCore<?>) element;
+		
+			/*
+			 * If the input element does not belong to the current session and
+			 * it is not attached to the current tree session, then false must
+			 * be returned.
+			 */
+			if (source != null && currentSession.equals(source.attachedTo())) {
+				boolean isAttached = source.getState().canExecuteOperation(
+						operation);
+			
+				if (isAttached) {
+					containsElement = Boolean.TRUE;
+				}
+			}
+		
+			return containsElement;
+		} finally {
+			this.unlock(locks);
+		}
+	}
+
+	@Override
+	public boolean containsElement(Object id) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
+		
+		try {
+			/*
+			 * Validates whether the current session is valid.
+			 */
+			validatorFacade.validateSessionTransaction();
+		
+			if (id == null) {
+				return Boolean.FALSE;
+			}
+		
+			TreeSnapshotMapping mapping = transaction.refreshMapping();
+			if (mapping != null) {
+				return mapping.find(id) >= 0;
+			}
+
+			return transaction.readElement(id) != null;
+		} finally {
+			this.unlock(locks);
+		}
+	}
+
+	@Override
+	public <T> Element<T> createElement(Object id, Object parent,
+			T wrappedNode) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
+		
+		try {
+			/*
+			 * Input validation.
+			 */
+			validatorFacade.validateSessionTransaction();
+			validatorFacade.validateMandatory(id);
+		
+			TreeSession session = getTransaction().currentSession();
+			return TreeFactory.serviceFactory().createElement(id, parent,
+					wrappedNode, session);
+		} finally {
+			this.unlock(locks);
+		}
+	}
+
+	@Override
+	public <T> Element<T> persistElement(Element<T> newElement)
+			throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.TRUE);
+		TreeUndoLog undoLog = transaction.openUndoLog(this.currentSession());
+		
+		try {
+			/*
+			 * Input validation.
+			 */
+			validatorFacade.validatePersistOperation(newElement);
+			transaction.unshareTree();
+		
+			/*
+			 * Clone the input element so as not to save real instances in the
+			 * tree.
+			 */
+			newElement = ((TreeElementCore<T>) newElement).cloneElement();
+		
+			/*
+			 * Group the child and parent elements.
+			 */
+			TreeElementCore<T> parent = this.searchElement(
+					newElement.getParent());
+			TreeElementCore<T> child = (TreeElementCore<T>) newElement;
+		
+			/*
+			 * If the parent referenced by @Parent annotation is not found, then
+			 * this element will be moved to the root level.
+			 */
+			if (parent == null) {
+				parent = (TreeElementCore<T>) this.tree();
+			}
+			parent.addChild(child);
+		
+			/*
+			 * Save changes.
+			 */
+			transaction.commitTransaction(child, parent);
+			this.journalPut(parent, child);
+
+			return child.cloneElement();
+		} catch (TreeException | RuntimeException exception) {
+			transaction.undo(undoLog);
+			throw exception;
+		} finally {
+			transaction.closeUndoLog(undoLog);
+			this.unlock(locks);
+		}
+	}
+
+	@Override
+	public <T> void persistElements(Collection<Element<T>> newElements)
+			throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.TRUE);
+		TreeUndoLog undoLog = transaction.openUndoLog(this.currentSession());
+		
+		try {
+			/*
+			 * The elements are validated as a set before any of them is
+			 * persisted.
+			 */
+			validatorFacade.validatePersistOperation(newElements);
+			transaction.unshareTree();
+			
+			List<TreeElementCore<T>> children = TreeFactory
+					.collectionFactory().createArrayList();
+			List<TreeElementCore<T>> parents = TreeFactory
+					.collectionFactory().createArrayList();
+			
+			/*
+			 * The elements persisted by this batch are only cached at the end,
+			 * so they are found by their ids here.
+			 */
+			Map<Object, TreeElementCore<T>> persisted = TreeFactory
+					.mapFactory().createHashMap();
+			
+			for (Element<T> newElement : newElements) {
+				TreeElementCore<T> child = ((TreeElementCore<T>) newElement)
+						.cloneElement();
+				
+				TreeElementCore<T> parent = persisted.get(child.getParent());
+				if (parent == null) {
+					parent = this.searchElement(child.getParent());
+				}
+				if (parent == null) {
+					parent = (TreeElementCore<T>) this.tree();
+				}
+				parent.addChild(child);
+				
+				for (Element<T> element : Recursion.toPlainList(child)) {
+					persisted.put(element.getId(),
+							(TreeElementCore<T>) element);
+				}
+				
+				children.add(child);
+				parents.add(parent);
+			}
+			
+			/*
+			 * Save changes once.
+			 */
+			transaction.commitTransaction(children, parents);
+			
+			for (int i = 0; i < children.size(); i++) {
+				this.journalPut(parents.get(i), children.get(i));
+			}
+		} catch (TreeException | RuntimeException exception) {
+			transaction.undo(undoLog);
+			throw exception;
+		} finally {
+			transaction.closeUndoLog(undoLog);
+			this.unlock(locks);
+		}
+	}
+
+	@Override
+	public <T> Element<T> updateElement(Element<T> element)	throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.TRUE);
+		TreeUndoLog undoLog = transaction.openUndoLog(this.currentSession());
+		
+		try {
+			/*
+			 * Input validation.
+			 */
+			validatorFacade.validateUpdateOperation(element);
+			transaction.unshareTree();
+		
+			TreeElementCore<T> updatedElement = (TreeElementCore<T>) element;
+		
+			TreeElementCore<T> source = this.searchElement(element.getId());
+		
+			/*
+			 * The journal identifies the updated element by its old id.
+			 */
+			Object sourceId = source.getId();
+		
+			Object oldParentId = source.getParent();
+		
+			/*
+			 * References the id of old parent.
+			 */
+			Object updatedParentId = updatedElement.getParent();
+		
+			/*
+			 * There is a possibility of the element to be moved to the root
+			 * level
+			 */
+			TreeElementCore<T> root = (TreeElementCore<T>) this.tree();
+		
+			/*
+			 * The parents changed by moving this element, if it is moved, and
+			 * the ones which its new children are removed from.
+			 */
+			List<TreeElementCore<T>> parents = TreeFactory.collectionFactory()
+					.createArrayList();
+		
+			/*
+			 * If there is a change to the parent of this element, then remove
+			 * this element from inside of its old parent and insert it inside
+			 * of the new parent one.
+			 */
+			if (!((TreeElementCore<T>) element).isRoot()
+					&& !oldParentId.equals(updatedParentId)) {
+				TreeElementCore<T> oldParent = (TreeElementCore<T>) this
+						.searchElement(oldParentId);
+				TreeElementCore<T> newParent = (TreeElementCore<T>) this
+						.searchElement(updatedParentId);
+			
+				/*
+				 * In a case of a non-existent or parent not found, then this
+				 * element will be moved to the root level.
+				 */
+				if (newParent == null) {
+					newParent = root;
+				}
+			
+				oldParent.removeChild(source);
+				newParent.addChild(source);
+				newParent.getChildren();
+				
+				parents.add(oldParent);
+				parents.add(newParent);
+			}
+		
+			/*
+			 * This loop guarantees that the old child's parent removes the
+			 * reference from the child.
+			 */
+			for (Element<T> iterator : updatedElement.getChildren()) {
+				TreeElementCore<T> child = (TreeElementCore<T>) iterator;
+				Object oldParentChild = child.getOldParentId();
+			
+				TreeElementCore<T> oldParent = this.searchElement(
+						oldParentChild);
+			
+				if (oldParent != null) {
+					Element<T> childParent = this.searchElement(child.getId());
+					oldParent.getChildren().remove(childParent);
+					
+					child.syncParentId();
+					parents.add(oldParent);
+				}
+			}
+		
+			Collection<Element<T>> updatedChildren = updatedElement
+					.getChildren();
+			Collection<Element<T>> sourceChildren = source.getChildren();
+		
+			/*
+			 * Update children.
+			 */
+			if (!updatedChildren.equals(sourceChildren)) {
+				for (Element<T> child : sourceChildren) {
+					child.setParent(null);
+					transaction.rollbackElement(child);
+				}
+				sourceChildren.clear();
+				sourceChildren.addAll(updatedElement.getChildren());
+			}
+
+			/*
+			 * Update the wrapped node of the element and all of its
+			 * descendants.
+			 */
+			this.updateWrappedNodeDescendants(updatedElement, source);
+		
+			/*
+			 * Obtains the id to be updated. If it is not null then implies that
+			 * there is a change in the id attribute.
+			 */
+			Object updatedId = updatedElement.getUpdatedId();
+		
+			/*
+			 * If there is a change to the element id, refresh the id and
+			 * reference the parent of each child element for this one.
+			 */
+			if (updatedId != null) {
+				Object oldId = source.getId();
+				source.mergeUpdatedId(updatedId);
+
+				/*
+				 * The parent indexes its children by id, so it needs to know
+				 * that this child has a new one.
+				 */
+				TreeElementCore<T> parent = this.searchElement(
+						source.getParent());
+				if (parent == null) {
+					parent = root;
+				}
+				parent.reindexChild(oldId, source);
+			}
+		
+			source.syncParentId();
+		
+			/*
+			 * Save changes. The element and its new children are all inside of
+			 * the updated element, even if it was moved to the root level.
+			 */
+			transaction.commitTransaction(Collections.singletonList(source),
+					parents);
+		
+			TreeJournal journal = transaction.refreshJournal();
+			if (journal != null) {
+				/*
+				 * The root is not an element of the journal records.
+				 */
+				if (source.isRoot()) {
+					journal.compact();
+				} else {
+					journal.replace(sourceId, source);
+				}
+			}
+		
+			return source.cloneElement();
+		} catch (TreeException | RuntimeException exception) {
+			transaction.undo(undoLog);
+			throw exception;
+		} finally {
+			transaction.closeUndoLog(undoLog);
+			this.unlock(locks);
+		}
+	}
+
+	@Override
+	public <T> Element<T> updateElement(Element<T> element, long version)
+			throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.TRUE);
+		
+		try {
+			validatorFacade.validateUpdateOperation(element, version);
+			
+			return this.updateElement(element);
+		} finally {
+			this.unlock(locks);
+		}
 	}
 
 	@Override
@@ -505,81 +1156,699 @@ class TreeManagerCore implements TreeManager {
 
 	@Override
 	public <T> Element<T> root() throws TreeException {
-		/*
-		 * Validates whether the current session is valid.
-		 */
-		validatorFacade.validateSessionTransaction();
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
 		
-		/*
-		 * Obtains the root of the tree.
-		 */
-		TreeElementCore<T> root = (TreeElementCore<T>) this.tree();
+		try {
+			/*
+			 * Validates whether the current session is valid.
+			 */
+			validatorFacade.validateSessionTransaction();
+		
+			if (transaction.refreshMapping() != null) {
+				return getTransaction().currentSession().tree();
+			}
 		
-		return root.cloneElement();
+			/*
+			 * Obtains the root of the tree.
+			 */
+			TreeElementCore<T> root = transaction.read();
+		
+			return transaction.adopt(root.cloneElement());
+		} finally {
+			this.unlock(locks);
+		}
+	}
+
+	@Override
+	public <T> Element<T> root(int depth) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
+		
+		try {
+			/*
+			 * Validates whether the current session is valid.
+			 */
+			validatorFacade.validateSessionTransaction();
+		
+			if (transaction.refreshMapping() != null) {
+				return getTransaction().currentSession().tree();
+			}
+		
+			TreeElementCore<T> root = transaction.read();
+		
+			return transaction.adopt(root.cloneElement(depth));
+		} finally {
+			this.unlock(locks);
+		}
+	}
+	
+	@Override
+	public void evictChildren(Object id) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.TRUE);
+		
+		try {
+			/*
+			 * Validates whether the current session is valid.
+			 */
+			validatorFacade.validateSessionWrite();
+			
+			TreeElementCore<?> element = id != null ? this.searchElement(id) :
+				null;
+			if (element == null) {
+				return;
+			}
+			
+			/*
+			 * The evicted elements are not changed, so neither the tree needs
+			 * to be copied nor the journal records them.
+			 */
+			for (Element<?> evicted : element.evictChildren()) {
+				transaction.rollbackElement(evicted);
+			}
+			transaction.commitRemoval(Collections.singletonList(element));
+		} finally {
+			this.unlock(locks);
+		}
+	}
+
+	@Override
+	public TreeSession snapshot() throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
+		
+		try {
+			/*
+			 * Validates whether the current session is valid.
+			 */
+			validatorFacade.validateSessionTransaction();
+		
+			TreeSessionCore session = (TreeSessionCore) getTransaction()
+					.currentSession();
+		
+			return session.version();
+		} finally {
+			this.unlock(locks);
+		}
 	}
 
 	@Override
 	public <T> List<Element<T>> search(Predicate<Element<T>> condition) 
 			throws TreeException {
-		/*
-		 * Validates whether the current session is valid.
-		 */
-		validatorFacade.validateSessionTransaction();
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
+		
+		try {
+			/*
+			 * Validates whether the current session is valid.
+			 */
+			validatorFacade.validateSessionTransaction();
+
+			if (condition == null) {
+				return Collections.emptyList();
+			}
 
-		if (condition == null) {
-			return Collections.emptyList();
+			Element<T> root = this.root();
+
+			return root.search(condition);
+		} finally {
+			this.unlock(locks);
 		}
+	}
+
+	@Override
+	public <T> List<Element<T>> elementsAtDepth(int depth)
+			throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
+		
+		try {
+			/*
+			 * Validates whether the current session is valid.
+			 */
+			validatorFacade.validateSessionTransaction();
+		
+			TreeSnapshotMapping mapping = transaction.refreshMapping();
+			if (mapping != null) {
+				List<Element<T>> result = TreeFactory.collectionFactory()
+						.createArrayList();
+			
+				for (int record = 0; record < mapping.count(); record++) {
+					if (mapping.depth(record) == depth) {
+						result.add(this.mappedElement(mapping, record));
+					}
+				}
+				return result;
+			}
 
-		Element<T> root = this.root();
+			Collection<TreeElementCore<T>> level = transaction.refreshLevel(
+					depth);
 
-		return root.search(condition);
+			return this.cloneElements(level);
+		} finally {
+			this.unlock(locks);
+		}
 	}
 
 	@Override
-	public <T> void apply(Consumer<Element<T>> action) throws TreeException {
-		/*
-		 * Validates whether the current session is valid.
-		 */
-		validatorFacade.validateSessionTransaction();
+	public <T> List<Element<T>> leaves() throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
+		
+		try {
+			/*
+			 * Validates whether the current session is valid.
+			 */
+			validatorFacade.validateSessionTransaction();
+		
+			TreeSnapshotMapping mapping = transaction.refreshMapping();
+			if (mapping != null) {
+				List<Element<T>> result = TreeFactory.collectionFactory()
+						.createArrayList();
+			
+				for (int record = 0; record < mapping.count(); record++) {
+					if (mapping.descendants(record) == 0) {
+						result.add(this.mappedElement(mapping, record));
+					}
+				}
+				return result;
+			}
 
-		if (action == null) {
-			return;
+			Collection<TreeElementCore<T>> leaves = transaction.refreshLeaves();
+			List<Element<T>> result = TreeFactory.collectionFactory()
+					.createArrayList();
+
+			/*
+			 * The leaves have no children to be copied.
+			 */
+			for (TreeElementCore<T> leaf : leaves) {
+				result.add(leaf.cloneElement(0));
+			}
+			return result;
+		} finally {
+			this.unlock(locks);
+		}
+	}
+
+	@Override
+	public void createIndex(String attribute, boolean isSorted)
+			throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.TRUE);
+		
+		try {
+			/*
+			 * Validates whether the attribute can be indexed in the current
+			 * session.
+			 */
+			validatorFacade.validateIndexCreation(attribute, isSorted);
+			
+			transaction.createIndex(attribute, isSorted);
+		} finally {
+			this.unlock(locks);
+		}
+	}
+	
+	@Override
+	public <T> List<Element<T>> findBy(String attribute, Object value)
+			throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
+		
+		try {
+			/*
+			 * Validates whether the attribute is indexed in the current
+			 * session.
+			 */
+			validatorFacade.validateIndexQuery(attribute, Boolean.FALSE);
+			
+			TreeIndex index = transaction.readIndex(attribute);
+			List<TreeElementCore<T>> found = index.read(value);
+			
+			return this.cloneElements(found);
+		} finally {
+			this.unlock(locks);
+		}
+	}
+	
+	@Override
+	public <T> List<Element<T>> findRange(String attribute, Object from,
+			Object to) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
+		
+		try {
+			/*
+			 * Validates whether the attribute has a sorted index in the current
+			 * session.
+			 */
+			validatorFacade.validateIndexQuery(attribute, Boolean.TRUE);
+			
+			TreeIndex index = transaction.readIndex(attribute);
+			List<TreeElementCore<T>> found = index.read(from, to);
+			
+			return this.cloneElements(found);
+		} finally {
+			this.unlock(locks);
 		}
+	}
+	
+	@Override
+	public void createTextIndex(String attribute) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.TRUE);
+		
+		try {
+			/*
+			 * Validates whether the words of the attribute can be indexed in
+			 * the current session.
+			 */
+			validatorFacade.validateTextIndexCreation(attribute);
+			
+			transaction.createTextIndex(attribute);
+		} finally {
+			this.unlock(locks);
+		}
+	}
+
+	@Override
+	public <T> void apply(Consumer<Element<T>> action) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.TRUE);
+		TreeUndoLog undoLog = transaction.openUndoLog(this.currentSession());
+		
+		try {
+			/*
+			 * Validates whether the current session is valid.
+			 */
+			validatorFacade.validateSessionWrite();
+
+			if (action == null) {
+				return;
+			}
+
+			transaction.unshareTree();
 
-		Element<T> root = this.root();
-		root.apply(action);
+			Element<T> root = this.root();
+			root.apply(action);
 		
-		Element<T> originalRoot = this.tree();
+			Element<T> originalRoot = this.tree();
 
-		this.updateWrappedNodeDescendants(root, originalRoot);
-		transaction.commitElement(originalRoot);
+			this.updateWrappedNodeDescendants(root, originalRoot);
+			transaction.commitTransaction(originalRoot);
+			this.journalAll();
+		} catch (TreeException | RuntimeException exception) {
+			transaction.undo(undoLog);
+			throw exception;
+		} finally {
+			transaction.closeUndoLog(undoLog);
+			this.unlock(locks);
+		}
 	}
 
 	@Override
 	public <T> void apply(Consumer<Element<T>> action,
 			Predicate<Element<T>> condition) throws TreeException {
-		/*
-		 * Validates whether the current session is valid.
-		 */
-		validatorFacade.validateSessionTransaction();
+		Deque<Lock> locks = this.lock(Boolean.TRUE);
+		TreeUndoLog undoLog = transaction.openUndoLog(this.currentSession());
+		
+		try {
+			/*
+			 * Validates whether the current session is valid.
+			 */
+			validatorFacade.validateSessionWrite();
 
-		if (action == null || condition == null) {
-			return;
+			if (action == null || condition == null) {
+				return;
+			}
+
+			transaction.unshareTree();
+
+			Element<T> root = this.root();
+			root.apply(action, condition);
+
+			Element<T> originalRoot = this.tree();
+	
+			this.updateWrappedNodeDescendants(root, originalRoot);
+			transaction.commitTransaction(originalRoot);
+			this.journalAll();
+		} catch (TreeException | RuntimeException exception) {
+			transaction.undo(undoLog);
+			throw exception;
+		} finally {
+			transaction.closeUndoLog(undoLog);
+			this.unlock(locks);
 		}
+	}
+	
+	@Override
+	public <T> void traverse(TreeVisitor<T> visitor) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
+		
+		try {
+			/*
+			 * Validates whether the current session is valid.
+			 */
+			validatorFacade.validateSessionTransaction();
 
-		Element<T> root = this.root();
-		root.apply(action, condition);
+			if (visitor == null) {
+				return;
+			}
 
-		Element<T> originalRoot = this.tree();
+			this.visitDescendants(null, visitor);
+		} finally {
+			this.unlock(locks);
+		}
+	}
+	
+	@Override
+	public <T> List<Element<T>> topK(Object id,
+			Comparator<Element<T>> comparator, int k) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
+		
+		try {
+			/*
+			 * Validates whether the current session is valid, the comparator
+			 * is defined and k is not negative.
+			 */
+			validatorFacade.validateTopK(comparator, k);
+			
+			return this.rank(id, element -> element, comparator, k);
+		} finally {
+			this.unlock(locks);
+		}
+	}
+	
+	@Override
+	public <T, K> List<Element<T>> topK(Object id,
+			Function<? super T, ? extends K> key,
+			Comparator<? super K> comparator, int k) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
+		
+		try {
+			/*
+			 * Validates whether the current session is valid, the key and the
+			 * comparator are defined and k is not negative.
+			 */
+			validatorFacade.validateTopK(key, comparator, k);
+			
+			return this.<T, K>rank(id, element -> key.apply(
+					this.readWrappedNode(element)), comparator, k);
+		} finally {
+			this.unlock(locks);
+		}
+	}
+	
+	@Override
+	public <T, A, R> R aggregate(Object id,
+			Collector<? super T, A, R> collector) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
+		
+		try {
+			/*
+			 * Validates whether the current session is valid and the
+			 * collector is defined.
+			 */
+			validatorFacade.validateAggregate(collector);
+			
+			A container = collector.supplier().get();
+			BiConsumer<A, ? super T> accumulator = collector.accumulator();
+			
+			/*
+			 * Only the wrapped nodes are accumulated, so the elements of the
+			 * session are never handed to the collector.
+			 */
+			this.<T>visitDescendants(id, element -> {
+				accumulator.accept(container, this.readWrappedNode(element));
+				return TreeVisitor.Result.CONTINUE;
+			});
+			return collector.finisher().apply(container);
+		} finally {
+			this.unlock(locks);
+		}
+	}
 	
-		this.updateWrappedNodeDescendants(root, originalRoot);
-		transaction.commitElement(originalRoot);
+	@Override
+	public <T> TreeQuery<T> query() {
+		return TreeFactory.serviceFactory().createQuery(this);
+	}
+	
+	/*
+	 * Executes TreeQuery.list() over the current session.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> List<Element<T>> execute(TreeQueryCore<T> query) throws TreeException {
+		Deque<Lock> locks = this.lock(Boolean.FALSE);
+		
+		try {
+			/*
+			 * Validates whether the current session is valid and the
+			 * attributes of the query can be read.
+			 */
+			validatorFacade.validateQueryExecution(query);
+			
+			List<Element<T>> found = transaction.compile(query).execute();
+			
+			/*
+			 * The mapped elements are not in the heap, so they are not copied.
+			 */
+			List<Element<T>> result = TreeFactory.collectionFactory()
+					.createArrayList();
+			for (Element<T> element : found) {
+				result.add(element instanceof TreeElementCore ?
+						((TreeElementCore<T>) element).cloneElement() :
+							element);
+			}
+			return result;
+		} finally {
+			this.unlock(locks);
+		}
 	}
 	
 	static TreeManager getTreeManagerInstance() {
 		return TreeFactory.serviceFactory().createTreeManagerCore();
 	}
 	
+	/*
+	 * Copies the elements from the tree to be returned to the API client.
+	 */
+	private <T> List<Element<T>> cloneElements(
+			Collection<TreeElementCore<T>> elements) {
+		List<Element<T>> result = TreeFactory.collectionFactory()
+				.createArrayList();
+
+		for (TreeElementCore<T> element : elements) {
+			result.add(transaction.adopt(element.cloneElement()));
+		}
+		return result;
+	}
+	
+	/*
+	 * Journals the element added into the target, if the session of the target
+	 * is journaled. The session of the target must be the current one.
+	 */
+	private <T> void journalPut(TreeElementCore<T> target,
+			TreeElementCore<T> element) throws TreeException {
+		TreeJournal journal = transaction.refreshJournal();
+		
+		if (journal != null) {
+			journal.put(target.isRoot() ? null : target.getId(), element);
+		}
+	}
+	
+	/*
+	 * The whole tree may have been changed, so the journal is compacted
+	 * instead of journaling each element.
+	 */
+	private void journalAll() throws TreeException {
+		TreeJournal journal = transaction.refreshJournal();
+		
+		if (journal != null) {
+			journal.compact();
+		}
+	}
+	
+	/*
+	 * Element of the read-only session, read from the mapped file.
+	 */
+	private <T> Element<T> mappedElement(TreeSnapshotMapping mapping,
+			int record) {
+		return TreeFactory.serviceFactory().createMappedElement(mapping,
+				record, getTransaction().currentSession());
+	}
+	
+	/*
+	 * The first k descendants of the element with the id in the order of
+	 * their keys. The key of each element is extracted once, when it is
+	 * visited.
+	 */
+	/*
+	 * The wrapped node of a visited element, read from the element itself
+	 * without copying it. The mapped elements have their wrapped nodes only in
+	 * the file, so they are read from it.
+	 */
+	private <T> T readWrappedNode(Element<T> element) {
+		return element instanceof TreeElementCore ? ((TreeElementCore<T>)
+				element).getWrappedNode() : element.unwrap();
+	}
+	
+	private <T, K> List<Element<T>> rank(Object id,
+			Function<Element<T>, K> key, Comparator<? super K> comparator,
+			int k) {
+		List<Element<T>> result = TreeFactory.collectionFactory()
+				.createArrayList();
+		if (k == 0) {
+			return result;
+		}
+
+		/*
+		 * The worst of the best elements found so far is on the top of the
+		 * heap, so each visited element is compared with it only.
+		 */
+		PriorityQueue<Map.Entry<K, Element<T>>> best = TreeFactory
+				.collectionFactory().createPriorityQueue((entry, other) ->
+						comparator.compare(other.getKey(), entry.getKey()));
+		this.<T>visitDescendants(id, element -> {
+			K elementKey = key.apply(element);
+			
+			if (best.size() < k) {
+				best.add(new SimpleImmutableEntry<>(elementKey, element));
+			} else if (comparator.compare(elementKey,
+					best.peek().getKey()) < 0) {
+				best.poll();
+				best.add(new SimpleImmutableEntry<>(elementKey, element));
+			}
+			return TreeVisitor.Result.CONTINUE;
+		});
+
+		while (!best.isEmpty()) {
+			result.add(best.poll().getValue());
+		}
+		Collections.reverse(result);
+		
+		/*
+		 * Only the found elements are copied. The mapped elements are not in
+		 * the heap, so they are not copied.
+		 */
+		for (int i = 0; i < result.size(); i++) {
+			Element<T> element = result.get(i);
+			
+			if (element instanceof TreeElementCore) {
+				result.set(i, ((TreeElementCore<T>) element).cloneElement());
+			}
+		}
+		return result;
+	}
+	
+	/*
+	 * Visits the descendants of the element with the id, or of the root for
+	 * a null id, without copying them. Nothing is visited if there is no
+	 * element with the id.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> void visitDescendants(Object id, TreeVisitor<T> visitor) {
+		Element<T> start = this.liveElement(id);
+		
+		if (start == null) {
+			return;
+		}
+		
+		TreeVisitor<T> descendants = element -> element == start ?
+				TreeVisitor.Result.CONTINUE : visitor.visit(element);
+		
+		/*
+		 * The children of a lazy session are not loaded under the read lock.
+		 */
+		if (start instanceof TreeElementCore) {
+			((TreeElementCore<T>) start).traverse(descendants, Boolean.FALSE);
+		} else {
+			start.traverse(descendants);
+		}
+	}
+	
+	/*
+	 * The element with the id in the current session itself, not a copy, or
+	 * the root for a null id.
+	 */
+	private <T> Element<T> liveElement(Object id) {
+		TreeSnapshotMapping mapping = transaction.refreshMapping();
+		
+		if (mapping == null) {
+			return id == null ? this.tree() : transaction.refreshElement(id);
+		}
+		
+		int record = id == null ? -1 : mapping.find(id);
+		return id == null || record >= 0 ? this.mappedElement(mapping, record) :
+			null;
+	}
+	
+	/*
+	 * Locks the current session for reading or writing, and the other
+	 * sessions for writing. The current session is read only once, here, and
+	 * the operation works on that same session until it is unlocked, even if
+	 * another thread checks out another session meanwhile.
+	 */
+	private Deque<Lock> lock(boolean isWrite, TreeSession... writes)
+			throws TreeException {
+		TreeSession session = transaction.enterOperation();
+		
+		if (!isWrite) {
+			return this.lock(session, writes);
+		}
+		
+		TreeSession[] sessions = Arrays.copyOf(writes, writes.length + 1);
+		sessions[writes.length] = session;
+		return this.lock(null, sessions);
+	}
+	
+	/*
+	 * Locks the sessions in the order of their identifiers, so two threads
+	 * locking the same sessions never wait for each other. A session which is
+	 * also written is locked only for writing, as a read lock cannot be
+	 * upgraded. A session in a transaction of another thread is locked only
+	 * after its end, and the operation fails if it does not end in time.
+	 */
+	private Deque<Lock> lock(TreeSession read, TreeSession... writes)
+			throws TreeException {
+		List<TreeSessionCore> sessions = TreeFactory.collectionFactory()
+				.createArrayList();
+		
+		for (TreeSession session : writes) {
+			if (session instanceof TreeSessionCore
+					&& !sessions.contains(session)) {
+				sessions.add((TreeSessionCore) session);
+			}
+		}
+		boolean isReadOnly = read instanceof TreeSessionCore
+				&& !sessions.contains(read);
+		if (isReadOnly) {
+			sessions.add((TreeSessionCore) read);
+		}
+		
+		sessions.sort(Comparator.comparing(TreeSessionCore::getSessionId,
+				Comparator.nullsFirst(Comparator.naturalOrder()))
+				.thenComparingInt(System::identityHashCode));
+		
+		Deque<Lock> locks = TreeFactory.collectionFactory().createArrayDeque();
+		for (TreeSessionCore session : sessions) {
+			Lock lock = session.lockOutOfTransaction(!isReadOnly
+					|| session != read);
+			
+			if (lock == null) {
+				this.unlock(locks);
+				throw TreeFactory.exceptionFactory().createTreeException(
+						TreeRepositoryMessage.TRANSACTION_TIMEOUT
+						.getMessageError());
+			}
+			locks.push(lock);
+		}
+		return locks;
+	}
+	
+	private void unlock(Deque<Lock> locks) {
+		while (!locks.isEmpty()) {
+			locks.pop().unlock();
+		}
+		transaction.exitOperation();
+	}
+	
+	private TreeSession currentSession() {
+		return transaction.currentSession();
+	}
+	
+	private TreeSession session(Element<?> element) {
+		return element != null ? element.attachedTo() : null;
+	}
+	
 	/*
 	 * Brings up the element from the stored tree session.
 	 */
@@ -618,6 +1887,7 @@ class TreeManagerCore implements TreeManager {
 			 */
 			if (elementCoreToApply != null) {
 				elementCoreToApply.mergeUpdatedWrappedNode(updatedWrappedNode);
+				elementCoreToApply.incrementVersion();
 			}
 		});
 	}
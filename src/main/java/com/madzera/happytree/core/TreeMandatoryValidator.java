@@ -17,4 +17,13 @@ class TreeMandatoryValidator extends TreeValidator {
 			}
 		}
 	}
+	
+	void validateNonNegativeInput(int... args) {
+		for (int arg : args) {
+			if (arg < 0) {
+				throw this.throwIllegalArgumentException(TreeRepositoryMessage
+						.INVALID_INPUT);
+			}
+		}
+	}
 }
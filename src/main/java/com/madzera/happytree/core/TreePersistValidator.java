@@ -1,5 +1,8 @@
 package com.madzera.happytree.core;
 
+import java.util.Collection;
+import java.util.Set;
+
 import com.madzera.happytree.Element;
 import com.madzera.happytree.TreeManager;
 import com.madzera.happytree.TreeSession;
@@ -45,4 +48,31 @@ class TreePersistValidator extends TreeElementValidator {
 					.DUPLICATE_ELEMENT);
 		}
 	}
+	
+	/*
+	 * The elements of a batch are validated as a set, looking for their ids
+	 * in the cache of the session instead of iterating over the whole tree
+	 * for each element.
+	 */
+	@SuppressWarnings("unchecked")
+	void validateDuplicateIdElements(TreePipeline pipeline)
+			throws TreeException {
+		Collection<Element<Object>> sources = (Collection<Element<Object>>)
+				pipeline.getAttribute(TreePipelineAttributes.SOURCE_ELEMENTS);
+		TreeSessionCore session = (TreeSessionCore) pipeline.getAttribute(
+				TreePipelineAttributes.CURRENT_SESSION);
+		
+		Set<Object> ids = TreeFactory.collectionFactory().createHashSet();
+		
+		for (Element<Object> source : sources) {
+			for (Element<Object> element : Recursion.toPlainList(source)) {
+				Object id = element.getId();
+				
+				if (session.get(id) != null || !ids.add(id)) {
+					throw this.throwTreeException(TreeRepositoryMessage
+							.DUPLICATE_ELEMENT);
+				}
+			}
+		}
+	}
 }
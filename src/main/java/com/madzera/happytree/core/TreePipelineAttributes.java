@@ -11,6 +11,13 @@ class TreePipelineAttributes {
 	static final String SESSION_ID = "sessionId";
 	static final String SESSION_TYPE = "sessionType";
 	
+	/*
+	 * Keys validations for Index validations.
+	 */
+	static final String INDEX_ATTRIBUTE = "indexAttribute";
+	static final String INDEX_SORTED = "indexSorted";
+	static final String INDEX_TYPE = "indexType";
+	
 	/*
 	 * Keys validations for Object IDs validations.
 	 */
@@ -21,9 +28,11 @@ class TreePipelineAttributes {
 	 * Keys validations for Element validations.
 	 */
 	static final String SOURCE_ELEMENT = "sourceElement";
+	static final String SOURCE_ELEMENTS = "sourceElements";
 	static final String TARGET_ELEMENT = "targetElement";
 	static final String OPERATION = "operation";
 	static final String CURRENT_SESSION = "session";
+	static final String VERSION = "version";
 	
 	/*
 	 * Keys validations for Session initializations.
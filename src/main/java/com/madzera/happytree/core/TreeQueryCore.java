@@ -0,0 +1,169 @@
+package com.madzera.happytree.core;
+
+import java.util.List;
+
+import com.madzera.happytree.Element;
+import com.madzera.happytree.TreeQuery;
+import com.madzera.happytree.exception.TreeException;
+
+/*
+ * Only keeps the conditions of the query. The conditions are compiled into a
+ * TreeQueryPlan over the current session each time the query is executed, so
+ * the plan uses the indexes which the session has at that moment.
+ */
+class TreeQueryCore<T> implements TreeQuery<T> {
+
+	private final TreeManagerCore manager;
+	private final TreeValidatorFacade validatorFacade;
+
+	private final List<Filter> filters = TreeFactory.collectionFactory()
+			.createArrayList();
+	private Object ancestorId;
+	private int minDepth = 1;
+	private int maxDepth = Integer.MAX_VALUE;
+	private boolean isLeafOnly;
+	private int offset;
+	private int limit = Integer.MAX_VALUE;
+
+
+	TreeQueryCore(TreeManagerCore manager) {
+		this.manager = manager;
+		this.validatorFacade = TreeFactory.facadeFactory()
+				.createValidatorFacade(manager);
+	}
+
+
+	@Override
+	public TreeQuery<T> where(String attribute, Object value) {
+		this.validatorFacade.validateMandatory(attribute);
+		this.filters.add(new Filter(attribute, value, value,
+				Filter.Operator.EQUAL));
+		return this;
+	}
+
+	@Override
+	public TreeQuery<T> between(String attribute, Object from, Object to) {
+		this.validatorFacade.validateMandatory(attribute);
+		this.filters.add(new Filter(attribute, from, to,
+				Filter.Operator.RANGE));
+		return this;
+	}
+
+	@Override
+	public TreeQuery<T> matching(String attribute, String text) {
+		this.validatorFacade.validateMandatory(attribute, text);
+		this.filters.add(new Filter(attribute, text, text,
+				Filter.Operator.TEXT));
+		return this;
+	}
+
+	@Override
+	public TreeQuery<T> underAncestor(Object id) {
+		this.validatorFacade.validateMandatory(id);
+		this.ancestorId = id;
+		return this;
+	}
+
+	@Override
+	public TreeQuery<T> depth(int min, int max) {
+		this.minDepth = min;
+		this.maxDepth = max;
+		return this;
+	}
+
+	@Override
+	public TreeQuery<T> leafOnly() {
+		this.isLeafOnly = Boolean.TRUE;
+		return this;
+	}
+
+	@Override
+	public TreeQuery<T> offset(int offset) {
+		this.validatorFacade.validateNonNegative(offset);
+		this.offset = offset;
+		return this;
+	}
+
+	@Override
+	public TreeQuery<T> limit(int limit) {
+		this.validatorFacade.validateNonNegative(limit);
+		this.limit = limit;
+		return this;
+	}
+
+	@Override
+	public List<Element<T>> list() throws TreeException {
+		return this.manager.execute(this);
+	}
+
+	List<Filter> getFilters() {
+		return this.filters;
+	}
+
+	Object getAncestorId() {
+		return this.ancestorId;
+	}
+
+	int getMinDepth() {
+		return this.minDepth;
+	}
+
+	int getMaxDepth() {
+		return this.maxDepth;
+	}
+
+	boolean isLeafOnly() {
+		return this.isLeafOnly;
+	}
+
+	int getOffset() {
+		return this.offset;
+	}
+
+	int getLimit() {
+		return this.limit;
+	}
+
+	/*
+	 * A condition over an attribute of the wrapped nodes. An equality and a
+	 * text have the same value as both bounds.
+	 */
+	static class Filter {
+
+		enum Operator {
+			EQUAL,
+			RANGE,
+			TEXT;
+		}
+
+		private final String attribute;
+		private final Object from;
+		private final Object to;
+		private final Operator operator;
+
+
+		Filter(String attribute, Object from, Object to, Operator operator) {
+			this.attribute = attribute;
+			this.from = from;
+			this.to = to;
+			this.operator = operator;
+		}
+
+
+		String getAttribute() {
+			return this.attribute;
+		}
+
+		Object getFrom() {
+			return this.from;
+		}
+
+		Object getTo() {
+			return this.to;
+		}
+
+		Operator getOperator() {
+			return this.operator;
+		}
+	}
+}
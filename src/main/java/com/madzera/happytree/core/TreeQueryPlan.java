@@ -0,0 +1,367 @@
+package com.madzera.happytree.core;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+import com.madzera.happytree.Element;
+import com.madzera.happytree.core.TreeQueryCore.Filter;
+import com.madzera.happytree.core.TreeQueryCore.Filter.Operator;
+
+/*
+ * Plan of a query compiled over a session.
+ *
+ * The plan reads the candidate elements from one access path and checks the
+ * conditions of the query on each candidate, stopping as soon as the limit is
+ * reached. The access path is the one with the fewest candidates among:
+ *
+ * - the index of an attribute with an equality, or a sorted index of an
+ *   attribute with a range, counted without reading the elements;
+ * - the text index of an attribute with a text, whose postings are joined
+ *   to be counted, so the found elements are kept as the candidates;
+ * - the levels between the depths of the query;
+ * - the leaves, for the queries of leaves only;
+ * - the traversal of the subtree of the ancestor, or of the whole tree,
+ *   whose size is the number of descendants kept by each element. The
+ *   traversal does not go deeper than the maximum depth.
+ *
+ * The sessions mapped from a snapshot file have no indexes, but their records
+ * are in pre-order with the number of descendants of each one, so the
+ * subtree of the ancestor is an interval of records, read without visiting
+ * the others.
+ */
+class TreeQueryPlan<T> {
+
+	private final TreeQueryCore<T> query;
+	private final TreeSessionCore session;
+
+	private final Method[] getters;
+	private final Class<?>[] valueTypes;
+
+	private final List<Element<T>> result = TreeFactory.collectionFactory()
+			.createArrayList();
+	private int skipped;
+
+
+	TreeQueryPlan(TreeQueryCore<T> query, TreeSessionCore session) {
+		this.query = query;
+		this.session = session;
+
+		List<Filter> filters = query.getFilters();
+		this.getters = new Method[filters.size()];
+		this.valueTypes = new Class<?>[filters.size()];
+
+		for (int i = 0; i < filters.size(); i++) {
+			this.getters[i] = TreeUtil.ReflectionUtil.getGetter(
+					session.getTypeTree(), filters.get(i).getAttribute());
+			this.valueTypes[i] = MethodType.methodType(this.getters[i]
+					.getReturnType()).wrap().returnType();
+		}
+	}
+
+
+	/*
+	 * The found elements of the tree of the session, or the mapped elements of
+	 * a mapped session.
+	 */
+	List<Element<T>> execute() {
+		if (this.query.getLimit() == 0) {
+			return this.result;
+		}
+
+		TreeSnapshotMapping mapping = this.session.getMapping();
+
+		if (mapping != null) {
+			this.executeMapping(mapping);
+		} else {
+			this.executeCache();
+		}
+		return this.result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void executeCache() {
+		TreeElementCore<T> ancestor = null;
+
+		if (this.query.getAncestorId() != null) {
+			ancestor = this.session.get(this.query.getAncestorId());
+
+			if (ancestor == null) {
+				return;
+			}
+		}
+
+		TreeElementCore<T> start = ancestor != null ? ancestor :
+			(TreeElementCore<T>) this.session.tree();
+		int cost = start.getDescendantCount();
+		Collection<TreeElementCore<T>> candidates = null;
+
+		/*
+		 * Only the sizes of the access paths are compared, so no access path is
+		 * read before it is chosen.
+		 */
+		Filter indexed = null;
+		List<TreeElementCore<T>> matched = null;
+		List<Filter> filters = this.query.getFilters();
+		for (Filter filter : filters) {
+			if (filter.getOperator() == Operator.TEXT) {
+				TreeTextIndex textIndex = this.session.getTextIndex(
+						filter.getAttribute());
+
+				if (textIndex == null) {
+					continue;
+				}
+
+				List<TreeElementCore<T>> found = textIndex.read(
+						(String) filter.getFrom());
+				if (found.size() < cost) {
+					cost = found.size();
+					indexed = filter;
+					matched = found;
+				}
+				continue;
+			}
+
+			TreeIndex index = this.session.getIndex(filter.getAttribute());
+			boolean isEquality = filter.getOperator() == Operator.EQUAL;
+
+			if (index == null || (!isEquality && !index.isSorted())) {
+				continue;
+			}
+
+			int count = isEquality ? index.count(filter.getFrom()) :
+				index.count(filter.getFrom(), filter.getTo());
+			if (count < cost) {
+				cost = count;
+				indexed = filter;
+			}
+		}
+
+		int levels = 0;
+		for (int depth = Math.max(this.query.getMinDepth(), 1);
+				depth <= this.query.getMaxDepth() && levels < cost; depth++) {
+			Collection<?> level = this.session.getLevel(depth);
+
+			if (level.isEmpty()) {
+				break;
+			}
+			levels += level.size();
+		}
+		if (levels < cost) {
+			cost = levels;
+			indexed = null;
+			candidates = this.readLevels();
+		}
+
+		if (this.query.isLeafOnly()) {
+			Collection<TreeElementCore<T>> leaves = this.session.getLeaves();
+
+			if (leaves.size() < cost) {
+				cost = leaves.size();
+				indexed = null;
+				candidates = leaves;
+			}
+		}
+
+		if (indexed != null && indexed.getOperator() == Operator.TEXT) {
+			candidates = matched;
+		} else if (indexed != null) {
+			TreeIndex index = this.session.getIndex(indexed.getAttribute());
+			candidates = indexed.getOperator() == Operator.EQUAL ?
+					index.read(indexed.getFrom()) :
+					index.read(indexed.getFrom(), indexed.getTo());
+		}
+
+		if (candidates == null) {
+			this.traverse(start);
+			return;
+		}
+
+		for (TreeElementCore<T> candidate : candidates) {
+			if ((ancestor == null || this.isDescendant(ancestor, candidate))
+					&& this.offer(candidate)) {
+				return;
+			}
+		}
+	}
+
+	private Collection<TreeElementCore<T>> readLevels() {
+		List<TreeElementCore<T>> elements = TreeFactory.collectionFactory()
+				.createArrayList();
+
+		for (int depth = Math.max(this.query.getMinDepth(), 1);
+				depth <= this.query.getMaxDepth(); depth++) {
+			Collection<TreeElementCore<T>> level = this.session.getLevel(depth);
+
+			if (level.isEmpty()) {
+				break;
+			}
+			elements.addAll(level);
+		}
+		return elements;
+	}
+
+	/*
+	 * Pre-order traversal of the descendants of the start, not going deeper
+	 * than the maximum depth. Only the children in memory are visited.
+	 */
+	@SuppressWarnings("unchecked")
+	private void traverse(TreeElementCore<T> start) {
+		Deque<Iterator<Element<T>>> stack = TreeFactory.collectionFactory()
+				.createArrayDeque();
+		stack.push(start.loadedChildren().iterator());
+
+		while (!stack.isEmpty()) {
+			Iterator<Element<T>> iterator = stack.peek();
+
+			if (!iterator.hasNext()) {
+				stack.pop();
+				continue;
+			}
+
+			TreeElementCore<T> element = (TreeElementCore<T>) iterator.next();
+			if (this.offer(element)) {
+				return;
+			}
+			if (element.getDepth() < this.query.getMaxDepth()) {
+				stack.push(element.loadedChildren().iterator());
+			}
+		}
+	}
+
+	private void executeMapping(TreeSnapshotMapping mapping) {
+		int ancestor = -1;
+
+		if (this.query.getAncestorId() != null) {
+			ancestor = mapping.find(this.query.getAncestorId());
+
+			if (ancestor < 0) {
+				return;
+			}
+		}
+
+		int end = ancestor < 0 ? mapping.count() : ancestor + 1
+				+ mapping.descendants(ancestor);
+		int record = ancestor + 1;
+
+		while (record < end) {
+			int depth = mapping.depth(record);
+
+			if (this.isCandidate(depth, mapping.descendants(record) == 0)
+					&& (this.getters.length == 0 || this.matches(
+							mapping.node(record)))
+					&& this.add(TreeFactory.serviceFactory()
+							.createMappedElement(mapping, record,
+									this.session))) {
+				return;
+			}
+
+			/*
+			 * The records deeper than the maximum depth are skipped with the
+			 * whole subtree, which is right after its top record.
+			 */
+			record += depth < this.query.getMaxDepth() ? 1 :
+				1 + mapping.descendants(record);
+		}
+	}
+
+	/*
+	 * Adds the element if it satisfies the conditions, returning whether the
+	 * limit is reached.
+	 */
+	private boolean offer(TreeElementCore<T> element) {
+		if (this.isCandidate(element.getDepth(), element.isLeaf())
+				&& this.matches(element.getWrappedNode())) {
+			return this.add(element);
+		}
+		return false;
+	}
+
+	private boolean add(Element<T> element) {
+		if (this.skipped < this.query.getOffset()) {
+			this.skipped++;
+			return false;
+		}
+		this.result.add(element);
+		return this.result.size() >= this.query.getLimit();
+	}
+
+	private boolean isCandidate(int depth, boolean isLeaf) {
+		return depth >= this.query.getMinDepth()
+				&& depth <= this.query.getMaxDepth()
+				&& (!this.query.isLeafOnly() || isLeaf);
+	}
+
+	private boolean isDescendant(TreeElementCore<T> ancestor,
+			TreeElementCore<T> element) {
+		for (TreeElementCore<T> parent = element.getParentElement();
+				parent != null && parent.getDepth() >= ancestor.getDepth();
+				parent = parent.getParentElement()) {
+			if (parent == ancestor) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Whether the wrapped node satisfies all conditions over its attributes,
+	 * with the same rules of the indexes.
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean matches(Object node) {
+		List<Filter> filters = this.query.getFilters();
+
+		for (int i = 0; i < filters.size(); i++) {
+			Filter filter = filters.get(i);
+			Object value = this.value(this.getters[i], node);
+
+			if (filter.getOperator() == Operator.EQUAL) {
+				if (!Objects.equals(value, filter.getFrom())) {
+					return false;
+				}
+				continue;
+			}
+			if (filter.getOperator() == Operator.TEXT) {
+				if (!TreeTextIndex.matches((String) value,
+						(String) filter.getFrom())) {
+					return false;
+				}
+				continue;
+			}
+
+			Object from = filter.getFrom();
+			Object to = filter.getTo();
+			if (value == null
+					|| (from != null && !this.valueTypes[i].isInstance(from))
+					|| (to != null && !this.valueTypes[i].isInstance(to))
+					|| (from != null && ((Comparable<Object>) value)
+							.compareTo(from) < 0)
+					|| (to != null && ((Comparable<Object>) value)
+							.compareTo(to) > 0)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Object value(Method getter, Object node) {
+		if (node == null) {
+			return null;
+		}
+
+		try {
+			return getter.invoke(node);
+		} catch (ReflectiveOperationException exception) {
+			/*
+			 * Unreachable code. The getters are validated before the query is
+			 * compiled.
+			 */
+			return null;
+		}
+	}
+}
@@ -17,6 +17,22 @@ enum TreeRepositoryMessage {
 	DUPLICATE_SESSION(Error.DUPLICATE_SESSION_ID_ERROR),
 	NO_DEFINED_SESSION(Error.NO_DEFINED_SESSION),
 	NO_ACTIVE_SESSION(Error.NO_ACTIVE_SESSION),
+	INVALID_DOCUMENT(Error.INVALID_DOCUMENT),
+	NO_ID_PARENT_TYPE(Error.NO_ID_PARENT_TYPE),
+	SNAPSHOT_WRITE(Error.SNAPSHOT_WRITE),
+	INVALID_SNAPSHOT(Error.INVALID_SNAPSHOT),
+	READ_ONLY_SESSION(Error.READ_ONLY_SESSION),
+	JOURNAL_WRITE(Error.JOURNAL_WRITE),
+	INVALID_JOURNAL(Error.INVALID_JOURNAL),
+	DUPLICATE_TRANSACTION(Error.DUPLICATE_TRANSACTION),
+	NO_OPEN_TRANSACTION(Error.NO_OPEN_TRANSACTION),
+	TRANSACTION_OWNER(Error.TRANSACTION_OWNER),
+	TRANSACTION_TIMEOUT(Error.TRANSACTION_TIMEOUT),
+	INVALID_LOADED_NODE(Error.INVALID_LOADED_NODE),
+	INVALID_INDEX_ATTRIBUTE(Error.INVALID_INDEX_ATTRIBUTE),
+	NO_DEFINED_INDEX(Error.NO_DEFINED_INDEX),
+	INVALID_QUERY_ATTRIBUTE(Error.INVALID_QUERY_ATTRIBUTE),
+	LAZY_SESSION_SAVE(Error.LAZY_SESSION_SAVE),
 	
 	/*
 	 * Invalid element state.
@@ -29,7 +45,8 @@ enum TreeRepositoryMessage {
 	MISMATCH_TYPE_ELEMENT(Error.DIFFERENT_TYPES_ERROR),
 	NOT_BELONG_SESSION(Error.INCORRECT_SESSION),
 	IMPOSSIBLE_HANDLE_ROOT(Error.HANDLE_ROOT),
-	NOT_SERIALIZED_NODE(Error.NOT_SERIALIZED_NODE);
+	NOT_SERIALIZED_NODE(Error.NOT_SERIALIZED_NODE),
+	VERSION_CONFLICT(Error.VERSION_CONFLICT);
 	
 	private String error;
 	private static Map<String, String> messages = TreeFactory.mapFactory()
@@ -47,6 +64,22 @@ enum TreeRepositoryMessage {
 		messages.put(Error.DUPLICATE_SESSION_ID_ERROR, Message.DUPLICATE_SESSION_ID);
 		messages.put(Error.NO_DEFINED_SESSION, Message.NO_DEFINED_SESSION);
 		messages.put(Error.NO_ACTIVE_SESSION, Message.NO_ACTIVE_SESSION);
+		messages.put(Error.INVALID_DOCUMENT, Message.INVALID_DOCUMENT);
+		messages.put(Error.NO_ID_PARENT_TYPE, Message.NO_ID_PARENT_TYPE);
+		messages.put(Error.SNAPSHOT_WRITE, Message.SNAPSHOT_WRITE);
+		messages.put(Error.INVALID_SNAPSHOT, Message.INVALID_SNAPSHOT);
+		messages.put(Error.READ_ONLY_SESSION, Message.READ_ONLY_SESSION);
+		messages.put(Error.JOURNAL_WRITE, Message.JOURNAL_WRITE);
+		messages.put(Error.INVALID_JOURNAL, Message.INVALID_JOURNAL);
+		messages.put(Error.DUPLICATE_TRANSACTION, Message.DUPLICATE_TRANSACTION);
+		messages.put(Error.NO_OPEN_TRANSACTION, Message.NO_OPEN_TRANSACTION);
+		messages.put(Error.TRANSACTION_OWNER, Message.TRANSACTION_OWNER);
+		messages.put(Error.TRANSACTION_TIMEOUT, Message.TRANSACTION_TIMEOUT);
+		messages.put(Error.INVALID_LOADED_NODE, Message.INVALID_LOADED_NODE);
+		messages.put(Error.INVALID_INDEX_ATTRIBUTE, Message.INVALID_INDEX_ATTRIBUTE);
+		messages.put(Error.NO_DEFINED_INDEX, Message.NO_DEFINED_INDEX);
+		messages.put(Error.INVALID_QUERY_ATTRIBUTE, Message.INVALID_QUERY_ATTRIBUTE);
+		messages.put(Error.LAZY_SESSION_SAVE, Message.LAZY_SESSION_SAVE);
 
 		/*
 	 	* Invalid element state.
@@ -60,6 +93,7 @@ enum TreeRepositoryMessage {
 		messages.put(Error.INCORRECT_SESSION, Message.INCORRECT_SESSION);
 		messages.put(Error.HANDLE_ROOT, Message.HANDLE_ROOT);
 		messages.put(Error.NOT_SERIALIZED_NODE, Message.NOT_SERIALIZED_NODE);
+		messages.put(Error.VERSION_CONFLICT, Message.VERSION_CONFLICT);
 	}
 	
 	
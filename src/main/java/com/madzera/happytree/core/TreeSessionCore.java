@@ -1,17 +1,30 @@
 package com.madzera.happytree.core;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 
 import com.madzera.happytree.Element;
 import com.madzera.happytree.TreeSession;
 
 class TreeSessionCore implements TreeSession {
 
+	/*
+	 * Seconds which a thread waits for the transaction of another thread to
+	 * end before giving up on locking the session.
+	 */
+	static final long TRANSACTION_TIMEOUT = 30L;
+
 	/*
 	 * To be exposed by interface.
 	 */
 	private String identifier;
-	private boolean isActive;
+	private volatile boolean isActive;
 	private TreeElementCore<?> root;
 	
 	/*
@@ -25,6 +38,67 @@ class TreeSessionCore implements TreeSession {
 	 */
 	private Cache cache = TreeFactory.utilFactory().createCacheSession();
 	
+	/*
+	 * Only for the read-only sessions, which have their trees in a mapped
+	 * snapshot file instead of the root and the cache.
+	 */
+	private TreeSnapshotMapping mapping;
+	
+	/*
+	 * Only for the journaled sessions.
+	 */
+	private TreeJournal journal;
+	
+	/*
+	 * Only for the lazy sessions, whose children are loaded on demand.
+	 */
+	private TreeChildLoading<?> childLoading;
+	
+	/*
+	 * The operations reading this session hold its read lock, and the ones
+	 * changing it hold its write lock.
+	 */
+	private final ReadWriteLock lock = TreeFactory.utilFactory()
+			.createReadWriteLock();
+	
+	/*
+	 * A cloned session shares the tree and the cache of its source session
+	 * until it is changed, and only then it copies the shared tree for
+	 * itself. The reads which only return copies of the elements read the
+	 * shared tree, the other ones copy it first.
+	 */
+	private TreeSessionCore source;
+	private volatile TreeElementCore<?> sharedRoot;
+	private volatile Cache sharedCache;
+	
+	/*
+	 * Number of clones not used yet and versions sharing the tree of this
+	 * session. A shared tree is never changed, so this session copies its
+	 * tree before changing it, leaving the old one for them.
+	 */
+	private int sharers;
+	
+	/*
+	 * Only for the versions taken by snapshot(), which are never changed.
+	 */
+	private boolean isVersion;
+	
+	/*
+	 * Only while a transaction is open. The log records the elements before
+	 * their first change in the transaction, so the rollback puts back only
+	 * them. No lock is held between the operations of the transaction: the
+	 * other threads wait for its end when locking this session, for at most
+	 * TRANSACTION_TIMEOUT seconds.
+	 */
+	private volatile Thread transactionOwner;
+	private TreeUndoLog transactionLog;
+	
+	/*
+	 * Only while an operation journaling its changes is running, to undo them
+	 * if they cannot be journaled.
+	 */
+	private TreeUndoLog undoLog;
+	
 	
 	TreeSessionCore(String identifier, Class<?> typeTree) {
 		this.identifier = identifier;
@@ -45,9 +119,19 @@ class TreeSessionCore implements TreeSession {
 	@SuppressWarnings("unchecked")
 	@Override
 	public <T> Element<T> tree() {
+		if (this.mapping != null) {
+			return TreeFactory.serviceFactory().createMappedElement(
+					this.mapping, -1, this);
+		}
+		this.materialize();
 		return (Element<T>) root;
 	}
 	
+	@Override
+	public boolean isReadOnly() {
+		return this.mapping != null || this.isVersion;
+	}
+	
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -90,38 +174,483 @@ class TreeSessionCore implements TreeSession {
 	}
 
 	<T> void save(Element<T> element) {
+		this.materialize();
 		this.applyRecursionCacheOperation(element, SessionHandler.SAVE);
 	}
 	
+	/*
+	 * Saves the changes of an operation, inside of a transaction or not. Only
+	 * the changed element with its descendants and the parents which it was
+	 * removed from or added into are cached again, the parents without their
+	 * descendants.
+	 */
+	void saveChanges(Element<?> changed, Element<?>... parents) {
+		Collection<Element<?>> changedElements = changed != null ?
+				Collections.singletonList(changed) : Collections.emptyList();
+		
+		this.saveChanges(changedElements, Arrays.asList(parents));
+	}
+	
+	/*
+	 * A parent removed by the same batch of changes is not cached again.
+	 */
+	void saveChanges(Collection<? extends Element<?>> changed,
+			Collection<? extends Element<?>> parents) {
+		for (Element<?> element : changed) {
+			this.save(element);
+		}
+		for (Element<?> parent : parents) {
+			if (parent != null) {
+				this.saveParent((TreeElementCore<?>) parent);
+			}
+		}
+	}
+	
+	/*
+	 * Saves the changes of a removal whose removed elements are already out of
+	 * the cache. The other elements keep their depth, so only the parents
+	 * which they were removed from are cached again, even out of a
+	 * transaction.
+	 */
+	void saveRemoval(Collection<? extends Element<?>> parents) {
+		for (Element<?> parent : parents) {
+			this.saveParent((TreeElementCore<?>) parent);
+		}
+	}
+	
+	/*
+	 * Caches the elements of a tree restored from a snapshot, keeping the
+	 * lifecycle states which they were saved.
+	 */
+	<T> void restore(Element<T> element) {
+		this.materialize();
+		this.applyRecursionCacheOperation(element, SessionHandler.RESTORE);
+	}
+	
 	void delete(Object id) {
+		this.materialize();
 		Element<?> element = this.cache.read(id);
 		this.applyRecursionCacheOperation(element, SessionHandler.DELETE);
 	}
 	
 	<T> TreeElementCore<T> get(Object id) {
+		this.materialize();
 		return this.cache.read(id);
 	}
 	
+	<T> Collection<TreeElementCore<T>> getLevel(int depth) {
+		this.materialize();
+		return this.cache.readLevel(depth);
+	}
+	
+	<T> Collection<TreeElementCore<T>> getLeaves() {
+		this.materialize();
+		return this.cache.readLeaves();
+	}
+	
+	/*
+	 * The element with the id, read from the shared tree if this session is a
+	 * clone not changed yet. The elements of the shared tree are attached to
+	 * the source session, so only their copies adopted by adopt() can be
+	 * given to the API client.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> TreeElementCore<T> read(Object id) {
+		TreeElementCore<?> tree = this.sharedRoot;
+		Cache shared = this.sharedCache;
+		
+		if (tree == null || shared == null) {
+			return this.get(id);
+		}
+		
+		/*
+		 * The shared root has the id of the source session.
+		 */
+		if (this.identifier.equals(id)) {
+			return (TreeElementCore<T>) tree;
+		}
+		TreeElementCore<T> element = shared.read(id);
+		return element != tree ? element : null;
+	}
+	
+	@SuppressWarnings("unchecked")
+	<T> TreeElementCore<T> readTree() {
+		TreeElementCore<?> tree = this.sharedRoot;
+		return (TreeElementCore<T>) (tree != null ? tree : this.tree());
+	}
+	
+	TreeIndex readIndex(String attribute) {
+		Cache shared = this.sharedCache;
+		return shared != null ? shared.readIndex(attribute) :
+			this.getIndex(attribute);
+	}
+	
+	/*
+	 * Attaches the copy of an element read from the shared tree into this
+	 * session, as the copy of the same element would be after copying the
+	 * shared tree.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> TreeElementCore<T> adopt(TreeElementCore<T> copy) {
+		if (copy == null || copy.attachedTo() == this) {
+			return copy;
+		}
+		
+		/*
+		 * The children not copied are not loaded here, as they are taken from
+		 * this session when accessed.
+		 */
+		Deque<TreeElementCore<T>> pending = TreeFactory.collectionFactory()
+				.createArrayDeque();
+		pending.add(copy);
+		
+		while (!pending.isEmpty()) {
+			TreeElementCore<T> iterator = pending.poll();
+			
+			iterator.changeSession(this);
+			if (iterator.isRoot()) {
+				iterator.mergeUpdatedId(this.identifier);
+			} else if (iterator.getDepth() == 1) {
+				iterator.setParent(this.identifier);
+				iterator.syncParentId();
+			}
+			for (Element<T> child : iterator.loadedChildren()) {
+				pending.add((TreeElementCore<T>) child);
+			}
+		}
+		return copy;
+	}
+	
 	Class<?> getTypeTree() {
 		return typeTree;
 	}
 	
+	TreeSnapshotMapping getMapping() {
+		return this.mapping;
+	}
+	
+	void setMapping(TreeSnapshotMapping mapping) {
+		this.mapping = mapping;
+	}
+	
+	TreeJournal getJournal() {
+		return this.journal;
+	}
+	
+	void setJournal(TreeJournal journal) {
+		this.journal = journal;
+	}
+	
+	TreeUndoLog getUndoLog() {
+		return this.undoLog;
+	}
+	
+	void setUndoLog(TreeUndoLog undoLog) {
+		this.undoLog = undoLog;
+	}
+	
+	/*
+	 * Records the element before its change, if the changes of this session
+	 * are being recorded. The elements out of the tree of this session, as
+	 * the copies given to the API client, are not recorded.
+	 */
+	void recordChange(TreeElementCore<?> element) {
+		TreeUndoLog log = this.undoLog;
+		
+		if (log != null) {
+			boolean isCached = this.cache.read(element.getId()) == element;
+			
+			if (isCached || element == this.root) {
+				log.record(element, isCached);
+			}
+		}
+	}
+	
+	/*
+	 * Caches an element put back by an undo log, without its descendants.
+	 */
+	void restoreElement(TreeElementCore<?> element) {
+		this.cache.write(element.getId(), element);
+	}
+	
+	boolean isLazy() {
+		return this.childLoading != null;
+	}
+	
+	void setChildLoading(TreeChildLoading<?> childLoading) {
+		this.childLoading = childLoading;
+	}
+	
+	/*
+	 * Loading is not a change of the session, so the loaded elements are
+	 * cached even inside of a transaction, whose rollback only unloads them
+	 * again.
+	 * 
+	 * A copy given to the API client may load its children out of any
+	 * operation, so the session is locked here as well. The copy takes the
+	 * clones of the children of its element in the session, which loads them
+	 * if needed. Out of a lazy session, only the copies left out of a
+	 * depth-limited or shallow copy are loaded, which only reads the session.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> void loadChildren(TreeElementCore<T> parent) {
+		Lock sessionLock = this.lock(Boolean.FALSE);
+		
+		try {
+			TreeElementCore<T> element = parent;
+			if (parent.isCopy()) {
+				element = parent.isRoot() ? (TreeElementCore<T>) this.tree() :
+					this.get(parent.getId());
+			}
+			
+			if (element != parent) {
+				this.copyChildren(element, parent);
+				return;
+			}
+			
+			((TreeChildLoading<T>) this.childLoading).load(parent, this);
+			
+			/*
+			 * Even without children, the parent is cached again, since it
+			 * becomes a leaf.
+			 */
+			this.cache.write(parent.getId(), parent);
+		} finally {
+			sessionLock.unlock();
+		}
+	}
+	
+	/*
+	 * Caches a loaded element, which has no children in memory yet.
+	 */
+	void saveLoaded(TreeElementCore<?> element) {
+		element.transitionState(ElementState.ATTACHED);
+		this.cache.write(element.getId(), element);
+	}
+	
+	/*
+	 * Indexes the elements of this session by the attribute. The cache may be
+	 * shared by the versions of this session, so the tree is copied first.
+	 */
+	void createIndex(TreeIndex index) {
+		this.unshareTree();
+		this.cache.writeIndex(index);
+	}
+	
+	TreeIndex getIndex(String attribute) {
+		this.materialize();
+		return this.cache.readIndex(attribute);
+	}
+	
+	/*
+	 * Indexes the words of the attribute of the elements of this session, as
+	 * createIndex() does.
+	 */
+	void createTextIndex(TreeTextIndex textIndex) {
+		this.unshareTree();
+		this.cache.writeTextIndex(textIndex);
+	}
+	
+	TreeTextIndex getTextIndex(String attribute) {
+		this.materialize();
+		return this.cache.readTextIndex(attribute);
+	}
+	
 	TreeSessionCore cloneSession(String newSessionId) {
 		TreeSessionCore clone = TreeFactory.serviceFactory()
 				.createTreeSession(newSessionId, this.getTypeTree());
 		
 		clone.setActive(this.isActive);
 		
-		TreeElementCore<?> clonedTree = (TreeElementCore<?>) this.tree();
-		TreeElementCore<?> clonedRoot = clonedTree.cloneElement();
+		/*
+		 * The mapped file is never changed, so it can be shared.
+		 */
+		if (this.mapping != null) {
+			clone.mapping = this.mapping;
+			return clone;
+		}
+		
+		if (this.isLazy() || this.transactionOwner != null) {
+			this.copyLazyTree(clone);
+			return clone;
+		}
 		
-		clonedRoot.mergeUpdatedId(newSessionId);
-		clone.root = clonedRoot;
+		/*
+		 * The tree is not copied now. A clone of a clone not used yet shares
+		 * the same tree.
+		 */
+		synchronized (this) {
+			clone.cache = this.cache.emptyCopy();
+			
+			if (this.sharedRoot != null) {
+				clone.source = this.source;
+				clone.sharedRoot = this.sharedRoot;
+				clone.sharedCache = this.sharedCache;
+			} else {
+				clone.source = this;
+				clone.sharedRoot = this.root;
+				clone.sharedCache = this.cache;
+			}
+			clone.source.share(clone.sharedRoot);
+		}
 		
-		updateSessionClonedElements(clone);
 		return clone;
 	}
 	
+	/*
+	 * An immutable version of this session as it is now. The version shares
+	 * the tree and the cache of this session, which are never changed after
+	 * that, as this session copies them before its next change.
+	 */
+	synchronized TreeSessionCore version() {
+		TreeSessionCore version = TreeFactory.serviceFactory()
+				.createTreeSession(this.identifier, this.getTypeTree());
+		
+		version.setActive(this.isActive);
+		version.isVersion = Boolean.TRUE;
+		
+		if (this.mapping != null) {
+			version.mapping = this.mapping;
+			return version;
+		}
+		
+		this.materialize();
+		
+		if (this.isLazy() || this.transactionOwner != null) {
+			this.copyLazyTree(version);
+			return version;
+		}
+		
+		version.root = this.root;
+		version.cache = this.cache;
+		this.sharers++;
+		
+		return version;
+	}
+	
+	/*
+	 * Must be invoked before changing the tree of this session. If the tree is
+	 * shared, this session copies it and then changes only the copy. The copy
+	 * is of the whole tree, as the elements keep their parent elements and
+	 * their metrics, so no part of the tree can be shared by two trees.
+	 */
+	void unshareTree() {
+		this.materialize();
+		
+		synchronized (this) {
+			if (this.sharers == 0) {
+				return;
+			}
+			this.sharers = 0;
+		}
+		
+		this.root = this.root.shareElement(this);
+		this.cache = this.cache.emptyCopy();
+		this.restore(this.root);
+	}
+	
+	/*
+	 * Opens a transaction of the calling thread, which must hold the write
+	 * lock of this session. The tree is copied first if it is shared, so the
+	 * recorded elements are only of this session.
+	 */
+	void beginTransaction() {
+		this.unshareTree();
+		
+		TreeUndoLog log = TreeFactory.utilFactory().createUndoLog();
+		log.attach(this);
+		
+		synchronized (this) {
+			this.transactionLog = log;
+			this.transactionOwner = Thread.currentThread();
+		}
+	}
+	
+	/*
+	 * Keeps the changes of the transaction, returning whether there is any.
+	 * The transaction must still be ended.
+	 */
+	boolean commitTransaction() {
+		TreeUndoLog log = this.transactionLog;
+		
+		log.detach();
+		return !log.isEmpty();
+	}
+	
+	/*
+	 * Discards the changes of the transaction, putting back the elements
+	 * changed since it was opened. The transaction must still be ended.
+	 */
+	void rollbackTransaction() {
+		this.transactionLog.undo();
+	}
+	
+	/*
+	 * Wakes up the threads waiting for the transaction to lock this session.
+	 */
+	synchronized void endTransaction() {
+		this.transactionLog.detach();
+		this.transactionLog = null;
+		this.transactionOwner = null;
+		
+		this.notifyAll();
+	}
+	
+	/*
+	 * Only the thread which opened the transaction is inside of it.
+	 */
+	boolean isInTransaction() {
+		return this.transactionOwner == Thread.currentThread();
+	}
+	
+	/*
+	 * Whether a transaction is open, by any thread.
+	 */
+	boolean hasTransaction() {
+		return this.transactionOwner != null;
+	}
+	
+	/*
+	 * The tree of a lazy session is never shared by other sessions, as
+	 * loading changes the tree in place. The copy has only the loaded
+	 * elements and it loads the other ones by itself.
+	 */
+	private void copyLazyTree(TreeSessionCore copy) {
+		this.materialize();
+		
+		copy.childLoading = this.childLoading;
+		copy.cache = this.cache.emptyCopy();
+		copy.root = this.root.shareElement(copy);
+		copy.restore(copy.root);
+	}
+	
+	/*
+	 * The element is no longer in this session when it is null, so the copy
+	 * has no children to take.
+	 */
+	private <T> void copyChildren(TreeElementCore<T> element,
+			TreeElementCore<T> copy) {
+		if (element == null) {
+			return;
+		}
+		for (Element<T> child : element.getChildren()) {
+			copy.loadedChildren().add(((TreeElementCore<T>) child)
+					.cloneElement());
+		}
+	}
+	
+	/*
+	 * The root of a new session is not cached until its first change, so it
+	 * is cached even before being attached.
+	 */
+	private void saveParent(TreeElementCore<?> parent) {
+		if (parent.isRoot() || !ElementState.NOT_EXISTED.equals(
+				parent.getState())) {
+			parent.transitionState(ElementState.ATTACHED);
+			this.cache.write(parent.getId(), parent);
+		}
+	}
+	
 	private <T> void applyRecursionCacheOperation(Element<T> element,
 			SessionHandler handler) {
 		Collection<?> descendants = Recursion.toPlainList(element);
@@ -132,6 +661,8 @@ class TreeSessionCore implements TreeSession {
 			if (handler.equals(SessionHandler.SAVE)) {
 				iterator.transitionState(ElementState.ATTACHED);
 				this.cache.write(iterator.getId(), iterator);
+			} else if (handler.equals(SessionHandler.RESTORE)) {
+				this.cache.write(iterator.getId(), iterator);
 			} else {
 				iterator.transitionState(ElementState.NOT_EXISTED);
 				this.cache.delete(iterator.getId());
@@ -139,20 +670,115 @@ class TreeSessionCore implements TreeSession {
 		}
 	}
 	
-	private void updateSessionClonedElements(TreeSessionCore clone) {
-		TreeElementCore<?> clonedRoot = (TreeElementCore<?>) clone.tree();
-		Collection<?> descendants = Recursion.toPlainList(clonedRoot);
+	/*
+	 * Acquires the read lock of this session, or its write lock to change it,
+	 * returning the lock to be released by the caller.
+	 */
+	Lock lock(boolean isWrite) {
+		/*
+		 * Reading a lazy session can load elements into it.
+		 */
+		Lock sessionLock = isWrite || this.isLazy() ? this.lock.writeLock() :
+			this.lock.readLock();
 		
-		for (Object object : descendants) {
-			TreeElementCore<?> iterator = (TreeElementCore<?>) object;
+		sessionLock.lock();
+		return sessionLock;
+	}
+	
+	/*
+	 * Acquires the lock as lock(boolean) does, but only when this session is
+	 * not in a transaction of another thread. The lock is not kept while
+	 * waiting for the transaction to end, so its thread can still run its
+	 * operations. Returns null if the transaction does not end within
+	 * TRANSACTION_TIMEOUT seconds or if the calling thread is interrupted.
+	 */
+	Lock lockOutOfTransaction(boolean isWrite) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(
+				TRANSACTION_TIMEOUT);
+		
+		while (true) {
+			Lock sessionLock = this.lock(isWrite);
+			Thread owner = this.transactionOwner;
+			
+			if (owner == null || owner == Thread.currentThread()) {
+				return sessionLock;
+			}
+			sessionLock.unlock();
+			
+			synchronized (this) {
+				long remaining = deadline - System.nanoTime();
+				
+				if (remaining <= 0L) {
+					return null;
+				}
+				if (this.transactionOwner != null) {
+					try {
+						TimeUnit.NANOSECONDS.timedWait(this, remaining);
+					} catch (InterruptedException exception) {
+						Thread.currentThread().interrupt();
+						return null;
+					}
+				}
+			}
+		}
+	}
+	
+	private synchronized void share(TreeElementCore<?> tree) {
+		if (tree == this.root) {
+			this.sharers++;
+		}
+	}
+	
+	/*
+	 * The source may have already copied its tree, so the shared one is not
+	 * its tree anymore.
+	 */
+	private synchronized void unshare(TreeElementCore<?> tree) {
+		if (tree == this.root && this.sharers > 0) {
+			this.sharers--;
+		}
+	}
+	
+	/*
+	 * Copies the tree shared with the source session, if this is a clone not
+	 * used yet. Only the elements are copied, the wrapped nodes are shared.
+	 */
+	private void materialize() {
+		if (this.sharedRoot == null) {
+			return;
+		}
+		
+		/*
+		 * Even the readers of this session may copy the tree, so only one of
+		 * them does it. The shared root is cleared only after the copy.
+		 */
+		synchronized (this) {
+			TreeElementCore<?> tree = this.sharedRoot;
+			
+			if (tree == null) {
+				return;
+			}
+			
+			TreeElementCore<?> clonedRoot = tree.shareElement(this);
+			
+			clonedRoot.mergeUpdatedId(this.identifier);
+			this.root = clonedRoot;
+			
+			for (Object object : Recursion.toPlainList(clonedRoot)) {
+				TreeElementCore<?> iterator = (TreeElementCore<?>) object;
+				this.cache.write(iterator.getId(), iterator);
+			}
 			
-			iterator.changeSession(clone);
-			clone.cache.write(iterator.getId(), iterator);
+			this.source.unshare(tree);
+			this.source = null;
+			this.sharedCache = null;
+			this.sharedRoot = null;
 		}
 	}
 	
 	private enum SessionHandler {
 		SAVE,
+		RESTORE,
 		DELETE;
 	}
 }
@@ -1,10 +1,14 @@
 package com.madzera.happytree.core;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
 import java.util.List;
 
 import com.madzera.happytree.TreeManager;
 import com.madzera.happytree.TreeSession;
+import com.madzera.happytree.annotation.Id;
+import com.madzera.happytree.annotation.Parent;
 import com.madzera.happytree.exception.TreeException;
 
 class TreeSessionValidator extends TreeValidator {
@@ -45,6 +49,19 @@ class TreeSessionValidator extends TreeValidator {
 		}
 	}
 	
+	void validateIdentifierAnnotations(TreePipeline pipeline)
+			throws TreeException {
+		Class<?> typeSession = (Class<?>) pipeline.getAttribute(
+				TreePipelineAttributes.SESSION_TYPE);
+
+		if (TreeUtil.ReflectionUtil.getFieldAnnotation(typeSession, Id.class)
+				== null || TreeUtil.ReflectionUtil.getFieldAnnotation(
+						typeSession, Parent.class) == null) {
+			throw this.throwTreeException(TreeRepositoryMessage
+					.NO_ID_PARENT_TYPE);
+		}
+	}
+	
 	void validateDuplicateSessionId(TreePipeline pipeline)
 			throws TreeException {
 		String sessionId = (String) pipeline.getAttribute(
@@ -59,6 +76,21 @@ class TreeSessionValidator extends TreeValidator {
 		}
 	}
 	
+	void validateDefinedSessionId(TreePipeline pipeline)
+			throws TreeException {
+		String sessionId = (String) pipeline.getAttribute(
+				TreePipelineAttributes.SESSION_ID);
+		List<TreeSession> sessions = getManager().getTransaction().sessions();
+
+		for (TreeSession session : sessions) {
+			if (sessionId.equals(session.getSessionId())) {
+				return;
+			}
+		}
+		throw this.throwTreeException(TreeRepositoryMessage
+				.NO_DEFINED_SESSION);
+	}
+	
 	void validateNoDefinedSession() throws TreeException {
 		TreeSession session = getManager().getTransaction().currentSession();
 		
@@ -76,4 +108,102 @@ class TreeSessionValidator extends TreeValidator {
 					.NO_ACTIVE_SESSION);
 		}
 	}
+	
+	void validateReadOnlySession() throws TreeException {
+		TreeSession session = getManager().getTransaction().currentSession();
+		
+		if (session.isReadOnly()) {
+			throw this.throwTreeException(TreeRepositoryMessage
+					.READ_ONLY_SESSION);
+		}
+	}
+	
+	/*
+	 * The snapshot of a lazy session would miss the elements not loaded yet,
+	 * and it could not load them after restored.
+	 */
+	void validateLazySession(TreePipeline pipeline) throws TreeException {
+		String sessionId = (String) pipeline.getAttribute(
+				TreePipelineAttributes.SESSION_ID);
+		List<TreeSession> sessions = getManager().getTransaction().sessions();
+
+		for (TreeSession session : sessions) {
+			if (sessionId.equals(session.getSessionId())
+					&& ((TreeSessionCore) session).isLazy()) {
+				throw this.throwTreeException(TreeRepositoryMessage
+						.LAZY_SESSION_SAVE);
+			}
+		}
+	}
+	
+	void validateIndexAttribute(TreePipeline pipeline) throws TreeException {
+		if (!this.isValidAttribute(pipeline)) {
+			throw this.throwTreeException(TreeRepositoryMessage
+					.INVALID_INDEX_ATTRIBUTE);
+		}
+	}
+	
+	void validateQueryAttribute(TreePipeline pipeline) throws TreeException {
+		if (!this.isValidAttribute(pipeline)) {
+			throw this.throwTreeException(TreeRepositoryMessage
+					.INVALID_QUERY_ATTRIBUTE);
+		}
+	}
+	
+	void validateDefinedIndex(TreePipeline pipeline) throws TreeException {
+		String attribute = (String) pipeline.getAttribute(
+				TreePipelineAttributes.INDEX_ATTRIBUTE);
+		boolean isSorted = (Boolean) pipeline.getAttribute(
+				TreePipelineAttributes.INDEX_SORTED);
+		TreeSessionCore session = (TreeSessionCore) getManager()
+				.getTransaction().currentSession();
+		
+		TreeIndex index = session.readIndex(attribute);
+		
+		if (index == null || (isSorted && !index.isSorted())) {
+			throw this.throwTreeException(TreeRepositoryMessage
+					.NO_DEFINED_INDEX);
+		}
+	}
+	
+	/*
+	 * The wrapped nodes must have a getter for the attribute, whose values are
+	 * of the required type, as Comparable for a sorted attribute or String for
+	 * a text.
+	 */
+	private boolean isValidAttribute(TreePipeline pipeline) {
+		String attribute = (String) pipeline.getAttribute(
+				TreePipelineAttributes.INDEX_ATTRIBUTE);
+		Class<?> type = (Class<?>) pipeline.getAttribute(
+				TreePipelineAttributes.INDEX_TYPE);
+		TreeSessionCore session = (TreeSessionCore) getManager()
+				.getTransaction().currentSession();
+		
+		Method getter = TreeUtil.ReflectionUtil.getGetter(
+				session.getTypeTree(), attribute);
+		
+		return getter != null && type.isAssignableFrom(MethodType
+				.methodType(getter.getReturnType()).wrap().returnType());
+	}
+	
+	void validateDuplicateTransaction() throws TreeException {
+		TreeSessionCore session = (TreeSessionCore) getManager()
+				.getTransaction().currentSession();
+		
+		if (session.isInTransaction()) {
+			throw this.throwTreeException(TreeRepositoryMessage
+					.DUPLICATE_TRANSACTION);
+		}
+	}
+	
+	void validateNoOpenTransaction() throws TreeException {
+		TreeSessionCore session = (TreeSessionCore) getManager()
+				.getTransaction().currentSession();
+		
+		if (!session.isInTransaction()) {
+			throw this.throwTreeException(session.hasTransaction() ?
+					TreeRepositoryMessage.TRANSACTION_OWNER :
+						TreeRepositoryMessage.NO_OPEN_TRANSACTION);
+		}
+	}
 }
@@ -0,0 +1,161 @@
+package com.madzera.happytree.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Binary layout of a session snapshot file. All numbers are big endian.
+ *
+ * [HEADER]     fixed size, see the HEADER_* offsets below. The epoch is only
+ *              used by the TreeJournal of the session, if any.
+ * [INFO]       session identifier, class type of the tree and root id.
+ * [STRUCTURE]  one fixed size record per element (the root is not included),
+ *              in pre-order. So, the descendants of the element i are the
+ *              records from i + 1 to i + descendantCount, its first child is
+ *              the record i + 1 and its next sibling is the record
+ *              i + 1 + descendantCount.
+ * [INDEX]      open addressing hash table of ints, by the hash of the ids.
+ *              Each slot holds the record index plus one (zero is empty).
+ * [DATA]       for each element, its encoded id, its encoded parent id and
+ *              its serialized wrapped node, one after the other.
+ *
+ * Record:
+ *  0 int   parent record index (-1 for the elements in the root level)
+ *  4 int   descendant count
+ *  8 int   depth
+ * 12 int   hash of the id
+ * 16 long  offset of the element data, relative to the DATA section
+ * 24 int   length of the encoded id
+ * 28 int   length of the encoded parent id
+ * 32 int   length of the serialized wrapped node (-1 for null)
+ * 36 byte  ordinal of the lifecycle state
+ */
+final class TreeSnapshot {
+
+	static final int MAGIC = 0x48545353;
+	static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 64;
+	static final int HEADER_MAGIC = 0;
+	static final int HEADER_VERSION = 4;
+	static final int HEADER_COUNT = 8;
+	static final int HEADER_ACTIVE = 12;
+	static final int HEADER_INFO_OFFSET = 16;
+	static final int HEADER_STRUCTURE_OFFSET = 24;
+	static final int HEADER_INDEX_OFFSET = 32;
+	static final int HEADER_INDEX_CAPACITY = 40;
+	static final int HEADER_EPOCH = 44;
+	static final int HEADER_DATA_OFFSET = 48;
+	static final int HEADER_DATA_LENGTH = 56;
+
+	static final int RECORD_SIZE = 40;
+	static final int RECORD_PARENT = 0;
+	static final int RECORD_DESCENDANTS = 4;
+	static final int RECORD_DEPTH = 8;
+	static final int RECORD_HASH = 12;
+	static final int RECORD_DATA_OFFSET = 16;
+	static final int RECORD_ID_LENGTH = 24;
+	static final int RECORD_PARENT_LENGTH = 28;
+	static final int RECORD_NODE_LENGTH = 32;
+	static final int RECORD_STATE = 36;
+
+	static final int NULL_NODE = -1;
+
+	/*
+	 * Tags of the encoded ids. The most common id types are written without
+	 * the Java serialization overhead.
+	 */
+	private static final byte NULL = 0;
+	private static final byte LONG = 1;
+	private static final byte INTEGER = 2;
+	private static final byte STRING = 3;
+	private static final byte SERIALIZED = 4;
+
+
+	private TreeSnapshot() {}
+
+
+	/*
+	 * The same hash must be calculated when writing and when reading.
+	 */
+	static int hash(Object id) {
+		int hash = id == null ? 0 : id.hashCode();
+		return hash ^ (hash >>> 16);
+	}
+
+	/*
+	 * At most half of the slots are used, so the probing stays short.
+	 */
+	static int indexCapacity(int count) {
+		int capacity = 2;
+		while (capacity < count * 2L && capacity < (1 << 30)) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	static byte[] encodeId(Object id) throws IOException {
+		if (id == null) {
+			return new byte[] {NULL};
+		} else if (id instanceof Long) {
+			return ByteBuffer.allocate(9).put(LONG).putLong((Long) id)
+					.array();
+		} else if (id instanceof Integer) {
+			return ByteBuffer.allocate(5).put(INTEGER).putInt((Integer) id)
+					.array();
+		} else if (id instanceof String) {
+			byte[] value = ((String) id).getBytes(StandardCharsets.UTF_8);
+			return ByteBuffer.allocate(value.length + 1).put(STRING)
+					.put(value).array();
+		}
+
+		byte[] value = serialize(id);
+		return ByteBuffer.allocate(value.length + 1).put(SERIALIZED)
+				.put(value).array();
+	}
+
+	static Object decodeId(byte[] bytes) throws IOException,
+			ClassNotFoundException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		byte tag = buffer.get();
+
+		switch (tag) {
+		case LONG:
+			return buffer.getLong();
+		case INTEGER:
+			return buffer.getInt();
+		case STRING:
+			return new String(bytes, 1, bytes.length - 1,
+					StandardCharsets.UTF_8);
+		case SERIALIZED:
+			return deserialize(bytes, 1, bytes.length - 1);
+		default:
+			return null;
+		}
+	}
+
+	static byte[] serialize(Object object) throws IOException {
+		ByteArrayOutputStream bytes = TreeFactory.ioFactory()
+				.createByteArrayOutputStream();
+
+		try (ObjectOutputStream output = TreeFactory.ioFactory()
+				.createObjectOutputStream(bytes)) {
+			output.writeObject(object);
+		}
+		return bytes.toByteArray();
+	}
+
+	static Object deserialize(byte[] bytes, int offset, int length)
+			throws IOException, ClassNotFoundException {
+		try (ObjectInputStream input = TreeFactory.ioFactory()
+				.createObjectInputStream(new ByteArrayInputStream(bytes,
+						offset, length))) {
+			return input.readObject();
+		}
+	}
+}
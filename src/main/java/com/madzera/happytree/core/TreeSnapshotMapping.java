@@ -0,0 +1,326 @@
+package com.madzera.happytree.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.madzera.happytree.exception.TreeException;
+
+/*
+ * Read-only view of a snapshot file written by TreeSnapshotWriter, mapped into
+ * memory.
+ *
+ * Nothing of the tree is loaded into the heap. The records, the index and the
+ * data are read directly from the mapped file, so a mapped session starts
+ * instantly and its pages are shared by every process mapping the same file.
+ * The ids are decoded and the wrapped nodes are deserialized only on demand.
+ *
+ * As a single MappedByteBuffer cannot exceed 2GB, the file is mapped in chunks.
+ * The absolute reads do not change the buffers, so this mapping can be read by
+ * many threads at the same time.
+ */
+class TreeSnapshotMapping {
+
+	private static final int CHUNK_SHIFT = 30;
+	private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+
+	private final Path file;
+	private MappedByteBuffer[] chunks;
+
+	private int count;
+	private boolean isActive;
+	private long structureOffset;
+	private long indexOffset;
+	private int indexCapacity;
+	private long dataOffset;
+
+	private String sessionId;
+	private Class<?> type;
+	private Object rootId;
+
+
+	TreeSnapshotMapping(Path file) {
+		this.file = file;
+	}
+
+
+	void map() throws TreeException {
+		/*
+		 * The mapping remains valid after closing the channel.
+		 */
+		try (FileChannel channel = FileChannel.open(this.file,
+				StandardOpenOption.READ)) {
+			long size = channel.size();
+
+			this.chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1)
+					>> CHUNK_SHIFT)];
+			for (int i = 0; i < this.chunks.length; i++) {
+				long position = i * CHUNK_SIZE;
+				this.chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						position, Math.min(CHUNK_SIZE, size - position));
+			}
+
+			if (size < TreeSnapshot.HEADER_SIZE
+					|| this.getInt(TreeSnapshot.HEADER_MAGIC)
+					!= TreeSnapshot.MAGIC
+					|| this.getInt(TreeSnapshot.HEADER_VERSION)
+					!= TreeSnapshot.VERSION) {
+				throw this.invalidSnapshot();
+			}
+
+			this.count = this.getInt(TreeSnapshot.HEADER_COUNT);
+			this.isActive = this.get(TreeSnapshot.HEADER_ACTIVE) != 0;
+			this.structureOffset = this.getLong(
+					TreeSnapshot.HEADER_STRUCTURE_OFFSET);
+			this.indexOffset = this.getLong(TreeSnapshot.HEADER_INDEX_OFFSET);
+			this.indexCapacity = this.getInt(
+					TreeSnapshot.HEADER_INDEX_CAPACITY);
+			this.dataOffset = this.getLong(TreeSnapshot.HEADER_DATA_OFFSET);
+			long dataLength = this.getLong(TreeSnapshot.HEADER_DATA_LENGTH);
+
+			if (this.count < 0 || this.indexCapacity <= 0
+					|| Integer.bitCount(this.indexCapacity) != 1
+					|| this.dataOffset + dataLength > size) {
+				throw this.invalidSnapshot();
+			}
+
+			long position = this.getLong(TreeSnapshot.HEADER_INFO_OFFSET);
+			byte[] sessionIdBytes = this.getBytes(position + 4,
+					this.getInt(position));
+			position += 4 + sessionIdBytes.length;
+			byte[] typeBytes = this.getBytes(position + 4,
+					this.getInt(position));
+			position += 4 + typeBytes.length;
+			byte[] rootIdBytes = this.getBytes(position + 4,
+					this.getInt(position));
+
+			this.sessionId = new String(sessionIdBytes, StandardCharsets.UTF_8);
+			this.type = Class.forName(new String(typeBytes,
+					StandardCharsets.UTF_8), Boolean.FALSE,
+					this.classLoader());
+			this.rootId = TreeSnapshot.decodeId(rootIdBytes);
+		} catch (IOException | ClassNotFoundException
+				| RuntimeException exception) {
+			throw this.invalidSnapshot();
+		}
+	}
+
+	Path getFile() {
+		return this.file;
+	}
+
+	String getSessionId() {
+		return this.sessionId;
+	}
+
+	Class<?> getType() {
+		return this.type;
+	}
+
+	boolean isActive() {
+		return this.isActive;
+	}
+
+	Object getRootId() {
+		return this.rootId;
+	}
+
+	/*
+	 * Number of elements, the root is not included.
+	 */
+	int count() {
+		return this.count;
+	}
+
+	int parent(int record) {
+		return this.getInt(this.record(record) + TreeSnapshot.RECORD_PARENT);
+	}
+
+	int descendants(int record) {
+		return this.getInt(this.record(record)
+				+ TreeSnapshot.RECORD_DESCENDANTS);
+	}
+
+	int depth(int record) {
+		return this.getInt(this.record(record) + TreeSnapshot.RECORD_DEPTH);
+	}
+
+	ElementState state(int record) {
+		return ElementState.values()[this.get(this.record(record)
+				+ TreeSnapshot.RECORD_STATE)];
+	}
+
+	Object id(int record) {
+		long position = this.record(record);
+		long data = this.dataOffset + this.getLong(position
+				+ TreeSnapshot.RECORD_DATA_OFFSET);
+
+		return this.decode(data, this.getInt(position
+				+ TreeSnapshot.RECORD_ID_LENGTH));
+	}
+
+	Object parentId(int record) {
+		long position = this.record(record);
+		long data = this.dataOffset + this.getLong(position
+				+ TreeSnapshot.RECORD_DATA_OFFSET);
+		int idLength = this.getInt(position + TreeSnapshot.RECORD_ID_LENGTH);
+
+		return this.decode(data + idLength, this.getInt(position
+				+ TreeSnapshot.RECORD_PARENT_LENGTH));
+	}
+
+	/*
+	 * Deserializes a new copy of the wrapped node on each invocation.
+	 */
+	Object node(int record) {
+		long position = this.record(record);
+		int nodeLength = this.getInt(position
+				+ TreeSnapshot.RECORD_NODE_LENGTH);
+
+		if (nodeLength == TreeSnapshot.NULL_NODE) {
+			return null;
+		}
+
+		long data = this.dataOffset + this.getLong(position
+				+ TreeSnapshot.RECORD_DATA_OFFSET)
+				+ this.getInt(position + TreeSnapshot.RECORD_ID_LENGTH)
+				+ this.getInt(position + TreeSnapshot.RECORD_PARENT_LENGTH);
+
+		try {
+			return TreeSnapshot.deserialize(this.getBytes(data, nodeLength),
+					0, nodeLength);
+		} catch (IOException | ClassNotFoundException exception) {
+			throw TreeFactory.exceptionFactory().createRuntimeException(
+					TreeRepositoryMessage.INVALID_SNAPSHOT.getMessageError());
+		}
+	}
+
+	/*
+	 * Finds the record of the id through the index, or -1 if not found.
+	 */
+	int find(Object id) {
+		int hash = TreeSnapshot.hash(id);
+		int slot = hash & (this.indexCapacity - 1);
+
+		while (true) {
+			int value = this.getInt(this.indexOffset + (long) slot * 4);
+
+			if (value == 0) {
+				return -1;
+			}
+
+			int record = value - 1;
+			if (this.getInt(this.record(record) + TreeSnapshot.RECORD_HASH)
+					== hash && id.equals(this.id(record))) {
+				return record;
+			}
+			slot = (slot + 1) & (this.indexCapacity - 1);
+		}
+	}
+
+	/*
+	 * Whether the record is a descendant of the ancestor record. The root is
+	 * represented by -1.
+	 */
+	boolean isDescendant(int ancestor, int record) {
+		if (ancestor < 0) {
+			return record >= 0;
+		}
+		return record > ancestor
+				&& record <= ancestor + this.descendants(ancestor);
+	}
+
+	/*
+	 * The first child of the record is the next one, and the next sibling of
+	 * a child is right after its descendants.
+	 */
+	int firstChild(int record) {
+		int first = record + 1;
+		int end = record < 0 ? this.count : record + 1
+				+ this.descendants(record);
+		return first < end ? first : -1;
+	}
+
+	int nextSibling(int parent, int child) {
+		int next = child + 1 + this.descendants(child);
+		int end = parent < 0 ? this.count : parent + 1
+				+ this.descendants(parent);
+		return next < end ? next : -1;
+	}
+
+	private long record(int record) {
+		return this.structureOffset + (long) record
+				* TreeSnapshot.RECORD_SIZE;
+	}
+
+	private Object decode(long position, int length) {
+		try {
+			return TreeSnapshot.decodeId(this.getBytes(position, length));
+		} catch (IOException | ClassNotFoundException exception) {
+			throw TreeFactory.exceptionFactory().createRuntimeException(
+					TreeRepositoryMessage.INVALID_SNAPSHOT.getMessageError());
+		}
+	}
+
+	private byte get(long position) {
+		return this.chunks[(int) (position >> CHUNK_SHIFT)].get(
+				(int) (position & (CHUNK_SIZE - 1)));
+	}
+
+	private int getInt(long position) {
+		int offset = (int) (position & (CHUNK_SIZE - 1));
+
+		if (offset + 4 <= CHUNK_SIZE) {
+			return this.chunks[(int) (position >> CHUNK_SHIFT)].getInt(offset);
+		}
+		return ByteBuffer.wrap(this.getBytes(position, 4)).getInt();
+	}
+
+	private long getLong(long position) {
+		int offset = (int) (position & (CHUNK_SIZE - 1));
+
+		if (offset + 8 <= CHUNK_SIZE) {
+			return this.chunks[(int) (position >> CHUNK_SHIFT)].getLong(
+					offset);
+		}
+		return ByteBuffer.wrap(this.getBytes(position, 8)).getLong();
+	}
+
+	/*
+	 * The bulk read is done over a duplicate, so the position of the shared
+	 * buffers is never changed.
+	 */
+	private byte[] getBytes(long position, int length) {
+		byte[] bytes = new byte[length];
+		int read = 0;
+
+		while (read < length) {
+			ByteBuffer chunk = this.chunks[(int) (position >> CHUNK_SHIFT)]
+					.duplicate();
+			int offset = (int) (position & (CHUNK_SIZE - 1));
+			int size = Math.min(length - read, chunk.limit() - offset);
+
+			chunk.position(offset);
+			chunk.get(bytes, read, size);
+
+			read += size;
+			position += size;
+		}
+		return bytes;
+	}
+
+	private ClassLoader classLoader() {
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		return loader != null ? loader :
+			TreeSnapshotMapping.class.getClassLoader();
+	}
+
+	private TreeException invalidSnapshot() {
+		return TreeFactory.exceptionFactory().createTreeException(
+				TreeRepositoryMessage.INVALID_SNAPSHOT.getMessageError());
+	}
+}
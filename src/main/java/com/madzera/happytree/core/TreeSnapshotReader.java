@@ -0,0 +1,286 @@
+package com.madzera.happytree.core;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+import com.madzera.happytree.exception.TreeException;
+
+/*
+ * Reads a session from a snapshot file written by TreeSnapshotWriter.
+ *
+ * The header and the information of the session are read first by open(), so
+ * the transaction can validate the session identifier before reading the tree.
+ * Then, read() rebuilds the tree reading the records and the data of the
+ * elements sequentially, without reflection and without the phases of the API
+ * Transformation Process, since the structure is already in the file.
+ */
+class TreeSnapshotReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Path file;
+	private FileChannel channel;
+
+	private int count;
+	private int epoch;
+	private boolean isActive;
+	private long structureOffset;
+	private long dataOffset;
+	private long dataLength;
+
+	private String sessionId;
+	private Class<?> type;
+	private Object rootId;
+
+
+	TreeSnapshotReader(Path file) {
+		this.file = file;
+	}
+
+
+	void open() throws TreeException {
+		try {
+			this.channel = FileChannel.open(this.file,
+					StandardOpenOption.READ);
+
+			ByteBuffer header = ByteBuffer.allocate(TreeSnapshot.HEADER_SIZE);
+			this.readFully(header, 0);
+
+			if (header.getInt(TreeSnapshot.HEADER_MAGIC) != TreeSnapshot.MAGIC
+					|| header.getInt(TreeSnapshot.HEADER_VERSION)
+					!= TreeSnapshot.VERSION) {
+				throw this.invalidSnapshot();
+			}
+
+			this.count = header.getInt(TreeSnapshot.HEADER_COUNT);
+			this.epoch = header.getInt(TreeSnapshot.HEADER_EPOCH);
+			this.isActive = header.get(TreeSnapshot.HEADER_ACTIVE) != 0;
+			this.structureOffset = header.getLong(
+					TreeSnapshot.HEADER_STRUCTURE_OFFSET);
+			this.dataOffset = header.getLong(TreeSnapshot.HEADER_DATA_OFFSET);
+			this.dataLength = header.getLong(TreeSnapshot.HEADER_DATA_LENGTH);
+
+			long infoOffset = header.getLong(TreeSnapshot.HEADER_INFO_OFFSET);
+			long infoLength = this.structureOffset - infoOffset;
+
+			if (this.count < 0 || infoLength < 12
+					|| infoLength > Integer.MAX_VALUE
+					|| this.dataOffset + this.dataLength
+					> this.channel.size()) {
+				throw this.invalidSnapshot();
+			}
+
+			ByteBuffer info = ByteBuffer.allocate((int) infoLength);
+			this.readFully(info, infoOffset);
+			info.flip();
+
+			this.sessionId = new String(this.next(info),
+					StandardCharsets.UTF_8);
+			this.type = this.loadType(new String(this.next(info),
+					StandardCharsets.UTF_8));
+			this.rootId = TreeSnapshot.decodeId(this.next(info));
+		} catch (IOException | ClassNotFoundException
+				| RuntimeException exception) {
+			throw this.invalidSnapshot();
+		}
+	}
+
+	String getSessionId() {
+		return this.sessionId;
+	}
+
+	int getEpoch() {
+		return this.epoch;
+	}
+
+	/*
+	 * Rebuilds the session. The elements are cached only after the whole tree
+	 * is built, as the cache indexes the leaves of the tree.
+	 */
+	<T> TreeSessionCore read() throws TreeException {
+		TreeSessionCore session = TreeFactory.serviceFactory()
+				.createTreeSession(this.sessionId, this.type);
+
+		TreeElementCore<T> root = TreeFactory.serviceFactory().createElement(
+				this.rootId, null, null, session);
+		Collection<TreeElementCore<T>> rootChildren = TreeFactory
+				.collectionFactory().createHashSet();
+		session.setRoot(root, rootChildren);
+		session.setActive(this.isActive);
+		root.transitionState(ElementState.ATTACHED);
+
+		try {
+			this.readElements(session, root);
+		} catch (IOException | ClassNotFoundException
+				| RuntimeException exception) {
+			throw this.invalidSnapshot();
+		}
+
+		session.restore(root);
+		return session;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.channel != null) {
+			this.channel.close();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> void readElements(TreeSessionCore session,
+			TreeElementCore<T> root) throws IOException,
+			ClassNotFoundException, TreeException {
+		/*
+		 * The buffer of the records holds a whole number of records.
+		 */
+		ByteBuffer records = ByteBuffer.allocateDirect(BUFFER_SIZE
+				- BUFFER_SIZE % TreeSnapshot.RECORD_SIZE);
+		ByteBuffer data = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		records.limit(0);
+		data.limit(0);
+
+		long recordsPosition = this.structureOffset;
+		long dataPosition = this.dataOffset;
+		long relativeOffset = 0;
+
+		ElementState[] states = ElementState.values();
+		TreeElementCore<?>[] elements = new TreeElementCore<?>[this.count];
+
+		for (int current = 0; current < this.count; current++) {
+			if (!records.hasRemaining()) {
+				records.clear();
+				long remaining = (long) (this.count - current)
+						* TreeSnapshot.RECORD_SIZE;
+				if (remaining < records.capacity()) {
+					records.limit((int) remaining);
+				}
+				this.readFully(records, recordsPosition);
+				recordsPosition += records.limit();
+				records.flip();
+			}
+
+			int parentIndex = records.getInt();
+			records.position(records.position()
+					+ TreeSnapshot.RECORD_DATA_OFFSET
+					- TreeSnapshot.RECORD_DESCENDANTS);
+			long offset = records.getLong();
+			int idLength = records.getInt();
+			int parentLength = records.getInt();
+			int nodeLength = records.getInt();
+			byte state = records.get();
+			records.position(records.position() + TreeSnapshot.RECORD_SIZE
+					- TreeSnapshot.RECORD_STATE - 1);
+
+			/*
+			 * The parent always comes before its children in the pre-order.
+			 */
+			if (parentIndex < -1 || parentIndex >= current
+					|| offset != relativeOffset || state < 0
+					|| state >= states.length) {
+				throw this.invalidSnapshot();
+			}
+
+			long elementLength = (long) idLength + parentLength
+					+ Math.max(nodeLength, 0);
+			relativeOffset += elementLength;
+			if (relativeOffset > this.dataLength) {
+				throw this.invalidSnapshot();
+			}
+
+			byte[] id = new byte[idLength];
+			dataPosition = this.next(data, id, dataPosition);
+			byte[] parentId = new byte[parentLength];
+			dataPosition = this.next(data, parentId, dataPosition);
+
+			T node = null;
+			if (nodeLength != TreeSnapshot.NULL_NODE) {
+				byte[] nodeBytes = new byte[nodeLength];
+				dataPosition = this.next(data, nodeBytes, dataPosition);
+				node = (T) this.type.cast(TreeSnapshot.deserialize(nodeBytes,
+						0, nodeLength));
+			}
+
+			TreeElementCore<T> element = TreeFactory.serviceFactory()
+					.createElement(TreeSnapshot.decodeId(id),
+							TreeSnapshot.decodeId(parentId), node, session);
+			element.transitionState(states[state]);
+
+			TreeElementCore<T> parent = parentIndex < 0 ? root :
+				(TreeElementCore<T>) elements[parentIndex];
+			parent.getChildren().add(element);
+			elements[current] = element;
+		}
+	}
+
+	/*
+	 * Reads the next bytes of the DATA section through the buffer, returning
+	 * the next position in the file.
+	 */
+	private long next(ByteBuffer buffer, byte[] bytes, long position)
+			throws IOException {
+		if (bytes.length <= buffer.remaining()) {
+			buffer.get(bytes);
+			return position;
+		}
+
+		int buffered = buffer.remaining();
+		buffer.get(bytes, 0, buffered);
+
+		if (bytes.length - buffered > buffer.capacity()) {
+			ByteBuffer large = ByteBuffer.wrap(bytes, buffered,
+					bytes.length - buffered);
+			this.readFully(large, position);
+			buffer.limit(0);
+			return position + bytes.length - buffered;
+		}
+
+		buffer.clear();
+		long remaining = this.dataOffset + this.dataLength - position;
+		if (remaining < buffer.capacity()) {
+			buffer.limit((int) remaining);
+		}
+		this.readFully(buffer, position);
+		buffer.flip();
+		buffer.get(bytes, buffered, bytes.length - buffered);
+
+		return position + buffer.limit();
+	}
+
+	private byte[] next(ByteBuffer info) {
+		byte[] bytes = new byte[info.getInt()];
+		info.get(bytes);
+		return bytes;
+	}
+
+	private Class<?> loadType(String name) throws ClassNotFoundException {
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		if (loader == null) {
+			loader = TreeSnapshotReader.class.getClassLoader();
+		}
+		return Class.forName(name, Boolean.FALSE, loader);
+	}
+
+	private void readFully(ByteBuffer buffer, long position)
+			throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = this.channel.read(buffer, position);
+			if (read < 0) {
+				throw new EOFException();
+			}
+			position += read;
+		}
+	}
+
+	private TreeException invalidSnapshot() {
+		return TreeFactory.exceptionFactory().createTreeException(
+				TreeRepositoryMessage.INVALID_SNAPSHOT.getMessageError());
+	}
+}
@@ -0,0 +1,257 @@
+package com.madzera.happytree.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Deque;
+import java.util.Iterator;
+
+import com.madzera.happytree.Element;
+
+/*
+ * Writes a session into a snapshot file, as described by TreeSnapshot.
+ *
+ * The tree is traversed only once. The records and the data of the elements
+ * are written through two buffers in their respective sections, so the file is
+ * written sequentially and without keeping the serialized tree in memory.
+ */
+class TreeSnapshotWriter {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private FileChannel channel;
+
+
+	TreeSnapshotWriter() {}
+
+
+	void write(TreeSessionCore session, Path file) throws IOException {
+		this.write(session, file, 0);
+	}
+
+	void write(TreeSessionCore session, Path file, int epoch)
+			throws IOException {
+		/*
+		 * A mapped session is already a snapshot.
+		 */
+		if (session.getMapping() != null) {
+			Files.copy(session.getMapping().getFile(), file,
+					StandardCopyOption.REPLACE_EXISTING);
+			return;
+		}
+
+		TreeElementCore<?> root = (TreeElementCore<?>) session.tree();
+
+		byte[] sessionId = session.getSessionId().getBytes(
+				StandardCharsets.UTF_8);
+		byte[] type = session.getTypeTree().getName().getBytes(
+				StandardCharsets.UTF_8);
+		byte[] rootId = TreeSnapshot.encodeId(root.getId());
+
+		int count = root.getDescendantCount();
+		int capacity = TreeSnapshot.indexCapacity(count);
+
+		long infoOffset = TreeSnapshot.HEADER_SIZE;
+		long structureOffset = infoOffset + 12 + sessionId.length
+				+ type.length + rootId.length;
+		long indexOffset = structureOffset
+				+ (long) count * TreeSnapshot.RECORD_SIZE;
+		long dataOffset = indexOffset + (long) capacity * 4;
+
+		try (FileChannel fileChannel = FileChannel.open(file,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			this.channel = fileChannel;
+
+			ByteBuffer info = ByteBuffer.allocate((int) (structureOffset
+					- infoOffset));
+			info.putInt(sessionId.length).put(sessionId);
+			info.putInt(type.length).put(type);
+			info.putInt(rootId.length).put(rootId);
+			info.flip();
+			this.writeFully(info, infoOffset);
+
+			int[] index = new int[capacity];
+			long dataLength = this.writeElements(root, count, index,
+					structureOffset, dataOffset);
+
+			this.writeIndex(index, indexOffset);
+
+			/*
+			 * The header is the last one, so an incomplete file is never
+			 * recognized as a valid snapshot.
+			 */
+			ByteBuffer header = ByteBuffer.allocate(TreeSnapshot.HEADER_SIZE);
+			header.putInt(TreeSnapshot.HEADER_MAGIC, TreeSnapshot.MAGIC);
+			header.putInt(TreeSnapshot.HEADER_VERSION, TreeSnapshot.VERSION);
+			header.putInt(TreeSnapshot.HEADER_COUNT, count);
+			header.put(TreeSnapshot.HEADER_ACTIVE,
+					(byte) (session.isActive() ? 1 : 0));
+			header.putLong(TreeSnapshot.HEADER_INFO_OFFSET, infoOffset);
+			header.putLong(TreeSnapshot.HEADER_STRUCTURE_OFFSET,
+					structureOffset);
+			header.putLong(TreeSnapshot.HEADER_INDEX_OFFSET, indexOffset);
+			header.putInt(TreeSnapshot.HEADER_INDEX_CAPACITY, capacity);
+			header.putInt(TreeSnapshot.HEADER_EPOCH, epoch);
+			header.putLong(TreeSnapshot.HEADER_DATA_OFFSET, dataOffset);
+			header.putLong(TreeSnapshot.HEADER_DATA_LENGTH, dataLength);
+			this.writeFully(header, 0);
+
+			this.channel.force(Boolean.TRUE);
+		} finally {
+			this.channel = null;
+		}
+	}
+
+	/*
+	 * Iterative pre-order traversal, so very deep trees do not overflow the
+	 * stack. Returns the length of the DATA section.
+	 */
+	private long writeElements(TreeElementCore<?> root, int count,
+			int[] index, long structureOffset, long dataOffset)
+			throws IOException {
+		ByteBuffer records = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		ByteBuffer data = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		long recordsPosition = structureOffset;
+		long dataPosition = dataOffset;
+		long relativeOffset = 0;
+
+		Deque<Iterator<? extends Element<?>>> iterators = TreeFactory
+				.collectionFactory().createArrayDeque();
+		Deque<int[]> parents = TreeFactory.collectionFactory()
+				.createArrayDeque();
+
+		iterators.push(root.getChildren().iterator());
+		parents.push(new int[] {-1, -1});
+
+		int current = 0;
+		while (!iterators.isEmpty()) {
+			Iterator<? extends Element<?>> iterator = iterators.peek();
+
+			if (!iterator.hasNext()) {
+				iterators.pop();
+				int[] parent = parents.pop();
+
+				/*
+				 * The navigation over the records depends on the descendant
+				 * count, so it must match the elements really written.
+				 */
+				if (parent[0] >= 0 && current - parent[0] - 1 != parent[1]) {
+					throw new IOException();
+				}
+				continue;
+			}
+
+			if (current >= count) {
+				throw new IOException();
+			}
+
+			TreeElementCore<?> element = (TreeElementCore<?>) iterator.next();
+
+			byte[] id = TreeSnapshot.encodeId(element.getId());
+			byte[] parentId = TreeSnapshot.encodeId(element.getParent());
+			Object wrappedNode = element.getWrappedNode();
+			byte[] node = wrappedNode == null ? null :
+				TreeSnapshot.serialize(wrappedNode);
+
+			int hash = TreeSnapshot.hash(element.getId());
+
+			if (records.remaining() < TreeSnapshot.RECORD_SIZE) {
+				recordsPosition = this.flush(records, recordsPosition);
+			}
+			records.putInt(parents.peek()[0]);
+			records.putInt(element.getDescendantCount());
+			records.putInt(parents.size());
+			records.putInt(hash);
+			records.putLong(relativeOffset);
+			records.putInt(id.length);
+			records.putInt(parentId.length);
+			records.putInt(node == null ? TreeSnapshot.NULL_NODE :
+				node.length);
+			records.put((byte) element.getState().ordinal());
+			records.put(new byte[3]);
+
+			dataPosition = this.put(data, id, dataPosition);
+			dataPosition = this.put(data, parentId, dataPosition);
+			if (node != null) {
+				dataPosition = this.put(data, node, dataPosition);
+			}
+			relativeOffset += id.length + parentId.length
+					+ (node == null ? 0 : node.length);
+
+			int slot = hash & (index.length - 1);
+			while (index[slot] != 0) {
+				slot = (slot + 1) & (index.length - 1);
+			}
+			index[slot] = current + 1;
+
+			iterators.push(element.getChildren().iterator());
+			parents.push(new int[] {current, element.getDescendantCount()});
+			current++;
+		}
+
+		if (current != count) {
+			throw new IOException();
+		}
+
+		this.flush(records, recordsPosition);
+		this.flush(data, dataPosition);
+
+		return relativeOffset;
+	}
+
+	private void writeIndex(int[] index, long indexOffset)
+			throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		long position = indexOffset;
+
+		for (int slot : index) {
+			if (!buffer.hasRemaining()) {
+				position = this.flush(buffer, position);
+			}
+			buffer.putInt(slot);
+		}
+		this.flush(buffer, position);
+	}
+
+	/*
+	 * Puts the bytes into the buffer, flushing it when full. Large arrays are
+	 * written directly.
+	 */
+	private long put(ByteBuffer buffer, byte[] bytes, long position)
+			throws IOException {
+		if (bytes.length > buffer.remaining()) {
+			position = this.flush(buffer, position);
+		}
+		if (bytes.length > buffer.capacity()) {
+			this.writeFully(ByteBuffer.wrap(bytes), position);
+			return position + bytes.length;
+		}
+		buffer.put(bytes);
+		return position;
+	}
+
+	/*
+	 * Writes the buffer content at the position, returning the next position.
+	 */
+	private long flush(ByteBuffer buffer, long position) throws IOException {
+		buffer.flip();
+		int length = buffer.remaining();
+		this.writeFully(buffer, position);
+		buffer.clear();
+		return position + length;
+	}
+
+	private void writeFully(ByteBuffer buffer, long position)
+			throws IOException {
+		while (buffer.hasRemaining()) {
+			position += this.channel.write(buffer, position);
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package com.madzera.happytree.core;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/*
+ * Inverted index of the elements of a session by the words of a String
+ * attribute of their wrapped nodes.
+ *
+ * As the other indexes, it is kept by the cache of the session. Each indexed
+ * element has an ordinal, and each word has the sorted ordinals of the
+ * elements which have it (its postings), in a primitive int array. A text is
+ * found by the words which start with each of its words, so the postings of
+ * all those words are joined and then intersected, as bit sets of ordinals.
+ *
+ * The words are the sequences of letters and digits of the text, in lower
+ * case.
+ */
+class TreeTextIndex {
+
+	private final String attribute;
+	private final Class<?> type;
+	private final Method getter;
+
+	private final NavigableMap<String, Postings> postings =
+			TreeFactory.mapFactory().createTreeMap();
+
+	/*
+	 * The element, its wrapped node and the words of each ordinal, and the
+	 * ordinal of each id. The ordinals of the deleted elements are reused.
+	 * The wrapped nodes of a session are never changed, only replaced, so an
+	 * element indexed again with the same one keeps its words without
+	 * reading them.
+	 */
+	private final List<TreeElementCore<?>> elements =
+			TreeFactory.collectionFactory().createArrayList();
+	private final List<Object> nodes =
+			TreeFactory.collectionFactory().createArrayList();
+	private final List<String[]> words =
+			TreeFactory.collectionFactory().createArrayList();
+	private final Map<Object, Integer> ordinals =
+			TreeFactory.mapFactory().createHashMap();
+	private final BitSet free = new BitSet();
+
+
+	TreeTextIndex(String attribute, Class<?> type) {
+		this.attribute = attribute;
+		this.type = type;
+		this.getter = TreeUtil.ReflectionUtil.getGetter(type, attribute);
+	}
+
+
+	void write(Object id, TreeElementCore<?> element) {
+		Object node = element.getWrappedNode();
+		Integer ordinal = this.ordinals.get(id);
+
+		if (ordinal != null && this.nodes.get(ordinal) == node) {
+			this.elements.set(ordinal, element);
+			return;
+		}
+
+		String[] elementWords = tokenize(this.value(node));
+
+		if (ordinal != null && Arrays.equals(elementWords,
+				this.words.get(ordinal))) {
+			this.elements.set(ordinal, element);
+			this.nodes.set(ordinal, node);
+			return;
+		}
+
+		this.delete(id);
+		ordinal = this.allocate(element, node, elementWords);
+		this.ordinals.put(id, ordinal);
+
+		for (String word : elementWords) {
+			this.postings.computeIfAbsent(word, key -> new Postings())
+					.add(ordinal);
+		}
+	}
+
+	void delete(Object id) {
+		Integer ordinal = this.ordinals.remove(id);
+
+		if (ordinal == null) {
+			return;
+		}
+
+		for (String word : this.words.get(ordinal)) {
+			Postings wordPostings = this.postings.get(word);
+			wordPostings.remove(ordinal);
+
+			if (wordPostings.size == 0) {
+				this.postings.remove(word);
+			}
+		}
+
+		this.elements.set(ordinal, null);
+		this.nodes.set(ordinal, null);
+		this.words.set(ordinal, null);
+		this.free.set(ordinal);
+	}
+
+	/*
+	 * The elements which have, for each word of the text, a word starting
+	 * with it, in the order of their ordinals. A text without words finds no
+	 * element.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> List<TreeElementCore<T>> read(String text) {
+		List<TreeElementCore<T>> result = TreeFactory.collectionFactory()
+				.createArrayList();
+		BitSet found = null;
+
+		for (String prefix : tokenize(text)) {
+			BitSet matches = new BitSet();
+
+			for (Postings wordPostings : this.postings.subMap(prefix, true,
+					prefix + Character.MAX_VALUE, false).values()) {
+				wordPostings.addTo(matches);
+			}
+
+			if (found == null) {
+				found = matches;
+			} else {
+				found.and(matches);
+			}
+			if (found.isEmpty()) {
+				break;
+			}
+		}
+
+		if (found != null) {
+			for (int ordinal = found.nextSetBit(0); ordinal >= 0;
+					ordinal = found.nextSetBit(ordinal + 1)) {
+				result.add((TreeElementCore<T>) this.elements.get(ordinal));
+			}
+		}
+		return result;
+	}
+
+	String getAttribute() {
+		return this.attribute;
+	}
+
+	/*
+	 * A new index of the same attribute, without elements.
+	 */
+	TreeTextIndex emptyCopy() {
+		return TreeFactory.utilFactory().createTextIndex(this.attribute,
+				this.type);
+	}
+
+	/*
+	 * Whether the value has, for each word of the text, a word starting with
+	 * it, as read(text) finds the elements.
+	 */
+	static boolean matches(String value, String text) {
+		String[] valueWords = tokenize(value);
+		String[] prefixes = tokenize(text);
+
+		if (prefixes.length == 0) {
+			return false;
+		}
+
+		for (String prefix : prefixes) {
+			boolean isFound = false;
+
+			for (String word : valueWords) {
+				if (word.startsWith(prefix)) {
+					isFound = true;
+					break;
+				}
+			}
+			if (!isFound) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * The distinct words of the text, in the order they appear.
+	 */
+	static String[] tokenize(String text) {
+		if (text == null) {
+			return new String[0];
+		}
+
+		List<String> tokens = TreeFactory.collectionFactory()
+				.createArrayList();
+		String lowerText = text.toLowerCase(Locale.ROOT);
+		int start = -1;
+
+		for (int i = 0; i <= lowerText.length(); i++) {
+			boolean isWordChar = i < lowerText.length()
+					&& Character.isLetterOrDigit(lowerText.charAt(i));
+
+			if (isWordChar && start < 0) {
+				start = i;
+			} else if (!isWordChar && start >= 0) {
+				String token = lowerText.substring(start, i);
+
+				if (!tokens.contains(token)) {
+					tokens.add(token);
+				}
+				start = -1;
+			}
+		}
+		return tokens.toArray(new String[tokens.size()]);
+	}
+
+	private int allocate(TreeElementCore<?> element, Object node,
+			String[] elementWords) {
+		int ordinal = this.free.nextSetBit(0);
+
+		if (ordinal < 0) {
+			this.elements.add(element);
+			this.nodes.add(node);
+			this.words.add(elementWords);
+			return this.elements.size() - 1;
+		}
+
+		this.free.clear(ordinal);
+		this.elements.set(ordinal, element);
+		this.nodes.set(ordinal, node);
+		this.words.set(ordinal, elementWords);
+		return ordinal;
+	}
+
+	private String value(Object node) {
+		if (node == null) {
+			return null;
+		}
+
+		try {
+			return (String) this.getter.invoke(node);
+		} catch (ReflectiveOperationException exception) {
+			/*
+			 * Unreachable code. The getter is validated when the index is
+			 * created.
+			 */
+			return null;
+		}
+	}
+
+	/*
+	 * The sorted ordinals of the elements which have a word.
+	 */
+	private static class Postings {
+
+		private int[] ordinals = new int[4];
+		private int size;
+
+
+		void add(int ordinal) {
+			int position = Arrays.binarySearch(this.ordinals, 0, this.size,
+					ordinal);
+
+			if (position >= 0) {
+				return;
+			}
+			position = -position - 1;
+
+			if (this.size == this.ordinals.length) {
+				this.ordinals = Arrays.copyOf(this.ordinals, this.size * 2);
+			}
+			System.arraycopy(this.ordinals, position, this.ordinals,
+					position + 1, this.size - position);
+			this.ordinals[position] = ordinal;
+			this.size++;
+		}
+
+		void remove(int ordinal) {
+			int position = Arrays.binarySearch(this.ordinals, 0, this.size,
+					ordinal);
+
+			if (position < 0) {
+				return;
+			}
+			System.arraycopy(this.ordinals, position + 1, this.ordinals,
+					position, this.size - position - 1);
+			this.size--;
+		}
+
+		void addTo(BitSet ordinalSet) {
+			for (int i = 0; i < this.size; i++) {
+				ordinalSet.set(this.ordinals[i]);
+			}
+		}
+	}
+}
@@ -1,9 +1,14 @@
 package com.madzera.happytree.core;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
 
+import com.madzera.happytree.ChildLoader;
 import com.madzera.happytree.Element;
 import com.madzera.happytree.TreeManager;
 import com.madzera.happytree.TreeSession;
@@ -15,9 +20,24 @@ import com.madzera.happytree.exception.TreeException;
 class TreeTransactionCore implements TreeTransaction {
 
 	private Map<String, TreeSessionCore> sessions = TreeFactory.mapFactory()
-			.createHashMap();
+			.createConcurrentHashMap();
+	
+	/*
+	 * The current session is kept per thread only when the transaction is
+	 * thread-confined. The session an operation is working on is always kept
+	 * per thread, so checking out another session in another thread does not
+	 * change it, and the other threads never see the target session of a cut
+	 * or a copy.
+	 */
+	private volatile TreeSessionCore currentSession;
+	private volatile boolean isThreadConfined;
+	private volatile ThreadLocal<TreeSessionCore> threadSession = TreeFactory
+			.utilFactory().createThreadLocal();
+	private final ThreadLocal<TreeSessionCore> workingSession = TreeFactory
+			.utilFactory().createThreadLocal();
+	private final ThreadLocal<Integer> operationDepth = TreeFactory
+			.utilFactory().createThreadLocal();
 	
-	private TreeSessionCore currentSession;
 	private TreeManager associatedManager;
 	
 
@@ -74,39 +94,281 @@ class TreeTransactionCore implements TreeTransaction {
 		lifecycle.run();
 	}
 
+	@Override
+	public <T> void initializeSession(String identifier, Class<T> type,
+			InputStream input, Format format) throws TreeException {
+		TreeValidatorFacade validatorFacade = TreeFactory.facadeFactory()
+				.createValidatorFacade(this.associatedManager());
+		validatorFacade.validateSessionInitialization(identifier, type, input,
+				format);
+		
+		/*
+		 * The new session is checked out to be read, so the previous one must
+		 * come back if the reading fails.
+		 */
+		TreeSessionCore previousSession = this.current();
+		
+		this.initializeSession(identifier, type);
+		
+		TreeDocumentReader<T> reader = TreeFactory.utilFactory()
+				.createDocumentReader(type);
+		
+		try {
+			reader.read(input, format, this.refresh());
+		} catch (TreeException exception) {
+			/*
+			 * The session cannot stay partially read.
+			 */
+			this.destroySession(identifier);
+			this.checkout(previousSession);
+			throw exception;
+		}
+		
+		this.commitTransaction();
+	}
+
+	@Override
+	public <T> void initializeSession(String identifier, Class<T> type,
+			ChildLoader<T> loader) throws TreeException {
+		TreeValidatorFacade validatorFacade = TreeFactory.facadeFactory()
+				.createValidatorFacade(this.associatedManager());
+		validatorFacade.validateSessionInitialization(identifier, type,
+				loader);
+		
+		this.initializeSession(identifier, type);
+		
+		/*
+		 * Only the root exists, and its children are loaded by the first
+		 * access.
+		 */
+		TreeSessionCore session = this.current();
+		session.setChildLoading(TreeFactory.utilFactory().createChildLoading(
+				type, loader));
+		this.refresh().setUnloaded(Boolean.TRUE);
+	}
+
+	@Override
+	public void saveSession(Path file) throws TreeException {
+		TreeValidatorFacade validatorFacade = TreeFactory.facadeFactory()
+				.createValidatorFacade(this.associatedManager());
+		validatorFacade.validateMandatory(file);
+		
+		TreeSessionValidator validator = TreeFactory.validatorFactory()
+				.createSessionValidator(this.associatedManager());
+		validator.validateNoDefinedSession();
+		
+		this.saveSession(this.current().getSessionId(), file);
+	}
+
+	@Override
+	public void saveSession(String identifier, Path file)
+			throws TreeException {
+		TreeValidatorFacade validatorFacade = TreeFactory.facadeFactory()
+				.createValidatorFacade(this.associatedManager());
+		validatorFacade.validateSessionSave(identifier, file);
+		
+		TreeSnapshotWriter writer = TreeFactory.utilFactory()
+				.createSnapshotWriter();
+		
+		TreeSessionCore session = this.session(identifier);
+		Lock lock = this.lock(session, Boolean.FALSE);
+		
+		try {
+			writer.write(session, file);
+		} catch (IOException exception) {
+			throw TreeFactory.exceptionFactory().createTreeException(
+					TreeRepositoryMessage.SNAPSHOT_WRITE.getMessageError());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public TreeSession restoreSession(Path file) throws TreeException {
+		TreeValidatorFacade validatorFacade = TreeFactory.facadeFactory()
+				.createValidatorFacade(this.associatedManager());
+		validatorFacade.validateMandatory(file);
+		
+		TreeSessionCore restoredSession = null;
+		
+		try (TreeSnapshotReader reader = TreeFactory.utilFactory()
+				.createSnapshotReader(file)) {
+			reader.open();
+			validatorFacade.validateSessionInitialization(
+					reader.getSessionId());
+			
+			restoredSession = reader.read();
+		} catch (IOException exception) {
+			throw TreeFactory.exceptionFactory().createTreeException(
+					TreeRepositoryMessage.INVALID_SNAPSHOT.getMessageError());
+		}
+		
+		this.sessions.put(restoredSession.getSessionId(), restoredSession);
+		
+		return this.sessionCheckout(restoredSession.getSessionId());
+	}
+
+	@Override
+	public TreeSession restoreSession(Path snapshot, Path journal)
+			throws TreeException {
+		TreeValidatorFacade validatorFacade = TreeFactory.facadeFactory()
+				.createValidatorFacade(this.associatedManager());
+		validatorFacade.validateMandatory(snapshot, journal);
+		
+		TreeSessionCore restoredSession = null;
+		int epoch = 0;
+		
+		try (TreeSnapshotReader reader = TreeFactory.utilFactory()
+				.createSnapshotReader(snapshot)) {
+			reader.open();
+			validatorFacade.validateSessionInitialization(
+					reader.getSessionId());
+			
+			restoredSession = reader.read();
+			epoch = reader.getEpoch();
+		} catch (IOException exception) {
+			throw TreeFactory.exceptionFactory().createTreeException(
+					TreeRepositoryMessage.INVALID_SNAPSHOT.getMessageError());
+		}
+		
+		TreeJournal sessionJournal = TreeFactory.utilFactory().createJournal(
+				restoredSession, snapshot, journal);
+		sessionJournal.open(epoch);
+		restoredSession.setJournal(sessionJournal);
+		
+		this.sessions.put(restoredSession.getSessionId(), restoredSession);
+		
+		return this.sessionCheckout(restoredSession.getSessionId());
+	}
+
+	@Override
+	public void openJournal(Path snapshot, Path journal)
+			throws TreeException {
+		TreeValidatorFacade validatorFacade = TreeFactory.facadeFactory()
+				.createValidatorFacade(this.associatedManager());
+		validatorFacade.validateJournalOpening(snapshot, journal);
+		
+		TreeSessionCore session = this.current();
+		Lock lock = this.lock(session, Boolean.TRUE);
+		
+		try {
+			this.closeJournal(session);
+			
+			TreeJournal sessionJournal = TreeFactory.utilFactory()
+					.createJournal(session, snapshot, journal);
+			sessionJournal.create();
+			session.setJournal(sessionJournal);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void compactJournal() throws TreeException {
+		TreeValidatorFacade validatorFacade = TreeFactory.facadeFactory()
+				.createValidatorFacade(this.associatedManager());
+		validatorFacade.validateSessionTransaction();
+		
+		TreeSessionCore session = this.current();
+		Lock lock = this.lock(session, Boolean.TRUE);
+		
+		try {
+			TreeJournal sessionJournal = session.getJournal();
+			if (sessionJournal != null) {
+				sessionJournal.compact();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void closeJournal() throws TreeException {
+		TreeSessionCore session = this.current();
+		
+		if (session == null) {
+			return;
+		}
+		
+		Lock lock = this.lock(session, Boolean.TRUE);
+		
+		try {
+			TreeJournal sessionJournal = session.getJournal();
+			
+			if (sessionJournal != null) {
+				session.setJournal(null);
+				sessionJournal.close();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public TreeSession mapSession(Path file) throws TreeException {
+		TreeValidatorFacade validatorFacade = TreeFactory.facadeFactory()
+				.createValidatorFacade(this.associatedManager());
+		validatorFacade.validateMandatory(file);
+		
+		TreeSnapshotMapping mapping = TreeFactory.utilFactory()
+				.createSnapshotMapping(file);
+		mapping.map();
+		
+		validatorFacade.validateSessionInitialization(mapping.getSessionId());
+		
+		TreeSessionCore mappedSession = TreeFactory.serviceFactory()
+				.createTreeSession(mapping.getSessionId(), mapping.getType());
+		
+		mappedSession.setMapping(mapping);
+		mappedSession.setActive(mapping.isActive());
+		
+		this.sessions.put(mappedSession.getSessionId(), mappedSession);
+		
+		return this.sessionCheckout(mappedSession.getSessionId());
+	}
+
 	@Override
 	public void destroySession(String identifier) {
-		TreeSession session = this.sessions.get(identifier);
-		if (session != null && session == this.currentSession) {
-			this.currentSession = null;
+		TreeSessionCore session = this.session(identifier);
+		if (session != null && session == this.current()) {
+			this.checkout(null);
+		}
+		if (session != null) {
+			this.closeJournal(session);
+			this.sessions.remove(identifier);
 		}
-		this.sessions.remove(identifier);
 	}
 
 	@Override
 	public void destroySession() {
-		TreeSession session = this.currentSession;
+		TreeSessionCore session = this.current();
 		if (session != null) {
+			this.closeJournal(session);
 			this.sessions.remove(session.getSessionId());
-			this.currentSession = null;
+			this.checkout(null);
 		}
 	}
 
 	@Override
 	public void destroyAllSessions() {
+		for (TreeSessionCore session : this.sessions.values()) {
+			this.closeJournal(session);
+		}
 		this.sessions.clear();
-		this.currentSession = null;
+		this.checkout(null);
 	}
 
 	@Override
 	public TreeSession sessionCheckout(String identifier) {
-		this.currentSession = sessions.get(identifier);
-		return this.currentSession();
+		TreeSessionCore session = this.session(identifier);
+		
+		this.checkout(session);
+		return session;
 	}
 
 	@Override
 	public void activateSession(String identifier) {
-		TreeSession session = sessions.get(identifier);
+		TreeSession session = this.session(identifier);
 		
 		if (session != null) {
 			TreeSessionCore sessionCore = (TreeSessionCore) session;
@@ -126,7 +388,7 @@ class TreeTransactionCore implements TreeTransaction {
 
 	@Override
 	public void deactivateSession(String identifier) {
-		TreeSession session = sessions.get(identifier);
+		TreeSession session = this.session(identifier);
 		
 		if (session != null) {
 			TreeSessionCore sessionCore = (TreeSessionCore) session;
@@ -158,7 +420,7 @@ class TreeTransactionCore implements TreeTransaction {
 	public TreeSession cloneSession(String from, String to) {
 		TreeSessionCore clonedSession = null;
 		
-		TreeSessionCore sourceSession = sessions.get(from);
+		TreeSessionCore sourceSession = this.session(from);
 		
 		clonedSession = (TreeSessionCore) this.cloneSession(sourceSession, to);
 		
@@ -172,7 +434,17 @@ class TreeTransactionCore implements TreeTransaction {
 		TreeSessionCore sourceSession = (TreeSessionCore) from;
 		
 		if (from != null && to != null) {
-			clonedSession = sourceSession.cloneSession(to);
+			Lock lock = sourceSession.lockOutOfTransaction(Boolean.FALSE);
+			
+			if (lock == null) {
+				return null;
+			}
+			
+			try {
+				clonedSession = sourceSession.cloneSession(to);
+			} finally {
+				lock.unlock();
+			}
 			sessions.put(clonedSession.getSessionId(), clonedSession);
 		}
 		
@@ -181,31 +453,391 @@ class TreeTransactionCore implements TreeTransaction {
 	
 	@Override
 	public TreeSession currentSession() {
-		return this.currentSession;
+		return this.current();
+	}
+	
+	@Override
+	public synchronized void setThreadConfined(boolean isThreadConfined) {
+		if (this.isThreadConfined == isThreadConfined) {
+			return;
+		}
+		
+		/*
+		 * Only the calling thread keeps its current session. The sessions
+		 * checked out by the other threads are forgotten.
+		 */
+		TreeSessionCore session = this.current();
+		
+		this.currentSession = null;
+		this.threadSession = TreeFactory.utilFactory().createThreadLocal();
+		this.isThreadConfined = isThreadConfined;
+		this.checkout(session);
+	}
+	
+	@Override
+	public boolean isThreadConfined() {
+		return this.isThreadConfined;
+	}
+	
+	@Override
+	public void begin() throws TreeException {
+		TreeValidatorFacade validatorFacade = TreeFactory.facadeFactory()
+				.createValidatorFacade(this.associatedManager());
+		validatorFacade.validateTransactionBegin();
+		
+		TreeSessionCore session = this.current();
+		Lock lock = this.lock(session, Boolean.TRUE);
+		
+		try {
+			session.beginTransaction();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public void commit() throws TreeException {
+		TreeValidatorFacade validatorFacade = TreeFactory.facadeFactory()
+				.createValidatorFacade(this.associatedManager());
+		validatorFacade.validateTransactionEnd();
+		
+		TreeSessionCore session = this.current();
+		Lock lock = session.lock(Boolean.TRUE);
+		
+		try {
+			/*
+			 * The changes were not journaled one by one, so the journal is
+			 * compacted once with all of them.
+			 */
+			boolean isChanged = session.commitTransaction();
+			TreeJournal sessionJournal = session.getJournal();
+			
+			if (isChanged && sessionJournal != null) {
+				sessionJournal.compact();
+			}
+		} finally {
+			session.endTransaction();
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public void rollback() throws TreeException {
+		TreeValidatorFacade validatorFacade = TreeFactory.facadeFactory()
+				.createValidatorFacade(this.associatedManager());
+		validatorFacade.validateTransactionEnd();
+		
+		TreeSessionCore session = this.current();
+		Lock lock = session.lock(Boolean.TRUE);
+		
+		try {
+			session.rollbackTransaction();
+		} finally {
+			session.endTransaction();
+			lock.unlock();
+		}
+	}
+	
+	/*
+	 * Locks the session out of the transactions of other threads, failing
+	 * when they do not end in time.
+	 */
+	Lock lock(TreeSessionCore session, boolean isWrite) throws TreeException {
+		Lock lock = session.lockOutOfTransaction(isWrite);
+		
+		if (lock == null) {
+			throw TreeFactory.exceptionFactory().createTreeException(
+					TreeRepositoryMessage.TRANSACTION_TIMEOUT
+					.getMessageError());
+		}
+		return lock;
+	}
+	
+	/*
+	 * The registry does not accept null identifiers.
+	 */
+	TreeSessionCore session(String identifier) {
+		return identifier != null ? this.sessions.get(identifier) : null;
+	}
+	
+	/*
+	 * Makes the operation of the calling thread work on the session, without
+	 * checking it out, returning the session which it was working on. A null
+	 * session ends the work.
+	 */
+	TreeSessionCore workOn(TreeSessionCore session) {
+		TreeSessionCore previous = this.workingSession.get();
+		
+		if (session != null) {
+			this.workingSession.set(session);
+		} else {
+			this.workingSession.remove();
+		}
+		return previous;
+	}
+	
+	/*
+	 * Starts an operation of the calling thread, which works on the current
+	 * session until it exits, returning that session. The operations invoked
+	 * by another one work on the same session as it.
+	 */
+	TreeSessionCore enterOperation() {
+		Integer depth = this.operationDepth.get();
+		
+		if (depth == null) {
+			depth = 0;
+			this.workOn(this.current());
+		}
+		this.operationDepth.set(depth + 1);
+		
+		return this.current();
+	}
+	
+	void exitOperation() {
+		int depth = this.operationDepth.get() - 1;
+		
+		if (depth == 0) {
+			this.operationDepth.remove();
+			this.workOn(null);
+		} else {
+			this.operationDepth.set(depth);
+		}
 	}
 	
 	TreeManager associatedManager() {
 		return this.associatedManager;
 	}
 	
+	/*
+	 * The changes inside of a transaction are journaled only at its commit.
+	 */
+	TreeJournal refreshJournal() {
+		TreeSessionCore session = this.current();
+		return session.isInTransaction() ? null : session.getJournal();
+	}
+	
+	/*
+	 * Records the changes of an operation on the sessions, so they are undone
+	 * if the operation cannot journal them. Only the operations changing a
+	 * journaled session out of a transaction are recorded, and the operations
+	 * which they invoke are recorded by the same log, so this returns null
+	 * for them.
+	 */
+	TreeUndoLog openUndoLog(TreeSession... sessions) {
+		boolean isJournaled = Boolean.FALSE;
+		
+		for (TreeSession session : sessions) {
+			if (session instanceof TreeSessionCore) {
+				TreeSessionCore sessionCore = (TreeSessionCore) session;
+				
+				if (sessionCore.getUndoLog() != null) {
+					return null;
+				}
+				isJournaled |= sessionCore.getJournal() != null
+						&& !sessionCore.isInTransaction();
+			}
+		}
+		
+		if (!isJournaled) {
+			return null;
+		}
+		
+		TreeUndoLog undoLog = TreeFactory.utilFactory().createUndoLog();
+		for (TreeSession session : sessions) {
+			if (session instanceof TreeSessionCore) {
+				undoLog.attach((TreeSessionCore) session);
+			}
+		}
+		return undoLog;
+	}
+	
+	void undo(TreeUndoLog undoLog) {
+		if (undoLog != null) {
+			undoLog.undo();
+		}
+	}
+	
+	/*
+	 * The journals were not compacted while the changes were recorded, so the
+	 * full ones are compacted now. The changes are already journaled, so a
+	 * failed compaction is retried by the next append.
+	 */
+	void closeUndoLog(TreeUndoLog undoLog) {
+		if (undoLog == null) {
+			return;
+		}
+		undoLog.detach();
+		
+		for (TreeJournal journal : undoLog.journals()) {
+			try {
+				if (journal.size() >= TreeJournal.COMPACTION_SIZE) {
+					journal.compact();
+				}
+			} catch (TreeException exception) {
+				/*
+				 * The journal still has the changes.
+				 */
+			}
+		}
+	}
+	
 	<T> TreeElementCore<T> refreshElement(Object id) {
-		return currentSession.get(id);
+		return this.current().get(id);
+	}
+	
+	/*
+	 * The reads which only return copies of the elements do not make a clone
+	 * copy the tree which it shares, so their copies must be adopted.
+	 */
+	<T> TreeElementCore<T> readElement(Object id) {
+		return this.current().read(id);
+	}
+	
+	<T> TreeElementCore<T> read() {
+		return this.current().readTree();
+	}
+	
+	TreeIndex readIndex(String attribute) {
+		return this.current().readIndex(attribute);
+	}
+	
+	<T> TreeElementCore<T> adopt(TreeElementCore<T> copy) {
+		return this.current().adopt(copy);
+	}
+	
+	TreeSnapshotMapping refreshMapping() {
+		return this.current().getMapping();
+	}
+	
+	<T> Collection<TreeElementCore<T>> refreshLevel(int depth) {
+		return this.current().getLevel(depth);
+	}
+	
+	<T> Collection<TreeElementCore<T>> refreshLeaves() {
+		return this.current().getLeaves();
+	}
+	
+	TreeIndex refreshIndex(String attribute) {
+		return this.current().getIndex(attribute);
+	}
+	
+	/*
+	 * Compiles the query over the current session.
+	 */
+	<T> TreeQueryPlan<T> compile(TreeQueryCore<T> query) {
+		return TreeFactory.serviceFactory().createQueryPlan(query,
+				this.current());
+	}
+	
+	void createIndex(String attribute, boolean isSorted) {
+		TreeSessionCore session = this.current();
+		
+		session.createIndex(TreeFactory.utilFactory().createIndex(attribute,
+				session.getTypeTree(), isSorted));
+	}
+	
+	void createTextIndex(String attribute) {
+		TreeSessionCore session = this.current();
+		
+		session.createTextIndex(TreeFactory.utilFactory().createTextIndex(
+				attribute, session.getTypeTree()));
 	}
 	
 	<T> void rollbackElement(Element<T> element) {
-		currentSession.delete(element.getId());
+		this.current().delete(element.getId());
 	}
 	
-	<T> void commitElement(Element<T> element) {
-		currentSession.save(element);
+	/*
+	 * Before changing the tree of the current session.
+	 */
+	void unshareTree() {
+		this.current().unshareTree();
 	}
 	
 	void commitTransaction() {
-		currentSession.save(currentSession.tree());
+		TreeSessionCore session = this.current();
+		session.save(session.tree());
+	}
+	
+	/*
+	 * The changed element is the root of the changed elements, if any, and
+	 * the parents are the ones which the operation removed elements from or
+	 * added elements into.
+	 */
+	void commitTransaction(Element<?> changed, Element<?>... parents) {
+		this.current().saveChanges(changed, parents);
+	}
+	
+	/*
+	 * The changes of a batch of operations are committed at once.
+	 */
+	void commitTransaction(Collection<? extends Element<?>> changed,
+			Collection<? extends Element<?>> parents) {
+		this.current().saveChanges(changed, parents);
+	}
+	
+	/*
+	 * The removed elements are already out of the cache.
+	 */
+	void commitRemoval(Collection<? extends Element<?>> parents) {
+		this.current().saveRemoval(parents);
 	}
 	
 	@SuppressWarnings("unchecked")
 	<T> TreeElementCore<T> refresh() {
-		return (TreeElementCore<T>) currentSession.tree();
+		return (TreeElementCore<T>) this.current().tree();
+	}
+
+	private TreeSessionCore current() {
+		TreeSessionCore session = this.workingSession.get();
+		
+		if (session != null) {
+			return session;
+		}
+		if (!this.isThreadConfined) {
+			return this.currentSession;
+		}
+		
+		/*
+		 * Another thread may have destroyed the session of this thread.
+		 */
+		session = this.threadSession.get();
+		if (session != null && session != this.session(
+				session.getSessionId())) {
+			this.threadSession.remove();
+			return null;
+		}
+		return session;
+	}
+	
+	private void checkout(TreeSessionCore session) {
+		if (!this.isThreadConfined) {
+			this.currentSession = session;
+		} else if (session != null) {
+			this.threadSession.set(session);
+		} else {
+			this.threadSession.remove();
+		}
+	}
+	
+	/*
+	 * The session is discarded anyway, so an error closing its journal is
+	 * ignored. The journal already holds every committed change.
+	 */
+	private void closeJournal(TreeSessionCore session) {
+		if (session == null || session.getJournal() == null) {
+			return;
+		}
+		
+		TreeJournal sessionJournal = session.getJournal();
+		session.setJournal(null);
+		
+		try {
+			sessionJournal.close();
+		} catch (TreeException exception) {
+			/*
+			 * Nothing to do.
+			 */
+		}
 	}
 }
@@ -0,0 +1,215 @@
+package com.madzera.happytree.core;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.madzera.happytree.Element;
+import com.madzera.happytree.exception.TreeException;
+
+/*
+ * Undo entries of the changes made to the elements of the sessions which this
+ * log is attached to.
+ *
+ * Each entry keeps an element of a session as it was before its first change,
+ * with its children at that time. Undoing the entries puts the changed
+ * elements back as they were, and caches again only the children which they
+ * take back, so undoing an operation costs as much as the operation itself.
+ * The elements which the operation added are discarded with the children
+ * which the changed elements no longer have.
+ *
+ * The journals appended while this log is attached are truncated back to their
+ * sizes before the first append.
+ */
+class TreeUndoLog {
+
+	private final List<TreeSessionCore> sessions = TreeFactory
+			.collectionFactory().createArrayList();
+
+	private final Map<TreeElementCore<?>, Entry<?>> entries = TreeFactory
+			.mapFactory().createIdentityHashMap();
+
+	private final Map<TreeJournal, Long> journals = TreeFactory.mapFactory()
+			.createIdentityHashMap();
+
+
+	TreeUndoLog() {}
+
+
+	/*
+	 * The changes of the elements of the session are recorded from now on.
+	 */
+	void attach(TreeSessionCore session) {
+		session.setUndoLog(this);
+		this.sessions.add(session);
+	}
+
+	/*
+	 * No change is recorded anymore. The recorded ones can still be undone.
+	 */
+	void detach() {
+		for (TreeSessionCore session : this.sessions) {
+			if (session.getUndoLog() == this) {
+				session.setUndoLog(null);
+			}
+		}
+		this.sessions.clear();
+	}
+
+	/*
+	 * Only the first change of each element is recorded, since it is the one
+	 * which keeps the element as it was.
+	 */
+	<T> void record(TreeElementCore<T> element, boolean isCached) {
+		if (!this.entries.containsKey(element)) {
+			this.entries.put(element, new Entry<>(element, isCached));
+		}
+	}
+
+	void record(TreeJournal journal) throws TreeException {
+		if (!this.journals.containsKey(journal)) {
+			this.journals.put(journal, journal.size());
+		}
+	}
+
+	boolean isEmpty() {
+		return this.entries.isEmpty() && this.journals.isEmpty();
+	}
+	
+	Collection<TreeJournal> journals() {
+		return this.journals.keySet();
+	}
+
+	/*
+	 * The log is detached first, so undoing is not recorded.
+	 */
+	void undo() {
+		this.detach();
+
+		/*
+		 * The children which the elements no longer have after the undo are
+		 * taken out of the cache before any other one is cached again, as
+		 * they may have the ids of the children taken back. The ones which no
+		 * element takes back were added by the changes, so they are not
+		 * cached again even if they were changed after being added.
+		 */
+		Set<Element<?>> discarded = identitySet(
+				Collections.<Element<?>>emptyList());
+		for (Entry<?> entry : this.entries.values()) {
+			entry.uncacheRemoved(discarded);
+		}
+		for (Entry<?> entry : this.entries.values()) {
+			discarded.removeAll(entry.children);
+		}
+		for (Entry<?> entry : this.entries.values()) {
+			entry.restoreFields();
+		}
+		for (Entry<?> entry : this.entries.values()) {
+			entry.element.loadedChildren().clear();
+		}
+		for (Entry<?> entry : this.entries.values()) {
+			entry.restoreChildren();
+		}
+		for (Entry<?> entry : this.entries.values()) {
+			if (!discarded.contains(entry.element)) {
+				entry.cacheAdded();
+			}
+		}
+
+		/*
+		 * Caching again changes the lifecycle states, so they are put back
+		 * at the end.
+		 */
+		for (Entry<?> entry : this.entries.values()) {
+			entry.restoreFields();
+		}
+		this.entries.clear();
+
+		for (Map.Entry<TreeJournal, Long> entry : this.journals.entrySet()) {
+			entry.getKey().truncate(entry.getValue());
+		}
+		this.journals.clear();
+	}
+
+
+	private static final class Entry<T> {
+		private final TreeElementCore<T> element;
+		private final TreeElementCore<T> fields;
+		private final List<Element<T>> children;
+		private final boolean isCached;
+		
+		/*
+		 * The children at the time of the undo.
+		 */
+		private Set<Element<T>> currentChildren;
+
+		private Entry(TreeElementCore<T> element, boolean isCached) {
+			this.element = element;
+			this.fields = element.copyFields();
+			this.children = TreeFactory.collectionFactory().createArrayList();
+			this.children.addAll(element.loadedChildren());
+			this.isCached = isCached;
+		}
+
+		private void restoreFields() {
+			this.element.restoreFields(this.fields);
+		}
+
+		private void restoreChildren() {
+			this.element.loadedChildren().addAll(this.children);
+		}
+
+		/*
+		 * The children are compared by identity, as the copies are equal to
+		 * the elements which they were copied from. Only the instances which
+		 * are cached are taken out, since the id may be cached for another
+		 * element.
+		 */
+		private void uncacheRemoved(Set<Element<?>> discarded) {
+			Set<Element<T>> before = identitySet(this.children);
+			this.currentChildren = identitySet(this.element.loadedChildren());
+
+			for (Element<T> child : this.currentChildren) {
+				if (before.contains(child)) {
+					continue;
+				}
+				discarded.add(child);
+
+				TreeSessionCore session = (TreeSessionCore) child.attachedTo();
+				if (session != null && session.get(child.getId()) == child) {
+					session.delete(child.getId());
+				}
+			}
+		}
+
+		/*
+		 * The children which this element had before and after the changes
+		 * are still cached, in the same depth.
+		 */
+		private void cacheAdded() {
+			TreeSessionCore session = (TreeSessionCore) this.element
+					.attachedTo();
+
+			if (this.isCached) {
+				session.restoreElement(this.element);
+			}
+
+			for (Element<T> child : this.children) {
+				if (!this.currentChildren.contains(child)) {
+					((TreeSessionCore) child.attachedTo()).save(child);
+				}
+			}
+		}
+
+	}
+
+	private static <E> Set<E> identitySet(Collection<E> elements) {
+		Map<E, Boolean> map = TreeFactory.mapFactory().createIdentityHashMap();
+		Set<E> set = Collections.newSetFromMap(map);
+
+		set.addAll(elements);
+		return set;
+	}
+}
@@ -5,6 +5,9 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 
 final class TreeUtil {
 
@@ -61,6 +64,53 @@ final class TreeUtil {
             return clonedObject;
         }
     }
+
+    static class ReflectionUtil {
+        private ReflectionUtil() {
+        }
+
+        /*
+         * Obtains the attribute of the class annotated by the annotation, as
+         * the API Transformation Process does.
+         */
+        static Field getFieldAnnotation(Class<?> clazz,
+                Class<? extends Annotation> annotationClass) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (field.getAnnotation(annotationClass) != null) {
+                    return field;
+                }
+            }
+            return null;
+        }
+
+        static Object invokeGetter(Field field, Object object)
+                throws ReflectiveOperationException {
+            String name = field.getName();
+            String getterName = "get".concat(name.substring(0, 1)
+                    .toUpperCase()).concat(name.substring(1));
+
+            Method getter = object.getClass().getMethod(getterName);
+            return getter.invoke(object);
+        }
+
+        /*
+         * Obtains the getter of the attribute, or null if the class has no
+         * public getter for it.
+         */
+        static Method getGetter(Class<?> clazz, String attribute) {
+            if (attribute.isEmpty()) {
+                return null;
+            }
+            String getterName = "get".concat(attribute.substring(0, 1)
+                    .toUpperCase()).concat(attribute.substring(1));
+
+            try {
+                return clazz.getMethod(getterName);
+            } catch (NoSuchMethodException exception) {
+                return null;
+            }
+        }
+    }
     
     /*
 	 * Responsible only for code coverage purposes, specifically the catch block
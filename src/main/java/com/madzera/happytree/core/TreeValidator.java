@@ -2,6 +2,7 @@ package com.madzera.happytree.core;
 
 import com.madzera.happytree.TreeManager;
 import com.madzera.happytree.exception.TreeException;
+import com.madzera.happytree.exception.TreeVersionException;
 
 /*
  * All specific validations class must inheritance this one. This must be no
@@ -29,6 +30,12 @@ abstract class TreeValidator {
 				this.getMessageError(error));
 	}
 
+	protected TreeVersionException throwTreeVersionException(
+			final TreeRepositoryMessage error) {
+		return TreeFactory.exceptionFactory().createTreeVersionException(
+				this.getMessageError(error));
+	}
+
 	protected TreeManager getManager() {
 		return this.manager;
 	}
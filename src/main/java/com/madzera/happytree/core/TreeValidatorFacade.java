@@ -1,5 +1,8 @@
 package com.madzera.happytree.core;
 
+import java.util.Collection;
+import java.util.Map;
+
 import com.madzera.happytree.Element;
 import com.madzera.happytree.TreeManager;
 import com.madzera.happytree.TreeSession;
@@ -27,6 +30,15 @@ class TreeValidatorFacade {
 		validator.validateMandatoryInput(args);
 	}
 	
+	/*
+	 * Validates inputs which cannot be negative.
+	 */
+	void validateNonNegative(int... args) {
+		TreeMandatoryValidator validator = TreeFactory.validatorFactory()
+				.createMandatoryValidator();
+		validator.validateNonNegativeInput(args);
+	}
+	
 	/*
 	 * Validates TreeTransaction.initializeSession()
 	 */
@@ -63,6 +75,83 @@ class TreeValidatorFacade {
 		validator.validateDuplicateSessionId(pipeline);
 	}
 	
+	/*
+	 * Validates TreeTransaction.initializeSession() of a lazy session.
+	 */
+	void validateSessionInitialization(String identifier, Object typeSession,
+			Object loader) throws TreeException {
+		this.validateSessionInitialization(identifier, typeSession);
+		this.validateMandatory(loader);
+		
+		TreePipeline pipeline = TreeFactory.pipelineFactory()
+				.createPipelineValidator();
+		
+		pipeline.addAttribute(TreePipelineAttributes.SESSION_TYPE, typeSession);
+		
+		TreeSessionValidator validator = TreeFactory.validatorFactory()
+				.createSessionValidator(manager);
+		
+		validator.validateIdentifierAnnotations(pipeline);
+	}
+	
+	/*
+	 * Validates TreeTransaction.initializeSession() from a document.
+	 */
+	void validateSessionInitialization(String identifier, Object typeSession,
+			Object input, Object format) throws TreeException {
+		this.validateSessionInitialization(identifier, typeSession);
+		this.validateMandatory(input, format);
+		
+		TreePipeline pipeline = TreeFactory.pipelineFactory()
+				.createPipelineValidator();
+		
+		pipeline.addAttribute(TreePipelineAttributes.SESSION_TYPE, typeSession);
+		
+		TreeSessionValidator validator = TreeFactory.validatorFactory()
+				.createSessionValidator(manager);
+		
+		validator.validateIdentifierAnnotations(pipeline);
+	}
+	
+	/*
+	 * Validates TreeTransaction.saveSession()
+	 */
+	void validateSessionSave(String identifier, Object file)
+			throws TreeException {
+		this.validateMandatory(identifier, file);
+		
+		TreePipeline pipeline = TreeFactory.pipelineFactory()
+				.createPipelineValidator();
+		
+		pipeline.addAttribute(TreePipelineAttributes.SESSION_ID, identifier);
+		
+		TreeSessionValidator validator = TreeFactory.validatorFactory()
+				.createSessionValidator(manager);
+		
+		validator.validateDefinedSessionId(pipeline);
+		validator.validateLazySession(pipeline);
+	}
+	
+	/*
+	 * Validates TreeTransaction.openJournal()
+	 */
+	void validateJournalOpening(Object snapshot, Object journal)
+			throws TreeException {
+		this.validateMandatory(snapshot, journal);
+		this.validateSessionWrite();
+		
+		TreePipeline pipeline = TreeFactory.pipelineFactory()
+				.createPipelineValidator();
+		
+		pipeline.addAttribute(TreePipelineAttributes.SESSION_ID, manager
+				.getTransaction().currentSession().getSessionId());
+		
+		TreeSessionValidator validator = TreeFactory.validatorFactory()
+				.createSessionValidator(manager);
+		
+		validator.validateLazySession(pipeline);
+	}
+	
 	/*
 	 * Validates the session invoking any TreeManager operations.
 	 */
@@ -74,6 +163,156 @@ class TreeValidatorFacade {
 		validator.validateNoActiveSession();
 	}
 	
+	/*
+	 * Validates the session invoking any TreeManager operations which change
+	 * the tree.
+	 */
+	void validateSessionWrite() throws TreeException {
+		validateSessionTransaction();
+		
+		TreeSessionValidator validator = TreeFactory.validatorFactory()
+				.createSessionValidator(manager);
+		
+		validator.validateReadOnlySession();
+	}
+	
+	/*
+	 * Validates TreeManager.createIndex()
+	 */
+	void validateIndexCreation(String attribute, boolean isSorted)
+			throws TreeException {
+		this.validateSessionWrite();
+		this.validateMandatory(attribute);
+		
+		TreePipeline pipeline = TreeFactory.pipelineFactory()
+				.createPipelineValidator();
+		
+		pipeline.addAttribute(TreePipelineAttributes.INDEX_ATTRIBUTE,
+				attribute);
+		pipeline.addAttribute(TreePipelineAttributes.INDEX_TYPE, isSorted ?
+				Comparable.class : Object.class);
+		
+		TreeSessionValidator validator = TreeFactory.validatorFactory()
+				.createSessionValidator(manager);
+		
+		validator.validateIndexAttribute(pipeline);
+	}
+	
+	/*
+	 * Validates TreeManager.createTextIndex()
+	 */
+	void validateTextIndexCreation(String attribute) throws TreeException {
+		this.validateSessionWrite();
+		this.validateMandatory(attribute);
+		
+		TreePipeline pipeline = TreeFactory.pipelineFactory()
+				.createPipelineValidator();
+		
+		pipeline.addAttribute(TreePipelineAttributes.INDEX_ATTRIBUTE,
+				attribute);
+		pipeline.addAttribute(TreePipelineAttributes.INDEX_TYPE,
+				String.class);
+		
+		TreeSessionValidator validator = TreeFactory.validatorFactory()
+				.createSessionValidator(manager);
+		
+		validator.validateIndexAttribute(pipeline);
+	}
+	
+	/*
+	 * Validates TreeManager.findBy() and TreeManager.findRange()
+	 */
+	void validateIndexQuery(String attribute, boolean isSorted)
+			throws TreeException {
+		this.validateSessionTransaction();
+		this.validateMandatory(attribute);
+		
+		TreePipeline pipeline = TreeFactory.pipelineFactory()
+				.createPipelineValidator();
+		
+		pipeline.addAttribute(TreePipelineAttributes.INDEX_ATTRIBUTE,
+				attribute);
+		pipeline.addAttribute(TreePipelineAttributes.INDEX_SORTED, isSorted);
+		
+		TreeSessionValidator validator = TreeFactory.validatorFactory()
+				.createSessionValidator(manager);
+		
+		validator.validateDefinedIndex(pipeline);
+	}
+	
+	/*
+	 * Validates TreeQuery.list()
+	 */
+	void validateQueryExecution(TreeQueryCore<?> query)
+			throws TreeException {
+		this.validateSessionTransaction();
+		
+		TreeSessionValidator validator = TreeFactory.validatorFactory()
+				.createSessionValidator(manager);
+		
+		for (TreeQueryCore.Filter filter : query.getFilters()) {
+			TreePipeline pipeline = TreeFactory.pipelineFactory()
+					.createPipelineValidator();
+			
+			pipeline.addAttribute(TreePipelineAttributes.INDEX_ATTRIBUTE,
+					filter.getAttribute());
+			pipeline.addAttribute(TreePipelineAttributes.INDEX_TYPE,
+					this.requiredType(filter.getOperator()));
+			
+			validator.validateQueryAttribute(pipeline);
+		}
+	}
+	
+	/*
+	 * Validates TreeManager.topK()
+	 */
+	void validateTopK(Object comparator, int k) throws TreeException {
+		this.validateSessionTransaction();
+		this.validateMandatory(comparator);
+		this.validateNonNegative(k);
+	}
+	
+	/*
+	 * Validates TreeManager.topK() by a key
+	 */
+	void validateTopK(Object key, Object comparator, int k)
+			throws TreeException {
+		this.validateSessionTransaction();
+		this.validateMandatory(key, comparator);
+		this.validateNonNegative(k);
+	}
+	
+	/*
+	 * Validates TreeManager.aggregate()
+	 */
+	void validateAggregate(Object collector) throws TreeException {
+		this.validateSessionTransaction();
+		this.validateMandatory(collector);
+	}
+	
+	/*
+	 * Validates TreeTransaction.begin()
+	 */
+	void validateTransactionBegin() throws TreeException {
+		validateSessionWrite();
+		
+		TreeSessionValidator validator = TreeFactory.validatorFactory()
+				.createSessionValidator(manager);
+		
+		validator.validateDuplicateTransaction();
+	}
+	
+	/*
+	 * Validates TreeTransaction.commit() and TreeTransaction.rollback()
+	 */
+	void validateTransactionEnd() throws TreeException {
+		TreeSessionValidator validator = TreeFactory.validatorFactory()
+				.createSessionValidator(manager);
+		
+		validator.validateNoDefinedSession();
+		validator.validateNoOpenTransaction();
+	}
+	
 	/*
 	 * Validates TreeManager.cut()
 	 */
@@ -81,7 +320,7 @@ class TreeValidatorFacade {
 			Object targetElement) throws TreeException {
 		final Operation operation = Operation.CUT;
 		
-		validateSessionTransaction();
+		validateSessionWrite();
 		validateMandatory(sourceElement);
 		
 		TreeElementValidator validator = TreeFactory.validatorFactory()
@@ -97,6 +336,47 @@ class TreeValidatorFacade {
 		}
 	}
 	
+	/*
+	 * Validates the conditional TreeManager.cut()
+	 */
+	void validateCutOperation(Element<?> sourceElement,
+			Element<?> targetElement, long version) throws TreeException {
+		validateCutOperation((Object) sourceElement, targetElement);
+		
+		TreeElementValidator validator = TreeFactory.validatorFactory()
+				.createCutValidator(manager);
+		
+		validateVersion(sourceElement, version, validator);
+	}
+	
+	/*
+	 * Validates TreeManager.cutElements()
+	 */
+	void validateCutOperation(Map<?, ?> sourceElements) throws TreeException {
+		validateSessionWrite();
+		validateMandatory(sourceElements);
+		
+		TreeTransactionCore transaction = (TreeTransactionCore) manager
+				.getTransaction();
+		
+		TreeElementValidator validator = TreeFactory.validatorFactory()
+				.createCutValidator(manager);
+		
+		for (Map.Entry<?, ?> entry : sourceElements.entrySet()) {
+			validateMandatory(entry.getKey());
+			validateObjectIdType(entry.getKey(), entry.getValue(), validator);
+			validateIfSourceElementExists(entry.getKey(), validator);
+			
+			TreePipeline pipeline = TreeFactory.pipelineFactory()
+					.createPipelineValidator();
+			
+			pipeline.addAttribute(TreePipelineAttributes.SOURCE_ELEMENT,
+					transaction.refreshElement(entry.getKey()));
+			
+			validator.validateHandleRootElement(pipeline);
+		}
+	}
+	
 	/*
 	 * Validates TreeManager.copy()
 	 */
@@ -104,7 +384,7 @@ class TreeValidatorFacade {
 			Element<?> targetElement) throws TreeException {
 		final Operation operation = Operation.COPY;
 		
-		validateSessionTransaction();
+		validateSessionWrite();
 		validateMandatory(sourceElement);
 		validateMandatory(targetElement);
 		
@@ -139,6 +419,30 @@ class TreeValidatorFacade {
 		validator.validateDetachedElement(pipeline);
 	}
 	
+	/*
+	 * Validates the conditional TreeManager.removeElement().
+	 */
+	void validateRemoveOperation(Element<?> sourceElement, long version)
+			throws TreeException {
+		validateSessionWrite();
+		validateMandatory(sourceElement);
+		validateRemoveOperation(sourceElement);
+		
+		TreeElementValidator validator = TreeFactory.validatorFactory()
+				.createRemoveValidator(manager);
+		
+		validateVersion(sourceElement, version, validator);
+	}
+	
+	/*
+	 * Validates TreeManager.removeElements()
+	 */
+	void validateRemoveOperation(Collection<?> sourceElements)
+			throws TreeException {
+		validateSessionWrite();
+		validateMandatory(sourceElements);
+	}
+	
 	/*
 	 * Validates TreeManager.persistElement().
 	 */
@@ -146,7 +450,7 @@ class TreeValidatorFacade {
 			throws TreeException {
 		final Operation operation = Operation.PERSIST;
 		
-		validateSessionTransaction();
+		validateSessionWrite();
 		validateMandatory(sourceElement);
 		
 		TreePipeline pipeline = TreeFactory.pipelineFactory()
@@ -167,13 +471,56 @@ class TreeValidatorFacade {
 		validator.validateDuplicateIdElement(pipeline);
 	}
 	
+	/*
+	 * Validates TreeManager.persistElements()
+	 */
+	void validatePersistOperation(
+			Collection<? extends Element<?>> sourceElements)
+			throws TreeException {
+		final Operation operation = Operation.PERSIST;
+		
+		validateSessionWrite();
+		validateMandatory(sourceElements);
+		
+		TreeSession session = manager.getTransaction().currentSession();
+		
+		TreePersistValidator validator = TreeFactory.validatorFactory()
+				.createPersistValidator(manager);
+		
+		for (Element<?> sourceElement : sourceElements) {
+			validateMandatory(sourceElement);
+			
+			TreePipeline pipeline = TreeFactory.pipelineFactory()
+					.createPipelineValidator();
+			
+			pipeline.addAttribute(TreePipelineAttributes.SOURCE_ELEMENT,
+					sourceElement);
+			pipeline.addAttribute(TreePipelineAttributes.OPERATION, operation);
+			pipeline.addAttribute(TreePipelineAttributes.CURRENT_SESSION,
+					session);
+			
+			validator.validateMismatchParameterizedType(pipeline);
+			validator.validateSessionElement(pipeline);
+			validator.validateDetachedElement(pipeline);
+		}
+		
+		TreePipeline pipeline = TreeFactory.pipelineFactory()
+				.createPipelineValidator();
+		
+		pipeline.addAttribute(TreePipelineAttributes.SOURCE_ELEMENTS,
+				sourceElements);
+		pipeline.addAttribute(TreePipelineAttributes.CURRENT_SESSION, session);
+		
+		validator.validateDuplicateIdElements(pipeline);
+	}
+	
 	/*
 	 * Validates TreeManager.updateElement()
 	 */
 	void validateUpdateOperation(Element<?> sourceElement) throws TreeException {
 		final Operation operation = Operation.UPDATE;
 		
-		validateSessionTransaction();
+		validateSessionWrite();
 		validateMandatory(sourceElement);
 		
 		TreePipeline pipeline = TreeFactory.pipelineFactory()
@@ -194,6 +541,31 @@ class TreeValidatorFacade {
 		validator.validateDuplicateIdElement(pipeline);
 	}
 	
+	/*
+	 * Validates the conditional TreeManager.updateElement()
+	 */
+	void validateUpdateOperation(Element<?> sourceElement, long version)
+			throws TreeException {
+		validateUpdateOperation(sourceElement);
+		
+		TreeElementValidator validator = TreeFactory.validatorFactory()
+				.createUpdateValidator(manager);
+		
+		validateVersion(sourceElement, version, validator);
+	}
+	
+	private void validateVersion(Element<?> sourceElement, long version,
+			TreeElementValidator validator) throws TreeException {
+		TreePipeline pipeline = TreeFactory.pipelineFactory()
+				.createPipelineValidator();
+		
+		pipeline.addAttribute(TreePipelineAttributes.SOURCE_ELEMENT,
+				sourceElement);
+		pipeline.addAttribute(TreePipelineAttributes.VERSION, version);
+		
+		validator.validateVersionElement(pipeline);
+	}
+	
 	private void validateCutCopyOperation(Object sourceElement,
 			Object targetElement, TreeSession session, Operation operation,
 			TreeElementValidator validator) throws TreeException {
@@ -244,4 +616,19 @@ class TreeValidatorFacade {
 
 		validator.validateIfSourceElementExistsById(pipeline);
 	}
+	
+	/*
+	 * The type which the values of an attribute must have to be compared by
+	 * the operator.
+	 */
+	private Class<?> requiredType(TreeQueryCore.Filter.Operator operator) {
+		switch (operator) {
+		case RANGE:
+			return Comparable.class;
+		case TEXT:
+			return String.class;
+		default:
+			return Object.class;
+		}
+	}
 }
@@ -43,6 +43,10 @@ package com.madzera.happytree.exception;
  * 	<li>When there is an <code>Element</code> object with a duplicate
  * 	<code>@Id</code> while trying to insert/update or cut/copy an element
  * 	between trees;</li>
+ * 
+ * 	<li>When the element of a conditional operation does not have the
+ * 	expected version anymore, by throwing the {@link TreeVersionException}
+ * 	subclass;</li>
  * </ul>
  * 
  * @author Diego Madson de Andrade Nóbrega
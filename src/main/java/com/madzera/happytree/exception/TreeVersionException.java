@@ -0,0 +1,42 @@
+package com.madzera.happytree.exception;
+
+/**
+ * The class <code>TreeVersionException</code> represents the
+ * {@link TreeException} thrown by the conditional operations of the
+ * <code>TreeManager</code> interface, when the version of the element in the
+ * tree is not the expected one.
+ * 
+ * <p>This happens when the element has been changed or removed since the
+ * expected version was read, usually by another thread. The API client can
+ * catch this exception to read the element again and retry the operation.</p>
+ * 
+ * @author Diego Madson de Andrade Nóbrega
+ *
+ */
+public class TreeVersionException extends TreeException {
+	private static final long serialVersionUID = -4211905823640781377L;
+	
+	/**
+	 * Default constructor for this exception. This invocation implies a
+	 * <code>null</code> detail message for the exception as well as a
+	 * <code>null</code> cause.
+	 * 
+	 * <p>To initialize a cause, invoke {@link #initCause(Throwable)}.</p>
+	 */
+	public TreeVersionException() {
+		super();
+	}
+	
+	/**
+	 * This constructor allows specifying a detail message for the exception
+	 * when it is thrown. In this case, the cause of the exception is
+	 * <code>null</code>.
+	 * 
+	 * <p>To initialize a cause, invoke {@link #initCause(Throwable)}.</p>
+	 * 
+	 * @param message the detail message of the exception
+	 */
+	public TreeVersionException(String message) {
+		super(message);
+	}
+}
@@ -5,6 +5,7 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import com.madzera.happytree.demo.ComplexEmptyTreeTest;
+import com.madzera.happytree.demo.ConcurrentSessionsTest;
 import com.madzera.happytree.demo.ContextMenuTest;
 import com.madzera.happytree.demo.TaxonomyNodeTest;
 import com.madzera.happytree.demo.VerifyCloneDescendantsTest;
@@ -25,6 +26,7 @@ import com.madzera.happytree.transaction.TreeTransactionSuiteTest;
 	//Custom tests.
 	VerifyCloneDescendantsTest.class,
 	ComplexEmptyTreeTest.class,
+	ConcurrentSessionsTest.class,
 	
 	//Real cases adopted in real projects.
 	ContextMenuTest.class,
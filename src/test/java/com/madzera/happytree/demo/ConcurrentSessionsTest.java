@@ -0,0 +1,305 @@
+package com.madzera.happytree.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.madzera.happytree.Element;
+import com.madzera.happytree.TreeManager;
+import com.madzera.happytree.TreeTransaction;
+import com.madzera.happytree.core.HappyTree;
+import com.madzera.happytree.demo.model.Directory;
+import com.madzera.happytree.demo.util.TreeAssembler;
+
+/**
+ * Shares the same tree manager and the same session among many threads, some
+ * of them reading the tree while the others are changing it.
+ *
+ * <p>The purpose of this test is to prove that the reads never see a tree in
+ * the middle of a change and that no change is lost, as each session is
+ * locked for reading or writing by the operations of the
+ * {@link TreeManager}. Many threads working on different sessions of a
+ * thread-confined transaction never block each other nor change the session
+ * of another one.</p>
+ *
+ * <p>Object Model:</p>
+ * {@link Directory}
+ *
+ * <p>Utility Tree Assembler:</p>
+ * {@link TreeAssembler}
+ */
+public class ConcurrentSessionsTest {
+
+	private static final int READERS = 4;
+	private static final int WRITERS = 4;
+	private static final int ELEMENTS = 200;
+
+	@Test
+	public void readAndWriteConcurrently() throws Exception {
+		final String sessionId = "readAndWriteConcurrently";
+		final long devel = 93832;
+		final long ide = 13823;
+		final long projects = 93209;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
+
+		final int develChildren = manager.getElementById(devel).getChildren()
+				.size();
+		final int leaves = manager.leaves().size();
+
+		ExecutorService executor = Executors.newFixedThreadPool(READERS
+				+ WRITERS);
+		List<Future<?>> futures = new ArrayList<>();
+
+		for (int writer = 0; writer < WRITERS; writer++) {
+			final long firstId = 1000000L * (writer + 1);
+
+			futures.add(executor.submit(() -> {
+				for (long id = firstId; id < firstId + ELEMENTS; id++) {
+					Directory directory = new Directory(id, devel,
+							"Concurrent " + id);
+					Element<Directory> element = manager.createElement(id,
+							devel, directory);
+					manager.persistElement(element);
+				}
+				for (long id = firstId; id < firstId + ELEMENTS; id += 2) {
+					manager.removeElement(id);
+				}
+				return null;
+			}));
+		}
+
+		for (int reader = 0; reader < READERS; reader++) {
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < ELEMENTS; i++) {
+					Element<Directory> element = manager.getElementById(
+							projects);
+					assertNotNull(element);
+					assertTrue(manager.containsElement(devel, ide));
+					List<Element<Directory>> found = manager.search(
+							e -> e.unwrap() != null
+							&& e.unwrap().getIdentifier() == ide);
+					assertFalse(found.isEmpty());
+				}
+				return null;
+			}));
+		}
+
+		executor.shutdown();
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+		int added = WRITERS * ELEMENTS / 2;
+
+		assertEquals(develChildren + added, manager.getElementById(devel)
+				.getChildren().size());
+		assertEquals(leaves + added, manager.leaves().size());
+		assertTrue(manager.containsElement(devel, 1000001L));
+		assertFalse(manager.containsElement(1000000L));
+	}
+
+	@Test
+	public void writeSessionsConcurrently() throws Exception {
+		final String sessionId = "writeSessionsConcurrently";
+		final long devel = 93832;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.setThreadConfined(Boolean.TRUE);
+
+		ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+		List<Future<?>> futures = new ArrayList<>();
+
+		for (int writer = 0; writer < WRITERS; writer++) {
+			final String session = sessionId + writer;
+			final long firstId = 1000000L * (writer + 1);
+
+			futures.add(executor.submit(() -> {
+				transaction.initializeSession(session,
+						TreeAssembler.getDirectoryTree());
+
+				for (long id = firstId; id < firstId + ELEMENTS; id++) {
+					Directory directory = new Directory(id, devel,
+							"Concurrent " + id);
+					Element<Directory> element = manager.createElement(id,
+							devel, directory);
+					manager.persistElement(element);
+				}
+				for (long id = firstId; id < firstId + ELEMENTS; id += 2) {
+					manager.removeElement(id);
+				}
+				return null;
+			}));
+		}
+
+		executor.shutdown();
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+		final int develChildren = manager.getElementById(devel).getChildren()
+				.size();
+
+		for (int writer = 0; writer < WRITERS; writer++) {
+			transaction.sessionCheckout(sessionId + writer);
+
+			assertEquals(develChildren + ELEMENTS / 2, manager
+					.getElementById(devel).getChildren().size());
+			for (int other = 0; other < WRITERS; other++) {
+				long otherId = 1000000L * (other + 1) + 1;
+				assertEquals(other == writer, manager.containsElement(
+						otherId));
+			}
+		}
+	}
+
+	@Test
+	public void readDuringWrite() throws Exception {
+		final String sessionId = "readDuringWrite";
+		final String otherSessionId = "readDuringWrite_other";
+		final long ide = 13823;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.setThreadConfined(Boolean.TRUE);
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+		transaction.initializeSession(otherSessionId,
+				TreeAssembler.getDirectoryTree());
+
+		CountDownLatch writing = new CountDownLatch(1);
+		CountDownLatch otherRead = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+
+		/*
+		 * The writer keeps the session locked until the reader of the other
+		 * session has read it.
+		 */
+		Future<Boolean> writer = executor.submit(() -> {
+			transaction.sessionCheckout(sessionId);
+
+			AtomicBoolean isOtherRead = new AtomicBoolean();
+			manager.<Directory>apply(element -> {
+				writing.countDown();
+				isOtherRead.compareAndSet(false, await(otherRead));
+
+				Directory directory = element.unwrap();
+				if (directory != null) {
+					directory.setName("renamed");
+					element.wrap(directory);
+				}
+			});
+			return isOtherRead.get();
+		});
+
+		Future<String> otherReader = executor.submit(() -> {
+			assertTrue(await(writing));
+			transaction.sessionCheckout(otherSessionId);
+
+			Element<Directory> element = manager.getElementById(ide);
+			otherRead.countDown();
+			return element.unwrap().getName();
+		});
+
+		Future<String> reader = executor.submit(() -> {
+			assertTrue(await(writing));
+			transaction.sessionCheckout(sessionId);
+
+			Element<Directory> element = manager.getElementById(ide);
+			return element.unwrap().getName();
+		});
+
+		executor.shutdown();
+
+		assertTrue(writer.get());
+		assertEquals("ide", otherReader.get());
+		assertEquals("renamed", reader.get());
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+	}
+
+	@Test
+	public void checkoutDuringWrite() throws Exception {
+		final String sessionId = "checkoutDuringWrite";
+		final String otherSessionId = "checkoutDuringWrite_other";
+		final long ide = 13823;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(otherSessionId,
+				TreeAssembler.getDirectoryTree());
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		CountDownLatch writing = new CountDownLatch(1);
+		CountDownLatch checkedOut = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		/*
+		 * Another session is checked out while the writer is changing the
+		 * current one, which it keeps changing until the end.
+		 */
+		Future<?> writer = executor.submit(() -> {
+			manager.<Directory>apply(element -> {
+				writing.countDown();
+				await(checkedOut);
+
+				Directory directory = element.unwrap();
+				if (directory != null) {
+					directory.setName("renamed");
+					element.wrap(directory);
+				}
+			});
+			return null;
+		});
+
+		assertTrue(await(writing));
+		transaction.sessionCheckout(otherSessionId);
+		checkedOut.countDown();
+
+		writer.get();
+		executor.shutdown();
+
+		assertEquals("ide", manager.<Directory>getElementById(ide).unwrap()
+				.getName());
+
+		transaction.sessionCheckout(sessionId);
+		assertEquals("renamed", manager.<Directory>getElementById(ide)
+				.unwrap().getName());
+	}
+
+	private static boolean await(CountDownLatch latch) {
+		try {
+			return latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+}
@@ -51,6 +51,13 @@ public class Directory implements Serializable {
 	private String name;
 	
 	
+	/*
+	 * Needed to read the directories from a JSON/XML document.
+	 */
+	public Directory() {
+		super();
+	}
+	
 	public Directory(Long identifier, Long parentIdentifier, String name) {
 		super();
 		this.identifier = identifier;
@@ -0,0 +1,43 @@
+package com.madzera.happytree.demo.model;
+
+import java.io.Serializable;
+
+import com.madzera.happytree.annotation.Id;
+import com.madzera.happytree.annotation.Parent;
+import com.madzera.happytree.annotation.Tree;
+
+/**
+ * The class <code>ObjectNotSerializedAttribute</code> is a demo class that
+ * represents a serializable object whose attribute may not be serialized. This
+ * class simulates an error when the attribute holds an object which does not
+ * implement {@link java.io.Serializable}.
+ */
+@Tree
+public class ObjectNotSerializedAttribute implements Serializable {
+    @Id
+    private Long id;
+    @Parent
+    private Long parentId;
+    private Object attribute;
+
+
+    public ObjectNotSerializedAttribute(Long id, Long parentId,
+            Object attribute) {
+        this.id = id;
+        this.parentId = parentId;
+        this.attribute = attribute;
+    }
+
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getParentId() {
+        return parentId;
+    }
+
+    public Object getAttribute() {
+        return attribute;
+    }
+}
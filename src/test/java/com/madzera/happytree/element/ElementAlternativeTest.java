@@ -439,6 +439,88 @@ public class ElementAlternativeTest extends TreeCommonTestHelper {
 		assertEquals(afterRemove, element.getChildren().size());
 	}
 	
+	/**
+	 * Test for the {@link Element#removeChild(Object)} and
+	 * {@link Element#removeChild(Element)} operations.
+	 * 
+	 * <p>Alternative scenario for these operations when the element has a high
+	 * number of children.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Remove children by id and by element from an element with thousands of
+	 * children, including one child which the id was changed by the
+	 * {@link TreeManager#updateElement(Element)}.
+	 * <p><b>Expected:</b></p>
+	 * The children are removed, the remaining ones keep the insertion order and
+	 * the updated child is found and removed by its new id.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session;</li>
+	 * 	<li>Create a parent element with thousands of children;</li>
+	 * 	<li>Remove the first child by id and the last one by element;</li>
+	 * 	<li>Verify the size and the order of the remaining children;</li>
+	 * 	<li>Persist the parent element;</li>
+	 * 	<li>Change the id of one child and update it;</li>
+	 * 	<li>Get the parent element from the tree;</li>
+	 * 	<li>Remove the updated child by its new id;</li>
+	 * 	<li>Verify the size of the children.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void removeChild_highFanOut() throws TreeException {
+		final String sessionId = "removeChild_highFanOut";
+
+		final Long parentId = Long.MAX_VALUE;
+		final long totalChildren = 5000;
+		final long firstChildId = 1L;
+		final long lastChildId = totalChildren;
+		final Long updatedChildId = 2500L;
+		final Long newChildId = Long.MIN_VALUE;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId, Directory.class);
+
+		Element<Directory> parent = manager.createElement(parentId, null,
+				new Directory(parentId, null, "parent"));
+
+		for (long id = firstChildId; id <= lastChildId; id++) {
+			parent.addChild(manager.createElement(id, parentId,
+					new Directory(id, parentId, String.valueOf(id))));
+		}
+
+		parent.removeChild((Object) firstChildId);
+		parent.removeChild(parent.getElementById(lastChildId));
+
+		assertEquals(totalChildren - 2, parent.getChildren().size());
+		assertNull(parent.getElementById(firstChildId));
+		assertNull(parent.getElementById(lastChildId));
+
+		long expectedId = firstChildId + 1;
+		for (Element<Directory> child : parent.getChildren()) {
+			assertEquals(expectedId++, child.getId());
+		}
+
+		manager.persistElement(parent);
+
+		Element<Directory> updatedChild = manager.getElementById(
+				updatedChildId);
+		updatedChild.setId(newChildId);
+		manager.updateElement(updatedChild);
+
+		Element<Directory> persistedParent = manager.getElementById(parentId);
+		assertNotNull(persistedParent.getElementById(newChildId));
+
+		persistedParent.removeChild((Object) newChildId);
+
+		assertEquals(totalChildren - 3, persistedParent.getChildren().size());
+		assertNull(persistedParent.getElementById(newChildId));
+	}
+	
 	/**
 	 * Test for the {@link Element#wrap(Object)} and {@link Element#unwrap()}.
 	 * 
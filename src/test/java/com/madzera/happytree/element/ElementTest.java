@@ -1,11 +1,18 @@
 package com.madzera.happytree.element;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -16,6 +23,7 @@ import org.junit.Test;
 import com.madzera.happytree.Element;
 import com.madzera.happytree.TreeManager;
 import com.madzera.happytree.TreeTransaction;
+import com.madzera.happytree.TreeVisitor;
 import com.madzera.happytree.common.TreeCommonTestHelper;
 import com.madzera.happytree.core.HappyTree;
 import com.madzera.happytree.demo.model.Directory;
@@ -577,6 +585,217 @@ public class ElementTest extends TreeCommonTestHelper {
 		assertEquals(afterRemove, element.getChildren().size());
 	}
 	
+	/**
+	 * Test for the {@link Element#getDepth()}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Obtain the depth of elements before and after moving them in the tree.
+	 * <p><b>Expected:</b></p>
+	 * The root element in depth 0, the (Adobe) element in depth 2 and the
+	 * (reader.exe) element in depth 4. After cutting the (Adobe) element to the
+	 * root level, it must be in depth 1 and the (reader.exe) in depth 3.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session by the
+	 * 	{@link TreeAssembler#getDirectoryTree()};</li>
+	 * 	<li>Verify the depth of the root, (Adobe) and (reader.exe) elements;
+	 * 	</li>
+	 * 	<li>Cut the (Adobe) element to the root level;</li>
+	 * 	<li>Verify the depth of the (Adobe) and (reader.exe) elements again.
+	 * 	</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void getDepth() throws TreeException {
+		final String sessionId = "getDepth";
+		final long adobeId = 24935L;
+		final long readerExeId = 8493845L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		Collection<Directory> directoryTree = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directoryTree);
+
+		assertEquals(0, manager.root().getDepth());
+		assertEquals(2, manager.getElementById(adobeId).getDepth());
+		assertEquals(4, manager.getElementById(readerExeId).getDepth());
+
+		Element<Directory> adobe = manager.getElementById(adobeId);
+		adobe = manager.cut(adobe, manager.root());
+
+		assertEquals(1, adobe.getDepth());
+		assertEquals(3, adobe.getElementById(readerExeId).getDepth());
+		assertEquals(3, manager.getElementById(readerExeId).getDepth());
+	}
+	
+	/**
+	 * Test for the {@link Element#getDescendantCount()}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Obtain the number of descendants of elements while the tree changes.
+	 * <p><b>Expected:</b></p>
+	 * The (Adobe) element with 6 descendants and the (Program Files) element
+	 * with 25 descendants. After persisting a new child into the (Adobe)
+	 * element, they must have 7 and 26, and after removing the (Reader)
+	 * element, they must have 5 and 24 descendants.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session by the
+	 * 	{@link TreeAssembler#getDirectoryTree()};</li>
+	 * 	<li>Verify the number of descendants of the (Adobe) and
+	 * 	(Program Files) elements;</li>
+	 * 	<li>Persist a new child element into the (Adobe) element;</li>
+	 * 	<li>Verify the number of descendants again;</li>
+	 * 	<li>Remove the (Reader) element;</li>
+	 * 	<li>Verify the number of descendants again.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void getDescendantCount() throws TreeException {
+		final String sessionId = "getDescendantCount";
+		final long programFilesId = 42345L;
+		final long adobeId = 24935L;
+		final long readerId = 403940L;
+		final long acrobatId = 1L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		Collection<Directory> directoryTree = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directoryTree);
+
+		assertEquals(6, manager.getElementById(adobeId)
+				.getDescendantCount());
+		assertEquals(25, manager.getElementById(programFilesId)
+				.getDescendantCount());
+
+		Element<Directory> acrobat = manager.createElement(acrobatId, adobeId,
+				new Directory(acrobatId, adobeId, "Acrobat"));
+		manager.persistElement(acrobat);
+
+		assertEquals(7, manager.getElementById(adobeId)
+				.getDescendantCount());
+		assertEquals(26, manager.getElementById(programFilesId)
+				.getDescendantCount());
+
+		manager.removeElement(manager.getElementById(readerId));
+
+		assertEquals(5, manager.getElementById(adobeId)
+				.getDescendantCount());
+		assertEquals(24, manager.getElementById(programFilesId)
+				.getDescendantCount());
+	}
+	
+	/**
+	 * Test for the {@link Element#getHeight()}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Obtain the height of elements while children are added and removed.
+	 * <p><b>Expected:</b></p>
+	 * A leaf element with height 0. After adding a child with a grandchild
+	 * into it, height 2. After removing this child, height 0 again.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session;</li>
+	 * 	<li>Create three elements: a parent, a child and a grandchild;</li>
+	 * 	<li>Verify the height of the parent;</li>
+	 * 	<li>Add the grandchild into the child and the child into the parent;
+	 * 	</li>
+	 * 	<li>Verify the height of the parent;</li>
+	 * 	<li>Remove the child from the parent;</li>
+	 * 	<li>Verify the height of the parent.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void getHeight() throws TreeException {
+		final String sessionId = "getHeight";
+		final long parentId = 1L;
+		final long childId = 2L;
+		final long grandchildId = 3L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId, Directory.class);
+
+		Element<Directory> parent = manager.createElement(parentId, null,
+				null);
+		Element<Directory> child = manager.createElement(childId, null, null);
+		Element<Directory> grandchild = manager.createElement(grandchildId,
+				null, null);
+
+		assertEquals(0, parent.getHeight());
+
+		child.addChild(grandchild);
+		parent.addChild(child);
+
+		assertEquals(2, parent.getHeight());
+		assertEquals(1, child.getHeight());
+
+		parent.removeChild(child);
+
+		assertEquals(0, parent.getHeight());
+	}
+	
+	/**
+	 * Test for the {@link Element#getVersion()}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Obtain the version of an element before and after updating it.
+	 * <p><b>Expected:</b></p>
+	 * A persisted element with version 0. After updating it, version 1.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session;</li>
+	 * 	<li>Create and persist an element;</li>
+	 * 	<li>Verify the version of the element;</li>
+	 * 	<li>Wrap another object into the element and update it;</li>
+	 * 	<li>Verify the version of the element.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void getVersion() throws TreeException {
+		final String sessionId = "getVersion";
+		final long elementId = 1L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId, Directory.class);
+
+		Element<Directory> element = manager.createElement(elementId, null,
+				new Directory(elementId, null, "Docs"));
+		element = manager.persistElement(element);
+
+		assertEquals(0, element.getVersion());
+
+		element.wrap(new Directory(elementId, null, "Documents"));
+		manager.updateElement(element);
+
+		assertEquals(1, manager.getElementById(elementId).getVersion());
+	}
+	
 	/**
 	 * Test for the {@link Element#wrap(Object)} and {@link Element#unwrap()}.
 	 * 
@@ -908,6 +1127,106 @@ public class ElementTest extends TreeCommonTestHelper {
 		assertEquals(xml, xmlOutput);
 	}
 
+	/**
+	 * Test for the {@link Element#writeJSON(OutputStream)} and
+	 * {@link Element#writeJSON(Writer)}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Write an element tree in JSON format into an output stream and into a
+	 * writer.
+	 * <p><b>Expected:</b></p>
+	 * Both outputs equal to the JSON string returned by
+	 * {@link Element#toJSON()}.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session by the
+	 * 	{@link TreeAssembler#getDirectoryTree()};</li>
+	 * 	<li>Get the element which represents the (Adobe) directory;</li>
+	 * 	<li>Write this element into an output stream and into a writer;</li>
+	 * 	<li>Compare both outputs with the result of {@link Element#toJSON()}.
+	 * 	</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error while writing
+	 */
+	@Test
+	public void writeJSON() throws TreeException, IOException {
+		final String sessionId = "writeJSON";
+		final long adobeId = 24935L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		Collection<Directory> directoryTree = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directoryTree);
+
+		Element<Directory> adobe = manager.getElementById(adobeId);
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		adobe.writeJSON(output);
+
+		StringWriter writer = new StringWriter();
+		adobe.writeJSON(writer);
+
+		assertEquals(adobe.toJSON(), output.toString(
+				StandardCharsets.UTF_8.name()));
+		assertEquals(adobe.toJSON(), writer.toString());
+	}
+
+	/**
+	 * Test for the {@link Element#writeXML(OutputStream)} and
+	 * {@link Element#writeXML(Writer)}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Write an element tree in XML format into an output stream and into a
+	 * writer.
+	 * <p><b>Expected:</b></p>
+	 * Both outputs equal to the XML string returned by
+	 * {@link Element#toXML()}.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session by the
+	 * 	{@link TreeAssembler#getDirectoryTree()};</li>
+	 * 	<li>Get the element which represents the (Adobe) directory;</li>
+	 * 	<li>Write this element into an output stream and into a writer;</li>
+	 * 	<li>Compare both outputs with the result of {@link Element#toXML()}.
+	 * 	</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error while writing
+	 */
+	@Test
+	public void writeXML() throws TreeException, IOException {
+		final String sessionId = "writeXML";
+		final long adobeId = 24935L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		Collection<Directory> directoryTree = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directoryTree);
+
+		Element<Directory> adobe = manager.getElementById(adobeId);
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		adobe.writeXML(output);
+
+		StringWriter writer = new StringWriter();
+		adobe.writeXML(writer);
+
+		assertEquals(adobe.toXML(), output.toString(
+				StandardCharsets.UTF_8.name()));
+		assertEquals(adobe.toXML(), writer.toString());
+	}
+
 	/**
 	 * Test for the {@link Element#search(Predicate)}.
 	 * 
@@ -1136,6 +1455,79 @@ public class ElementTest extends TreeCommonTestHelper {
 		assertEquals("Dreamweaver", dreamweaver.unwrap().getName());
 	}
 	
+	/**
+	 * Test for the {@link Element#traverse(TreeVisitor)}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Traverse the (Program Files) element skipping the subtree of the
+	 * (Adobe) element, and traverse it again until the (Office) element is
+	 * visited.
+	 * <p><b>Expected:</b></p>
+	 * The descendants of the (Adobe) element are not visited, and no element
+	 * is visited after the (Office) element.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session by API Transformation Process using a
+	 * 	previous assembled tree;</li>
+	 * 	<li>Get the (Program Files) element from the tree;</li>
+	 * 	<li>Traverse it, skipping the subtree of the (Adobe) element;</li>
+	 * 	<li>Verify that the (Adobe) element is visited but not its
+	 * 	descendants;</li>
+	 * 	<li>Traverse it again, terminating at the (Office) element;</li>
+	 * 	<li>Verify that the (Office) element is the last visited
+	 * 	element.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void traverse() throws TreeException {
+		final String sessionId = "traverse";
+		
+		final long programFilesId = 42345L;
+		final long adobeId = 24935L;
+		final long readerId = 403940L;
+		final long officeId = 53024L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		Element<Directory> programFiles = manager.getElementById(
+				programFilesId);
+		Element<Directory> adobe = programFiles.getElementById(adobeId);
+		List<Object> visited = new ArrayList<>();
+
+		programFiles.traverse(element -> {
+			visited.add(element.getId());
+			return element.getId().equals(adobeId) ?
+					TreeVisitor.Result.SKIP_SUBTREE :
+					TreeVisitor.Result.CONTINUE;
+		});
+
+		assertEquals(programFilesId, visited.get(0));
+		assertTrue(visited.contains(adobeId));
+		assertFalse(visited.contains(readerId));
+		assertEquals(1 + programFiles.getDescendantCount()
+				- adobe.getDescendantCount(), visited.size());
+
+		visited.clear();
+		programFiles.traverse(element -> {
+			visited.add(element.getId());
+			return element.getId().equals(officeId) ?
+					TreeVisitor.Result.TERMINATE :
+					TreeVisitor.Result.CONTINUE;
+		});
+
+		assertEquals(officeId, visited.get(visited.size() - 1));
+		assertTrue(visited.size() < 1 + programFiles.getDescendantCount());
+	}
+	
 	/**
 	 * Test for the {@link Object#hashCode()} local implementation.
 	 * 
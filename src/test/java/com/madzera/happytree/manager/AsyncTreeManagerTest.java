@@ -0,0 +1,606 @@
+package com.madzera.happytree.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.madzera.happytree.AsyncTreeManager;
+import com.madzera.happytree.Element;
+import com.madzera.happytree.TreeManager;
+import com.madzera.happytree.TreeSession;
+import com.madzera.happytree.TreeTransaction;
+import com.madzera.happytree.common.TreeCommonTestHelper;
+import com.madzera.happytree.core.HappyTree;
+import com.madzera.happytree.demo.model.Directory;
+import com.madzera.happytree.demo.util.TreeAssembler;
+import com.madzera.happytree.exception.TreeException;
+
+/**
+ * Test class for {@link AsyncTreeManager} operations.
+ *
+ * <p>This test class represents the <i>happy scenario</i> for all operations of
+ * {@link AsyncTreeManager}.</p>
+ *
+ * @author Diego Madson de Andrade Nóbrega
+ *
+ */
+public class AsyncTreeManagerTest extends TreeCommonTestHelper {
+
+	private static final long HAPPYTREE_ID = 859452;
+	private static final long DEVEL_ID = 93832;
+
+	/**
+	 * Test for the {@link AsyncTreeManager#initializeSession(String,
+	 * Collection)}.
+	 *
+	 * <p>Happy scenario for this operation.</p>
+	 *
+	 * <p><b>Test:</b></p>
+	 * Initialize a session asynchronously.
+	 * <p><b>Expected:</b></p>
+	 * The future is completed with the initialized session.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create an asynchronous manager;</li>
+	 * 	<li>Initialize a session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Verify the identifier of the session of the future.</li>
+	 * </ol>
+	 *
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void initializeSession() throws Exception {
+		final String sessionId = "async_initializeSession";
+
+		AsyncTreeManager manager = HappyTree.createAsyncTreeManager();
+
+		TreeSession session = manager.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree()).get();
+
+		assertEquals(sessionId, session.getSessionId());
+	}
+
+	/**
+	 * Test for the {@link AsyncTreeManager#cloneSession(String, String)}.
+	 *
+	 * <p>Happy scenario for this operation.</p>
+	 *
+	 * <p><b>Test:</b></p>
+	 * Clone a session asynchronously, right after initializing it.
+	 * <p><b>Expected:</b></p>
+	 * The cloned session has the elements of the source session.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create an asynchronous manager;</li>
+	 * 	<li>Initialize a session without waiting for it;</li>
+	 * 	<li>Clone the session;</li>
+	 * 	<li>Verify that the cloned session has the <i>happytree</i>
+	 * 	element.</li>
+	 * </ol>
+	 *
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void cloneSession() throws Exception {
+		final String sessionId = "async_cloneSession";
+		final String clonedSessionId = "async_cloneSession_cloned";
+
+		AsyncTreeManager manager = HappyTree.createAsyncTreeManager();
+
+		manager.initializeSession(sessionId, TreeAssembler.getDirectoryTree());
+		TreeSession cloned = manager.cloneSession(sessionId, clonedSessionId)
+				.get();
+
+		assertEquals(clonedSessionId, cloned.getSessionId());
+		assertNotNull(manager.getElementById(clonedSessionId, HAPPYTREE_ID)
+				.get());
+	}
+
+	/**
+	 * Test for the {@link AsyncTreeManager#saveSession(String, Path)}.
+	 *
+	 * <p>Happy scenario for this operation.</p>
+	 *
+	 * <p><b>Test:</b></p>
+	 * Save a session into a snapshot file asynchronously.
+	 * <p><b>Expected:</b></p>
+	 * The snapshot file can be restored.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create an asynchronous manager;</li>
+	 * 	<li>Initialize a session;</li>
+	 * 	<li>Save the session into a temporary file;</li>
+	 * 	<li>Restore the file by a synchronous manager;</li>
+	 * 	<li>Verify that the restored session has the <i>happytree</i>
+	 * 	element.</li>
+	 * </ol>
+	 *
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void saveSession() throws Exception {
+		final String sessionId = "async_saveSession";
+
+		AsyncTreeManager manager = HappyTree.createAsyncTreeManager();
+
+		manager.initializeSession(sessionId, TreeAssembler.getDirectoryTree());
+
+		Path file = Files.createTempFile(sessionId, ".snapshot");
+		try {
+			manager.saveSession(sessionId, file).get();
+
+			TreeManager restoredManager = HappyTree.createTreeManager();
+			restoredManager.getTransaction().restoreSession(file);
+
+			assertTrue(restoredManager.containsElement(HAPPYTREE_ID));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Test for the {@link AsyncTreeManager#getElementById(String, Object)}.
+	 *
+	 * <p>Happy scenario for this operation.</p>
+	 *
+	 * <p><b>Test:</b></p>
+	 * Get an element asynchronously.
+	 * <p><b>Expected:</b></p>
+	 * The future is completed with a copy of the element.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create an asynchronous manager;</li>
+	 * 	<li>Initialize a session;</li>
+	 * 	<li>Get the <i>happytree</i> element;</li>
+	 * 	<li>Verify the name of the element.</li>
+	 * </ol>
+	 *
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void getElementById() throws Exception {
+		final String sessionId = "async_getElementById";
+
+		AsyncTreeManager manager = HappyTree.createAsyncTreeManager();
+
+		manager.initializeSession(sessionId, TreeAssembler.getDirectoryTree());
+		Element<Directory> happytree = manager.<Directory>getElementById(
+				sessionId, HAPPYTREE_ID).get();
+
+		assertEquals("happytree", happytree.unwrap().getName());
+	}
+
+	/**
+	 * Test for the {@link AsyncTreeManager#persistElement(String, Element)}.
+	 *
+	 * <p>Happy scenario for this operation.</p>
+	 *
+	 * <p><b>Test:</b></p>
+	 * Persist many elements asynchronously, without waiting for each one.
+	 * <p><b>Expected:</b></p>
+	 * All elements are persisted in the order they were submitted.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create an asynchronous manager on a fixed thread pool;</li>
+	 * 	<li>Initialize a session;</li>
+	 * 	<li>Create the elements by the synchronous manager;</li>
+	 * 	<li>Persist each element inside of the previous one;</li>
+	 * 	<li>Wait for the last one;</li>
+	 * 	<li>Verify the depth of the last element.</li>
+	 * </ol>
+	 *
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void persistElement() throws Exception {
+		final String sessionId = "async_persistElement";
+		final int count = 100;
+		final long firstId = 1000000;
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			AsyncTreeManager manager = HappyTree.createAsyncTreeManager(
+					executor);
+			manager.execute(sessionId, sync -> {
+				sync.getTransaction().initializeSession(sessionId,
+						Directory.class);
+				return null;
+			}).get();
+
+			TreeTransaction transaction = manager.getManager()
+					.getTransaction();
+			transaction.sessionCheckout(sessionId);
+
+			CompletableFuture<Element<Directory>> last = null;
+			for (long id = firstId; id < firstId + count; id++) {
+				Element<Directory> element = manager.getManager()
+						.createElement(id, id - 1, new Directory(id, id - 1,
+								"Nested " + id));
+				last = manager.persistElement(sessionId, element);
+			}
+
+			assertEquals(count, last.get().getDepth());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Test for the {@link AsyncTreeManager#updateElement(String, Element)}.
+	 *
+	 * <p>Happy scenario for this operation.</p>
+	 *
+	 * <p><b>Test:</b></p>
+	 * Update an element asynchronously.
+	 * <p><b>Expected:</b></p>
+	 * The element is renamed.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create an asynchronous manager;</li>
+	 * 	<li>Initialize a session;</li>
+	 * 	<li>Get the <i>happytree</i> element and rename its wrapped
+	 * 	node;</li>
+	 * 	<li>Update the element;</li>
+	 * 	<li>Verify the name of the element in the session.</li>
+	 * </ol>
+	 *
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void updateElement() throws Exception {
+		final String sessionId = "async_updateElement";
+
+		AsyncTreeManager manager = HappyTree.createAsyncTreeManager();
+
+		manager.initializeSession(sessionId, TreeAssembler.getDirectoryTree());
+		Element<Directory> happytree = manager.<Directory>getElementById(
+				sessionId, HAPPYTREE_ID).get();
+
+		Directory directory = happytree.unwrap();
+		directory.setName("renamed");
+		happytree.wrap(directory);
+
+		manager.updateElement(sessionId, happytree);
+
+		assertEquals("renamed", manager.<Directory>getElementById(sessionId,
+				HAPPYTREE_ID).get().unwrap().getName());
+	}
+
+	/**
+	 * Test for the {@link AsyncTreeManager#cut(String, Object, Object)}.
+	 *
+	 * <p>Happy scenario for this operation.</p>
+	 *
+	 * <p><b>Test:</b></p>
+	 * Cut an element asynchronously.
+	 * <p><b>Expected:</b></p>
+	 * The element is inside of the target element.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create an asynchronous manager;</li>
+	 * 	<li>Initialize a session;</li>
+	 * 	<li>Cut the <i>happytree</i> element into the <i>Devel</i>
+	 * 	element;</li>
+	 * 	<li>Verify that <i>Devel</i> contains <i>happytree</i>.</li>
+	 * </ol>
+	 *
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void cut() throws Exception {
+		final String sessionId = "async_cut";
+
+		AsyncTreeManager manager = HappyTree.createAsyncTreeManager();
+
+		manager.initializeSession(sessionId, TreeAssembler.getDirectoryTree());
+		manager.cut(sessionId, HAPPYTREE_ID, DEVEL_ID);
+
+		assertTrue(manager.execute(sessionId, sync -> sync.containsElement(
+				DEVEL_ID, HAPPYTREE_ID)).get());
+	}
+
+	/**
+	 * Test for the {@link AsyncTreeManager#removeElement(String, Object)}.
+	 *
+	 * <p>Happy scenario for this operation.</p>
+	 *
+	 * <p><b>Test:</b></p>
+	 * Remove an element asynchronously.
+	 * <p><b>Expected:</b></p>
+	 * The element is not found anymore.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create an asynchronous manager;</li>
+	 * 	<li>Initialize a session;</li>
+	 * 	<li>Remove the <i>happytree</i> element;</li>
+	 * 	<li>Verify that the element is not found.</li>
+	 * </ol>
+	 *
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void removeElement() throws Exception {
+		final String sessionId = "async_removeElement";
+
+		AsyncTreeManager manager = HappyTree.createAsyncTreeManager();
+
+		manager.initializeSession(sessionId, TreeAssembler.getDirectoryTree());
+		Element<Directory> removed = manager.<Directory>removeElement(
+				sessionId, HAPPYTREE_ID).get();
+
+		assertNotNull(removed);
+		assertNull(manager.getElementById(sessionId, HAPPYTREE_ID).get());
+	}
+
+	/**
+	 * Test for the {@link AsyncTreeManager#search(String,
+	 * java.util.function.Predicate)}.
+	 *
+	 * <p>Happy scenario for this operation.</p>
+	 *
+	 * <p><b>Test:</b></p>
+	 * Search the elements whose names start with &quot;Photo&quot;
+	 * asynchronously.
+	 * <p><b>Expected:</b></p>
+	 * The same elements found by the synchronous search.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create an asynchronous manager;</li>
+	 * 	<li>Initialize a session;</li>
+	 * 	<li>Search the elements asynchronously;</li>
+	 * 	<li>Search the elements by the synchronous manager;</li>
+	 * 	<li>Verify that both searches found the same elements.</li>
+	 * </ol>
+	 *
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void search() throws Exception {
+		final String sessionId = "async_search";
+
+		AsyncTreeManager manager = HappyTree.createAsyncTreeManager();
+
+		manager.initializeSession(sessionId, TreeAssembler.getDirectoryTree());
+		List<Element<Directory>> found = manager.<Directory>search(sessionId,
+				this::directoryNameStartsWithPhoto).get();
+
+		TreeManager sync = manager.getManager();
+		sync.getTransaction().sessionCheckout(sessionId);
+		List<Element<Directory>> expected = sync.search(
+				this::directoryNameStartsWithPhoto);
+
+		assertFalse(found.isEmpty());
+		assertEquals(expected.size(), found.size());
+		assertTrue(found.containsAll(expected));
+	}
+
+	/**
+	 * Test for the {@link AsyncTreeManager#apply(String,
+	 * java.util.function.Consumer)}.
+	 *
+	 * <p>Happy scenario for this operation.</p>
+	 *
+	 * <p><b>Test:</b></p>
+	 * Apply a function which turns the names into upper case asynchronously.
+	 * <p><b>Expected:</b></p>
+	 * The name of the <i>happytree</i> element is in upper case.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create an asynchronous manager;</li>
+	 * 	<li>Initialize a session;</li>
+	 * 	<li>Apply the function;</li>
+	 * 	<li>Verify the name of the <i>happytree</i> element.</li>
+	 * </ol>
+	 *
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void apply() throws Exception {
+		final String sessionId = "async_apply";
+
+		AsyncTreeManager manager = HappyTree.createAsyncTreeManager();
+
+		manager.initializeSession(sessionId, TreeAssembler.getDirectoryTree());
+		manager.apply(sessionId, this::applyUpperCaseDirectoryName).get();
+
+		assertEquals("HAPPYTREE", manager.<Directory>getElementById(sessionId,
+				HAPPYTREE_ID).get().unwrap().getName());
+	}
+
+	/**
+	 * Test for the {@link AsyncTreeManager#toJSON(String)}.
+	 *
+	 * <p>Happy scenario for this operation.</p>
+	 *
+	 * <p><b>Test:</b></p>
+	 * Export a tree into JSON asynchronously.
+	 * <p><b>Expected:</b></p>
+	 * The same JSON of the root element.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create an asynchronous manager;</li>
+	 * 	<li>Initialize a session;</li>
+	 * 	<li>Export the tree;</li>
+	 * 	<li>Verify that the JSON is the one of the root element.</li>
+	 * </ol>
+	 *
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void toJSON() throws Exception {
+		final String sessionId = "async_toJSON";
+
+		AsyncTreeManager manager = HappyTree.createAsyncTreeManager();
+
+		manager.initializeSession(sessionId, TreeAssembler.getDirectoryTree());
+		String json = manager.toJSON(sessionId).get();
+
+		assertEquals(manager.execute(sessionId, sync -> sync.root().toJSON())
+				.get(), json);
+	}
+
+	/**
+	 * Test for the {@link AsyncTreeManager#execute(String,
+	 * AsyncTreeManager.Operation)}.
+	 *
+	 * <p>Happy scenario for this operation.</p>
+	 *
+	 * <p><b>Test:</b></p>
+	 * Execute operations over two sessions at the same time, the second one
+	 * failing.
+	 * <p><b>Expected:</b></p>
+	 * Each operation works on its own session. The failed operation completes
+	 * its future with the <code>TreeException</code>, and the next operation
+	 * of the same session is still executed.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create an asynchronous manager;</li>
+	 * 	<li>Initialize two sessions;</li>
+	 * 	<li>Remove the <i>happytree</i> element of the second session;</li>
+	 * 	<li>Look for the <i>happytree</i> element in both sessions;</li>
+	 * 	<li>Try to remove the root of the second session;</li>
+	 * 	<li>Verify that only the first session has the element;</li>
+	 * 	<li>Verify that the failed future has a <code>TreeException</code>;
+	 * 	</li>
+	 * 	<li>Verify that the next operation of the second session is
+	 * 	executed.</li>
+	 * </ol>
+	 *
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void execute() throws Exception {
+		final String firstSessionId = "async_execute_1";
+		final String secondSessionId = "async_execute_2";
+
+		AsyncTreeManager manager = HappyTree.createAsyncTreeManager();
+
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		manager.initializeSession(firstSessionId, directories);
+		manager.initializeSession(secondSessionId, directories);
+
+		manager.removeElement(secondSessionId, HAPPYTREE_ID);
+
+		CompletableFuture<Boolean> first = manager.execute(firstSessionId,
+				sync -> sync.containsElement(HAPPYTREE_ID));
+		CompletableFuture<Boolean> second = manager.execute(secondSessionId,
+				sync -> sync.containsElement(HAPPYTREE_ID));
+		CompletableFuture<Element<Directory>> failed = manager.execute(
+				secondSessionId, sync -> sync.removeElement(sync.root()));
+		CompletableFuture<String> next = manager.execute(secondSessionId,
+				sync -> sync.getTransaction().currentSession().getSessionId());
+
+		assertTrue(first.get());
+		assertFalse(second.get());
+
+		List<Throwable> errors = new ArrayList<>();
+		try {
+			failed.get();
+		} catch (ExecutionException exception) {
+			errors.add(exception.getCause());
+		}
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0) instanceof TreeException);
+		assertEquals(secondSessionId, next.get());
+	}
+
+	/**
+	 * Test for the {@link AsyncTreeManager#execute(String,
+	 * AsyncTreeManager.Operation)}.
+	 *
+	 * <p>Happy scenario for this operation, with an executor which runs the
+	 * operations in the calling thread.</p>
+	 *
+	 * <p><b>Test:</b></p>
+	 * Schedule an operation from inside of another one of the same session,
+	 * on a direct executor.
+	 * <p><b>Expected:</b></p>
+	 * The operations run one after the other, and the scheduled one runs
+	 * only after the one which scheduled it.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create an asynchronous manager on a direct executor;</li>
+	 * 	<li>Initialize a session;</li>
+	 * 	<li>Remove the <i>happytree</i> element from inside of an operation
+	 * 	which records the order of the operations;</li>
+	 * 	<li>Verify that the removal runs after the operation which scheduled
+	 * 	it;</li>
+	 * 	<li>Verify that <i>happytree</i> is removed.</li>
+	 * </ol>
+	 *
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void execute_directExecutor() throws Exception {
+		final String sessionId = "async_execute_directExecutor";
+
+		AsyncTreeManager manager = HappyTree.createAsyncTreeManager(
+				Runnable::run);
+		List<String> steps = new ArrayList<>();
+
+		manager.initializeSession(sessionId, TreeAssembler.getDirectoryTree())
+				.get();
+
+		CompletableFuture<CompletableFuture<Element<Directory>>> outer =
+				manager.execute(sessionId, sync -> {
+					CompletableFuture<Element<Directory>> inner = manager
+							.execute(sessionId, nested -> {
+								steps.add("inner");
+								return nested.removeElement(HAPPYTREE_ID);
+							});
+					steps.add("outer");
+					return inner;
+				});
+
+		assertEquals(HAPPYTREE_ID, outer.get().get().getId());
+		assertEquals(2, steps.size());
+		assertEquals("outer", steps.get(0));
+		assertEquals("inner", steps.get(1));
+		assertFalse(manager.execute(sessionId, sync -> sync.containsElement(
+				HAPPYTREE_ID)).get());
+	}
+
+	/**
+	 * Test for the {@link AsyncTreeManager#getManager()}.
+	 *
+	 * <p>Happy scenario for this operation.</p>
+	 *
+	 * <p><b>Test:</b></p>
+	 * Get the synchronous manager of an asynchronous one.
+	 * <p><b>Expected:</b></p>
+	 * A not <code>null</code> manager whose transaction is thread-confined.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create an asynchronous manager;</li>
+	 * 	<li>Get its synchronous manager;</li>
+	 * 	<li>Verify that its transaction is thread-confined.</li>
+	 * </ol>
+	 *
+	 * @throws IOException never
+	 */
+	@Test
+	public void getManager() throws IOException {
+		AsyncTreeManager manager = HappyTree.createAsyncTreeManager();
+
+		TreeManager sync = manager.getManager();
+
+		assertNotNull(sync);
+		assertTrue(sync.getTransaction().isThreadConfined());
+	}
+}
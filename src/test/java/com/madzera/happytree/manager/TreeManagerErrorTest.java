@@ -1,17 +1,25 @@
 package com.madzera.happytree.manager;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import org.junit.Test;
 
 import com.madzera.happytree.Element;
 import com.madzera.happytree.TreeManager;
+import com.madzera.happytree.TreeQuery;
 import com.madzera.happytree.TreeTransaction;
 import com.madzera.happytree.common.TreeCommonTestHelper;
 import com.madzera.happytree.core.HappyTree;
@@ -19,6 +27,7 @@ import com.madzera.happytree.demo.model.Directory;
 import com.madzera.happytree.demo.model.Metadata;
 import com.madzera.happytree.demo.util.TreeAssembler;
 import com.madzera.happytree.exception.TreeException;
+import com.madzera.happytree.exception.TreeVersionException;
 
 /**
  * Test class for {@link TreeManager} operations.
@@ -4886,4 +4895,542 @@ public class TreeManagerErrorTest extends TreeCommonTestHelper {
 			});
 		}
 	}
+
+	/**
+	 * Test for the {@link TreeManager#removeElement(Object)} operation.
+	 * 
+	 * <p>Error scenario for this operation when the current session is
+	 * read-only.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to remove an element from a session mapped from a snapshot file.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code> with the
+	 * message:
+	 * <i>&quot;It is not possible to change a read-only session.&quot;</i>,
+	 * and the element is kept in the session.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session by API Transformation Process using a
+	 * 	previous assembled tree;</li>
+	 * 	<li>Save the session into a temporary file and destroy it;</li>
+	 * 	<li>Map the session from the file by invoking
+	 * 	{@link TreeTransaction#mapSession(Path)};</li>
+	 * 	<li>Try to remove the <i>happytree</i> element;</li>
+	 * 	<li>Catch the <code>TreeException</code>;</li>
+	 * 	<li>Verify the message error;</li>
+	 * 	<li>Verify that the <i>happytree</i> element still exists.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error with the temporary file
+	 */
+	@Test
+	public void removeElement_readOnlySession() throws TreeException,
+			IOException {
+		final String sessionId = "removeElement_readOnlySession";
+		final String messageError = "It is not possible to change a "
+				+ "read-only session.";
+		final Long happytreeId = 859452L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		Path file = Files.createTempFile(sessionId, ".snapshot");
+		try {
+			transaction.saveSession(file);
+			transaction.destroySession();
+			transaction.mapSession(file);
+
+			TreeException exception = assertThrows(TreeException.class,
+					() -> manager.removeElement(happytreeId));
+
+			assertEquals(messageError, exception.getMessage());
+			assertTrue(manager.containsElement(happytreeId));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	/**
+	 * Test for the {@link TreeManager#removeIf(Predicate)} operation.
+	 * 
+	 * <p>Error scenario for this operation when the current session is
+	 * read-only.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to remove the elements which satisfy a condition from a session
+	 * mapped from a snapshot file.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code> with the
+	 * message:
+	 * <i>&quot;It is not possible to change a read-only session.&quot;</i>,
+	 * and the elements are kept in the session.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session by API Transformation Process using a
+	 * 	previous assembled tree;</li>
+	 * 	<li>Save the session into a temporary file and destroy it;</li>
+	 * 	<li>Map the session from the file by invoking
+	 * 	{@link TreeTransaction#mapSession(Path)};</li>
+	 * 	<li>Try to remove all the elements;</li>
+	 * 	<li>Catch the <code>TreeException</code>;</li>
+	 * 	<li>Verify the message error;</li>
+	 * 	<li>Verify that the <i>happytree</i> element still exists.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error with the temporary file
+	 */
+	@Test
+	public void removeIf_readOnlySession() throws TreeException,
+			IOException {
+		final String sessionId = "removeIf_readOnlySession";
+		final String messageError = "It is not possible to change a "
+				+ "read-only session.";
+		final Long happytreeId = 859452L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		Path file = Files.createTempFile(sessionId, ".snapshot");
+		try {
+			transaction.saveSession(file);
+			transaction.destroySession();
+			transaction.mapSession(file);
+
+			TreeException exception = assertThrows(TreeException.class,
+					() -> manager.removeIf(element -> true));
+
+			assertEquals(messageError, exception.getMessage());
+			assertTrue(manager.containsElement(happytreeId));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	/**
+	 * Test for the {@link TreeManager#updateElement(Element, long)} operation.
+	 * 
+	 * <p>Error scenario for this operation when the element has been updated
+	 * since its version was read.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to update an element twice with the same version.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeVersionException</code> with
+	 * the message:
+	 * <i>&quot;The element has been changed since the expected
+	 * version.&quot;</i>, and the first update is kept.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session by API Transformation Process using a
+	 * 	previous assembled tree;</li>
+	 * 	<li>Get the <i>happytree</i> element twice, as two concurrent
+	 * 	editors;</li>
+	 * 	<li>Rename and update the first one with its version;</li>
+	 * 	<li>Try to rename and update the second one with its version;</li>
+	 * 	<li>Catch the <code>TreeVersionException</code>;</li>
+	 * 	<li>Verify the message error;</li>
+	 * 	<li>Verify that the element keeps the first name.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void updateElement_staleVersion() throws TreeException {
+		final String sessionId = "updateElement_staleVersion";
+		final String messageError = "The element has been changed since the "
+				+ "expected version.";
+		final long happytreeId = 859452L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		Element<Directory> first = manager.getElementById(happytreeId);
+		Element<Directory> second = manager.getElementById(happytreeId);
+
+		Directory firstDirectory = first.unwrap();
+		firstDirectory.setName("first");
+		first.wrap(firstDirectory);
+		manager.updateElement(first, first.getVersion());
+
+		Directory secondDirectory = second.unwrap();
+		secondDirectory.setName("second");
+		second.wrap(secondDirectory);
+
+		TreeVersionException exception = assertThrows(
+				TreeVersionException.class,
+				() -> manager.updateElement(second, second.getVersion()));
+
+		assertEquals(messageError, exception.getMessage());
+		assertEquals("first", manager.<Directory>getElementById(happytreeId)
+				.unwrap().getName());
+	}
+
+	/**
+	 * Test for the {@link TreeManager#persistElements(Collection)} operation.
+	 * 
+	 * <p>Error scenario for this operation when two elements of the batch have
+	 * the same <code>@Id</code>.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to persist two new elements with the same <code>@Id</code> in a
+	 * single operation.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code>
+	 * with the message: <i>&quot;Duplicate ID.&quot;</i> and none of the
+	 * elements is persisted.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session by API Transformation Process using a
+	 * 	previous assembled tree;</li>
+	 * 	<li>Create two new elements with the same <code>@Id</code>;</li>
+	 * 	<li>Try to persist both elements;</li>
+	 * 	<li>Catch the <code>TreeException</code>;</li>
+	 * 	<li>Verify the message error;</li>
+	 * 	<li>Verify that the <code>@Id</code> is not in the tree.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void persistElements_duplicateId() throws TreeException {
+		final String sessionId = "persistElements_duplicateId";
+		final String messageError = "Duplicate ID.";
+		final long programFilesId = 42345L;
+		final long usersId = 38923L;
+		final long gamesId = Long.MAX_VALUE;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		Element<Directory> first = manager.createElement(gamesId,
+				programFilesId, new Directory(gamesId, programFilesId,
+						"Games"));
+		Element<Directory> second = manager.createElement(gamesId, usersId,
+				new Directory(gamesId, usersId, "Games"));
+
+		TreeException exception = assertThrows(TreeException.class,
+				() -> manager.persistElements(Arrays.asList(first, second)));
+
+		assertEquals(messageError, exception.getMessage());
+		assertFalse(manager.containsElement(gamesId));
+	}
+
+	/**
+	 * Test for the {@link TreeManager#getElementsById(Collection, boolean)}
+	 * operation.
+	 * 
+	 * <p>Error scenario for this operation when the collection of identifiers
+	 * is <code>null</code>.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to get the elements of a <code>null</code> collection of
+	 * identifiers.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>IllegalArgumentException</code>
+	 * with the message: <i>&quot;Invalid null/empty argument(s).&quot;</i>
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session by API Transformation Process using a
+	 * 	previous assembled tree;</li>
+	 * 	<li>Try to get the elements of a <code>null</code> collection;</li>
+	 * 	<li>Catch the <code>IllegalArgumentException</code>;</li>
+	 * 	<li>Verify the message error.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void getElementsById_nullIds() throws TreeException {
+		final String sessionId = "getElementsById_nullIds";
+		final String messageError = "Invalid null/empty argument(s).";
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		IllegalArgumentException exception = assertThrows(
+				IllegalArgumentException.class,
+				() -> manager.getElementsById(null, false));
+
+		assertEquals(messageError, exception.getMessage());
+	}
+
+	/**
+	 * Test for the {@link TreeManager#createIndex(String, boolean)}
+	 * operation.
+	 * 
+	 * <p>Error scenario for this operation when the wrapped nodes have no
+	 * getter for the attribute.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to create an index of an attribute which the directories do not
+	 * have.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code> with the
+	 * message:
+	 * <i>&quot;It is not possible to index the elements. Invalid
+	 * attribute.&quot;</i>
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session by API Transformation Process using a
+	 * 	previous assembled tree;</li>
+	 * 	<li>Try to create an index of an unknown attribute;</li>
+	 * 	<li>Catch the <code>TreeException</code>;</li>
+	 * 	<li>Verify the message error.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void createIndex_invalidAttribute() throws TreeException {
+		final String sessionId = "createIndex_invalidAttribute";
+		final String messageError = "It is not possible to index the elements."
+				+ " Invalid attribute.";
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		TreeException exception = assertThrows(TreeException.class,
+				() -> manager.createIndex("size", false));
+
+		assertEquals(messageError, exception.getMessage());
+	}
+
+	/**
+	 * Test for the {@link TreeManager#createTextIndex(String)} operation.
+	 * 
+	 * <p>Error scenario for this operation when the attribute is not a
+	 * <code>String</code>.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to create a text index of the identifier of the directories, which
+	 * is a <code>Long</code>.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code> with the
+	 * message:
+	 * <i>&quot;It is not possible to index the elements. Invalid
+	 * attribute.&quot;</i>
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session by API Transformation Process using a
+	 * 	previous assembled tree;</li>
+	 * 	<li>Try to create a text index of the identifier;</li>
+	 * 	<li>Catch the <code>TreeException</code>;</li>
+	 * 	<li>Verify the message error.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void createTextIndex_notStringAttribute() throws TreeException {
+		final String sessionId = "createTextIndex_notStringAttribute";
+		final String messageError = "It is not possible to index the elements."
+				+ " Invalid attribute.";
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		TreeException exception = assertThrows(TreeException.class,
+				() -> manager.createTextIndex("identifier"));
+
+		assertEquals(messageError, exception.getMessage());
+	}
+
+	/**
+	 * Test for the {@link TreeManager#findRange(String, Object, Object)}
+	 * operation.
+	 * 
+	 * <p>Error scenario for this operation when the attribute has only a hash
+	 * index.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to find the elements by a range of an attribute without a sorted
+	 * index.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code> with the
+	 * message: <i>&quot;No defined index of the attribute.&quot;</i>
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session by API Transformation Process using a
+	 * 	previous assembled tree;</li>
+	 * 	<li>Create a hash index of the name;</li>
+	 * 	<li>Try to find the elements by a range of names;</li>
+	 * 	<li>Catch the <code>TreeException</code>;</li>
+	 * 	<li>Verify the message error.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void findRange_noSortedIndex() throws TreeException {
+		final String sessionId = "findRange_noSortedIndex";
+		final String messageError = "No defined index of the attribute.";
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		manager.createIndex("name", false);
+
+		TreeException exception = assertThrows(TreeException.class,
+				() -> manager.findRange("name", "A", "Z"));
+
+		assertEquals(messageError, exception.getMessage());
+	}
+
+	/**
+	 * Test for the {@link TreeQuery#list()} operation.
+	 * 
+	 * <p>Error scenario for this operation when the wrapped nodes have no
+	 * getter for an attribute of the query.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to execute a query by an attribute which the directories do not
+	 * have.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code> with the
+	 * message:
+	 * <i>&quot;It is not possible to query the elements. Invalid
+	 * attribute.&quot;</i>
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session by API Transformation Process using a
+	 * 	previous assembled tree;</li>
+	 * 	<li>Try to execute a query by an unknown attribute;</li>
+	 * 	<li>Catch the <code>TreeException</code>;</li>
+	 * 	<li>Verify the message error.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void query_invalidAttribute() throws TreeException {
+		final String sessionId = "query_invalidAttribute";
+		final String messageError = "It is not possible to query the elements."
+				+ " Invalid attribute.";
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		TreeQuery<Directory> query = manager.<Directory>query()
+				.between("size", 0L, 10L);
+
+		TreeException exception = assertThrows(TreeException.class,
+				() -> query.list());
+
+		assertEquals(messageError, exception.getMessage());
+	}
+
+	/**
+	 * Test for the {@link TreeQuery#limit(int)} operation.
+	 * 
+	 * <p>Error scenario for this operation when the limit is negative.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to limit a query to a negative number of elements.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>IllegalArgumentException</code>
+	 * with the message: <i>&quot;Invalid null/empty argument(s).&quot;</i>
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create a new query;</li>
+	 * 	<li>Try to limit it to a negative number of elements;</li>
+	 * 	<li>Catch the <code>IllegalArgumentException</code>;</li>
+	 * 	<li>Verify the message error.</li>
+	 * </ol>
+	 */
+	@Test
+	public void query_negativeLimit() {
+		final String messageError = "Invalid null/empty argument(s).";
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeQuery<Directory> query = manager.query();
+
+		IllegalArgumentException exception = assertThrows(
+				IllegalArgumentException.class, () -> query.limit(-1));
+
+		assertEquals(messageError, exception.getMessage());
+	}
+
+	/**
+	 * Test for the {@link TreeManager#topK(Object, Comparator, int)}
+	 * operation.
+	 * 
+	 * <p>Error scenario for this operation when <code>k</code> is
+	 * negative.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to get a negative number of elements of the tree.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>IllegalArgumentException</code>
+	 * with the message: <i>&quot;Invalid null/empty argument(s).&quot;</i>
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session by API Transformation Process using a
+	 * 	previous assembled tree;</li>
+	 * 	<li>Try to get the top <code>-1</code> elements of the tree;</li>
+	 * 	<li>Catch the <code>IllegalArgumentException</code>;</li>
+	 * 	<li>Verify the message error.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void topK_negativeK() throws TreeException {
+		final String sessionId = "topK_negativeK";
+		final String messageError = "Invalid null/empty argument(s).";
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		Comparator<Element<Directory>> byId = Comparator.comparing(
+				element -> (Long) element.getId());
+
+		IllegalArgumentException exception = assertThrows(
+				IllegalArgumentException.class, () -> manager.topK(null, byId,
+						-1));
+
+		assertEquals(messageError, exception.getMessage());
+	}
 }
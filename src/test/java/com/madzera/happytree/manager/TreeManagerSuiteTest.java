@@ -8,6 +8,7 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
 	TreeManagerTest.class,
 	TreeManagerAlternativeTest.class,
-	TreeManagerErrorTest.class})
+	TreeManagerErrorTest.class,
+	AsyncTreeManagerTest.class})
 public class TreeManagerSuiteTest {
 }
@@ -6,15 +6,34 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
 import com.madzera.happytree.Element;
 import com.madzera.happytree.TreeManager;
+import com.madzera.happytree.TreeQuery;
+import com.madzera.happytree.TreeSession;
 import com.madzera.happytree.TreeTransaction;
+import com.madzera.happytree.TreeVisitor;
 import com.madzera.happytree.common.TreeCommonTestHelper;
 import com.madzera.happytree.core.HappyTree;
 import com.madzera.happytree.demo.model.Directory;
@@ -161,6 +180,229 @@ public class TreeManagerTest extends TreeCommonTestHelper {
 		assertEquals(parentRecordedName, parentRec.getName());
 	}
 	
+	/**
+	 * Test for the {@link TreeManager#getElementById(Object, int)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Get an element with only its direct children.
+	 * <p><b>Expected:</b></p>
+	 * The copy has the direct children of the element, and the children of
+	 * them are copied from the tree only when they are accessed.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Get the <i>Devel</i> element down to the depth <code>1</code>;
+	 * 	</li>
+	 * 	<li>Verify that <i>Devel</i> has the same children as in the
+	 * 	tree;</li>
+	 * 	<li>Remove <i>happytree</i> from the tree;</li>
+	 * 	<li>Verify that <i>projects</i> has no <i>happytree</i> in the copy,
+	 * 	since its children are copied after the removal.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void getElementById_depth() throws TreeException {
+		final String sessionId = "getElementById_depth";
+		final long develId = 93832;
+		final long projectsId = 93209;
+		final long happytreeId = 859452;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
+		
+		Element<Directory> devel = manager.getElementById(develId, 1);
+		
+		assertEquals(manager.getElementById(develId).getChildren().size(),
+				devel.getChildren().size());
+		
+		manager.removeElement(happytreeId);
+		Element<Directory> projects = devel.getElementById(projectsId);
+		
+		assertNotNull(projects);
+		assertNull(projects.getElementById(happytreeId));
+	}
+	
+	/**
+	 * Test for the {@link TreeManager#updateElement(Element)}.
+	 * 
+	 * <p>Happy scenario for this operation, updating a copy obtained by
+	 * {@link TreeManager#getElementById(Object, int)}.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Update an element copied only with its direct children, removing one
+	 * of them from the copy.
+	 * <p><b>Expected:</b></p>
+	 * The removed child is removed from the tree and the descendants which
+	 * were left out of the copy are kept.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Get the <i>Devel</i> element down to the depth <code>1</code>;
+	 * 	</li>
+	 * 	<li>Remove <i>database</i> from the copy;</li>
+	 * 	<li>Update the copy;</li>
+	 * 	<li>Verify that <i>database</i> is no longer in the tree;</li>
+	 * 	<li>Verify that <i>happytree</i> is still inside of
+	 * 	<i>projects</i>, and <i>Devel</i> lost only the subtree of
+	 * 	<i>database</i>.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void updateElement_depthCopy() throws TreeException {
+		final String sessionId = "updateElement_depthCopy";
+		final long develId = 93832;
+		final long projectsId = 93209;
+		final long happytreeId = 859452;
+		final long databaseId = 45930;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
+		
+		Element<Directory> database = manager.getElementById(databaseId);
+		int descendants = manager.getElementById(develId)
+				.getDescendantCount() - database.getDescendantCount() - 1;
+		Element<Directory> devel = manager.getElementById(develId, 1);
+		
+		devel.getChildren().remove(database);
+		manager.updateElement(devel);
+		
+		assertFalse(manager.containsElement(databaseId));
+		assertTrue(manager.containsElement(projectsId, happytreeId));
+		assertEquals(descendants, manager.getElementById(develId)
+				.getDescendantCount());
+	}
+	
+	/**
+	 * Test for the {@link TreeManager#getElementsById(Collection, boolean)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Get many elements at once, one of them being a descendant of another
+	 * one.
+	 * <p><b>Expected:</b></p>
+	 * The found elements are returned by their <code>@Id</code> with their
+	 * descendants, the copy of the descendant is shared with the copy of its
+	 * ancestor and the unknown <code>@Id</code> is not returned.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Get the <i>projects</i>, <i>Devel</i> and an unknown
+	 * 	<code>@Id</code>;</li>
+	 * 	<li>Verify that only <i>projects</i> and <i>Devel</i> are
+	 * 	returned;</li>
+	 * 	<li>Verify that the copy of <i>projects</i> is the same one inside of
+	 * 	the copy of <i>Devel</i>.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void getElementsById() throws TreeException {
+		final String sessionId = "getElementsById";
+		final long develId = 93832;
+		final long projectsId = 93209;
+		final long happytreeId = 859452;
+		final long unknownId = Long.MIN_VALUE;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
+		
+		Map<Object, Element<Directory>> elements = manager.getElementsById(
+				Arrays.asList(projectsId, develId, unknownId), false);
+		
+		Element<Directory> devel = elements.get(develId);
+		Element<Directory> projects = elements.get(projectsId);
+		
+		assertEquals(2, elements.size());
+		assertFalse(elements.containsKey(unknownId));
+		assertEquals(manager.getElementById(develId), devel);
+		assertNotNull(projects.getElementById(happytreeId));
+		assertTrue(projects == devel.getElementById(projectsId));
+	}
+	
+	/**
+	 * Test for the {@link TreeManager#getElementsById(Collection, boolean)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Get many elements at once without their descendants, and update one
+	 * of them.
+	 * <p><b>Expected:</b></p>
+	 * The found elements keep their parents, and the updated one keeps its
+	 * descendants in the tree.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Get the shallow copies of <i>projects</i> and <i>Devel</i>;</li>
+	 * 	<li>Verify that the copies keep their parents and nodes;</li>
+	 * 	<li>Rename the copy of <i>Devel</i> and update it;</li>
+	 * 	<li>Verify that <i>Devel</i> is renamed and it still has all of its
+	 * 	descendants, including <i>projects</i>.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void getElementsById_shallow() throws TreeException {
+		final String sessionId = "getElementsById_shallow";
+		final long develId = 93832;
+		final long projectsId = 93209;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
+		
+		Map<Object, Element<Directory>> elements = manager.getElementsById(
+				Arrays.asList(develId, projectsId), true);
+		
+		Element<Directory> devel = elements.get(develId);
+		Element<Directory> projects = elements.get(projectsId);
+		
+		int descendants = manager.getElementById(develId)
+				.getDescendantCount();
+		
+		assertEquals(develId, projects.getParent());
+		assertEquals("projects", projects.unwrap().getName());
+		
+		Directory directory = devel.unwrap();
+		directory.setName("Development");
+		devel.wrap(directory);
+		manager.updateElement(devel);
+		
+		devel = manager.getElementById(develId);
+		
+		assertEquals("Development", devel.unwrap().getName());
+		assertEquals(descendants, devel.getDescendantCount());
+		assertTrue(manager.containsElement(develId, projectsId));
+	}
+	
 	/**
 	 * Test for the {@link TreeManager#cut(Element, Element)}.
 	 * 
@@ -301,6 +543,106 @@ public class TreeManagerTest extends TreeCommonTestHelper {
 		assertEquals(sdkId, jdk.getParent());
 	}
 	
+	/**
+	 * Test for the {@link TreeManager#cut(Element, Element, long)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Cut an element which still has the version read from the tree.
+	 * <p><b>Expected:</b></p>
+	 * The element is cut and its version is incremented.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Get the <i>happytree</i> and the <i>Devel</i> elements;</li>
+	 * 	<li>Cut <i>happytree</i> into <i>Devel</i> with the version of
+	 * 	<i>happytree</i>;</li>
+	 * 	<li>Verify that <i>Devel</i> contains <i>happytree</i>;</li>
+	 * 	<li>Verify that the version of <i>happytree</i> is incremented.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void cut_version() throws TreeException {
+		final String sessionId = "cut_version";
+		final long happytreeId = 859452;
+		final long develId = 93832;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
+		
+		Element<Directory> happytree = manager.getElementById(happytreeId);
+		Element<Directory> devel = manager.getElementById(develId);
+		long version = happytree.getVersion();
+		
+		Element<Directory> cut = manager.cut(happytree, devel, version);
+		
+		assertTrue(manager.containsElement(develId, happytreeId));
+		assertEquals(version + 1, cut.getVersion());
+		assertEquals(version + 1, manager.getElementById(happytreeId)
+				.getVersion());
+	}
+	
+	/**
+	 * Test for the {@link TreeManager#cutElements(Map)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Cut many elements by their <code>@Id</code> in a single operation.
+	 * <p><b>Expected:</b></p>
+	 * Each element is moved into its own target and the element mapped to
+	 * <code>null</code> is moved into the root of the tree.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Map <i>happytree</i> to <i>Devel</i>, <i>jdk1.6</i> to
+	 * 	<i>ide</i> and <i>sdk_dev</i> to <code>null</code>;</li>
+	 * 	<li>Cut the mapped elements;</li>
+	 * 	<li>Verify that each element is inside its new parent.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void cutElements() throws TreeException {
+		final String sessionId = "cutElements";
+		final long happytreeId = 859452;
+		final long develId = 93832;
+		final long jdkId = 983533;
+		final long ideId = 13823;
+		final long sdkDevId = 84709;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
+		
+		Map<Long, Long> elements = new LinkedHashMap<>();
+		elements.put(happytreeId, develId);
+		elements.put(jdkId, ideId);
+		elements.put(sdkDevId, null);
+		
+		manager.cutElements(elements);
+		
+		assertEquals(develId, manager.getElementById(happytreeId)
+				.getParent());
+		assertTrue(manager.containsElement(ideId, jdkId));
+		assertFalse(manager.containsElement(develId, sdkDevId));
+		assertTrue(manager.root().getChildren().contains(manager
+				.getElementById(sdkDevId)));
+	}
+	
 	/**
 	 * Test for the {@link TreeManager#copy(Element, Element)}.
 	 * 
@@ -551,142 +893,349 @@ public class TreeManagerTest extends TreeCommonTestHelper {
 	}
 	
 	/**
-	 * Test for the {@link TreeManager#containsElement(Element, Element)}.
-	 * 
-	 * <p>Happy scenario for this operation</p>
-	 * 
-	 * <p>This makes use of the {@link TreeAssembler} and {@link Directory}
-	 * classes to assemble a collection of linear objects that have tree
-	 * behavior and that are going to be transformed.</p>
+	 * Test for the {@link TreeManager#removeElement(Element, long)}.
 	 * 
-	 * <p><b>For this demonstration, please see these sample classes in
-	 * question.</b></p>
+	 * <p>Happy scenario for this operation.</p>
 	 * 
 	 * <p><b>Test:</b></p>
-	 * Verify if an element contains another one.
+	 * Remove an element which still has the version read from the tree.
 	 * <p><b>Expected:</b></p>
-	 * Receive the <code>true</code> value when invoking
-	 * {@link TreeManager#containsElement(Element, Element)}.
+	 * The element is removed from the tree.
 	 * <p><b>Steps:</b></p>
 	 * <ol>
 	 * 	<li>Get the transaction;</li>
 	 * 	<li>Initialize a new session previously loaded from
 	 * 	<code>TreeAssembler</code>;</li>
-	 * 	<li>Get the element (Adobe);</li>
-	 * 	<li>Get the element (reader.exe);</li>
-	 * 	<li>Confirm that the (Adobe) element contains the (reader.exe) element.
-	 * 	</li>
+	 * 	<li>Get the <i>happytree</i> element;</li>
+	 * 	<li>Remove it with its version;</li>
+	 * 	<li>Verify that the element is not in the tree anymore.</li>
 	 * </ol>
 	 * 
 	 * @throws TreeException in case of an error
 	 */
 	@Test
-	public void containsElement() throws TreeException {
-		final String sessionId = "containsElement";
-		
-		final long adobeId = 24935;
-		final long readerExeId = 8493845;
+	public void removeElement_version() throws TreeException {
+		final String sessionId = "removeElement_version";
+		final long happytreeId = 859452;
 		
 		TreeManager manager = HappyTree.createTreeManager();
 		TreeTransaction transaction = manager.getTransaction();
 		
-		Collection<Directory> sourceDir = TreeAssembler.getDirectoryTree();
-		transaction.initializeSession(sessionId, sourceDir);
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
 		
-		Element<Directory> adobe = manager.getElementById(adobeId);
-		Element<Directory> readerExe = manager.getElementById(readerExeId);
+		Element<Directory> happytree = manager.getElementById(happytreeId);
 		
-		assertTrue(manager.containsElement(adobe, readerExe));
+		Element<Directory> removed = manager.removeElement(happytree,
+				happytree.getVersion());
+		
+		assertNotNull(removed);
+		assertFalse(manager.containsElement(happytreeId));
 	}
 	
 	/**
-	 * Test for the {@link TreeManager#containsElement(Object, Object)}.
-	 * 
-	 * <p>Happy scenario for this operation</p>
-	 * 
-	 * <p>This makes use of the {@link TreeAssembler} and {@link Directory}
-	 * classes to assemble a collection of linear objects that have tree
-	 * behavior and that are going to be transformed.</p>
+	 * Test for the {@link TreeManager#removeElements(Collection)}.
 	 * 
-	 * <p><b>For this demonstration, please see these sample classes in
-	 * question.</b></p>
+	 * <p>Happy scenario for this operation.</p>
 	 * 
 	 * <p><b>Test:</b></p>
-	 * Verify if an element contains another one through only the element id.
+	 * Remove many elements by their <code>@Id</code> in a single operation.
 	 * <p><b>Expected:</b></p>
-	 * Receive the <code>true</code> value when invoking
-	 * {@link TreeManager#containsElement(Object, Object)}.
+	 * The found elements are removed with their children and returned, while
+	 * the <code>@Id</code> which is not found is ignored.
 	 * <p><b>Steps:</b></p>
 	 * <ol>
 	 * 	<li>Get the transaction;</li>
 	 * 	<li>Initialize a new session previously loaded from
 	 * 	<code>TreeAssembler</code>;</li>
-	 * 	<li>Invoke {@link TreeManager#containsElement(Object, Object)};</li>
-	 * 	<li>Confirm that the (Adobe) element contains the (reader.exe) element
-	 * 	through only the element id.</li>
+	 * 	<li>Remove <i>projects</i>, <i>eclipse</i> and an unknown
+	 * 	<code>@Id</code>;</li>
+	 * 	<li>Verify that only two elements are returned;</li>
+	 * 	<li>Verify that the elements and their children are not in the tree
+	 * 	anymore.</li>
 	 * </ol>
 	 * 
 	 * @throws TreeException in case of an error
 	 */
 	@Test
-	public void containsObject() throws TreeException {
-		final String sessionId = "containsElement";
-		
-		final long adobeId = 24935;
-		final long readerExeId = 8493845;
+	public void removeElements() throws TreeException {
+		final String sessionId = "removeElements";
+		final long projectsId = 93209;
+		final long happytreeId = 859452;
+		final long eclipseId = 583852;
+		final long eclipseExeId = 8483742;
+		final long unknownId = Long.MIN_VALUE;
 		
 		TreeManager manager = HappyTree.createTreeManager();
 		TreeTransaction transaction = manager.getTransaction();
 		
-		Collection<Directory> sourceDir = TreeAssembler.getDirectoryTree();
-		transaction.initializeSession(sessionId, sourceDir);
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
 		
-		assertTrue(manager.containsElement(adobeId, readerExeId));
+		List<Element<Directory>> removed = manager.removeElements(Arrays
+				.asList(projectsId, eclipseId, unknownId));
+		
+		assertEquals(2, removed.size());
+		assertFalse(manager.containsElement(projectsId));
+		assertFalse(manager.containsElement(happytreeId));
+		assertFalse(manager.containsElement(eclipseId));
+		assertFalse(manager.containsElement(eclipseExeId));
 	}
 	
 	/**
-	 * Test for the {@link TreeManager#containsElement(Element)}.
-	 * 
-	 * <p>Happy scenario for this operation</p>
-	 * 
-	 * <p>This makes use of the {@link TreeAssembler} and {@link Directory}
-	 * classes to assemble a collection of linear objects that have tree
-	 * behavior and that are going to be transformed.</p>
+	 * Test for the {@link TreeManager#removeIf(Predicate)}.
 	 * 
-	 * <p><b>For this demonstration, please see these sample classes in
-	 * question.</b></p>
+	 * <p>Happy scenario for this operation.</p>
 	 * 
 	 * <p><b>Test:</b></p>
-	 * Verify if a tree has inside of it an element.
+	 * Remove all elements whose name ends with <i>.exe</i> in a single
+	 * operation.
 	 * <p><b>Expected:</b></p>
-	 * Receive the <code>true</code> value when invoking
-	 * {@link TreeManager#containsElement(Element)}.
+	 * The matching elements are removed and returned, and their parents
+	 * become leaves of the tree.
 	 * <p><b>Steps:</b></p>
 	 * <ol>
 	 * 	<li>Get the transaction;</li>
 	 * 	<li>Initialize a new session previously loaded from
 	 * 	<code>TreeAssembler</code>;</li>
-	 * 	<li>Get the element (bin);</li>
-	 * 	<li>Confirm that the tree contains the (bin) element by invoking
-	 * 	{@link TreeManager#containsElement(Element)}.</li>
+	 * 	<li>Remove the elements whose name ends with <i>.exe</i>;</li>
+	 * 	<li>Verify that the removed elements are returned;</li>
+	 * 	<li>Verify that no element whose name ends with <i>.exe</i> is left
+	 * 	in the tree;</li>
+	 * 	<li>Verify that <i>eclipse</i> is a leaf now.</li>
 	 * </ol>
 	 * 
 	 * @throws TreeException in case of an error
 	 */
 	@Test
-	public void treeContainsElement() throws TreeException {
-		final String sessionId = "treeContainsElement";
-		
-		final long binId = 7753032;
+	public void removeIf() throws TreeException {
+		final String sessionId = "removeIf";
+		final long eclipseId = 583852;
+		final long eclipseExeId = 8483742;
+		final Predicate<Element<Directory>> isExe = e -> e.unwrap() != null
+				&& e.unwrap().getName().endsWith(".exe");
 		
 		TreeManager manager = HappyTree.createTreeManager();
 		TreeTransaction transaction = manager.getTransaction();
 		
-		Collection<Directory> sourceDir = TreeAssembler.getDirectoryTree();
-		transaction.initializeSession(sessionId, sourceDir);
-		Element<Directory> bin = manager.getElementById(binId);
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
 		
-		assertTrue(manager.containsElement(bin));
+		int exeCount = manager.search(isExe).size();
+		
+		List<Element<Directory>> removed = manager.removeIf(isExe);
+		
+		assertEquals(exeCount, removed.size());
+		assertTrue(manager.search(isExe).isEmpty());
+		assertFalse(manager.containsElement(eclipseExeId));
+		assertTrue(manager.leaves().contains(manager.getElementById(
+				eclipseId)));
+	}
+	
+	/**
+	 * Test for the {@link TreeManager#removeIf(Predicate)}.
+	 * 
+	 * <p>Happy scenario for this operation in a lazy session.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Remove the elements which satisfy a condition in a session initialized
+	 * with a <code>ChildLoader</code>.
+	 * <p><b>Expected:</b></p>
+	 * Only the loaded elements are evaluated, so nothing else is loaded and
+	 * the element not loaded yet is not removed.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a lazy session with a loader which records the
+	 * 	<code>@Id</code> of each loaded parent;</li>
+	 * 	<li>Load the root and <i>Devel</i> with their first level;</li>
+	 * 	<li>Remove <i>database</i> and <i>happytree</i> by condition;</li>
+	 * 	<li>Verify that only <i>database</i> is removed, without loading
+	 * 	anything else;</li>
+	 * 	<li>Load the children of <i>projects</i> and verify that
+	 * 	<i>happytree</i> is still in the tree.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void removeIf_lazySession() throws TreeException {
+		final String sessionId = "removeIf_lazySession";
+		final long develId = 93832;
+		final long projectsId = 93209;
+		final long happytreeId = 859452;
+		final long databaseId = 45930;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		List<Object> loadedParents = new ArrayList<>();
+		
+		transaction.initializeSession(sessionId, Directory.class,
+				parentId -> {
+					loadedParents.add(parentId);
+					Long parent = parentId != null ? (Long) parentId : 0L;
+					
+					return directories.stream().filter(directory ->
+							parent.equals(directory.getParentIdentifier()))
+							.collect(Collectors.toList());
+				});
+		
+		manager.root(1);
+		manager.getElementById(develId, 1);
+		
+		List<Element<Directory>> removed = manager.removeIf(element ->
+				element.getId().equals(databaseId)
+				|| element.getId().equals(happytreeId));
+		
+		assertEquals(1, removed.size());
+		assertEquals(databaseId, removed.get(0).getId());
+		assertEquals(Arrays.asList(null, develId), loadedParents);
+		assertFalse(manager.containsElement(databaseId));
+		
+		manager.getElementById(projectsId, 1);
+		
+		assertTrue(manager.containsElement(happytreeId));
+	}
+	
+	/**
+	 * Test for the {@link TreeManager#containsElement(Element, Element)}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p>This makes use of the {@link TreeAssembler} and {@link Directory}
+	 * classes to assemble a collection of linear objects that have tree
+	 * behavior and that are going to be transformed.</p>
+	 * 
+	 * <p><b>For this demonstration, please see these sample classes in
+	 * question.</b></p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Verify if an element contains another one.
+	 * <p><b>Expected:</b></p>
+	 * Receive the <code>true</code> value when invoking
+	 * {@link TreeManager#containsElement(Element, Element)}.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Get the element (Adobe);</li>
+	 * 	<li>Get the element (reader.exe);</li>
+	 * 	<li>Confirm that the (Adobe) element contains the (reader.exe) element.
+	 * 	</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void containsElement() throws TreeException {
+		final String sessionId = "containsElement";
+		
+		final long adobeId = 24935;
+		final long readerExeId = 8493845;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> sourceDir = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, sourceDir);
+		
+		Element<Directory> adobe = manager.getElementById(adobeId);
+		Element<Directory> readerExe = manager.getElementById(readerExeId);
+		
+		assertTrue(manager.containsElement(adobe, readerExe));
+	}
+	
+	/**
+	 * Test for the {@link TreeManager#containsElement(Object, Object)}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p>This makes use of the {@link TreeAssembler} and {@link Directory}
+	 * classes to assemble a collection of linear objects that have tree
+	 * behavior and that are going to be transformed.</p>
+	 * 
+	 * <p><b>For this demonstration, please see these sample classes in
+	 * question.</b></p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Verify if an element contains another one through only the element id.
+	 * <p><b>Expected:</b></p>
+	 * Receive the <code>true</code> value when invoking
+	 * {@link TreeManager#containsElement(Object, Object)}.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Invoke {@link TreeManager#containsElement(Object, Object)};</li>
+	 * 	<li>Confirm that the (Adobe) element contains the (reader.exe) element
+	 * 	through only the element id.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void containsObject() throws TreeException {
+		final String sessionId = "containsElement";
+		
+		final long adobeId = 24935;
+		final long readerExeId = 8493845;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> sourceDir = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, sourceDir);
+		
+		assertTrue(manager.containsElement(adobeId, readerExeId));
+	}
+	
+	/**
+	 * Test for the {@link TreeManager#containsElement(Element)}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p>This makes use of the {@link TreeAssembler} and {@link Directory}
+	 * classes to assemble a collection of linear objects that have tree
+	 * behavior and that are going to be transformed.</p>
+	 * 
+	 * <p><b>For this demonstration, please see these sample classes in
+	 * question.</b></p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Verify if a tree has inside of it an element.
+	 * <p><b>Expected:</b></p>
+	 * Receive the <code>true</code> value when invoking
+	 * {@link TreeManager#containsElement(Element)}.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Get the element (bin);</li>
+	 * 	<li>Confirm that the tree contains the (bin) element by invoking
+	 * 	{@link TreeManager#containsElement(Element)}.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void treeContainsElement() throws TreeException {
+		final String sessionId = "treeContainsElement";
+		
+		final long binId = 7753032;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> sourceDir = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, sourceDir);
+		Element<Directory> bin = manager.getElementById(binId);
+		
+		assertTrue(manager.containsElement(bin));
 	}
 	
 	/**
@@ -798,6 +1347,61 @@ public class TreeManagerTest extends TreeCommonTestHelper {
 		assertTrue(manager.containsElement(programFilesId, ageOfEmpiresId));
 	}
 	
+	/**
+	 * Test for the {@link TreeManager#persistElements(Collection)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Persist many new elements in a single operation, one of them being the
+	 * parent of another one of the same batch.
+	 * <p><b>Expected:</b></p>
+	 * All elements are persisted, each one inside its own parent.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Create the <i>Games</i> element inside <i>Program Files</i>, the
+	 * 	<i>Age of Empires II</i> element inside <i>Games</i> and the
+	 * 	<i>Music</i> element inside <i>Users</i>;</li>
+	 * 	<li>Persist the three elements;</li>
+	 * 	<li>Verify that each element is inside its own parent.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void persistElements() throws TreeException {
+		final String sessionId = "persistElements";
+		final long programFilesId = 42345;
+		final long usersId = 38923;
+		final long gamesId = Long.MAX_VALUE;
+		final long ageOfEmpiresId = 48593500;
+		final long musicId = 48593501;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
+		
+		Element<Directory> games = manager.createElement(gamesId,
+				programFilesId, new Directory(gamesId, programFilesId,
+						"Games"));
+		Element<Directory> ageGame = manager.createElement(ageOfEmpiresId,
+				gamesId, new Directory(ageOfEmpiresId, gamesId,
+						"Age of Empires II"));
+		Element<Directory> music = manager.createElement(musicId, usersId,
+				new Directory(musicId, usersId, "Music"));
+		
+		manager.persistElements(Arrays.asList(games, ageGame, music));
+		
+		assertTrue(manager.containsElement(programFilesId, gamesId));
+		assertTrue(manager.containsElement(gamesId, ageOfEmpiresId));
+		assertTrue(manager.containsElement(usersId, musicId));
+	}
+	
 	/**
 	 * Test for the {@link TreeManager#updateElement(Element)}.
 	 * 
@@ -866,6 +1470,59 @@ public class TreeManagerTest extends TreeCommonTestHelper {
 		assertTrue(manager.containsElement(winampId, recordedId));
 	}
 	
+	/**
+	 * Test for the {@link TreeManager#updateElement(Element, long)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Update an element which still has the version read from the tree.
+	 * <p><b>Expected:</b></p>
+	 * The element is updated and its version is incremented.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Get the <i>happytree</i> element and rename its wrapped
+	 * 	node;</li>
+	 * 	<li>Update it with its version;</li>
+	 * 	<li>Verify that the element is renamed in the tree;</li>
+	 * 	<li>Verify that the version of the element is incremented.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void updateElement_version() throws TreeException {
+		final String sessionId = "updateElement_version";
+		final long happytreeId = 859452;
+		final String name = "happytree-renamed";
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
+		
+		Element<Directory> happytree = manager.getElementById(happytreeId);
+		long version = happytree.getVersion();
+		
+		Directory directory = happytree.unwrap();
+		directory.setName(name);
+		happytree.wrap(directory);
+		
+		Element<Directory> updated = manager.updateElement(happytree,
+				version);
+		
+		assertEquals(version + 1, updated.getVersion());
+		
+		Element<Directory> element = manager.getElementById(happytreeId);
+		
+		assertEquals(name, element.unwrap().getName());
+		assertEquals(version + 1, element.getVersion());
+	}
+	
 	/**
 	 * Test for the {@link TreeManager#search(Predicate)}.
 	 * 
@@ -923,6 +1580,1189 @@ public class TreeManagerTest extends TreeCommonTestHelper {
 		}
 	}
 
+	/**
+	 * Test for the {@link TreeManager#elementsAtDepth(int)}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Obtain the elements placed in the first and second levels of the tree,
+	 * before and after moving an element to the root level.
+	 * <p><b>Expected:</b></p>
+	 * Three elements in depth 1 and eleven elements in depth 2. After cutting
+	 * the (Adobe) element to the root level, four elements in depth 1 and
+	 * thirteen elements in depth 2, since the children of (Adobe) move up one
+	 * level.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Verify the number of elements in depth 1 and 2;</li>
+	 * 	<li>Cut the (Adobe) element to the root level;</li>
+	 * 	<li>Verify the number of elements in depth 1 and 2 again;</li>
+	 * 	<li>Verify that the (Adobe) element is in depth 1.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void elementsAtDepth() throws TreeException {
+		final String sessionId = "elementsAtDepth";
+		final long adobeId = 24935L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		Collection<Directory> directoryTree = TreeAssembler.getDirectoryTree();
+
+		transaction.initializeSession(sessionId, directoryTree);
+
+		assertEquals(3, manager.elementsAtDepth(1).size());
+		assertEquals(11, manager.elementsAtDepth(2).size());
+
+		manager.cut(adobeId, null);
+
+		List<Element<Directory>> firstLevel = manager.elementsAtDepth(1);
+
+		assertEquals(4, firstLevel.size());
+		assertEquals(13, manager.elementsAtDepth(2).size());
+		assertTrue(firstLevel.contains(manager.getElementById(adobeId)));
+	}
+
+	/**
+	 * Test for the {@link TreeManager#leaves()}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Obtain the leaves of the tree, before and after removing and persisting
+	 * elements.
+	 * <p><b>Expected:</b></p>
+	 * Eighteen leaves in the tree. After removing the (Adobe) element, fifteen
+	 * leaves. After persisting a new element into the (database) element,
+	 * fifteen leaves again, but the (database) element is not a leaf anymore.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Verify the number of leaves and that they have no children;</li>
+	 * 	<li>Remove the (Adobe) element;</li>
+	 * 	<li>Verify the number of leaves;</li>
+	 * 	<li>Persist a new element into the (database) element;</li>
+	 * 	<li>Verify the number of leaves and that the (database) element is not
+	 * 	one of them.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void leaves() throws TreeException {
+		final String sessionId = "leaves";
+		final long adobeId = 24935L;
+		final long databaseId = 45930L;
+		final long mysqlId = 1L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		Collection<Directory> directoryTree = TreeAssembler.getDirectoryTree();
+
+		transaction.initializeSession(sessionId, directoryTree);
+
+		List<Element<Directory>> leaves = manager.leaves();
+
+		assertEquals(18, leaves.size());
+		for (Element<Directory> leaf : leaves) {
+			assertTrue(leaf.getChildren().isEmpty());
+		}
+
+		manager.removeElement(adobeId);
+
+		assertEquals(15, manager.leaves().size());
+
+		Element<Directory> database = manager.getElementById(databaseId);
+		Element<Directory> mysql = manager.createElement(mysqlId, databaseId,
+				new Directory(mysqlId, databaseId, "mysql"));
+		manager.persistElement(mysql);
+
+		leaves = manager.leaves();
+
+		assertEquals(15, leaves.size());
+		assertFalse(leaves.contains(database));
+		assertTrue(leaves.contains(manager.getElementById(mysqlId)));
+	}
+
+	/**
+	 * Test for the {@link TreeManager#createIndex(String, boolean)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Create an index of the name of the directories and use it in the
+	 * current session and in a session cloned from it.
+	 * <p><b>Expected:</b></p>
+	 * The elements already in the tree are indexed, the index can be replaced
+	 * by a sorted one and the cloned session has the same index.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Create a hash index of the name;</li>
+	 * 	<li>Verify that the (Devel) element is found by its name;</li>
+	 * 	<li>Replace the index by a sorted index of the name;</li>
+	 * 	<li>Verify that the (Devel) element is found by a range of
+	 * 	names;</li>
+	 * 	<li>Clone the session;</li>
+	 * 	<li>Verify that the (Devel) element of the cloned session is found by
+	 * 	its name.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void createIndex() throws TreeException {
+		final String sessionId = "createIndex";
+		final String cloneId = "createIndex_clone";
+		final long develId = 93832L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		manager.createIndex("name", false);
+
+		List<Element<Directory>> found = manager.findBy("name", "Devel");
+
+		assertEquals(1, found.size());
+		assertEquals(develId, found.get(0).getId());
+
+		manager.createIndex("name", true);
+		found = manager.findRange("name", "Dev", "Dew");
+
+		assertEquals(1, found.size());
+		assertEquals(develId, found.get(0).getId());
+
+		transaction.cloneSession(sessionId, cloneId);
+		transaction.sessionCheckout(cloneId);
+		found = manager.findBy("name", "Devel");
+
+		assertEquals(1, found.size());
+		assertEquals(cloneId, found.get(0).attachedTo().getSessionId());
+	}
+
+	/**
+	 * Test for the {@link TreeManager#findBy(String, Object)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Find the elements by an indexed name, before and after updating,
+	 * persisting and removing elements.
+	 * <p><b>Expected:</b></p>
+	 * The index follows the changes of the tree, so the elements are always
+	 * found by their current names.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Create a hash index of the name;</li>
+	 * 	<li>Find the (Devel) element with its children;</li>
+	 * 	<li>Rename the (Devel) element and update it;</li>
+	 * 	<li>Verify that it is found only by its new name;</li>
+	 * 	<li>Persist a new element named (Devel);</li>
+	 * 	<li>Verify that it is found by the name (Devel);</li>
+	 * 	<li>Remove the (sdk_dev) element;</li>
+	 * 	<li>Verify that neither it nor its child is found anymore.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void findBy() throws TreeException {
+		final String sessionId = "findBy";
+		final long develId = 93832L;
+		final long sdkDevId = 84709L;
+		final long newDevelId = 1L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		manager.createIndex("name", false);
+
+		List<Element<Directory>> found = manager.findBy("name", "Devel");
+		Element<Directory> devel = found.get(0);
+
+		assertEquals(1, found.size());
+		assertEquals(4, devel.getChildren().size());
+
+		Directory directory = devel.unwrap();
+		directory.setName("Development");
+		devel.wrap(directory);
+		manager.updateElement(devel);
+
+		assertTrue(manager.findBy("name", "Devel").isEmpty());
+		assertEquals(develId, manager.findBy("name", "Development").get(0)
+				.getId());
+
+		Element<Directory> newDevel = manager.createElement(newDevelId,
+				develId, new Directory(newDevelId, develId, "Devel"));
+		manager.persistElement(newDevel);
+
+		found = manager.findBy("name", "Devel");
+
+		assertEquals(1, found.size());
+		assertEquals(newDevelId, found.get(0).getId());
+
+		manager.removeElement(sdkDevId);
+
+		assertTrue(manager.findBy("name", "sdk_dev").isEmpty());
+		assertTrue(manager.findBy("name", "jdk1.6").isEmpty());
+	}
+
+	/**
+	 * Test for the {@link TreeManager#findRange(String, Object, Object)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Find the elements by a range of indexed identifiers and by a range of
+	 * indexed names changed by {@link TreeManager#apply(Consumer)}.
+	 * <p><b>Expected:</b></p>
+	 * The elements in the ranges are found in the order of the indexed
+	 * attribute.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Create sorted indexes of the identifier and the name;</li>
+	 * 	<li>Find the elements with identifiers between two values;</li>
+	 * 	<li>Verify that they are the expected ones, in ascending order;</li>
+	 * 	<li>Find the elements with identifiers up to a value;</li>
+	 * 	<li>Verify the number of found elements;</li>
+	 * 	<li>Change the names of all elements to upper case;</li>
+	 * 	<li>Verify that no element is found by a range of lower case names
+	 * 	and all of them are found by a range up to (Z).</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void findRange() throws TreeException {
+		final String sessionId = "findRange";
+		final long from = 40000L;
+		final long to = 100000L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		Collection<Directory> directoryTree = TreeAssembler.getDirectoryTree();
+
+		transaction.initializeSession(sessionId, directoryTree);
+
+		manager.createIndex("identifier", true);
+		manager.createIndex("name", true);
+
+		List<Long> expected = directoryTree.stream()
+				.map(Directory::getIdentifier)
+				.filter(id -> id >= from && id <= to)
+				.sorted()
+				.collect(Collectors.toList());
+
+		List<Element<Directory>> found = manager.findRange("identifier",
+				from, to);
+
+		assertEquals(expected, found.stream().map(Element::getId)
+				.collect(Collectors.toList()));
+		assertEquals(directoryTree.stream().filter(directory -> directory
+				.getIdentifier() <= to).count(), manager.findRange(
+						"identifier", null, to).size());
+
+		manager.apply(element -> {
+			Object obj = element.unwrap();
+			if (obj != null) {
+				Directory directory = (Directory) obj;
+				directory.setName(directory.getName().toUpperCase());
+				element.wrap(directory);
+			}
+		});
+
+		assertTrue(manager.findRange("name", "a", "z").isEmpty());
+		assertEquals(directoryTree.size(), manager.findRange("name", null,
+				"Z").size());
+	}
+
+	/**
+	 * Test for the {@link TreeManager#query()}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Query the leaves under the (Devel) element and the elements of the
+	 * second and third levels by a range of an indexed name.
+	 * <p><b>Expected:</b></p>
+	 * The queries find the same elements which are found by
+	 * {@link TreeManager#search(Predicate)} with equivalent conditions.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Query the leaves under the (Devel) element;</li>
+	 * 	<li>Verify that they are the leaves which the (Devel) element
+	 * 	contains;</li>
+	 * 	<li>Create a sorted index of the name;</li>
+	 * 	<li>Query the elements of the second and third levels whose names are
+	 * 	between (a) and (f);</li>
+	 * 	<li>Verify that they are the same elements found by a search.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void query() throws TreeException {
+		final String sessionId = "query";
+		final long develId = 93832L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		List<Object> expected = new ArrayList<>();
+		for (Element<Directory> leaf : manager.<Directory>leaves()) {
+			if (manager.containsElement(develId, leaf.getId())) {
+				expected.add(leaf.getId());
+			}
+		}
+		List<Element<Directory>> found = manager.<Directory>query()
+				.underAncestor(develId)
+				.leafOnly()
+				.list();
+
+		assertFalse(expected.isEmpty());
+		assertEquals(expected.size(), found.size());
+		assertTrue(found.stream().map(Element::getId).collect(Collectors
+				.toList()).containsAll(expected));
+
+		manager.createIndex("name", true);
+
+		Predicate<Element<Directory>> condition = element -> element
+				.getDepth() >= 2 && element.getDepth() <= 3
+				&& element.unwrap().getName().compareTo("a") >= 0
+				&& element.unwrap().getName().compareTo("f") <= 0;
+		expected = manager.search(condition).stream().map(Element::getId)
+				.collect(Collectors.toList());
+		found = manager.<Directory>query()
+				.between("name", "a", "f")
+				.depth(2, 3)
+				.list();
+
+		assertFalse(expected.isEmpty());
+		assertEquals(expected.size(), found.size());
+		assertTrue(found.stream().map(Element::getId).collect(Collectors
+				.toList()).containsAll(expected));
+	}
+
+	/**
+	 * Test for the {@link TreeManager#query()}.
+	 * 
+	 * <p>Happy scenario for this operation reading the elements by pages.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Query the elements of the first level with an offset and a limit.
+	 * <p><b>Expected:</b></p>
+	 * Each page has the elements of the first level in the same order of
+	 * {@link TreeManager#elementsAtDepth(int)}, including their children.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Get the elements of the first level;</li>
+	 * 	<li>Query the first level by pages of two elements;</li>
+	 * 	<li>Verify the elements of each page.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void query_page() throws TreeException {
+		final String sessionId = "query_page";
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		List<Element<Directory>> firstLevel = manager.elementsAtDepth(1);
+		TreeQuery<Directory> query = manager.<Directory>query()
+				.depth(1, 1)
+				.limit(2);
+
+		List<Element<Directory>> page = query.list();
+
+		assertEquals(firstLevel.subList(0, 2), page);
+		assertEquals(firstLevel.get(0).getChildren().size(), page.get(0)
+				.getChildren().size());
+
+		page = query.offset(2).list();
+
+		assertEquals(firstLevel.subList(2, 3), page);
+	}
+
+	/**
+	 * Test for the {@link TreeManager#query()}.
+	 * 
+	 * <p>Happy scenario for this operation over a session mapped from a
+	 * snapshot file.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Query the children of the (Devel) element by a name in a mapped
+	 * session.
+	 * <p><b>Expected:</b></p>
+	 * The queries find the elements in the subtree of the (Devel) element
+	 * only.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Save the session into a temporary file and destroy it;</li>
+	 * 	<li>Map the session from the file;</li>
+	 * 	<li>Query the children of the (Devel) element;</li>
+	 * 	<li>Verify the number of children;</li>
+	 * 	<li>Query the element named (projects) under the (Devel) and
+	 * 	(Users) elements;</li>
+	 * 	<li>Verify that it is found only under the (Devel) element.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error with the temporary file
+	 */
+	@Test
+	public void query_mappedSession() throws TreeException, IOException {
+		final String sessionId = "query_mappedSession";
+		final long develId = 93832L;
+		final long usersId = 38923L;
+		final long projectsId = 93209L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		Path file = Files.createTempFile(sessionId, ".snapshot");
+		try {
+			transaction.saveSession(file);
+			transaction.destroySession();
+			transaction.mapSession(file);
+
+			List<Element<Directory>> children = manager.<Directory>query()
+					.underAncestor(develId)
+					.depth(2, 2)
+					.list();
+
+			assertEquals(4, children.size());
+
+			List<Element<Directory>> found = manager.<Directory>query()
+					.underAncestor(develId)
+					.where("name", "projects")
+					.list();
+
+			assertEquals(1, found.size());
+			assertEquals(projectsId, found.get(0).getId());
+			assertTrue(manager.<Directory>query()
+					.underAncestor(usersId)
+					.where("name", "projects")
+					.list().isEmpty());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Test for the {@link TreeManager#createTextIndex(String)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Create a text index of the name of the directories and query the
+	 * elements by words of their names, in the whole tree and under the
+	 * (Devel) element, before and after changing the tree.
+	 * <p><b>Expected:</b></p>
+	 * The words are matched by their beginnings, without regard to case,
+	 * and the index follows the changes of the tree.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Create a text index of the name;</li>
+	 * 	<li>Verify that the text (EXE) finds the same elements of a search by
+	 * 	the names ending with (.exe);</li>
+	 * 	<li>Verify that the text (ecl) finds the (eclipse) and (eclipse.exe)
+	 * 	elements under the (Devel) element;</li>
+	 * 	<li>Rename the (eclipse.exe) element and update it;</li>
+	 * 	<li>Verify that the text (ecl) finds only the (eclipse) element and
+	 * 	the new name is found;</li>
+	 * 	<li>Remove the (ide) element;</li>
+	 * 	<li>Verify that the text (ecl) finds no element.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void createTextIndex() throws TreeException {
+		final String sessionId = "createTextIndex";
+		final long develId = 93832L;
+		final long ideId = 13823L;
+		final long eclipseId = 583852L;
+		final long eclipseExeId = 8483742L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		manager.createTextIndex("name");
+
+		List<Object> expected = manager.<Directory>search(element -> element
+				.unwrap().getName().endsWith(".exe")).stream()
+				.map(Element::getId).collect(Collectors.toList());
+		List<Element<Directory>> found = manager.<Directory>query()
+				.matching("name", "EXE")
+				.list();
+
+		assertFalse(expected.isEmpty());
+		assertEquals(expected.size(), found.size());
+		assertTrue(found.stream().map(Element::getId).collect(Collectors
+				.toList()).containsAll(expected));
+
+		found = manager.<Directory>query()
+				.underAncestor(develId)
+				.matching("name", "ecl")
+				.list();
+
+		assertEquals(2, found.size());
+		assertTrue(found.stream().map(Element::getId).collect(Collectors
+				.toList()).containsAll(Arrays.asList(eclipseId,
+						eclipseExeId)));
+
+		Element<Directory> eclipseExe = manager.getElementById(eclipseExeId);
+		Directory directory = eclipseExe.unwrap();
+		directory.setName("ide-launcher");
+		eclipseExe.wrap(directory);
+		manager.updateElement(eclipseExe);
+
+		found = manager.<Directory>query()
+				.underAncestor(develId)
+				.matching("name", "ecl")
+				.list();
+
+		assertEquals(1, found.size());
+		assertEquals(eclipseId, found.get(0).getId());
+		assertEquals(eclipseExeId, manager.<Directory>query()
+				.matching("name", "launch ide")
+				.list().get(0).getId());
+
+		manager.removeElement(ideId);
+
+		assertTrue(manager.<Directory>query()
+				.matching("name", "ecl")
+				.list().isEmpty());
+	}
+
+	/**
+	 * Test for the {@link TreeQuery#matching(String, String)}.
+	 * 
+	 * <p>Happy scenario for this operation without a text index.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Query the elements by words of their names without a text index, and
+	 * compare them with the elements found with a text index.
+	 * <p><b>Expected:</b></p>
+	 * The same elements are found with and without the text index.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Query the leaves by the text (exe) and the elements by the text
+	 * 	(sdk);</li>
+	 * 	<li>Create a text index of the name;</li>
+	 * 	<li>Verify that the same queries find the same elements;</li>
+	 * 	<li>Verify that a text without words finds no element.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void query_matchingWithoutIndex() throws TreeException {
+		final String sessionId = "query_matchingWithoutIndex";
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		TreeQuery<Directory> exeQuery = manager.<Directory>query()
+				.matching("name", "exe")
+				.leafOnly();
+		TreeQuery<Directory> sdkQuery = manager.<Directory>query()
+				.matching("name", "sdk");
+
+		List<Object> exeFiles = exeQuery.list().stream().map(Element::getId)
+				.collect(Collectors.toList());
+		List<Object> sdks = sdkQuery.list().stream().map(Element::getId)
+				.collect(Collectors.toList());
+
+		assertEquals(8, exeFiles.size());
+		assertEquals(2, sdks.size());
+
+		manager.createTextIndex("name");
+
+		List<Element<Directory>> found = exeQuery.list();
+
+		assertEquals(exeFiles.size(), found.size());
+		assertTrue(found.stream().map(Element::getId).collect(Collectors
+				.toList()).containsAll(exeFiles));
+
+		found = sdkQuery.list();
+
+		assertEquals(sdks.size(), found.size());
+		assertTrue(found.stream().map(Element::getId).collect(Collectors
+				.toList()).containsAll(sdks));
+		assertTrue(manager.<Directory>query()
+				.matching("name", " . ")
+				.list().isEmpty());
+	}
+
+	/**
+	 * Test for the {@link TreeManager#traverse(TreeVisitor)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Traverse the tree skipping the subtrees of the first level, and
+	 * traverse it again until the (Devel) element is visited.
+	 * <p><b>Expected:</b></p>
+	 * Only the elements of the first level are visited by the first
+	 * traversal, and no element is visited after the (Devel) element by the
+	 * second one.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Traverse the tree skipping the subtree of each visited
+	 * 	element;</li>
+	 * 	<li>Verify that the visited elements are the elements of the first
+	 * 	level;</li>
+	 * 	<li>Traverse the tree again, terminating at the (Devel) element;</li>
+	 * 	<li>Verify that the (Devel) element is the last visited element and
+	 * 	that the (Users) element is not visited.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void traverse() throws TreeException {
+		final String sessionId = "traverse";
+		final long develId = 93832L;
+		final long usersId = 38923L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		List<Object> visited = new ArrayList<>();
+		manager.<Directory>traverse(element -> {
+			visited.add(element.getId());
+			return TreeVisitor.Result.SKIP_SUBTREE;
+		});
+
+		List<Element<Directory>> firstLevel = manager.elementsAtDepth(1);
+
+		assertEquals(firstLevel.size(), visited.size());
+		assertTrue(visited.containsAll(firstLevel.stream().map(Element::getId)
+				.collect(Collectors.toList())));
+
+		visited.clear();
+		manager.<Directory>traverse(element -> {
+			visited.add(element.getId());
+			return element.getId().equals(develId) ?
+					TreeVisitor.Result.TERMINATE :
+					TreeVisitor.Result.CONTINUE;
+		});
+
+		assertEquals(develId, visited.get(visited.size() - 1));
+		assertFalse(visited.contains(usersId));
+	}
+
+	/**
+	 * Test for the {@link TreeManager#traverse(TreeVisitor)}.
+	 * 
+	 * <p>Happy scenario for this operation over a session mapped from a
+	 * snapshot file.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Traverse the first two levels of a mapped session.
+	 * <p><b>Expected:</b></p>
+	 * The visited elements are the elements of the first two levels.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Count the elements of the first two levels;</li>
+	 * 	<li>Save the session into a temporary file and destroy it;</li>
+	 * 	<li>Map the session from the file;</li>
+	 * 	<li>Traverse the tree skipping the subtrees of the second level;</li>
+	 * 	<li>Verify the number of visited elements and their depths.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error with the temporary file
+	 */
+	@Test
+	public void traverse_mappedSession() throws TreeException, IOException {
+		final String sessionId = "traverse_mappedSession";
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		int expected = manager.elementsAtDepth(1).size()
+				+ manager.elementsAtDepth(2).size();
+
+		Path file = Files.createTempFile(sessionId, ".snapshot");
+		try {
+			transaction.saveSession(file);
+			transaction.destroySession();
+			transaction.mapSession(file);
+
+			List<Integer> depths = new ArrayList<>();
+			manager.<Directory>traverse(element -> {
+				depths.add(element.getDepth());
+				return element.getDepth() < 2 ? TreeVisitor.Result.CONTINUE :
+					TreeVisitor.Result.SKIP_SUBTREE;
+			});
+
+			assertEquals(expected, depths.size());
+			assertTrue(depths.stream().allMatch(depth -> depth <= 2));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Test for the {@link TreeManager#topK(Object, Comparator, int)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Get the descendants of the (Program Files) element with the three last
+	 * names in alphabetical order, and the element of the tree with the most
+	 * descendants.
+	 * <p><b>Expected:</b></p>
+	 * The elements are the same of a sorted search, in the order of the
+	 * comparator, and they are copies including their children.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Sort the descendants of the (Program Files) element by their
+	 * 	names in reverse order;</li>
+	 * 	<li>Get the top three of them;</li>
+	 * 	<li>Verify that they are the first three sorted descendants;</li>
+	 * 	<li>Get the top element of the tree by its number of
+	 * 	descendants;</li>
+	 * 	<li>Verify that it is the (Program Files) element with its
+	 * 	children;</li>
+	 * 	<li>Verify that no element is found for an unknown id.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void topK() throws TreeException {
+		final String sessionId = "topK";
+		final long programFilesId = 42345L;
+		final long unknownId = 1L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		Comparator<Element<Directory>> byName = Comparator.comparing(
+				element -> element.unwrap().getName());
+		Element<Directory> programFiles = manager.getElementById(
+				programFilesId);
+		List<Object> expected = programFiles.search(element -> !element
+				.getId().equals(programFilesId)).stream()
+				.sorted(byName.reversed())
+				.limit(3)
+				.map(Element::getId)
+				.collect(Collectors.toList());
+
+		List<Element<Directory>> top = manager.topK(programFilesId,
+				byName.reversed(), 3);
+
+		assertEquals(expected, top.stream().map(Element::getId).collect(
+				Collectors.toList()));
+
+		top = manager.topK(null, Comparator.comparing(
+				Element<Directory>::getDescendantCount).reversed(), 1);
+
+		assertEquals(1, top.size());
+		assertEquals(programFilesId, top.get(0).getId());
+		assertEquals(programFiles.getChildren().size(), top.get(0)
+				.getChildren().size());
+		assertTrue(manager.topK(unknownId, byName, 3).isEmpty());
+	}
+
+	/**
+	 * Test for the
+	 * {@link TreeManager#topK(Object, Function, Comparator, int)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Get the descendants of the (Program Files) element with the three last
+	 * names in alphabetical order, by the names of their wrapped object
+	 * nodes.
+	 * <p><b>Expected:</b></p>
+	 * The elements are the same of a sorted search, in the order of the
+	 * names, and the key function receives the same wrapped object nodes
+	 * each time, not copies of them.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Sort the descendants of the (Program Files) element by their
+	 * 	names in reverse order;</li>
+	 * 	<li>Get the top three of them by the names of their wrapped object
+	 * 	nodes, keeping the nodes received by the key function;</li>
+	 * 	<li>Verify that they are the first three sorted descendants;</li>
+	 * 	<li>Get the top three of them again;</li>
+	 * 	<li>Verify that the key function received the same nodes;</li>
+	 * 	<li>Verify that no element is found for an unknown id.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void topK_byKey() throws TreeException {
+		final String sessionId = "topK_byKey";
+		final long programFilesId = 42345L;
+		final long unknownId = 1L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		Element<Directory> programFiles = manager.getElementById(
+				programFilesId);
+		List<Object> expected = programFiles.search(element -> !element
+				.getId().equals(programFilesId)).stream()
+				.sorted(Comparator.comparing((Element<Directory> element) ->
+						element.unwrap().getName()).reversed())
+				.limit(3)
+				.map(Element::getId)
+				.collect(Collectors.toList());
+
+		Set<Directory> nodes = Collections.newSetFromMap(
+				new IdentityHashMap<>());
+		List<Element<Directory>> top = manager.topK(programFilesId,
+				(Directory directory) -> {
+					nodes.add(directory);
+					return directory.getName();
+				}, Comparator.reverseOrder(), 3);
+
+		assertEquals(expected, top.stream().map(Element::getId).collect(
+				Collectors.toList()));
+
+		int nodesCount = nodes.size();
+		manager.topK(programFilesId, (Directory directory) -> {
+			nodes.add(directory);
+			return directory.getName();
+		}, Comparator.reverseOrder(), 3);
+
+		assertEquals(programFiles.getDescendantCount(), nodesCount);
+		assertEquals(nodesCount, nodes.size());
+		assertTrue(manager.topK(unknownId, Directory::getName,
+				Comparator.naturalOrder(), 3).isEmpty());
+	}
+
+	/**
+	 * Test for the {@link TreeManager#aggregate(Object, Collector)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Count the descendants of the (Devel) element and sum the lengths of
+	 * the names of all elements of the tree, in a session and in a session
+	 * mapped from a snapshot file.
+	 * <p><b>Expected:</b></p>
+	 * The aggregations are the same of the ones computed from the tree.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Count the descendants of the (Devel) element;</li>
+	 * 	<li>Verify that it is the number of descendants of the element;</li>
+	 * 	<li>Sum the lengths of the names of all elements;</li>
+	 * 	<li>Verify that it is the sum computed from a search;</li>
+	 * 	<li>Save the session into a temporary file and destroy it;</li>
+	 * 	<li>Map the session from the file;</li>
+	 * 	<li>Verify that the aggregations of the mapped session are the
+	 * 	same;</li>
+	 * 	<li>Verify that the count for an unknown id is zero.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error with the temporary file
+	 */
+	@Test
+	public void aggregate() throws TreeException, IOException {
+		final String sessionId = "aggregate";
+		final long develId = 93832L;
+		final long unknownId = 1L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId,
+				TreeAssembler.getDirectoryTree());
+
+		Collector<Directory, ?, Integer> nameLengths = Collectors
+				.summingInt(directory -> directory.getName().length());
+		int develDescendants = manager.getElementById(develId)
+				.getDescendantCount();
+		int expected = manager.<Directory>search(element -> true).stream()
+				.map(Element::unwrap).collect(nameLengths);
+
+		assertEquals(Long.valueOf(develDescendants), manager.aggregate(
+				develId, Collectors.counting()));
+		assertEquals(Integer.valueOf(expected), manager.aggregate(null,
+				nameLengths));
+
+		Path file = Files.createTempFile(sessionId, ".snapshot");
+		try {
+			transaction.saveSession(file);
+			transaction.destroySession();
+			transaction.mapSession(file);
+
+			assertEquals(Long.valueOf(develDescendants), manager.aggregate(
+					develId, Collectors.counting()));
+			assertEquals(Integer.valueOf(expected), manager.aggregate(null,
+					nameLengths));
+			assertEquals(Long.valueOf(0), manager.aggregate(unknownId,
+					Collectors.counting()));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Test for the {@link TreeManager#root(int)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Get the root element with only the elements of the first level.
+	 * <p><b>Expected:</b></p>
+	 * The copy of the root has the elements of the first level, whose
+	 * children are copied only when they are accessed.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Get the root element down to the depth <code>1</code>;</li>
+	 * 	<li>Verify that the root has the elements of the first level;</li>
+	 * 	<li>Verify that the children of <i>Devel</i> are copied when they
+	 * 	are accessed.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void root_depth() throws TreeException {
+		final String sessionId = "root_depth";
+		final long develId = 93832;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
+		
+		Element<Directory> root = manager.root(1);
+		
+		assertEquals(manager.elementsAtDepth(1).size(), root.getChildren()
+				.size());
+		assertNotNull(root.getElementById(develId));
+		assertEquals(manager.getElementById(develId).getChildren(), root
+				.getElementById(develId).getChildren());
+	}
+	
+	/**
+	 * Test for the {@link TreeManager#evictChildren(Object)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Evict the loaded children of an element of a lazy session.
+	 * <p><b>Expected:</b></p>
+	 * The children are not found after the eviction and they are loaded
+	 * again the next time the element is obtained with its children.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a lazy session with a loader which counts the loads of
+	 * 	each parent;</li>
+	 * 	<li>Get the first level and <i>Devel</i> with its children;</li>
+	 * 	<li>Evict the children of <i>Devel</i>;</li>
+	 * 	<li>Verify that <i>projects</i> is not found and <i>Devel</i> is not
+	 * 	a leaf, since its children are not loaded;</li>
+	 * 	<li>Get <i>Devel</i> with its children again;</li>
+	 * 	<li>Verify that the children of <i>Devel</i> are loaded twice and
+	 * 	<i>projects</i> is found again.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void evictChildren() throws TreeException {
+		final String sessionId = "evictChildren";
+		final long develId = 93832;
+		final long projectsId = 93209;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		Map<Object, Integer> loads = new HashMap<>();
+		
+		transaction.initializeSession(sessionId, Directory.class,
+				parentId -> {
+					loads.merge(parentId, 1, Integer::sum);
+					Long parent = parentId != null ? (Long) parentId : 0L;
+					
+					return directories.stream().filter(directory ->
+							parent.equals(directory.getParentIdentifier()))
+							.collect(Collectors.toList());
+				});
+		
+		manager.root(1);
+		int children = manager.getElementById(develId, 1).getChildren()
+				.size();
+		
+		assertNotNull(manager.getElementById(projectsId, 0));
+		
+		manager.evictChildren(develId);
+		
+		assertNull(manager.getElementById(projectsId));
+		assertFalse(manager.leaves().contains(manager.getElementById(develId,
+				0)));
+		
+		Element<Directory> devel = manager.getElementById(develId, 1);
+		
+		assertEquals(Integer.valueOf(2), loads.get(develId));
+		assertEquals(children, devel.getChildren().size());
+		assertNotNull(manager.getElementById(projectsId, 0));
+	}
+	
+	/**
+	 * Test for the {@link TreeManager#snapshot()}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Take a version of the session and change the session after that.
+	 * <p><b>Expected:</b></p>
+	 * The version with the tree as it was when it was taken, while the session
+	 * has the changes.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Export the root element by invoking {@link Element#toJSON()};</li>
+	 * 	<li>Take a version of the session;</li>
+	 * 	<li>Remove the (Adobe) element and persist a new element into the
+	 * 	(database) element;</li>
+	 * 	<li>Verify that the version is read-only and it still has the (Adobe)
+	 * 	element, but not the new one;</li>
+	 * 	<li>Verify that the export of the version is the same as the exported
+	 * 	one;</li>
+	 * 	<li>Verify that the session has the changes.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void snapshot() throws TreeException {
+		final String sessionId = "snapshot";
+		final long adobeId = 24935L;
+		final long databaseId = 45930L;
+		final long mysqlId = 1L;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		Collection<Directory> directoryTree = TreeAssembler.getDirectoryTree();
+
+		transaction.initializeSession(sessionId, directoryTree);
+		String document = manager.root().toJSON();
+
+		TreeSession version = manager.snapshot();
+
+		manager.removeElement(adobeId);
+		Element<Directory> mysql = manager.createElement(mysqlId, databaseId,
+				new Directory(mysqlId, databaseId, "mysql"));
+		manager.persistElement(mysql);
+
+		Element<Directory> tree = version.tree();
+
+		assertTrue(version.isReadOnly());
+		assertEquals(sessionId, version.getSessionId());
+		assertNotNull(tree.getElementById(adobeId));
+		assertNull(tree.getElementById(mysqlId));
+		assertEquals(document, tree.toJSON());
+
+		assertNull(manager.getElementById(adobeId));
+		assertNotNull(manager.getElementById(mysqlId));
+		assertFalse(transaction.currentSession().isReadOnly());
+	}
+
 	/**
 	 * Test for the {@link TreeManager#apply(Consumer)}.
 	 * 
@@ -6,6 +6,10 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 import org.junit.Test;
 
 import com.madzera.happytree.Element;
@@ -231,6 +235,51 @@ public class TreeSessionTest {
 		assertEquals(session1, session3);
 	}
 
+	/**
+	 * Test for the {@link TreeSession#isReadOnly()}.
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Verify whether a session initialized as usual and a session mapped from
+	 * a snapshot file are read-only.
+	 * <p><b>Expected:</b></p>
+	 * Only the mapped session is read-only.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session;</li>
+	 * 	<li>Verify that the session is not read-only;</li>
+	 * 	<li>Save the session into a temporary file and destroy it;</li>
+	 * 	<li>Map the session from the file by invoking
+	 * 	{@link TreeTransaction#mapSession(Path)};</li>
+	 * 	<li>Verify that the mapped session is read-only.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error with the temporary file
+	 */
+	@Test
+	public void isReadOnly() throws TreeException, IOException {
+		final String sessionId = "isReadOnly";
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		transaction.initializeSession(sessionId, Directory.class);
+		assertFalse(transaction.currentSession().isReadOnly());
+		
+		Path file = Files.createTempFile(sessionId, ".snapshot");
+		try {
+			transaction.saveSession(file);
+			transaction.destroySession();
+			
+			TreeSession session = transaction.mapSession(file);
+			
+			assertTrue(session.isReadOnly());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
 	/**
 	 * Test for the {@link Object#toString()} local implementation.
 	 * 
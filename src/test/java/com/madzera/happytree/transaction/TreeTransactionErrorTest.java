@@ -1,26 +1,39 @@
 package com.madzera.happytree.transaction;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Random;
 
 import org.junit.Test;
 
+import com.madzera.happytree.ChildLoader;
+import com.madzera.happytree.Element;
 import com.madzera.happytree.TreeManager;
 import com.madzera.happytree.TreeTransaction;
+import com.madzera.happytree.TreeTransaction.Format;
 import com.madzera.happytree.core.HappyTree;
 import com.madzera.happytree.core.atp.ATPUnitTestHelper;
 import com.madzera.happytree.demo.model.Directory;
 import com.madzera.happytree.demo.model.ObjectNoGetterError;
+import com.madzera.happytree.demo.model.ObjectNotSerializedAttribute;
 import com.madzera.happytree.demo.model.ObjectNotSerializedError;
 import com.madzera.happytree.demo.model.node.Node;
 import com.madzera.happytree.demo.model.node.Node_MismatchId;
 import com.madzera.happytree.demo.model.node.Node_NoId;
 import com.madzera.happytree.demo.model.node.Node_NoParent;
 import com.madzera.happytree.demo.model.node.Node_NoTree;
+import com.madzera.happytree.demo.util.TreeAssembler;
 import com.madzera.happytree.exception.TreeException;
 
 /**
@@ -123,6 +136,49 @@ public class TreeTransactionErrorTest {
 		}
 	}
 	
+	/**
+	 * Test for the
+	 * {@link TreeTransaction#initializeSession(String, Class, ChildLoader)}
+	 * operation.
+	 * 
+	 * <p>Error scenario for this operation when the loader is
+	 * <code>null</code>.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to initialize a lazy session with a <code>null</code> loader.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>IllegalArgumentException</code>
+	 * with the message:
+	 * <i>&quot;Invalid null/empty argument(s).&quot;</i>, and the session is
+	 * not initialized.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Try to initialize a lazy session with a <code>null</code>
+	 * 	loader;</li>
+	 * 	<li>Catch the <code>IllegalArgumentException</code>;</li>
+	 * 	<li>Verify the message error;</li>
+	 * 	<li>Verify that the session does not exist.</li>
+	 * </ol>
+	 */
+	@Test
+	public void initializeSession_nullChildLoader() {
+		final String sessionId = "initializeSession_nullChildLoader";
+		final String messageError = "Invalid null/empty argument(s).";
+		final ChildLoader<Directory> nullableLoader = null;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		IllegalArgumentException exception = assertThrows(
+				IllegalArgumentException.class,
+				() -> transaction.initializeSession(sessionId,
+						Directory.class, nullableLoader));
+		
+		assertEquals(messageError, exception.getMessage());
+		assertNull(transaction.sessionCheckout(sessionId));
+	}
+	
 	/**
 	 * Test for the {@link TreeTransaction#initializeSession(String, Class)}
 	 * operation.
@@ -747,4 +803,650 @@ public class TreeTransactionErrorTest {
 			});
 		}
 	}
+
+	/**
+	 * Test for the
+	 * {@link TreeTransaction#initializeSession(String, Class, InputStream,
+	 * Format)} operation.
+	 * 
+	 * <p>Error scenario for this operation when the document is not in the
+	 * informed format.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to initialize a session from a truncated JSON document.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code> with the
+	 * message:
+	 * <i>&quot;It is not possible to read the tree. Invalid document.&quot;
+	 * </i>, and the session is not kept by the transaction.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create a truncated JSON document;</li>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session from the document;</li>
+	 * 	<li>Catch the <code>TreeException</code>;</li>
+	 * 	<li>Verify the message error;</li>
+	 * 	<li>Verify that the session does not exist.</li>
+	 * </ol>
+	 */
+	@Test
+	public void initializeSession_invalidDocument() {
+		final String sessionId = "invalidDocument";
+		final String messageError = "It is not possible to read the tree. "
+				+ "Invalid document.";
+		final String document = "{\"children\":[{\"identifier\":1,"
+				+ "\"parentIdentifier\":null,\"name\":\"a\"";
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		InputStream input = new ByteArrayInputStream(document.getBytes(
+				StandardCharsets.UTF_8));
+
+		TreeException exception = assertThrows(TreeException.class,
+				() -> transaction.initializeSession(sessionId,
+						Directory.class, input, Format.JSON));
+
+		assertEquals(messageError, exception.getMessage());
+		assertNull(transaction.sessionCheckout(sessionId));
+	}
+
+	/**
+	 * Test for the
+	 * {@link TreeTransaction#initializeSession(String, Class, InputStream,
+	 * Format)} operation.
+	 * 
+	 * <p>Error scenario for this operation when the document is invalid and
+	 * another session was checked out before.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to initialize a session from a truncated JSON document while
+	 * another session is the current one.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code>, and the
+	 * previous session is still the current one.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session, which is checked out;</li>
+	 * 	<li>Create a truncated JSON document;</li>
+	 * 	<li>Initialize a new session from the document;</li>
+	 * 	<li>Catch the <code>TreeException</code>;</li>
+	 * 	<li>Verify that the previous session is still the current one.</li>
+	 * </ol>
+	 */
+	@Test
+	public void initializeSession_invalidDocumentKeepsCurrentSession()
+			throws TreeException {
+		final String previousSessionId = "previousSession";
+		final String sessionId = "invalidDocumentAfterPrevious";
+		final String document = "{\"children\":[{\"identifier\":1,"
+				+ "\"parentIdentifier\":null,\"name\":\"a\"";
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		transaction.initializeSession(previousSessionId, Directory.class);
+
+		InputStream input = new ByteArrayInputStream(document.getBytes(
+				StandardCharsets.UTF_8));
+
+		assertThrows(TreeException.class,
+				() -> transaction.initializeSession(sessionId,
+						Directory.class, input, Format.JSON));
+
+		assertEquals(previousSessionId,
+				transaction.currentSession().getSessionId());
+		assertNull(transaction.sessionCheckout(sessionId));
+	}
+
+	/**
+	 * Test for the
+	 * {@link TreeTransaction#initializeSession(String, Class, InputStream,
+	 * Format)} operation.
+	 * 
+	 * <p>Error scenario for this operation when the document has duplicate
+	 * IDs.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to initialize a session from a JSON document with two elements with
+	 * the same ID.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code> with the
+	 * message:
+	 * <i>&quot;Duplicate ID.&quot;</i>
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create a JSON document with a duplicate ID;</li>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session from the document;</li>
+	 * 	<li>Catch the <code>TreeException</code>;</li>
+	 * 	<li>Verify the message error.</li>
+	 * </ol>
+	 */
+	@Test
+	public void initializeSession_documentDuplicateId() {
+		final String sessionId = "documentDuplicateId";
+		final String messageError = "Duplicate ID.";
+		final String document = "[{\"identifier\":1,\"name\":\"a\","
+				+ "\"children\":[{\"identifier\":1,\"name\":\"b\"}]}]";
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		InputStream input = new ByteArrayInputStream(document.getBytes(
+				StandardCharsets.UTF_8));
+
+		TreeException exception = assertThrows(TreeException.class,
+				() -> transaction.initializeSession(sessionId,
+						Directory.class, input, Format.JSON));
+
+		assertEquals(messageError, exception.getMessage());
+	}
+
+	/**
+	 * Test for the {@link TreeTransaction#restoreSession(Path)} operation.
+	 * 
+	 * <p>Error scenario for this operation when the file is not a snapshot.
+	 * </p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to restore a session from a file which is not a snapshot.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code> with the
+	 * message:
+	 * <i>&quot;It is not possible to restore the session. Invalid snapshot
+	 * file.&quot;</i>, and no session is checked out.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Create a temporary file with a JSON document;</li>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Restore a session from the file;</li>
+	 * 	<li>Catch the <code>TreeException</code>;</li>
+	 * 	<li>Verify the message error;</li>
+	 * 	<li>Verify that there is no current session.</li>
+	 * </ol>
+	 * 
+	 * @throws IOException in case of an error with the temporary file
+	 */
+	@Test
+	public void restoreSession_invalidSnapshot() throws IOException {
+		final String messageError = "It is not possible to restore the "
+				+ "session. Invalid snapshot file.";
+		final String document = "{\"children\":[]}";
+
+		Path file = Files.createTempFile("invalidSnapshot", ".snapshot");
+		try {
+			Files.write(file, document.getBytes(StandardCharsets.UTF_8));
+
+			TreeManager manager = HappyTree.createTreeManager();
+			TreeTransaction transaction = manager.getTransaction();
+
+			TreeException exception = assertThrows(TreeException.class,
+					() -> transaction.restoreSession(file));
+
+			assertEquals(messageError, exception.getMessage());
+			assertNull(transaction.currentSession());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Test for the {@link TreeTransaction#saveSession(Path)} and
+	 * {@link TreeTransaction#openJournal(Path, Path)} operations.
+	 * 
+	 * <p>Error scenario for these operations when the session is lazy.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to save and to journal a lazy session whose first level is loaded.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code> with the
+	 * message:
+	 * <i>&quot;It is not possible to save a lazy session, whose elements are
+	 * not all loaded.&quot;</i> for both operations.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a lazy session;</li>
+	 * 	<li>Get the root with the first level;</li>
+	 * 	<li>Try to save the session into a temporary file;</li>
+	 * 	<li>Try to open a journal of the session;</li>
+	 * 	<li>Verify the message errors.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error with the temporary files
+	 */
+	@Test
+	public void saveSession_lazySession() throws TreeException, IOException {
+		final String sessionId = "lazySessionSave";
+		final String messageError = "It is not possible to save a lazy "
+				+ "session, whose elements are not all loaded.";
+
+		Path snapshot = Files.createTempFile("lazySession", ".snapshot");
+		Path journal = Files.createTempFile("lazySession", ".journal");
+		try {
+			TreeManager manager = HappyTree.createTreeManager();
+			TreeTransaction transaction = manager.getTransaction();
+
+			transaction.initializeSession(sessionId, Directory.class,
+					parentId -> new ArrayList<>());
+			manager.root(1);
+
+			TreeException saveException = assertThrows(TreeException.class,
+					() -> transaction.saveSession(snapshot));
+			TreeException journalException = assertThrows(
+					TreeException.class,
+					() -> transaction.openJournal(snapshot, journal));
+
+			assertEquals(messageError, saveException.getMessage());
+			assertEquals(messageError, journalException.getMessage());
+		} finally {
+			Files.deleteIfExists(snapshot);
+			Files.deleteIfExists(journal);
+		}
+	}
+
+	/**
+	 * Test for the {@link TreeManager#updateElement(Element)} operation.
+	 * 
+	 * <p>Error scenario for this operation when the change cannot be written
+	 * into the journal of the session.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to update an element of a journaled session with a wrapped node
+	 * whose attribute is not serializable, moving the element as well.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code> with the
+	 * message:
+	 * <i>&quot;It is not possible to write the session journal.&quot;</i>, and
+	 * the session is as it was before the update, in memory and in the
+	 * journal.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session with three elements, the second and the third
+	 * 	ones inside of the first one;</li>
+	 * 	<li>Open the journal of the session into temporary files;</li>
+	 * 	<li>Wrap a node with a not serializable attribute into the second
+	 * 	element, moving it into the third one;</li>
+	 * 	<li>Try to update the second element;</li>
+	 * 	<li>Verify the message error;</li>
+	 * 	<li>Verify that the second element is still inside of the first one,
+	 * 	with its old wrapped node;</li>
+	 * 	<li>Remove the third element;</li>
+	 * 	<li>Restore the session from the snapshot and the journal;</li>
+	 * 	<li>Verify that the restored session is the same as the one in
+	 * 	memory.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error with the temporary files
+	 */
+	@Test
+	public void updateElement_journalWrite() throws TreeException,
+			IOException {
+		final String sessionId = "updateElement_journalWrite";
+		final String messageError = "It is not possible to write the session "
+				+ "journal.";
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<ObjectNotSerializedAttribute> nodes = new ArrayList<>();
+		nodes.add(new ObjectNotSerializedAttribute(1L, null, "first"));
+		nodes.add(new ObjectNotSerializedAttribute(2L, 1L, "second"));
+		nodes.add(new ObjectNotSerializedAttribute(3L, 1L, "third"));
+		
+		transaction.initializeSession(sessionId, nodes);
+		
+		Path snapshot = Files.createTempFile(sessionId, ".snapshot");
+		Path journal = Files.createTempFile(sessionId, ".journal");
+		try {
+			transaction.openJournal(snapshot, journal);
+			
+			Element<ObjectNotSerializedAttribute> second = manager
+					.getElementById(2L);
+			second.wrap(new ObjectNotSerializedAttribute(2L, 3L,
+					new Object()));
+			
+			TreeException exception = assertThrows(TreeException.class,
+					() -> manager.updateElement(second));
+			
+			assertEquals(messageError, exception.getMessage());
+			
+			Element<ObjectNotSerializedAttribute> first = manager
+					.getElementById(1L);
+			Element<ObjectNotSerializedAttribute> third = manager
+					.getElementById(3L);
+			
+			assertEquals(2, first.getChildren().size());
+			Element<ObjectNotSerializedAttribute> updated = manager
+					.getElementById(2L);
+			
+			assertTrue(third.getChildren().isEmpty());
+			assertEquals(1L, updated.getParent());
+			assertEquals("second", updated.unwrap().getAttribute());
+			
+			manager.removeElement(3L);
+			String document = manager.root().toJSON();
+			transaction.destroySession();
+			
+			transaction.restoreSession(snapshot, journal);
+			
+			assertNull(manager.getElementById(3L));
+			assertEquals(document, manager.root().toJSON());
+		} finally {
+			transaction.destroyAllSessions();
+			Files.deleteIfExists(snapshot);
+			Files.deleteIfExists(journal);
+		}
+	}
+
+	/**
+	 * Test for the {@link TreeManager#apply(java.util.function.Consumer)}
+	 * operation.
+	 * 
+	 * <p>Error scenario for this operation when the journal of the session
+	 * cannot be compacted with the change.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to apply a change to all the elements of a journaled session whose
+	 * new snapshot cannot be written.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code> with the
+	 * message:
+	 * <i>&quot;It is not possible to write the session journal.&quot;</i>, and
+	 * the session is as it was before the change, in memory and in the
+	 * journal.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session by the API Transformation Process;</li>
+	 * 	<li>Open the journal of the session into temporary files;</li>
+	 * 	<li>Create a directory where the new snapshot would be written;</li>
+	 * 	<li>Try to rename all the elements;</li>
+	 * 	<li>Verify the message error and that no element was renamed;</li>
+	 * 	<li>Delete the directory and remove the <i>happytree</i> element;</li>
+	 * 	<li>Restore the session from the snapshot and the journal;</li>
+	 * 	<li>Verify that the restored session is the same as the one in
+	 * 	memory.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error with the temporary files
+	 */
+	@Test
+	public void apply_journalWrite() throws TreeException, IOException {
+		final String sessionId = "apply_journalWrite";
+		final String messageError = "It is not possible to write the session "
+				+ "journal.";
+		final long happytreeId = 859452;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		transaction.initializeSession(sessionId, TreeAssembler
+				.getDirectoryTree());
+		
+		Path snapshot = Files.createTempFile(sessionId, ".snapshot");
+		Path journal = Files.createTempFile(sessionId, ".journal");
+		Path temporary = snapshot.resolveSibling(snapshot.getFileName()
+				+ ".tmp");
+		try {
+			transaction.openJournal(snapshot, journal);
+			String document = manager.root().toJSON();
+			
+			Files.createDirectory(temporary);
+			
+			TreeException exception = assertThrows(TreeException.class,
+					() -> manager.<Directory>apply(element -> element.wrap(
+							new Directory((Long) element.getId(),
+							(Long) element.getParent(), "renamed"))));
+			
+			assertEquals(messageError, exception.getMessage());
+			assertEquals(document, manager.root().toJSON());
+			
+			Files.delete(temporary);
+			
+			manager.removeElement(happytreeId);
+			document = manager.root().toJSON();
+			transaction.destroySession();
+			
+			transaction.restoreSession(snapshot, journal);
+			
+			assertNull(manager.getElementById(happytreeId));
+			assertEquals(document, manager.root().toJSON());
+		} finally {
+			transaction.destroyAllSessions();
+			Files.deleteIfExists(temporary);
+			Files.deleteIfExists(snapshot);
+			Files.deleteIfExists(journal);
+		}
+	}
+
+	/**
+	 * Test for the {@link TreeTransaction#begin()} operation.
+	 * 
+	 * <p>Error scenario for this operation when the calling thread has already
+	 * opened a transaction in the current session.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to open a transaction twice in the same session.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code> with the
+	 * message:
+	 * <i>&quot;There is already an open transaction in the current
+	 * session.&quot;</i>, and the first transaction is still open.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Initialize an empty session;</li>
+	 * 	<li>Open a transaction;</li>
+	 * 	<li>Open another transaction;</li>
+	 * 	<li>Catch the <code>TreeException</code>;</li>
+	 * 	<li>Verify the message error;</li>
+	 * 	<li>Commit the first transaction.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void begin_duplicateTransaction() throws TreeException {
+		final String sessionId = "begin_duplicateTransaction";
+		final String messageError = "There is already an open transaction "
+				+ "in the current session.";
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId, Directory.class);
+		transaction.begin();
+
+		TreeException exception = assertThrows(TreeException.class,
+				() -> transaction.begin());
+
+		assertEquals(messageError, exception.getMessage());
+
+		transaction.commit();
+	}
+
+	/**
+	 * Test for the {@link TreeTransaction#commit()} operation.
+	 * 
+	 * <p>Error scenario for this operation when there is no open transaction
+	 * in the current session.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to commit without opening a transaction.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code> with the
+	 * message:
+	 * <i>&quot;There is no open transaction in the current session.&quot;</i>
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Initialize an empty session;</li>
+	 * 	<li>Commit;</li>
+	 * 	<li>Catch the <code>TreeException</code>;</li>
+	 * 	<li>Verify the message error.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void commit_noOpenTransaction() throws TreeException {
+		final String sessionId = "commit_noOpenTransaction";
+		final String messageError = "There is no open transaction in the "
+				+ "current session.";
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		transaction.initializeSession(sessionId, Directory.class);
+
+		TreeException exception = assertThrows(TreeException.class,
+				() -> transaction.commit());
+
+		assertEquals(messageError, exception.getMessage());
+	}
+
+	/**
+	 * Test for the {@link TreeTransaction#commit()} operation.
+	 * 
+	 * <p>Error scenario for this operation when the transaction of the current
+	 * session was opened by another thread.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to commit, in another thread, the transaction opened by the calling
+	 * thread.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code> with the
+	 * message:
+	 * <i>&quot;The transaction of the current session was opened by another
+	 * thread.&quot;</i>, and the transaction is still open in the calling
+	 * thread.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Initialize a session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Open a transaction and update an element;</li>
+	 * 	<li>In another thread, commit;</li>
+	 * 	<li>Verify the message error;</li>
+	 * 	<li>Verify that the calling thread is still in the transaction, as it
+	 * 	can roll back the update.</li>
+	 * </ol>
+	 * 
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void commit_otherThreadTransaction() throws Exception {
+		final String sessionId = "commit_otherThreadTransaction";
+		final String messageError = "The transaction of the current session "
+				+ "was opened by another thread.";
+		final long develId = 93832;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
+
+		transaction.begin();
+		this.rename(manager, develId, "renamed");
+
+		final TreeException[] errors = new TreeException[1];
+
+		Thread thread = new Thread(() -> errors[0] = assertThrows(
+				TreeException.class, () -> transaction.commit()));
+		thread.start();
+		thread.join();
+
+		assertEquals(messageError, errors[0].getMessage());
+
+		transaction.rollback();
+
+		assertEquals("Devel", manager.<Directory>getElementById(develId)
+				.unwrap().getName());
+	}
+
+	/**
+	 * Test for the {@link TreeTransaction#rollback()} operation.
+	 * 
+	 * <p>Error scenario for this operation when the transaction of the current
+	 * session was opened by another thread.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Try to roll back, in another thread, the transaction opened by the
+	 * calling thread.
+	 * <p><b>Expected:</b></p>
+	 * An error is threw and caught by <code>TreeException</code> with the
+	 * message:
+	 * <i>&quot;The transaction of the current session was opened by another
+	 * thread.&quot;</i>, and the changes of the transaction are kept until the
+	 * calling thread commits them.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Initialize a session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Open a transaction and update an element;</li>
+	 * 	<li>In another thread, roll back;</li>
+	 * 	<li>Verify the message error;</li>
+	 * 	<li>Commit in the calling thread;</li>
+	 * 	<li>Verify that the update is kept and that the session can be read
+	 * 	by another thread.</li>
+	 * </ol>
+	 * 
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void rollback_otherThreadTransaction() throws Exception {
+		final String sessionId = "rollback_otherThreadTransaction";
+		final String messageError = "The transaction of the current session "
+				+ "was opened by another thread.";
+		final long develId = 93832;
+
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
+
+		transaction.begin();
+		this.rename(manager, develId, "renamed");
+
+		final TreeException[] errors = new TreeException[1];
+
+		Thread thread = new Thread(() -> errors[0] = assertThrows(
+				TreeException.class, () -> transaction.rollback()));
+		thread.start();
+		thread.join();
+
+		assertEquals(messageError, errors[0].getMessage());
+
+		transaction.commit();
+
+		final String[] names = new String[1];
+
+		thread = new Thread(() -> {
+			try {
+				names[0] = manager.<Directory>getElementById(develId)
+						.unwrap().getName();
+			} catch (TreeException exception) {
+				errors[0] = exception;
+			}
+		});
+		thread.start();
+		thread.join();
+
+		assertEquals("renamed", names[0]);
+	}
+
+	private void rename(TreeManager manager, long id, String name)
+			throws TreeException {
+		Element<Directory> element = manager.getElementById(id);
+		Directory directory = element.unwrap();
+
+		directory.setName(name);
+		element.wrap(directory);
+		manager.updateElement(element);
+	}
 }
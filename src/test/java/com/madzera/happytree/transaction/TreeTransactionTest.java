@@ -6,15 +6,27 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
+import com.madzera.happytree.ChildLoader;
 import com.madzera.happytree.Element;
 import com.madzera.happytree.TreeManager;
 import com.madzera.happytree.TreeSession;
 import com.madzera.happytree.TreeTransaction;
+import com.madzera.happytree.TreeTransaction.Format;
 import com.madzera.happytree.core.HappyTree;
 import com.madzera.happytree.demo.model.Directory;
 import com.madzera.happytree.demo.util.TreeAssembler;
@@ -128,6 +140,753 @@ public class TreeTransactionTest {
 		assertTrue(manager.containsElement(projects, happytree));
 	}
 	
+	/**
+	 * Test for the
+	 * {@link TreeTransaction#initializeSession(String, Class, InputStream,
+	 * Format)}.
+	 * 
+	 * <p>Happy scenario for this operation, reading a {@link Format#JSON}
+	 * document.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Initialize a session from the JSON export of the root element of
+	 * another session.
+	 * <p><b>Expected:</b></p>
+	 * The new session with the same tree of the exported one.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session by the API Transformation Process;</li>
+	 * 	<li>Export the root element by invoking {@link Element#toJSON()};</li>
+	 * 	<li>Initialize a new session from the exported document;</li>
+	 * 	<li>Verify that the new session is the current one;</li>
+	 * 	<li>Verify that the <i>happytree</i> element is inside of
+	 * 	<i>projects</i> and attached in the new session;</li>
+	 * 	<li>Verify that the export of the new root element is the same as the
+	 * 	exported document.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void initializeSession_fromJSON() throws TreeException {
+		final String sessionId = "initializeSession_fromJSON";
+		final String importedSessionId = "initializeSession_fromJSONImported";
+		final long projectId = 93209;
+		final long happytreeId = 859452;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.
+				getDirectoryTree();
+		
+		transaction.initializeSession(sessionId, directories);
+		String document = manager.root().toJSON();
+		
+		InputStream input = new ByteArrayInputStream(document.getBytes(
+				StandardCharsets.UTF_8));
+		transaction.initializeSession(importedSessionId, Directory.class,
+				input, Format.JSON);
+		
+		assertEquals(importedSessionId, transaction.currentSession()
+				.getSessionId());
+		
+		Element<Directory> projects = manager.getElementById(projectId);
+		Element<Directory> happytree = manager.getElementById(happytreeId);
+		
+		assertTrue(manager.containsElement(projects, happytree));
+		assertEquals(transaction.currentSession(), happytree.attachedTo());
+		assertEquals("ATTACHED", happytree.lifecycle());
+		assertEquals(document, manager.root().toJSON());
+	}
+	
+	/**
+	 * Test for the
+	 * {@link TreeTransaction#initializeSession(String, Class, InputStream,
+	 * Format)}.
+	 * 
+	 * <p>Happy scenario for this operation, reading a {@link Format#XML}
+	 * document.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Initialize a session from the XML export of the root element of
+	 * another session.
+	 * <p><b>Expected:</b></p>
+	 * The new session with the same tree of the exported one.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session by the API Transformation Process;</li>
+	 * 	<li>Export the root element by invoking {@link Element#toXML()};</li>
+	 * 	<li>Initialize a new session from the exported document;</li>
+	 * 	<li>Verify that the new session is the current one;</li>
+	 * 	<li>Verify that the <i>happytree</i> element is inside of
+	 * 	<i>projects</i> and attached in the new session;</li>
+	 * 	<li>Verify that the export of the new root element is the same as the
+	 * 	exported document.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void initializeSession_fromXML() throws TreeException {
+		final String sessionId = "initializeSession_fromXML";
+		final String importedSessionId = "initializeSession_fromXMLImported";
+		final long projectId = 93209;
+		final long happytreeId = 859452;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.
+				getDirectoryTree();
+		
+		transaction.initializeSession(sessionId, directories);
+		String document = manager.root().toXML();
+		
+		InputStream input = new ByteArrayInputStream(document.getBytes(
+				StandardCharsets.UTF_8));
+		transaction.initializeSession(importedSessionId, Directory.class,
+				input, Format.XML);
+		
+		assertEquals(importedSessionId, transaction.currentSession()
+				.getSessionId());
+		
+		Element<Directory> projects = manager.getElementById(projectId);
+		Element<Directory> happytree = manager.getElementById(happytreeId);
+		
+		assertTrue(manager.containsElement(projects, happytree));
+		assertEquals(transaction.currentSession(), happytree.attachedTo());
+		assertEquals("ATTACHED", happytree.lifecycle());
+		assertEquals(document, manager.root().toXML());
+	}
+	
+	/**
+	 * Test for the
+	 * {@link TreeTransaction#initializeSession(String, Class, ChildLoader)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Initialize a lazy session whose children are loaded from the
+	 * collection of <code>TreeAssembler</code> only when they are needed.
+	 * <p><b>Expected:</b></p>
+	 * Nothing is loaded by the initialization, and each level is loaded only
+	 * once, when the element is obtained with its children.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a lazy session with a loader which records the
+	 * 	<code>@Id</code> of each loaded parent;</li>
+	 * 	<li>Verify that nothing is loaded;</li>
+	 * 	<li>Get the root with the first level and verify that only the first
+	 * 	level is loaded;</li>
+	 * 	<li>Verify that <i>projects</i> is not found yet;</li>
+	 * 	<li>Get <i>Devel</i> with its children and verify that its children
+	 * 	are loaded;</li>
+	 * 	<li>Verify that <i>projects</i> is found now, without loading its
+	 * 	children.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void initializeSession_childLoader() throws TreeException {
+		final String sessionId = "initializeSession_childLoader";
+		final long develId = 93832;
+		final long projectsId = 93209;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		List<Object> loadedParents = new ArrayList<>();
+		
+		transaction.initializeSession(sessionId, Directory.class,
+				parentId -> {
+					loadedParents.add(parentId);
+					Long parent = parentId != null ? (Long) parentId : 0L;
+					
+					return directories.stream().filter(directory ->
+							parent.equals(directory.getParentIdentifier()))
+							.collect(Collectors.toList());
+				});
+		
+		assertEquals(sessionId, transaction.currentSession().getSessionId());
+		assertTrue(loadedParents.isEmpty());
+		
+		Element<Directory> root = manager.root(1);
+		
+		assertEquals(Arrays.asList((Object) null), loadedParents);
+		assertEquals(3, root.getChildren().size());
+		assertNull(manager.getElementById(projectsId));
+		
+		Element<Directory> devel = manager.getElementById(develId, 1);
+		
+		assertEquals(Arrays.asList(null, develId), loadedParents);
+		assertTrue(devel.getChildren().stream().anyMatch(
+				element -> element.getId().equals(projectsId)));
+		
+		Element<Directory> projects = manager.getElementById(projectsId, 0);
+		
+		assertEquals(develId, projects.getParent());
+		assertEquals("ATTACHED", projects.lifecycle());
+		assertEquals(2, loadedParents.size());
+	}
+	
+	/**
+	 * Test for the
+	 * {@link TreeTransaction#initializeSession(String, Class, ChildLoader)}.
+	 * 
+	 * <p>Happy scenario for this operation, obtaining the elements with all
+	 * of their descendants.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Obtain the elements of a lazy session by
+	 * {@link TreeManager#getElementById(Object)} and
+	 * {@link TreeManager#root()}.
+	 * <p><b>Expected:</b></p>
+	 * The returned elements carry only the loaded descendants, and the
+	 * children of the other ones are loaded only when they are accessed.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a lazy session with a loader which records the
+	 * 	<code>@Id</code> of each loaded parent;</li>
+	 * 	<li>Get the root with the first level;</li>
+	 * 	<li>Get <i>Devel</i> and verify that nothing else is loaded;</li>
+	 * 	<li>Access the children of <i>Devel</i> and verify that only its
+	 * 	children are loaded;</li>
+	 * 	<li>Get the root and verify that nothing else is loaded;</li>
+	 * 	<li>Verify that <i>projects</i> is inside of <i>Devel</i> in the
+	 * 	root, without loading anything else.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void initializeSession_childLoaderCopies() throws TreeException {
+		final String sessionId = "initializeSession_childLoaderCopies";
+		final long develId = 93832;
+		final long projectsId = 93209;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		List<Object> loadedParents = new ArrayList<>();
+		
+		transaction.initializeSession(sessionId, Directory.class,
+				parentId -> {
+					loadedParents.add(parentId);
+					Long parent = parentId != null ? (Long) parentId : 0L;
+					
+					return directories.stream().filter(directory ->
+							parent.equals(directory.getParentIdentifier()))
+							.collect(Collectors.toList());
+				});
+		
+		manager.root(1);
+		Element<Directory> devel = manager.getElementById(develId);
+		
+		assertEquals(Arrays.asList((Object) null), loadedParents);
+		
+		assertEquals(4, devel.getChildren().size());
+		assertEquals(Arrays.asList(null, develId), loadedParents);
+		
+		Element<Directory> root = manager.root();
+		
+		assertEquals(2, loadedParents.size());
+		
+		Element<Directory> rootDevel = root.getChildren().stream().filter(
+				element -> element.getId().equals(develId)).findFirst().get();
+		
+		assertTrue(rootDevel.getChildren().stream().anyMatch(
+				element -> element.getId().equals(projectsId)));
+		assertEquals(2, loadedParents.size());
+	}
+	
+	/**
+	 * Test for the
+	 * {@link TreeTransaction#initializeSession(String, Class, ChildLoader)}.
+	 * 
+	 * <p>Happy scenario for this operation, obtaining the leaves of a lazy
+	 * session.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Obtain the leaves of a lazy session by {@link TreeManager#leaves()}
+	 * while its levels are loaded.
+	 * <p><b>Expected:</b></p>
+	 * An element whose children were not loaded yet is not a leaf, and it
+	 * becomes one when its children are loaded and there is none.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a lazy session;</li>
+	 * 	<li>Get the root with the first level and verify that there is no
+	 * 	leaf;</li>
+	 * 	<li>Get <i>Devel</i> with its children and verify that there is no
+	 * 	leaf;</li>
+	 * 	<li>Get <i>database</i> with its children and verify that it is the
+	 * 	only leaf.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void initializeSession_childLoaderLeaves() throws TreeException {
+		final String sessionId = "initializeSession_childLoaderLeaves";
+		final long develId = 93832;
+		final long databaseId = 45930;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		
+		transaction.initializeSession(sessionId, Directory.class,
+				parentId -> {
+					Long parent = parentId != null ? (Long) parentId : 0L;
+					
+					return directories.stream().filter(directory ->
+							parent.equals(directory.getParentIdentifier()))
+							.collect(Collectors.toList());
+				});
+		
+		manager.root(1);
+		assertTrue(manager.leaves().isEmpty());
+		
+		manager.getElementById(develId, 1);
+		assertTrue(manager.leaves().isEmpty());
+		
+		manager.getElementById(databaseId, 1);
+		List<Element<Directory>> leaves = manager.leaves();
+		
+		assertEquals(1, leaves.size());
+		assertEquals(databaseId, leaves.get(0).getId());
+	}
+	
+	/**
+	 * Test for the {@link TreeTransaction#saveSession(String, Path)} and
+	 * {@link TreeTransaction#restoreSession(Path)}.
+	 * 
+	 * <p>Happy scenario for these operations.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Save a session into a snapshot file and restore it after destroying the
+	 * session.
+	 * <p><b>Expected:</b></p>
+	 * The restored session with the same identifier, the same state and the
+	 * same tree of the saved one.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session by the API Transformation Process;</li>
+	 * 	<li>Export the root element by invoking {@link Element#toJSON()};</li>
+	 * 	<li>Save the session into a temporary file;</li>
+	 * 	<li>Destroy the session;</li>
+	 * 	<li>Restore the session from the file;</li>
+	 * 	<li>Verify that the restored session is the current one and it is
+	 * 	active;</li>
+	 * 	<li>Verify that the <i>happytree</i> element is inside of
+	 * 	<i>projects</i> and attached in the restored session;</li>
+	 * 	<li>Verify that the export of the restored root element is the same as
+	 * 	the exported one.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error with the temporary file
+	 */
+	@Test
+	public void saveSession() throws TreeException, IOException {
+		final String sessionId = "saveSession";
+		final long projectId = 93209;
+		final long happytreeId = 859452;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.
+				getDirectoryTree();
+		
+		transaction.initializeSession(sessionId, directories);
+		String document = manager.root().toJSON();
+		
+		Path file = Files.createTempFile(sessionId, ".snapshot");
+		try {
+			transaction.saveSession(sessionId, file);
+			transaction.destroySession(sessionId);
+			
+			TreeSession session = transaction.restoreSession(file);
+			
+			assertEquals(sessionId, session.getSessionId());
+			assertEquals(session, transaction.currentSession());
+			assertTrue(session.isActive());
+			
+			Element<Directory> projects = manager.getElementById(projectId);
+			Element<Directory> happytree = manager.getElementById(
+					happytreeId);
+			
+			assertTrue(manager.containsElement(projects, happytree));
+			assertEquals(session, happytree.attachedTo());
+			assertEquals("ATTACHED", happytree.lifecycle());
+			assertEquals(document, manager.root().toJSON());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	/**
+	 * Test for the {@link TreeTransaction#mapSession(Path)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Map a session from a snapshot file and navigate through its tree.
+	 * <p><b>Expected:</b></p>
+	 * The mapped session with the same tree of the saved one.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session by the API Transformation Process;</li>
+	 * 	<li>Export the root element by invoking {@link Element#toJSON()};</li>
+	 * 	<li>Save the session into a temporary file and destroy it;</li>
+	 * 	<li>Map the session from the file;</li>
+	 * 	<li>Verify that the mapped session is the current one;</li>
+	 * 	<li>Verify that the <i>happytree</i> element is inside of
+	 * 	<i>projects</i>, with its wrapped node and its depth;</li>
+	 * 	<li>Verify the number of elements in the first level and of leaves;
+	 * 	</li>
+	 * 	<li>Verify that the export of the mapped root element is the same as
+	 * 	the exported one.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error with the temporary file
+	 */
+	@Test
+	public void mapSession() throws TreeException, IOException {
+		final String sessionId = "mapSession";
+		final long projectId = 93209;
+		final long happytreeId = 859452;
+		final int rootLevelSize = 3;
+		final int leavesSize = 18;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.
+				getDirectoryTree();
+		
+		transaction.initializeSession(sessionId, directories);
+		String document = manager.root().toJSON();
+		
+		Path file = Files.createTempFile(sessionId, ".snapshot");
+		try {
+			transaction.saveSession(file);
+			transaction.destroySession();
+			
+			TreeSession session = transaction.mapSession(file);
+			
+			assertEquals(sessionId, session.getSessionId());
+			assertEquals(session, transaction.currentSession());
+			
+			Element<Directory> projects = manager.getElementById(projectId);
+			Element<Directory> happytree = manager.getElementById(
+					happytreeId);
+			
+			assertTrue(manager.containsElement(projects, happytree));
+			assertEquals(happytree, projects.getElementById(happytreeId));
+			assertEquals("happytree", happytree.unwrap().getName());
+			assertEquals(3, happytree.getDepth());
+			assertEquals(rootLevelSize, manager.elementsAtDepth(1).size());
+			assertEquals(leavesSize, manager.leaves().size());
+			assertEquals(document, manager.root().toJSON());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	/**
+	 * Test for the {@link TreeTransaction#openJournal(Path, Path)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Journal the changes of a session and restore it after destroying the
+	 * session.
+	 * <p><b>Expected:</b></p>
+	 * The restored session with all the changes committed after opening the
+	 * journal.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session by the API Transformation Process;</li>
+	 * 	<li>Open the journal of the session into temporary files;</li>
+	 * 	<li>Persist a new element inside of <i>happytree</i>;</li>
+	 * 	<li>Cut the <i>happytree</i> element to the root level;</li>
+	 * 	<li>Update the wrapped node of the <i>ide</i> element;</li>
+	 * 	<li>Remove the <i>database</i> element;</li>
+	 * 	<li>Export the root element by invoking {@link Element#toJSON()};</li>
+	 * 	<li>Destroy the session;</li>
+	 * 	<li>Restore the session from the snapshot and the journal;</li>
+	 * 	<li>Verify that the new element is inside of <i>happytree</i>, which is
+	 * 	in the first level;</li>
+	 * 	<li>Verify the updated node and the removed element;</li>
+	 * 	<li>Verify that the export of the restored root element is the same as
+	 * 	the exported one.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error with the temporary files
+	 */
+	@Test
+	public void openJournal() throws TreeException, IOException {
+		final String sessionId = "openJournal";
+		final long happytreeId = 859452;
+		final long ideId = 13823;
+		final long databaseId = 45930;
+		final long newId = 1000;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.
+				getDirectoryTree();
+		
+		transaction.initializeSession(sessionId, directories);
+		
+		Path snapshot = Files.createTempFile(sessionId, ".snapshot");
+		Path journal = Files.createTempFile(sessionId, ".journal");
+		try {
+			transaction.openJournal(snapshot, journal);
+			
+			Element<Directory> newElement = manager.createElement(newId,
+					happytreeId, new Directory(newId, happytreeId, "new"));
+			manager.persistElement(newElement);
+			manager.cut(happytreeId, null);
+			
+			Element<Directory> ide = manager.getElementById(ideId);
+			ide.wrap(new Directory(ideId, 93832L, "IDE"));
+			manager.updateElement(ide);
+			
+			manager.removeElement(databaseId);
+			
+			String document = manager.root().toJSON();
+			transaction.destroySession();
+			
+			TreeSession session = transaction.restoreSession(snapshot,
+					journal);
+			
+			assertEquals(session, transaction.currentSession());
+			
+			Element<Directory> happytree = manager.getElementById(
+					happytreeId);
+			
+			assertEquals(1, happytree.getDepth());
+			assertNotNull(happytree.getElementById(newId));
+			ide = manager.getElementById(ideId);
+			
+			assertEquals("IDE", ide.unwrap().getName());
+			assertNull(manager.getElementById(databaseId));
+			assertEquals(document, manager.root().toJSON());
+		} finally {
+			transaction.destroyAllSessions();
+			Files.deleteIfExists(snapshot);
+			Files.deleteIfExists(journal);
+		}
+	}
+	
+	/**
+	 * Test for the {@link TreeTransaction#restoreSession(Path, Path)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Restore a journaled session whose journal ends with an incomplete
+	 * change, as in a crash while writing it.
+	 * <p><b>Expected:</b></p>
+	 * The restored session with the complete changes, still journaling the
+	 * new ones.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session by the API Transformation Process;</li>
+	 * 	<li>Open the journal of the session into temporary files;</li>
+	 * 	<li>Remove the <i>happytree</i> element and destroy the session;</li>
+	 * 	<li>Append an incomplete change into the journal file;</li>
+	 * 	<li>Restore the session from the snapshot and the journal;</li>
+	 * 	<li>Verify that the <i>happytree</i> element does not exist;</li>
+	 * 	<li>Remove the <i>projects</i> element and destroy the session;</li>
+	 * 	<li>Restore the session again and verify that both of the elements do
+	 * 	not exist.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error with the temporary files
+	 */
+	@Test
+	public void restoreSession_journal() throws TreeException, IOException {
+		final String sessionId = "restoreSession_journal";
+		final long projectId = 93209;
+		final long happytreeId = 859452;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.
+				getDirectoryTree();
+		
+		transaction.initializeSession(sessionId, directories);
+		
+		Path snapshot = Files.createTempFile(sessionId, ".snapshot");
+		Path journal = Files.createTempFile(sessionId, ".journal");
+		try {
+			transaction.openJournal(snapshot, journal);
+			manager.removeElement(happytreeId);
+			transaction.destroySession();
+			
+			Files.write(journal, new byte[] {0, 0, 0, 64, 1, 2},
+					StandardOpenOption.APPEND);
+			
+			transaction.restoreSession(snapshot, journal);
+			
+			assertNull(manager.getElementById(happytreeId));
+			assertNotNull(manager.getElementById(projectId));
+			
+			manager.removeElement(projectId);
+			transaction.destroySession();
+			
+			transaction.restoreSession(snapshot, journal);
+			
+			assertNull(manager.getElementById(happytreeId));
+			assertNull(manager.getElementById(projectId));
+		} finally {
+			transaction.destroyAllSessions();
+			Files.deleteIfExists(snapshot);
+			Files.deleteIfExists(journal);
+		}
+	}
+	
+	/**
+	 * Test for the {@link TreeTransaction#compactJournal()}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Compact the journal of a session and restore it only from the snapshot.
+	 * <p><b>Expected:</b></p>
+	 * The snapshot with the changes committed before the compaction.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session by the API Transformation Process;</li>
+	 * 	<li>Open the journal of the session into temporary files;</li>
+	 * 	<li>Remove the <i>happytree</i> element;</li>
+	 * 	<li>Compact the journal and destroy the session;</li>
+	 * 	<li>Restore the session only from the snapshot;</li>
+	 * 	<li>Verify that the <i>happytree</i> element does not exist.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error with the temporary files
+	 */
+	@Test
+	public void compactJournal() throws TreeException, IOException {
+		final String sessionId = "compactJournal";
+		final long projectId = 93209;
+		final long happytreeId = 859452;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.
+				getDirectoryTree();
+		
+		transaction.initializeSession(sessionId, directories);
+		
+		Path snapshot = Files.createTempFile(sessionId, ".snapshot");
+		Path journal = Files.createTempFile(sessionId, ".journal");
+		try {
+			transaction.openJournal(snapshot, journal);
+			manager.removeElement(happytreeId);
+			
+			transaction.compactJournal();
+			transaction.destroySession();
+			
+			transaction.restoreSession(snapshot);
+			
+			assertNull(manager.getElementById(happytreeId));
+			assertNotNull(manager.getElementById(projectId));
+		} finally {
+			transaction.destroyAllSessions();
+			Files.deleteIfExists(snapshot);
+			Files.deleteIfExists(journal);
+		}
+	}
+	
+	/**
+	 * Test for the {@link TreeTransaction#closeJournal()}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Close the journal of a session before changing it again.
+	 * <p><b>Expected:</b></p>
+	 * The restored session without the changes committed after closing the
+	 * journal.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session by the API Transformation Process;</li>
+	 * 	<li>Open the journal of the session into temporary files;</li>
+	 * 	<li>Remove the <i>happytree</i> element;</li>
+	 * 	<li>Close the journal;</li>
+	 * 	<li>Remove the <i>projects</i> element and destroy the session;</li>
+	 * 	<li>Restore the session from the snapshot and the journal;</li>
+	 * 	<li>Verify that only the <i>happytree</i> element does not exist.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 * @throws IOException in case of an error with the temporary files
+	 */
+	@Test
+	public void closeJournal() throws TreeException, IOException {
+		final String sessionId = "closeJournal";
+		final long projectId = 93209;
+		final long happytreeId = 859452;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.
+				getDirectoryTree();
+		
+		transaction.initializeSession(sessionId, directories);
+		
+		Path snapshot = Files.createTempFile(sessionId, ".snapshot");
+		Path journal = Files.createTempFile(sessionId, ".journal");
+		try {
+			transaction.openJournal(snapshot, journal);
+			manager.removeElement(happytreeId);
+			
+			transaction.closeJournal();
+			
+			manager.removeElement(projectId);
+			transaction.destroySession();
+			
+			transaction.restoreSession(snapshot, journal);
+			
+			assertNull(manager.getElementById(happytreeId));
+			assertNotNull(manager.getElementById(projectId));
+		} finally {
+			transaction.destroyAllSessions();
+			Files.deleteIfExists(snapshot);
+			Files.deleteIfExists(journal);
+		}
+	}
+	
 	/**
 	 * Test for the {@link TreeTransaction#destroySession()}.
 	 * 
@@ -606,4 +1365,455 @@ public class TreeTransactionTest {
 		assertNotNull(rec2);
 		assertTrue(manager.containsElement(vlc, rec2));
 	}
+	
+	/**
+	 * Test for the {@link TreeTransaction#cloneSession(TreeSession, String)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Change the source session and its clones after cloning it.
+	 * <p><b>Expected:</b></p>
+	 * Each session only with its own changes.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Clone this session twice;</li>
+	 * 	<li>Remove the <i>happytree</i> element from the source session;</li>
+	 * 	<li>Remove the <i>projects</i> element from the first cloned
+	 * 	session;</li>
+	 * 	<li>Verify that the source session only has the <i>projects</i>
+	 * 	element;</li>
+	 * 	<li>Verify that the first cloned session only has the
+	 * 	<i>happytree</i> element, which is not inside of <i>projects</i>
+	 * 	anymore;</li>
+	 * 	<li>Verify that the second cloned session has both of them, attached to
+	 * 	the cloned session.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void cloneSession_copyOnWrite() throws TreeException {
+		final String sourceSessionId = "cloneSession_copyOnWrite";
+		final String firstSessionId = "cloneSession_copyOnWrite_1";
+		final String secondSessionId = "cloneSession_copyOnWrite_2";
+		final long projectId = 93209;
+		final long happytreeId = 859452;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		
+		transaction.initializeSession(sourceSessionId, directories);
+		
+		TreeSession sourceSession = transaction.currentSession();
+		transaction.cloneSession(sourceSession, firstSessionId);
+		transaction.cloneSession(sourceSession, secondSessionId);
+		
+		manager.removeElement(happytreeId);
+		
+		transaction.sessionCheckout(firstSessionId);
+		manager.cut(happytreeId, null);
+		manager.removeElement(projectId);
+		
+		transaction.sessionCheckout(sourceSessionId);
+		
+		assertNull(manager.getElementById(happytreeId));
+		assertNotNull(manager.getElementById(projectId));
+		
+		transaction.sessionCheckout(firstSessionId);
+		
+		assertNotNull(manager.getElementById(happytreeId));
+		assertNull(manager.getElementById(projectId));
+		
+		TreeSession secondSession = transaction.sessionCheckout(
+				secondSessionId);
+		Element<Directory> projects = manager.getElementById(projectId);
+		Element<Directory> happytree = manager.getElementById(happytreeId);
+		
+		assertTrue(manager.containsElement(projects, happytree));
+		assertEquals(secondSession, happytree.attachedTo());
+		assertEquals("happytree", happytree.unwrap().getName());
+	}
+	
+	/**
+	 * Test for the {@link TreeTransaction#cloneSession(TreeSession, String)}.
+	 * 
+	 * <p>Happy scenario for this operation.</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Read a cloned session which still shares the tree of its source session,
+	 * and change it through the elements read.
+	 * <p><b>Expected:</b></p>
+	 * The elements read are attached to the cloned session as the ones read
+	 * after it copies the tree, and the change is only in the cloned session.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a new session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Clone this session and check it out;</li>
+	 * 	<li>Read the root and the <i>Devel</i> element;</li>
+	 * 	<li>Verify that both of them are attached to the cloned session, with
+	 * 	its id as the id of the root and the parent of <i>Devel</i>;</li>
+	 * 	<li>Search all the elements, which copies the tree;</li>
+	 * 	<li>Verify that the root and <i>Devel</i> are read the same as
+	 * 	before;</li>
+	 * 	<li>Update the <i>Devel</i> element read before the copy;</li>
+	 * 	<li>Verify that only the cloned session has the updated element.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void cloneSession_readShared() throws TreeException {
+		final String sourceSessionId = "cloneSession_readShared";
+		final String clonedSessionId = "cloneSession_readShared_clone";
+		final long develId = 93832;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		
+		transaction.initializeSession(sourceSessionId, directories);
+		transaction.cloneSession(sourceSessionId, clonedSessionId);
+		TreeSession clonedSession = transaction.sessionCheckout(
+				clonedSessionId);
+		
+		Element<Directory> root = manager.root();
+		Element<Directory> devel = manager.getElementById(develId);
+		
+		assertEquals(clonedSession, root.attachedTo());
+		assertEquals(clonedSessionId, root.getId());
+		assertEquals(clonedSession, devel.attachedTo());
+		assertEquals(clonedSessionId, devel.getParent());
+		
+		assertEquals(directories.size(), manager.search(
+				element -> element.unwrap() != null).size());
+		
+		assertEquals(root.toJSON(), manager.root().toJSON());
+		assertEquals(devel.lifecycle(), manager.getElementById(develId)
+				.lifecycle());
+		
+		devel.wrap(new Directory(develId, 0L, "DEVEL"));
+		manager.updateElement(devel);
+		
+		assertEquals("DEVEL", manager.<Directory>getElementById(develId)
+				.unwrap().getName());
+		
+		transaction.sessionCheckout(sourceSessionId);
+		assertEquals("Devel", manager.<Directory>getElementById(develId)
+				.unwrap().getName());
+	}
+	
+	/**
+	 * Test for the {@link TreeTransaction#setThreadConfined(boolean)}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Check out a different session in another thread of a thread-confined
+	 * transaction.
+	 * <p><b>Expected:</b></p>
+	 * Each thread works on the session checked out by itself.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Initialize a session;</li>
+	 * 	<li>Make the transaction thread-confined;</li>
+	 * 	<li>Verify that the calling thread keeps its current session;</li>
+	 * 	<li>In another thread, initialize another session and persist an
+	 * 	element into it;</li>
+	 * 	<li>Verify that the current session of the calling thread is not
+	 * 	changed and does not have the element;</li>
+	 * 	<li>Check out the other session and verify that it has the
+	 * 	element.</li>
+	 * </ol>
+	 * 
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void setThreadConfined() throws Exception {
+		final String sessionId = "setThreadConfined";
+		final String otherSessionId = "setThreadConfined_other";
+		final long elementId = 4435;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		transaction.initializeSession(sessionId, Directory.class);
+		TreeSession session = transaction.currentSession();
+		
+		transaction.setThreadConfined(Boolean.TRUE);
+		
+		assertEquals(session, transaction.currentSession());
+		
+		final TreeException[] errors = new TreeException[1];
+		final TreeSession[] otherSessions = new TreeSession[1];
+		
+		Thread thread = new Thread(() -> {
+			try {
+				otherSessions[0] = transaction.currentSession();
+				
+				transaction.initializeSession(otherSessionId,
+						Directory.class);
+				Element<Directory> element = manager.createElement(elementId,
+						null, new Directory(elementId, null, "other"));
+				manager.persistElement(element);
+			} catch (TreeException exception) {
+				errors[0] = exception;
+			}
+		});
+		thread.start();
+		thread.join();
+		
+		assertNull(errors[0]);
+		assertNull(otherSessions[0]);
+		assertEquals(session, transaction.currentSession());
+		assertFalse(manager.containsElement(elementId));
+		
+		transaction.sessionCheckout(otherSessionId);
+		
+		assertTrue(manager.containsElement(elementId));
+	}
+	
+	/**
+	 * Test for the {@link TreeTransaction#isThreadConfined()}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Verify whether the transaction is thread-confined.
+	 * <p><b>Expected:</b></p>
+	 * The transaction is not thread-confined by default.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Get the transaction;</li>
+	 * 	<li>Verify that the transaction is not thread-confined;</li>
+	 * 	<li>Make the transaction thread-confined;</li>
+	 * 	<li>Verify that the transaction is thread-confined.</li>
+	 * </ol>
+	 */
+	@Test
+	public void isThreadConfined() {
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		assertFalse(transaction.isThreadConfined());
+		
+		transaction.setThreadConfined(Boolean.TRUE);
+		
+		assertTrue(transaction.isThreadConfined());
+	}
+	
+	/**
+	 * Test for the {@link TreeTransaction#begin()}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Execute many operations inside of a transaction, reading the changed
+	 * tree before the commit.
+	 * <p><b>Expected:</b></p>
+	 * The changes are seen inside of the transaction, including the leaves,
+	 * while a snapshot taken before the transaction is not changed.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Initialize a session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Take a snapshot of the session;</li>
+	 * 	<li>Open a transaction;</li>
+	 * 	<li>Persist a chain of elements, each one inside of the previous
+	 * 	one;</li>
+	 * 	<li>Cut the <i>happytree</i> element into the last persisted
+	 * 	element;</li>
+	 * 	<li>Verify the chain and the leaves inside of the transaction;</li>
+	 * 	<li>Commit the transaction;</li>
+	 * 	<li>Verify that the snapshot has not been changed.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void begin() throws TreeException {
+		final String sessionId = "begin";
+		final long happytreeId = 859452;
+		final long firstId = 1000000;
+		final int count = 100;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
+		
+		TreeSession snapshot = manager.snapshot();
+		int leaves = manager.leaves().size();
+		
+		transaction.begin();
+		
+		for (long id = firstId; id < firstId + count; id++) {
+			Directory directory = new Directory(id, id - 1, "Chain " + id);
+			manager.persistElement(manager.createElement(id, id - 1,
+					directory));
+		}
+		Element<Directory> last = manager.getElementById(firstId + count
+				- 1);
+		manager.cut(manager.getElementById(happytreeId), last);
+		
+		assertEquals(count, last.getDepth());
+		assertTrue(manager.containsElement(firstId, happytreeId));
+		assertTrue(manager.leaves().stream().noneMatch(leaf -> leaf.getId()
+				.equals(firstId + count - 1)));
+		
+		transaction.commit();
+		
+		assertEquals(leaves + 1, manager.leaves().size());
+		
+		Element<Directory> snapshotTree = snapshot.tree();
+		assertNull(snapshotTree.getElementById(firstId));
+		assertNotNull(snapshotTree.getElementById(happytreeId));
+	}
+	
+	/**
+	 * Test for the {@link TreeTransaction#commit()}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Commit a transaction of a journaled session.
+	 * <p><b>Expected:</b></p>
+	 * The changes are kept and the session restored from the journal has
+	 * them.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Initialize a session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Open a journal for the session;</li>
+	 * 	<li>Open a transaction;</li>
+	 * 	<li>Remove the <i>happytree</i> element and persist a new one;</li>
+	 * 	<li>Commit the transaction;</li>
+	 * 	<li>Verify the changes;</li>
+	 * 	<li>Destroy the session and restore it from the journal;</li>
+	 * 	<li>Verify the changes in the restored session.</li>
+	 * </ol>
+	 * 
+	 * @throws Exception in case of an error
+	 */
+	@Test
+	public void commit() throws Exception {
+		final String sessionId = "commit";
+		final long happytreeId = 859452;
+		final long newId = 1000000;
+		
+		Path snapshot = Files.createTempFile(sessionId, ".snapshot");
+		Path journal = Files.createTempFile(sessionId, ".journal");
+		try {
+			TreeManager manager = HappyTree.createTreeManager();
+			TreeTransaction transaction = manager.getTransaction();
+			
+			Collection<Directory> directories = TreeAssembler
+					.getDirectoryTree();
+			transaction.initializeSession(sessionId, directories);
+			transaction.openJournal(snapshot, journal);
+			
+			transaction.begin();
+			manager.removeElement(happytreeId);
+			manager.persistElement(manager.createElement(newId, null,
+					new Directory(newId, null, "New")));
+			transaction.commit();
+			
+			assertFalse(manager.containsElement(happytreeId));
+			assertTrue(manager.containsElement(newId));
+			
+			transaction.destroySession();
+			transaction.restoreSession(snapshot, journal);
+			
+			assertFalse(manager.containsElement(happytreeId));
+			assertTrue(manager.containsElement(newId));
+			
+			transaction.destroySession();
+		} finally {
+			Files.deleteIfExists(snapshot);
+			Files.deleteIfExists(journal);
+		}
+	}
+	
+	/**
+	 * Test for the {@link TreeTransaction#rollback()}.
+	 * 
+	 * <p>Happy scenario for this operation</p>
+	 * 
+	 * <p><b>Test:</b></p>
+	 * Roll back a transaction with many kinds of changes.
+	 * <p><b>Expected:</b></p>
+	 * The tree is exactly the same as before the transaction.
+	 * <p><b>Steps:</b></p>
+	 * <ol>
+	 * 	<li>Initialize a session previously loaded from
+	 * 	<code>TreeAssembler</code>;</li>
+	 * 	<li>Export the tree into JSON;</li>
+	 * 	<li>Open a transaction;</li>
+	 * 	<li>Persist, cut, update and remove elements and apply a function to
+	 * 	all of them, clearing their wrapped nodes;</li>
+	 * 	<li>Roll back the transaction;</li>
+	 * 	<li>Verify that the tree is the same one exported before;</li>
+	 * 	<li>Verify the leaves, the version of the updated element and that
+	 * 	the session can be changed again.</li>
+	 * </ol>
+	 * 
+	 * @throws TreeException in case of an error
+	 */
+	@Test
+	public void rollback() throws TreeException {
+		final String sessionId = "rollback";
+		final long happytreeId = 859452;
+		final long develId = 93832;
+		final long ideId = 13823;
+		final long projectsId = 93209;
+		final long newId = 1000000;
+		
+		TreeManager manager = HappyTree.createTreeManager();
+		TreeTransaction transaction = manager.getTransaction();
+		
+		Collection<Directory> directories = TreeAssembler.getDirectoryTree();
+		transaction.initializeSession(sessionId, directories);
+		
+		String json = manager.root().toJSON();
+		int leaves = manager.leaves().size();
+		long version = manager.getElementById(ideId).getVersion();
+		
+		transaction.begin();
+		
+		manager.persistElement(manager.createElement(newId, develId,
+				new Directory(newId, develId, "New")));
+		manager.cut(happytreeId, newId);
+		
+		Element<Directory> ide = manager.getElementById(ideId);
+		Directory directory = ide.unwrap();
+		directory.setName("renamed");
+		ide.wrap(directory);
+		manager.updateElement(ide);
+		
+		manager.removeElement(projectsId);
+		manager.<Directory>apply(element -> element.wrap(null));
+		
+		transaction.rollback();
+		
+		assertEquals(json, manager.root().toJSON());
+		assertEquals(leaves, manager.leaves().size());
+		assertEquals(version, manager.getElementById(ideId).getVersion());
+		assertTrue(manager.containsElement(develId, ideId));
+		assertTrue(manager.containsElement(projectsId, happytreeId));
+		assertFalse(manager.containsElement(newId));
+		
+		manager.removeElement(projectsId);
+		
+		assertFalse(manager.containsElement(happytreeId));
+	}
 }